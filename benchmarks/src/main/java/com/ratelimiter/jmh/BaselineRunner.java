@@ -0,0 +1,119 @@
+package com.ratelimiter.jmh;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the full baseline matrix with the GC profiler and writes a Markdown
+ * summary (baseline.md) plus one raw JMH JSON file per thread count under
+ * raw/ (git-ignored: machine-specific paths and every sample):
+ *
+ * - HotKeyBenchmark at 1, 8 and 64 threads (throughput + sample time)
+ * - KeySpaceBenchmark (uniform, zipfian) at 1 and 8 threads
+ *
+ * Usage (from benchmarks/, after mvn package):
+ *   java -cp target/benchmarks.jar com.ratelimiter.jmh.BaselineRunner [output-dir]
+ *
+ * Compare a change against the checked-in baseline by re-running into a
+ * scratch directory and diffing the two baseline.md files, or load the raw
+ * JSON of both runs into a JMH visualizer.
+ */
+public class BaselineRunner {
+
+    private static final int[] HOT_KEY_THREADS = {1, 8, 64};
+    private static final int[] KEY_SPACE_THREADS = {1, 8};
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : "results");
+        Path raw = output.resolve("raw");
+        Files.createDirectories(raw);
+
+        List<Row> rows = new ArrayList<>();
+        for (int threads : HOT_KEY_THREADS) {
+            rows.addAll(run(HotKeyBenchmark.class, threads, raw.resolve("hot-key-t" + threads + ".json")));
+        }
+        for (int threads : KEY_SPACE_THREADS) {
+            rows.addAll(run(KeySpaceBenchmark.class, threads, raw.resolve("key-space-t" + threads + ".json")));
+        }
+        writeSummary(rows, output.resolve("baseline.md"));
+    }
+
+    private static List<Row> run(Class<?> benchmark, int threads, Path json) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(benchmark.getSimpleName())
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(json.toString())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        List<Row> rows = new ArrayList<>();
+        for (RunResult result : results) {
+            rows.add(new Row(result, threads));
+        }
+        return rows;
+    }
+
+    private static void writeSummary(List<Row> rows, Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("| Benchmark | Algorithm | Threads | Mode | Score | Error | Unit | p50 | p99 | Alloc (B/op) |");
+            out.println("|---|---|---:|---|---:|---:|---|---:|---:|---:|");
+            for (Row row : rows) {
+                out.println(row.toMarkdown());
+            }
+        }
+        System.out.println("Summary written to " + file.toAbsolutePath());
+    }
+
+    /** One benchmark × params × mode result, flattened for the summary table */
+    private static final class Row {
+        private final RunResult result;
+        private final int threads;
+
+        Row(RunResult result, int threads) {
+            this.result = result;
+            this.threads = threads;
+        }
+
+        String toMarkdown() {
+            String label = result.getParams().getBenchmark();
+            Result<?> primary = result.getPrimaryResult();
+            Result<?> alloc = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            boolean sampled = result.getParams().getMode() == Mode.SampleTime;
+            return String.format(Locale.ROOT, "| %s | %s | %d | %s | %.3f | %.3f | %s | %s | %s | %s |",
+                    label.substring(label.lastIndexOf('.', label.lastIndexOf('.') - 1) + 1),
+                    result.getParams().getParam("algorithm"),
+                    threads,
+                    result.getParams().getMode().shortLabel(),
+                    primary.getScore(),
+                    primary.getScoreError(),
+                    primary.getScoreUnit(),
+                    sampled ? format(primary.getStatistics().getPercentile(50)) : "",
+                    sampled ? format(primary.getStatistics().getPercentile(99)) : "",
+                    alloc == null ? "" : format(alloc.getScore()));
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
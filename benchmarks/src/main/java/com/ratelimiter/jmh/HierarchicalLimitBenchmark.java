@@ -0,0 +1,93 @@
+package com.ratelimiter.jmh;
+
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-request cost of a hierarchical check as levels are added: the user
+ * alone (1), then API key (2), IP (3), and the global key every request
+ * shares (4).
+ *
+ * One level goes through tryAcquire, more through tryAcquireAll, as
+ * RateLimiterService does. Callers rotate over 20,000 identities so the
+ * per-caller limits (1,000, refill 1,000/s) are never hit; the global key
+ * takes every request, as it would in production. SampleTime mode reports
+ * latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class HierarchicalLimitBenchmark {
+
+    private static final int CALLERS = 20_000;
+
+    @Param({"GCRA", "TOKEN_BUCKET", "SLIDING_WINDOW", "SLIDING_WINDOW_COUNTER"})
+    public String algorithm;
+
+    @Param({"1", "2", "3", "4"})
+    public int levels;
+
+    private RateLimiterStrategy strategy;
+    private List<List<LimitKey>> requests;
+    private final AtomicInteger threadOffsets = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        strategy = Strategies.create(algorithm, 4L * CALLERS);
+        RateLimitConfig caller = Strategies.config(1_000, 60, 1_000);
+        RateLimitConfig global = Strategies.config(10_000_000, 60, 10_000_000);
+        requests = new ArrayList<>(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            List<LimitKey> keys = new ArrayList<>(levels);
+            keys.add(new LimitKey("user-" + i, caller));
+            if (levels > 1)
+                keys.add(new LimitKey("key-" + i, caller));
+            if (levels > 2)
+                keys.add(new LimitKey("10.0." + (i >> 8) + "." + (i & 0xFF), caller));
+            if (levels > 3)
+                keys.add(new LimitKey("*", global));
+            requests.add(List.copyOf(keys));
+        }
+    }
+
+    /** Per-thread position in the caller rotation */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp(HierarchicalLimitBenchmark benchmark) {
+            next = benchmark.threadOffsets.getAndAdd(CALLERS / 8) % CALLERS;
+        }
+    }
+
+    @Benchmark
+    public boolean check(Cursor cursor) {
+        int i = cursor.next;
+        cursor.next = i + 1 == CALLERS ? 0 : i + 1;
+        List<LimitKey> keys = requests.get(i);
+        if (keys.size() == 1)
+            return strategy.tryAcquire(keys.get(0).getIdentifier(), keys.get(0).getConfig(), 1).isAllowed();
+        return strategy.tryAcquireAll(keys, 1).isAllowed();
+    }
+}
@@ -0,0 +1,53 @@
+package com.ratelimiter.jmh;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every thread calls isAllowed on the same identifier — worst case for
+ * contention (CAS retries, entry lock waits).
+ *
+ * The bucket refills at 100k/s against a 1,000 capacity, so both the admit
+ * and the reject path run. Thread count comes from the runner (-t 1 … 64);
+ * SampleTime mode reports latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class HotKeyBenchmark {
+
+    private static final String KEY = "hot-key";
+
+    @Param({"TOKEN_BUCKET", "TOKEN_BUCKET_OFF_HEAP", "GCRA", "GCRA_OFF_HEAP", "SLIDING_WINDOW",
+            "SLIDING_WINDOW_COUNTER"})
+    public String algorithm;
+
+    private RateLimiterStrategy strategy;
+    private final RateLimitConfig config = Strategies.config(1_000, 60, 100_000);
+
+    @Setup
+    public void setUp() {
+        strategy = Strategies.create(algorithm, 1_000);
+    }
+
+    @Benchmark
+    public boolean isAllowed() {
+        return strategy.isAllowed(KEY, config);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ratelimiter.jmh;
+
+import java.util.SplittableRandom;
+
+/**
+ * Identifier populations shared by the key-space benchmarks, built once per
+ * fork with fixed seeds so every run sees the same keys and the same order.
+ */
+final class KeySpace {
+
+    static final int KEYS = 1_000_000;
+    /** Skew of the Zipfian trace (YCSB's default): the top 1% of keys get two thirds of requests */
+    static final double ZIPF_EXPONENT = 0.99;
+    private static final int TRACE_LENGTH = 1 << 22;
+
+    private static String[] keys;
+    private static int[] zipfTrace;
+
+    private KeySpace() {
+    }
+
+    /** "user-0" … "user-999999", pre-built so the benchmark does not measure string concatenation */
+    static synchronized String[] keys() {
+        if (keys == null) {
+            keys = new String[KEYS];
+            for (int i = 0; i < KEYS; i++) {
+                keys[i] = "user-" + i;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 4M key indices drawn from a Zipf(ZIPF_EXPONENT) distribution over KEYS
+     * ranks (inverse CDF, binary search). Rank 0 is the hottest key.
+     */
+    static synchronized int[] zipfTrace() {
+        if (zipfTrace == null) {
+            double[] cdf = new double[KEYS];
+            double sum = 0;
+            for (int rank = 0; rank < KEYS; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+                cdf[rank] = sum;
+            }
+            SplittableRandom random = new SplittableRandom(42);
+            zipfTrace = new int[TRACE_LENGTH];
+            for (int i = 0; i < TRACE_LENGTH; i++) {
+                double target = random.nextDouble() * sum;
+                int lo = 0;
+                int hi = KEYS - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (cdf[mid] < target)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                zipfTrace[i] = lo;
+            }
+        }
+        return zipfTrace;
+    }
+}
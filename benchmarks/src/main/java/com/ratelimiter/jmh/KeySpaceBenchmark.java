@@ -0,0 +1,83 @@
+package com.ratelimiter.jmh;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * isAllowed over a million identifiers — store lookup, entry creation and
+ * cache misses instead of contention.
+ *
+ * - uniform: every key equally likely; the store fills to ~1M entries and
+ * nearly every check is allowed.
+ * - zipfian: replays a Zipf(0.99) trace; a few hot keys hit their limit
+ * (reject path) while the long tail behaves like uniform.
+ *
+ * Limit 100 per 60 s, refill 10/s. The store is sized above the key space
+ * so eviction does not run. Run with -prof gc for allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class KeySpaceBenchmark {
+
+    @Param({"TOKEN_BUCKET", "TOKEN_BUCKET_OFF_HEAP", "GCRA", "GCRA_OFF_HEAP", "SLIDING_WINDOW",
+            "SLIDING_WINDOW_COUNTER"})
+    public String algorithm;
+
+    private RateLimiterStrategy strategy;
+    private final RateLimitConfig config = Strategies.config(100, 60, 10);
+    private String[] keys;
+    private int[] zipfTrace;
+    private final AtomicInteger threadSeeds = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        strategy = Strategies.create(algorithm, 2L * KeySpace.KEYS);
+        keys = KeySpace.keys();
+        zipfTrace = KeySpace.zipfTrace();
+    }
+
+    /** Per-thread position: own random stream, own offset into the Zipf trace */
+    @State(Scope.Thread)
+    public static class Cursor {
+        SplittableRandom random;
+        int next;
+
+        @Setup
+        public void setUp(KeySpaceBenchmark benchmark) {
+            int seed = benchmark.threadSeeds.incrementAndGet();
+            random = new SplittableRandom(seed);
+            next = random.nextInt(benchmark.zipfTrace.length);
+        }
+    }
+
+    @Benchmark
+    public boolean uniform(Cursor cursor) {
+        return strategy.isAllowed(keys[cursor.random.nextInt(keys.length)], config);
+    }
+
+    @Benchmark
+    public boolean zipfian(Cursor cursor) {
+        int i = cursor.next;
+        cursor.next = i + 1 == zipfTrace.length ? 0 : i + 1;
+        return strategy.isAllowed(keys[zipfTrace[i]], config);
+    }
+}
@@ -0,0 +1,133 @@
+package com.ratelimiter.jmh;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.persist.StateSnapshotter;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Warm-restart cost for keys identifiers: the final snapshot written on
+ * shutdown, and startup loading it back with restoreThreads threads.
+ *
+ * Each identifier has spent part of its budget (1 to 3 permits, no refill),
+ * so every record survives aging. One call is one whole snapshot or
+ * restore, hence SingleShotTime. The default 1M keys fits the 3 GB fork;
+ * raise -p keys together with -jvmArgsAppend -Xmx for larger runs.
+ * restoreThreads only affects restore.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class StateRestoreBenchmark {
+
+    @Param({"TOKEN_BUCKET", "GCRA", "SLIDING_WINDOW"})
+    public String algorithm;
+
+    @Param({"1000000"})
+    public int keys;
+
+    @Param({"1", "4"})
+    public int restoreThreads;
+
+    private final RateLimitConfig config = Strategies.config(100, 3600, 0);
+    private Path directory;
+    private StateSnapshotter restored;
+
+    /** Write the snapshot that every restore reads */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rate-limiter-state");
+        StateSnapshotter writer = filled(persistence(directory.resolve("restore")));
+        writer.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** A filled store with its journal flushed, about to shut down */
+    @State(Scope.Thread)
+    public static class Shutdown {
+        StateSnapshotter writer;
+
+        @Setup(Level.Iteration)
+        public void setUp(StateRestoreBenchmark benchmark) throws IOException {
+            Path snapshots = benchmark.directory.resolve("snapshot");
+            try (Stream<Path> files = Files.exists(snapshots) ? Files.list(snapshots) : Stream.empty()) {
+                files.forEach(path -> path.toFile().delete()); // Start from nothing, as a first shutdown would
+            }
+            writer = benchmark.filled(benchmark.persistence(snapshots));
+        }
+    }
+
+    @Benchmark
+    public void snapshot(Shutdown shutdown) {
+        shutdown.writer.close(); // Final snapshot
+    }
+
+    @Benchmark
+    public long restore() {
+        RateLimiterStrategy strategy = Strategies.create(algorithm, keys + 1L);
+        restored = new StateSnapshotter(List.of(strategy),
+                persistence(directory.resolve("restore")), new SimpleMeterRegistry());
+        return restored.getRestoreStats().get(strategy.getAlgorithmName()).getRestored();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRestored() {
+        if (restored != null) {
+            restored.close(); // Writes the same records back for the next iteration
+            restored = null;
+        }
+    }
+
+    private StateSnapshotter filled(RateLimiterProperties properties) {
+        RateLimiterStrategy strategy = Strategies.create(algorithm, keys + 1L);
+        StateSnapshotter writer = new StateSnapshotter(List.of(strategy), properties, new SimpleMeterRegistry());
+        for (int i = 0; i < keys; i++) {
+            strategy.tryAcquire((10 + (i >>> 16)) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff) + ".1",
+                    config, 1 + i % 3);
+        }
+        writer.flush(); // What the journal flushes would have done by now
+        return writer;
+    }
+
+    private RateLimiterProperties persistence(Path snapshots) {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.getStore().setMaxEntries(keys + 1L);
+        properties.getPersistence().setDirectory(snapshots.toString());
+        properties.getPersistence().setRestoreThreads(restoreThreads);
+        properties.getPersistence().setMaxRestoreMillis(600_000);
+        properties.getPersistence().setSnapshotIntervalSeconds(3_600);
+        properties.getPersistence().setJournalFlushMillis(3_600_000);
+        return properties;
+    }
+}
@@ -0,0 +1,59 @@
+package com.ratelimiter.jmh;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import com.ratelimiter.service.strategy.SlidingWindowCounterStrategy;
+import com.ratelimiter.service.strategy.SlidingWindowStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Builds the strategy under test the way Spring wires it, from
+ * RateLimiterProperties. The _OFF_HEAP names select store.mode=OFF_HEAP.
+ *
+ * The Redis strategies are not here: their cost is the round trip, which
+ * the Redis strategy tests and the lease/batch harnesses measure instead.
+ */
+final class Strategies {
+
+    private Strategies() {
+    }
+
+    /**
+     * @param maxEntries store bound — above the key space so the benchmarks
+     *                   measure steady state, not eviction
+     */
+    static RateLimiterStrategy create(String algorithm, long maxEntries) {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.getStore().setMaxEntries(maxEntries);
+        boolean offHeap = algorithm.endsWith("_OFF_HEAP");
+        if (offHeap)
+            properties.getStore().setMode(RateLimiterProperties.Store.Mode.OFF_HEAP);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        switch (offHeap ? algorithm.substring(0, algorithm.length() - "_OFF_HEAP".length()) : algorithm) {
+            case "TOKEN_BUCKET":
+                return new TokenBucketStrategy(properties, registry);
+            case "GCRA":
+                return new GcraStrategy(properties, registry);
+            case "SLIDING_WINDOW":
+                return new SlidingWindowStrategy(properties, registry);
+            case "SLIDING_WINDOW_COUNTER":
+                return new SlidingWindowCounterStrategy(properties, registry);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    static RateLimitConfig config(int maxRequests, int windowSeconds, int refillRate) {
+        return RateLimitConfig.builder()
+                .identifier("jmh")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(maxRequests)
+                .windowSeconds(windowSeconds)
+                .refillRate(refillRate)
+                .build();
+    }
+}
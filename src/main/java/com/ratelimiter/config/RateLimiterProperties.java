@@ -1,8 +1,12 @@
 package com.ratelimiter.config;
 
+import com.ratelimiter.model.RateLimitConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Binds rate-limiter.* properties from application.yml.
  */
@@ -10,10 +14,23 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties(prefix = "rate-limiter")
 public class RateLimiterProperties {
 
-    private String algorithm = "TOKEN_BUCKET";
+    private String algorithm = "GCRA";
     private int defaultLimit = 100;
     private int defaultWindowSeconds = 60;
     private int defaultRefillRate = 10;
+    private Filter filter = new Filter();
+    private Dimensions dimensions = new Dimensions();
+    private Metrics metrics = new Metrics();
+    private HeavyHitters heavyHitters = new HeavyHitters();
+    private ConfigCache configCache = new ConfigCache();
+    private Store store = new Store();
+    private Redis redis = new Redis();
+    private Lease lease = new Lease();
+    private Batch batch = new Batch();
+    private Cluster cluster = new Cluster();
+    private Sharding sharding = new Sharding();
+    private Wire wire = new Wire();
+    private Persistence persistence = new Persistence();
 
     public String getAlgorithm() {
         return algorithm;
@@ -46,4 +63,882 @@ public class RateLimiterProperties {
     public void setDefaultRefillRate(int defaultRefillRate) {
         this.defaultRefillRate = defaultRefillRate;
     }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    public Dimensions getDimensions() {
+        return dimensions;
+    }
+
+    public void setDimensions(Dimensions dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public HeavyHitters getHeavyHitters() {
+        return heavyHitters;
+    }
+
+    public void setHeavyHitters(HeavyHitters heavyHitters) {
+        this.heavyHitters = heavyHitters;
+    }
+
+    public ConfigCache getConfigCache() {
+        return configCache;
+    }
+
+    public void setConfigCache(ConfigCache configCache) {
+        this.configCache = configCache;
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    public void setStore(Store store) {
+        this.store = store;
+    }
+
+    public Redis getRedis() {
+        return redis;
+    }
+
+    public void setRedis(Redis redis) {
+        this.redis = redis;
+    }
+
+    public Lease getLease() {
+        return lease;
+    }
+
+    public void setLease(Lease lease) {
+        this.lease = lease;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    public Sharding getSharding() {
+        return sharding;
+    }
+
+    public void setSharding(Sharding sharding) {
+        this.sharding = sharding;
+    }
+
+    public Wire getWire() {
+        return wire;
+    }
+
+    public void setWire(Wire wire) {
+        this.wire = wire;
+    }
+
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public void setPersistence(Persistence persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * rate-limiter.filter.* — the servlet filter that enforces limits on
+     * every request. Turning it off leaves the API unlimited (used by the
+     * load-test harness to measure the filter's own cost).
+     */
+    public static class Filter {
+
+        private boolean enabled = true;
+        private List<RouteRule> routes = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /** Per-route exemptions, costs and limits, first match wins */
+        public List<RouteRule> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(List<RouteRule> routes) {
+            this.routes = routes;
+        }
+    }
+
+    /**
+     * rate-limiter.filter.routes[*] — what the filter does with a request to
+     * path (/api/v1/search, /api/v1/items/{id}, /api/v1/search/**). method
+     * narrows the rule to one HTTP method; empty matches any.
+     *
+     * - exempt: the request is not limited at all.
+     * - cost: permits the request takes (1 to 1,000).
+     * - limit: the caller gets a separate budget of limit requests per
+     * windowSeconds for this route instead of its own limit; 0 = the
+     * caller's own limit. windowSeconds 0 = default-window-seconds;
+     * refillRate 0 = limit / windowSeconds.
+     */
+    public static class RouteRule {
+
+        private String path;
+        private String method = "";
+        private boolean exempt;
+        private int cost = 1;
+        private int limit;
+        private int windowSeconds;
+        private int refillRate;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public boolean isExempt() {
+            return exempt;
+        }
+
+        public void setExempt(boolean exempt) {
+            this.exempt = exempt;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public void setCost(int cost) {
+            this.cost = cost;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        public int getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public void setWindowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+
+        public int getRefillRate() {
+            return refillRate;
+        }
+
+        public void setRefillRate(int refillRate) {
+            this.refillRate = refillRate;
+        }
+    }
+
+    /**
+     * rate-limiter.dimensions.* — hierarchical limits. Each request is
+     * checked against every listed level that applies to it (the user, API
+     * key and client IP it carries, and the one GLOBAL key), in order, and
+     * takes its cost from all of them or from none. Empty = one identifier
+     * per request, picked by header precedence.
+     */
+    public static class Dimensions {
+
+        private List<RateLimitConfig.IdentifierType> levels = new ArrayList<>();
+        private String globalIdentifier = "*";
+        private int globalLimit = 10_000;
+        private int globalRefillRate = 1_000;
+
+        public List<RateLimitConfig.IdentifierType> getLevels() {
+            return levels;
+        }
+
+        public void setLevels(List<RateLimitConfig.IdentifierType> levels) {
+            this.levels = levels;
+        }
+
+        /** Key of the GLOBAL level; an admin config for it overrides the defaults below */
+        public String getGlobalIdentifier() {
+            return globalIdentifier;
+        }
+
+        public void setGlobalIdentifier(String globalIdentifier) {
+            this.globalIdentifier = globalIdentifier;
+        }
+
+        public int getGlobalLimit() {
+            return globalLimit;
+        }
+
+        public void setGlobalLimit(int globalLimit) {
+            this.globalLimit = globalLimit;
+        }
+
+        public int getGlobalRefillRate() {
+            return globalRefillRate;
+        }
+
+        public void setGlobalRefillRate(int globalRefillRate) {
+            this.globalRefillRate = globalRefillRate;
+        }
+    }
+
+    /**
+     * rate-limiter.metrics.* — hot-path meters. Decision counters are exact;
+     * the latency timers time one check in latencySampleEvery, because two
+     * clock reads plus a histogram update can cost more than the check
+     * itself. 1 times every check.
+     */
+    public static class Metrics {
+
+        private int latencySampleEvery = 16;
+
+        public int getLatencySampleEvery() {
+            return latencySampleEvery;
+        }
+
+        public void setLatencySampleEvery(int latencySampleEvery) {
+            this.latencySampleEvery = latencySampleEvery;
+        }
+    }
+
+    /**
+     * rate-limiter.heavy-hitters.* — streaming top-K of the identifiers sending
+     * the most requests / drawing the most rejections (GET /admin/top).
+     * Queries reach back intervals × intervalSeconds.
+     */
+    public static class HeavyHitters {
+
+        private boolean enabled = true;
+        private int sampleEvery = 32;
+        private int intervalSeconds = 10;
+        private int intervals = 6;
+        private int trackedKeys = 64;
+        private int sketchWidth = 4096;
+        private int sketchDepth = 4;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSampleEvery() {
+            return sampleEvery;
+        }
+
+        public void setSampleEvery(int sampleEvery) {
+            this.sampleEvery = sampleEvery;
+        }
+
+        public int getIntervalSeconds() {
+            return intervalSeconds;
+        }
+
+        public void setIntervalSeconds(int intervalSeconds) {
+            this.intervalSeconds = intervalSeconds;
+        }
+
+        public int getIntervals() {
+            return intervals;
+        }
+
+        public void setIntervals(int intervals) {
+            this.intervals = intervals;
+        }
+
+        public int getTrackedKeys() {
+            return trackedKeys;
+        }
+
+        public void setTrackedKeys(int trackedKeys) {
+            this.trackedKeys = trackedKeys;
+        }
+
+        public int getSketchWidth() {
+            return sketchWidth;
+        }
+
+        public void setSketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+        }
+
+        public int getSketchDepth() {
+            return sketchDepth;
+        }
+
+        public void setSketchDepth(int sketchDepth) {
+            this.sketchDepth = sketchDepth;
+        }
+    }
+
+    /**
+     * rate-limiter.config-cache.* — in-process cache in front of the config table.
+     */
+    public static class ConfigCache {
+
+        private boolean enabled = true;
+        private long maxSize = 10_000;
+        private long ttlSeconds = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+
+    /**
+     * rate-limiter.store.* — bounds for each strategy's in-memory entry store.
+     * An idle-expiry shorter than a config's window may forget partially used
+     * state for identifiers that go quiet.
+     */
+    public static class Store {
+
+        /**
+         * HEAP: one RateLimitEntry object per identifier (all algorithms).
+         * OFF_HEAP: single-long state (TOKEN_BUCKET, GCRA) kept in a
+         * preallocated off-heap hash table keyed by a 64-bit identifier hash.
+         */
+        public enum Mode {
+            HEAP, OFF_HEAP
+        }
+
+        private Mode mode = Mode.HEAP;
+        private long maxEntries = 1_000_000;
+        private long idleExpirySeconds = 3600;
+        private long tickMillis = 1000;
+        private int offHeapSegments = 256;
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getIdleExpirySeconds() {
+            return idleExpirySeconds;
+        }
+
+        public void setIdleExpirySeconds(long idleExpirySeconds) {
+            this.idleExpirySeconds = idleExpirySeconds;
+        }
+
+        public long getTickMillis() {
+            return tickMillis;
+        }
+
+        public void setTickMillis(long tickMillis) {
+            this.tickMillis = tickMillis;
+        }
+
+        public int getOffHeapSegments() {
+            return offHeapSegments;
+        }
+
+        public void setOffHeapSegments(int offHeapSegments) {
+            this.offHeapSegments = offHeapSegments;
+        }
+    }
+
+    /**
+     * rate-limiter.redis.* — shared state for the REDIS_* algorithms.
+     */
+    public static class Redis {
+
+        private String keyPrefix = "ratelimit:";
+        /** Allow requests (and log) when Redis cannot be reached */
+        private boolean failOpen = true;
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        public boolean isFailOpen() {
+            return failOpen;
+        }
+
+        public void setFailOpen(boolean failOpen) {
+            this.failOpen = failOpen;
+        }
+    }
+
+    /**
+     * rate-limiter.lease.* — lease permit batches from a shared pool
+     * (REDIS_TOKEN_BUCKET) and serve them locally. Longer/larger leases mean
+     * fewer round trips but a larger possible overshoot of the global limit.
+     */
+    public static class Lease {
+
+        private boolean enabled = false;
+        /** How long a node may sit on leased permits before returning them */
+        private long durationMillis = 1000;
+        /** Upper bound on one lease, whatever the observed rate */
+        private long maxSize = 1000;
+        /** Largest fraction of the pool's remaining permits one lease may take */
+        private double maxShareOfRemaining = 0.1;
+        /** Identifiers with a live lease per node */
+        private long maxIdentifiers = 100_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public void setDurationMillis(long durationMillis) {
+            this.durationMillis = durationMillis;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public double getMaxShareOfRemaining() {
+            return maxShareOfRemaining;
+        }
+
+        public void setMaxShareOfRemaining(double maxShareOfRemaining) {
+            this.maxShareOfRemaining = maxShareOfRemaining;
+        }
+
+        public long getMaxIdentifiers() {
+            return maxIdentifiers;
+        }
+
+        public void setMaxIdentifiers(long maxIdentifiers) {
+            this.maxIdentifiers = maxIdentifiers;
+        }
+    }
+
+    /**
+     * rate-limiter.batch.* — coalesce concurrent checks against a shared
+     * store (REDIS_*) into one pipelined round trip.
+     */
+    public static class Batch {
+
+        private boolean enabled = false;
+        /** Checks per pipelined batch */
+        private int maxBatchSize = 64;
+        /** How long the first check in a batch may wait for company */
+        private long maxWaitMicros = 200;
+        /** Pending checks; when full, callers go to the store directly */
+        private int queueCapacity = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public long getMaxWaitMicros() {
+            return maxWaitMicros;
+        }
+
+        public void setMaxWaitMicros(long maxWaitMicros) {
+            this.maxWaitMicros = maxWaitMicros;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * rate-limiter.cluster.* — peer-to-peer mode without a shared store:
+     * nodes gossip per-identifier usage deltas over UDP and fold peers'
+     * usage into their in-memory state.
+     */
+    public static class Cluster {
+
+        private boolean enabled = false;
+        /** Loopback by default: set the interface peers reach explicitly */
+        private String bindAddress = "127.0.0.1";
+        private int bindPort = 7600;
+        /** Static peer list, "host:port"; datagrams from any other address are dropped */
+        private List<String> peers = new ArrayList<>();
+        /** Key for an HMAC on every datagram; empty sends them unsigned (source address check only) */
+        private String sharedSecret = "";
+        /** How often pending deltas are flushed to every peer */
+        private long gossipIntervalMillis = 5;
+        /** Datagram size cap; larger flushes are split */
+        private int maxPacketBytes = 1400;
+        /**
+         * Datagrams stamped further than this from the receiver's clock (either
+         * way) are dropped: a few gossip intervals plus the clock skew between nodes
+         */
+        private long maxPacketAgeMillis = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public void setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public int getBindPort() {
+            return bindPort;
+        }
+
+        public void setBindPort(int bindPort) {
+            this.bindPort = bindPort;
+        }
+
+        public List<String> getPeers() {
+            return peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+
+        public String getSharedSecret() {
+            return sharedSecret;
+        }
+
+        public void setSharedSecret(String sharedSecret) {
+            this.sharedSecret = sharedSecret;
+        }
+
+        public long getGossipIntervalMillis() {
+            return gossipIntervalMillis;
+        }
+
+        public void setGossipIntervalMillis(long gossipIntervalMillis) {
+            this.gossipIntervalMillis = gossipIntervalMillis;
+        }
+
+        public int getMaxPacketBytes() {
+            return maxPacketBytes;
+        }
+
+        public void setMaxPacketBytes(int maxPacketBytes) {
+            this.maxPacketBytes = maxPacketBytes;
+        }
+
+        public long getMaxPacketAgeMillis() {
+            return maxPacketAgeMillis;
+        }
+
+        public void setMaxPacketAgeMillis(long maxPacketAgeMillis) {
+            this.maxPacketAgeMillis = maxPacketAgeMillis;
+        }
+    }
+
+    /**
+     * rate-limiter.sharding.* — each identifier is owned by one node on a
+     * consistent-hash ring; other nodes forward its checks to the owner over
+     * a persistent TCP connection. Takes precedence over cluster mode.
+     */
+    public static class Sharding {
+
+        private boolean enabled = false;
+        /** Loopback by default: set the interface the other members reach explicitly */
+        private String bindAddress = "127.0.0.1";
+        private int bindPort = 7700;
+        /** Peers must prove they hold it (HMAC challenge) before any frame; empty accepts anyone */
+        private String sharedSecret = "";
+        /** How this node appears in members ("host:port"); defaults to 127.0.0.1:bound port */
+        private String advertisedAddress = "";
+        /** Ring members, "host:port", this node included */
+        private List<String> members = new ArrayList<>();
+        /** Ring positions per member; more evens out key ownership */
+        private int virtualNodes = 128;
+        /** Longest wait for the owner's answer before deciding locally */
+        private long forwardTimeoutMillis = 100;
+        /** Inbound connections served at once (one thread each); more are closed on accept */
+        private int maxConnections = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public void setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public int getBindPort() {
+            return bindPort;
+        }
+
+        public void setBindPort(int bindPort) {
+            this.bindPort = bindPort;
+        }
+
+        public String getAdvertisedAddress() {
+            return advertisedAddress;
+        }
+
+        public void setAdvertisedAddress(String advertisedAddress) {
+            this.advertisedAddress = advertisedAddress;
+        }
+
+        public List<String> getMembers() {
+            return members;
+        }
+
+        public void setMembers(List<String> members) {
+            this.members = members;
+        }
+
+        public String getSharedSecret() {
+            return sharedSecret;
+        }
+
+        public void setSharedSecret(String sharedSecret) {
+            this.sharedSecret = sharedSecret;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        public long getForwardTimeoutMillis() {
+            return forwardTimeoutMillis;
+        }
+
+        public void setForwardTimeoutMillis(long forwardTimeoutMillis) {
+            this.forwardTimeoutMillis = forwardTimeoutMillis;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    /**
+     * rate-limiter.wire.* — optional TCP listener speaking the compact binary
+     * decision protocol (WireProtocol) for sidecars and gateways that would
+     * otherwise call the JSON API once per request.
+     */
+    public static class Wire {
+
+        private boolean enabled = false;
+        /** Loopback by default (a sidecar on the same host); the protocol has no authentication */
+        private String bindAddress = "127.0.0.1";
+        private int bindPort = 7800;
+        /** Threads deciding the frames read from connections; the selector thread never decides */
+        private int workerThreads = 2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public void setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public int getBindPort() {
+            return bindPort;
+        }
+
+        public void setBindPort(int bindPort) {
+            this.bindPort = bindPort;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+    }
+
+    /**
+     * rate-limiter.persistence.* — snapshot plus journal of the in-memory
+     * TOKEN_BUCKET and SLIDING_WINDOW state (StateSnapshotter), so a restart
+     * keeps each caller's remaining budget instead of handing out full ones.
+     */
+    public static class Persistence {
+
+        private boolean enabled = false;
+        private String directory = "data/rate-limiter";
+        private long snapshotIntervalSeconds = 300;
+        /** Changed entries are appended to the journal this often; a crash loses at most this much */
+        private long journalFlushMillis = 1000;
+        /** Threads reading snapshot chunks on startup; 0 = one per CPU */
+        private int restoreThreads = 0;
+        /** Startup waits no longer than this; identifiers not restored by then start fresh */
+        private long maxRestoreMillis = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getSnapshotIntervalSeconds() {
+            return snapshotIntervalSeconds;
+        }
+
+        public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+            this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        }
+
+        public long getJournalFlushMillis() {
+            return journalFlushMillis;
+        }
+
+        public void setJournalFlushMillis(long journalFlushMillis) {
+            this.journalFlushMillis = journalFlushMillis;
+        }
+
+        public int getRestoreThreads() {
+            return restoreThreads;
+        }
+
+        public void setRestoreThreads(int restoreThreads) {
+            this.restoreThreads = restoreThreads;
+        }
+
+        public long getMaxRestoreMillis() {
+            return maxRestoreMillis;
+        }
+
+        public void setMaxRestoreMillis(long maxRestoreMillis) {
+            this.maxRestoreMillis = maxRestoreMillis;
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package com.ratelimiter.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opt-in virtual-thread serving: spring.threads.virtual.enabled=true.
+ *
+ * Spring Boot then runs Tomcat's request handling on virtual threads, so a
+ * request blocked on a slow downstream call parks instead of holding one of
+ * server.tomcat.threads.max platform threads. The rate limiter's own
+ * blocking points avoid monitors for this: entry locks, lease locks and
+ * peer-connection writes are ReentrantLocks, and config lookups query the
+ * database outside the cache's locks.
+ *
+ * Boot only honours the flag on Java 21+ and silently ignores it on older
+ * runtimes; this says so at startup instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    public VirtualThreadConfig() {
+        int feature = Runtime.version().feature();
+        if (feature < 21)
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads — "
+                    + "serving on platform threads", feature);
+        else
+            log.info("Serving requests on virtual threads");
+    }
+}
@@ -1,6 +1,8 @@
 package com.ratelimiter.controller;
 
+import com.ratelimiter.config.RateLimiterProperties;
 import com.ratelimiter.dto.RateLimitStatusResponse;
+import com.ratelimiter.filter.RouteRules;
 import com.ratelimiter.model.RateLimitConfig;
 import com.ratelimiter.repository.RateLimitConfigRepository;
 import com.ratelimiter.service.RateLimiterService;
@@ -11,6 +13,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Admin endpoints for managing rate limits.
@@ -22,11 +25,13 @@ public class AdminController {
 
     private final RateLimiterService rateLimiterService;
     private final RateLimitConfigRepository configRepository;
+    private final RouteRules routeRules;
 
     public AdminController(RateLimiterService rateLimiterService,
-            RateLimitConfigRepository configRepository) {
+            RateLimitConfigRepository configRepository, RouteRules routeRules) {
         this.rateLimiterService = rateLimiterService;
         this.configRepository = configRepository;
+        this.routeRules = routeRules;
     }
 
     @PostMapping("/reset/{identifier}")
@@ -38,12 +43,61 @@ public class AdminController {
                 "message", "Rate limit reset for: " + identifier));
     }
 
+    @PostMapping("/reset")
+    @Operation(summary = "Reset rate limit for an identifier passed as a parameter, e.g. a route key containing '/'")
+    public ResponseEntity<Map<String, String>> resetLimitByParam(@RequestParam String identifier) {
+        if (identifier.isBlank())
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", "identifier must not be blank"));
+        return resetLimit(identifier);
+    }
+
     @GetMapping("/status/{identifier}")
     @Operation(summary = "Get rate limit status for any identifier")
     public ResponseEntity<RateLimitStatusResponse> getStatus(@PathVariable String identifier) {
         return ResponseEntity.ok(rateLimiterService.getStatus(identifier));
     }
 
+    @GetMapping("/top")
+    @Operation(summary = "Identifiers sending the most requests and drawing the most rejections")
+    public ResponseEntity<?> getTopIdentifiers(@RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "60") int windowSeconds) {
+        try {
+            return ResponseEntity.ok(rateLimiterService.getTopIdentifiers(k, windowSeconds));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("status", "error", "message", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/cluster/members")
+    @Operation(summary = "Replace the sharding member list and hand off keys that move")
+    public ResponseEntity<Map<String, Object>> updateShardMembers(@RequestBody List<String> members) {
+        if (members.isEmpty())
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", "members must not be empty"));
+        try {
+            return ResponseEntity.ok(Map.of("status", "success",
+                    "members", rateLimiterService.updateShardMembers(members)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("status", "error", "message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/routes")
+    @Operation(summary = "List the route rules in force")
+    public ResponseEntity<List<RateLimiterProperties.RouteRule>> getRoutes() {
+        return ResponseEntity.ok(routeRules.getRules());
+    }
+
+    @PutMapping("/routes")
+    @Operation(summary = "Replace the route rules without a restart; an invalid set changes nothing")
+    public ResponseEntity<Map<String, Object>> replaceRoutes(@RequestBody List<RateLimiterProperties.RouteRule> rules) {
+        try {
+            routeRules.replace(rules);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        }
+        return ResponseEntity.ok(Map.of("status", "success", "routes", rules.size()));
+    }
+
     @GetMapping("/config")
     @Operation(summary = "List all rate limit configurations")
     public ResponseEntity<List<RateLimitConfig>> getAllConfigs() {
@@ -61,7 +115,9 @@ public class AdminController {
     @PostMapping("/config")
     @Operation(summary = "Create a custom rate limit config")
     public ResponseEntity<RateLimitConfig> createConfig(@RequestBody RateLimitConfig config) {
-        return ResponseEntity.ok(configRepository.save(config));
+        RateLimitConfig saved = configRepository.save(config);
+        rateLimiterService.evictConfig(saved.getIdentifier());
+        return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/config/{id}")
@@ -73,7 +129,9 @@ public class AdminController {
                     existing.setMaxRequests(updated.getMaxRequests());
                     existing.setWindowSeconds(updated.getWindowSeconds());
                     existing.setRefillRate(updated.getRefillRate());
-                    return ResponseEntity.ok(configRepository.save(existing));
+                    RateLimitConfig saved = configRepository.save(existing);
+                    rateLimiterService.evictConfig(saved.getIdentifier());
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -81,9 +139,11 @@ public class AdminController {
     @DeleteMapping("/config/{id}")
     @Operation(summary = "Delete a rate limit config")
     public ResponseEntity<Map<String, String>> deleteConfig(@PathVariable Long id) {
-        if (!configRepository.existsById(id))
+        Optional<RateLimitConfig> existing = configRepository.findById(id);
+        if (existing.isEmpty())
             return ResponseEntity.notFound().build();
         configRepository.deleteById(id);
+        rateLimiterService.evictConfig(existing.get().getIdentifier());
         return ResponseEntity.ok(Map.of("status", "deleted", "id", String.valueOf(id)));
     }
 }
@@ -1,6 +1,10 @@
 package com.ratelimiter.controller;
 
+import com.ratelimiter.dto.BatchCheckRequest;
+import com.ratelimiter.dto.BatchCheckResponse;
 import com.ratelimiter.dto.RateLimitStatusResponse;
+import com.ratelimiter.filter.RateLimitFilter;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.service.RateLimiterService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,6 +13,8 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,6 +25,9 @@ import java.util.Map;
 @Tag(name = "Rate Limit API", description = "Public endpoints — all are rate-limited automatically")
 public class RateLimitController {
 
+    static final int MAX_BATCH_ITEMS = 1000;
+    static final int MAX_ITEM_COST = 1000;
+
     private final RateLimiterService rateLimiterService;
 
     public RateLimitController(RateLimiterService rateLimiterService) {
@@ -42,7 +51,11 @@ public class RateLimitController {
             HttpServletRequest request) {
 
         String identifier = resolveIdentifier(userId, request);
-        long remaining = rateLimiterService.getRemainingRequests(identifier);
+        // The filter already consumed and resolved this request — reuse its decision
+        RateLimitDecision decision = (RateLimitDecision) request.getAttribute(RateLimitFilter.DECISION_ATTRIBUTE);
+        long remaining = decision != null
+                ? decision.getRemaining()
+                : rateLimiterService.getRemainingRequests(identifier);
 
         return ResponseEntity.ok(Map.of(
                 "status", "success",
@@ -51,12 +64,53 @@ public class RateLimitController {
                 "tokensRemaining", remaining));
     }
 
+    /**
+     * Many checks in one round trip for a gateway or sidecar — one per
+     * upstream request in a fan-out or queue drain. Not itself limited by
+     * RateLimitFilter: the items are the limited callers.
+     */
+    @PostMapping("/check-batch")
+    @Operation(summary = "Check and consume many (identifier, cost) items in one call")
+    public ResponseEntity<?> checkBatch(@RequestBody BatchCheckRequest request) {
+        List<BatchCheckRequest.Item> items = request.getItems();
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_ITEMS)
+            return badRequest("items must hold 1 to " + MAX_BATCH_ITEMS + " entries");
+        for (BatchCheckRequest.Item item : items) {
+            if (item == null || item.getIdentifier() == null || item.getIdentifier().isBlank())
+                return badRequest("every item needs an identifier");
+            if (!RateLimiterService.isValidIdentifier(item.getIdentifier()))
+                return badRequest("identifiers must not contain '" + RateLimiterService.ROUTE_KEY_SEPARATOR + "'");
+            if (item.getCost() < 1 || item.getCost() > MAX_ITEM_COST)
+                return badRequest("cost must be between 1 and " + MAX_ITEM_COST);
+            item.setIdentifier(item.getIdentifier().trim());
+        }
+
+        List<RateLimitDecision> decisions = rateLimiterService.tryAcquireBatch(items);
+        List<BatchCheckResponse.Result> results = new ArrayList<>(items.size());
+        int allowed = 0;
+        for (int i = 0; i < items.size(); i++) {
+            RateLimitDecision decision = decisions.get(i);
+            results.add(BatchCheckResponse.Result.of(items.get(i).getIdentifier(), items.get(i).getCost(), decision));
+            if (decision.isAllowed())
+                allowed++;
+        }
+        return ResponseEntity.ok(BatchCheckResponse.builder()
+                .allowed(allowed)
+                .rejected(items.size() - allowed)
+                .results(results)
+                .build());
+    }
+
     @GetMapping("/ping")
     @Operation(summary = "Health check — not rate limited")
     public ResponseEntity<Map<String, String>> ping() {
         return ResponseEntity.ok(Map.of("status", "ok", "service", "API Rate Limiter"));
     }
 
+    private static ResponseEntity<Map<String, String>> badRequest(String message) {
+        return ResponseEntity.badRequest().body(Map.of("status", "error", "message", message));
+    }
+
     private String resolveIdentifier(String userId, HttpServletRequest request) {
         if (userId != null && !userId.isBlank())
             return userId.trim();
@@ -0,0 +1,59 @@
+package com.ratelimiter.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request body for POST /api/v1/check-batch — many checks in one call, for
+ * gateways and sidecars that front other services.
+ */
+public class BatchCheckRequest {
+
+    private List<Item> items = new ArrayList<>();
+
+    public BatchCheckRequest() {
+    }
+
+    public BatchCheckRequest(List<Item> items) {
+        this.items = items;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    /** One check: the caller's identifier and how many permits it costs (default 1). */
+    public static class Item {
+
+        private String identifier;
+        private int cost = 1;
+
+        public Item() {
+        }
+
+        public Item(String identifier, int cost) {
+            this.identifier = identifier;
+            this.cost = cost;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public void setIdentifier(String identifier) {
+            this.identifier = identifier;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public void setCost(int cost) {
+            this.cost = cost;
+        }
+    }
+}
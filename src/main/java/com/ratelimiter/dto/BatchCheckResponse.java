@@ -0,0 +1,119 @@
+package com.ratelimiter.dto;
+
+import com.ratelimiter.model.RateLimitDecision;
+
+import java.util.List;
+
+/**
+ * Response body for POST /api/v1/check-batch. results[i] answers items[i].
+ */
+public class BatchCheckResponse {
+
+    private int allowed;
+    private int rejected;
+    private List<Result> results;
+
+    private BatchCheckResponse() {
+    }
+
+    private BatchCheckResponse(Builder b) {
+        this.allowed = b.allowed;
+        this.rejected = b.rejected;
+        this.results = b.results;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int allowed;
+        private int rejected;
+        private List<Result> results;
+
+        public Builder allowed(int v) {
+            this.allowed = v;
+            return this;
+        }
+
+        public Builder rejected(int v) {
+            this.rejected = v;
+            return this;
+        }
+
+        public Builder results(List<Result> v) {
+            this.results = v;
+            return this;
+        }
+
+        public BatchCheckResponse build() {
+            return new BatchCheckResponse(this);
+        }
+    }
+
+    public int getAllowed() {
+        return allowed;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /** One item's decision — the values the X-RateLimit-* headers would carry. */
+    public static class Result {
+
+        private final String identifier;
+        private final int cost;
+        private final boolean allowed;
+        private final long limit;
+        private final long remaining;
+        private final long resetAtEpochSeconds;
+        private final long retryAfterSeconds;
+
+        private Result(String identifier, int cost, RateLimitDecision decision) {
+            this.identifier = identifier;
+            this.cost = cost;
+            this.allowed = decision.isAllowed();
+            this.limit = decision.getLimit();
+            this.remaining = decision.getRemaining();
+            this.resetAtEpochSeconds = decision.getResetAtEpochSeconds();
+            this.retryAfterSeconds = decision.getRetryAfterSeconds();
+        }
+
+        public static Result of(String identifier, int cost, RateLimitDecision decision) {
+            return new Result(identifier, cost, decision);
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        public long getLimit() {
+            return limit;
+        }
+
+        public long getRemaining() {
+            return remaining;
+        }
+
+        public long getResetAtEpochSeconds() {
+            return resetAtEpochSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ratelimiter.dto;
+
+import com.ratelimiter.service.topk.HeavyHitter;
+
+import java.util.List;
+
+/**
+ * Response body for GET /admin/top — heaviest identifiers over a window.
+ * Counts are estimates: upper bounds from the sketch, scaled by sampleEvery.
+ */
+public class TopIdentifiersResponse {
+
+    private long windowSeconds;
+    private int sampleEvery;
+    private List<HeavyHitter> requests;
+    private List<HeavyHitter> rejections;
+
+    private TopIdentifiersResponse() {
+    }
+
+    private TopIdentifiersResponse(Builder b) {
+        this.windowSeconds = b.windowSeconds;
+        this.sampleEvery = b.sampleEvery;
+        this.requests = b.requests;
+        this.rejections = b.rejections;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private long windowSeconds;
+        private int sampleEvery;
+        private List<HeavyHitter> requests;
+        private List<HeavyHitter> rejections;
+
+        public Builder windowSeconds(long v) {
+            this.windowSeconds = v;
+            return this;
+        }
+
+        public Builder sampleEvery(int v) {
+            this.sampleEvery = v;
+            return this;
+        }
+
+        public Builder requests(List<HeavyHitter> v) {
+            this.requests = v;
+            return this;
+        }
+
+        public Builder rejections(List<HeavyHitter> v) {
+            this.rejections = v;
+            return this;
+        }
+
+        public TopIdentifiersResponse build() {
+            return new TopIdentifiersResponse(this);
+        }
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public List<HeavyHitter> getRequests() {
+        return requests;
+    }
+
+    public List<HeavyHitter> getRejections() {
+        return rejections;
+    }
+}
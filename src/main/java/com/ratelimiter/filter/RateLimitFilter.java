@@ -2,6 +2,8 @@ package com.ratelimiter.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ratelimiter.dto.RateLimitResponse;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.service.RateLimiterService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -9,35 +11,61 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * HTTP filter that intercepts every incoming request and enforces rate limits.
+ * Registered unless rate-limiter.filter.enabled is false. Servlet stack only;
+ * a reactive application gets ReactiveRateLimitFilter instead.
+ * Each request goes through the route rules (rate-limiter.filter.routes,
+ * reloadable at runtime): a match can exempt it, set its cost, or give the
+ * caller a separate limit on that route; every other request takes 1
+ * permit from the caller's own limit.
+ * With rate-limiter.dimensions.levels set, the request is checked against
+ * each level it carries (user, API key, IP, global) at once.
+ * An identifier holding RateLimiterService.ROUTE_KEY_SEPARATOR is answered
+ * with 400: it could pose as another caller's budget on a limited route.
  */
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "rate-limiter.filter", name = "enabled", matchIfMissing = true)
 public class RateLimitFilter extends OncePerRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
 
     private final RateLimiterService rateLimiterService;
     private final ObjectMapper objectMapper;
+    private final RouteRules routeRules;
+    private final boolean hierarchical;
 
     public static final String HEADER_LIMIT = "X-RateLimit-Limit";
     public static final String HEADER_REMAINING = "X-RateLimit-Remaining";
     public static final String HEADER_RESET = "X-RateLimit-Reset";
     public static final String HEADER_RETRY = "Retry-After";
 
-    private static final String USER_ID_HEADER = "X-User-Id";
-    private static final String API_KEY_HEADER = "X-API-Key";
+    /** Request (or exchange) attribute holding the RateLimitDecision for downstream handlers. */
+    public static final String DECISION_ATTRIBUTE = RateLimitFilter.class.getName() + ".DECISION";
 
-    public RateLimitFilter(RateLimiterService rateLimiterService, ObjectMapper objectMapper) {
+    static final String CHECK_BATCH_PATH = "/api/v1/check-batch";
+
+    static final String USER_ID_HEADER = "X-User-Id";
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    public RateLimitFilter(RateLimiterService rateLimiterService, ObjectMapper objectMapper,
+            RouteRules routeRules) {
         this.rateLimiterService = rateLimiterService;
         this.objectMapper = objectMapper;
+        this.routeRules = routeRules;
+        this.hierarchical = rateLimiterService.isHierarchical();
     }
 
     @Override
@@ -47,34 +75,77 @@ public class RateLimitFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String path = request.getRequestURI();
-        if (isExcluded(path)) {
+        RouteMatcher.Route route = routeRules.match(request.getMethod(), path);
+        if (route.exempt) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        String identifier = extractIdentifier(request);
-        log.debug("Rate limit check for identifier: {} on path: {}", identifier, path);
+        RateLimitConfig.IdentifierType type = identifierType(request);
+        String identifier = extractIdentifier(request, type);
+        log.debug("Rate limit check for identifier: {} on path: {} (cost {})", identifier, path, route.cost);
 
-        addRateLimitHeaders(response, identifier);
+        Map<RateLimitConfig.IdentifierType, String> identifiers = hierarchical
+                ? callerIdentifiers(request)
+                : Map.of(type, identifier);
+        if (!identifiers.values().stream().allMatch(RateLimiterService::isValidIdentifier)) {
+            sendInvalidIdentifierResponse(response);
+            return;
+        }
 
-        boolean allowed = rateLimiterService.checkAndConsume(identifier);
+        RateLimitDecision decision = hierarchical
+                ? rateLimiterService.tryAcquireAll(identifiers, type, route.cost, route.limit)
+                : rateLimiterService.tryAcquire(identifier, type, route.cost, route.limit);
+        addRateLimitHeaders(response, decision);
 
-        if (allowed) {
+        if (decision.isAllowed()) {
+            request.setAttribute(DECISION_ATTRIBUTE, decision);
             filterChain.doFilter(request, response);
         } else {
-            sendRateLimitExceededResponse(response, identifier);
+            sendRateLimitExceededResponse(response, identifier, decision);
         }
     }
 
-    private String extractIdentifier(HttpServletRequest request) {
+    /**
+     * Which header identifies the caller: X-User-Id, then X-API-Key, else the client IP.
+     */
+    private RateLimitConfig.IdentifierType identifierType(HttpServletRequest request) {
         String userId = request.getHeader(USER_ID_HEADER);
         if (userId != null && !userId.isBlank())
-            return userId.trim();
+            return RateLimitConfig.IdentifierType.USER_ID;
+
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank())
+            return RateLimitConfig.IdentifierType.API_KEY;
+
+        return RateLimitConfig.IdentifierType.IP_ADDRESS;
+    }
 
+    private String extractIdentifier(HttpServletRequest request, RateLimitConfig.IdentifierType type) {
+        if (type == RateLimitConfig.IdentifierType.USER_ID)
+            return request.getHeader(USER_ID_HEADER).trim();
+        if (type == RateLimitConfig.IdentifierType.API_KEY)
+            return request.getHeader(API_KEY_HEADER).trim();
+        return clientIp(request);
+    }
+
+    /**
+     * Every identifier the request carries, for hierarchical limits: the
+     * user and API key if their headers are set, and always the client IP.
+     */
+    private Map<RateLimitConfig.IdentifierType, String> callerIdentifiers(HttpServletRequest request) {
+        Map<RateLimitConfig.IdentifierType, String> identifiers = new EnumMap<>(RateLimitConfig.IdentifierType.class);
+        String userId = request.getHeader(USER_ID_HEADER);
+        if (userId != null && !userId.isBlank())
+            identifiers.put(RateLimitConfig.IdentifierType.USER_ID, userId.trim());
         String apiKey = request.getHeader(API_KEY_HEADER);
         if (apiKey != null && !apiKey.isBlank())
-            return apiKey.trim();
+            identifiers.put(RateLimitConfig.IdentifierType.API_KEY, apiKey.trim());
+        identifiers.put(RateLimitConfig.IdentifierType.IP_ADDRESS, clientIp(request));
+        return identifiers;
+    }
 
+    private static String clientIp(HttpServletRequest request) {
         String forwardedFor = request.getHeader("X-Forwarded-For");
         if (forwardedFor != null && !forwardedFor.isBlank())
             return forwardedFor.split(",")[0].trim();
@@ -82,43 +153,43 @@ public class RateLimitFilter extends OncePerRequestFilter {
         return request.getRemoteAddr();
     }
 
-    private void addRateLimitHeaders(HttpServletResponse response, String identifier) {
-        long limit = rateLimiterService.getLimit(identifier);
-        long remaining = rateLimiterService.getRemainingRequests(identifier);
-        long reset = rateLimiterService.getResetTimeEpochSeconds(identifier);
-
-        response.setHeader(HEADER_LIMIT, String.valueOf(limit));
-        response.setHeader(HEADER_REMAINING, String.valueOf(remaining));
-        response.setHeader(HEADER_RESET, String.valueOf(reset));
+    private void addRateLimitHeaders(HttpServletResponse response, RateLimitDecision decision) {
+        response.setHeader(HEADER_LIMIT, String.valueOf(decision.getLimit()));
+        response.setHeader(HEADER_REMAINING, String.valueOf(decision.getRemaining()));
+        response.setHeader(HEADER_RESET, String.valueOf(decision.getResetAtEpochSeconds()));
     }
 
     private void sendRateLimitExceededResponse(HttpServletResponse response,
-            String identifier) throws IOException {
-        long resetAt = rateLimiterService.getResetTimeEpochSeconds(identifier);
-        long retryAfter = Math.max(1, resetAt - System.currentTimeMillis() / 1000);
+            String identifier, RateLimitDecision decision) throws IOException {
+        long retryAfter = decision.getRetryAfterSeconds();
 
         response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
         response.setContentType(MediaType.APPLICATION_JSON_VALUE);
         response.setHeader(HEADER_RETRY, String.valueOf(retryAfter));
-        response.setHeader(HEADER_REMAINING, "0");
 
-        RateLimitResponse body = RateLimitResponse.builder()
+        response.getWriter().write(objectMapper.writeValueAsString(rejectionBody(identifier, decision)));
+    }
+
+    private void sendInvalidIdentifierResponse(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(objectMapper.writeValueAsString(INVALID_IDENTIFIER_BODY));
+    }
+
+    /** The 400 body for an identifier holding the route-key separator; ReactiveRateLimitFilter sends it too. */
+    static final Map<String, String> INVALID_IDENTIFIER_BODY = Map.of("status", "error",
+            "message", "Identifiers must not contain '" + RateLimiterService.ROUTE_KEY_SEPARATOR + "'");
+
+    /** The 429 body; ReactiveRateLimitFilter sends the same one. */
+    static RateLimitResponse rejectionBody(String identifier, RateLimitDecision decision) {
+        return RateLimitResponse.builder()
                 .status(429)
                 .message("Rate limit exceeded. Too many requests.")
                 .identifier(identifier)
-                .retryAfterSeconds(retryAfter)
+                .retryAfterSeconds(decision.getRetryAfterSeconds())
                 .limitRemaining(0)
-                .limitTotal(rateLimiterService.getLimit(identifier))
-                .resetAtEpochSeconds(resetAt)
+                .limitTotal(decision.getLimit())
+                .resetAtEpochSeconds(decision.getResetAtEpochSeconds())
                 .build();
-
-        response.getWriter().write(objectMapper.writeValueAsString(body));
-    }
-
-    private boolean isExcluded(String path) {
-        return path.startsWith("/actuator")
-                || path.startsWith("/swagger-ui")
-                || path.startsWith("/api-docs")
-                || path.startsWith("/v3/api-docs");
     }
 }
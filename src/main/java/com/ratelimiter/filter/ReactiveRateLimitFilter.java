@@ -0,0 +1,173 @@
+package com.ratelimiter.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.RateLimiterService;
+import com.ratelimiter.service.ReactiveRateLimiterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Reactive counterpart of RateLimitFilter for a WebFlux application
+ * (spring.main.web-application-type=reactive), e.g. a gateway fronting
+ * other services.
+ *
+ * Same route rules, identifier resolution, hierarchical levels, X-RateLimit-*
+ * headers, 429 body and 400 for identifiers holding the route-key separator
+ * as the servlet filter; the check is a Mono from
+ * ReactiveRateLimiterService, so the event loop never blocks on a config
+ * lookup or a Redis round trip. Registered unless rate-limiter.filter.enabled
+ * is false.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(prefix = "rate-limiter.filter", name = "enabled", matchIfMissing = true)
+public class ReactiveRateLimitFilter implements WebFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveRateLimitFilter.class);
+
+    private final ReactiveRateLimiterService rateLimiterService;
+    private final ObjectMapper objectMapper;
+    private final RouteRules routeRules;
+    private final boolean hierarchical;
+
+    public ReactiveRateLimitFilter(ReactiveRateLimiterService rateLimiterService, ObjectMapper objectMapper,
+                                   RouteRules routeRules) {
+        this.rateLimiterService = rateLimiterService;
+        this.objectMapper = objectMapper;
+        this.routeRules = routeRules;
+        this.hierarchical = rateLimiterService.isHierarchical();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        RouteMatcher.Route route = routeRules.match(request.getMethod().name(), path);
+        if (route.exempt)
+            return chain.filter(exchange);
+
+        RateLimitConfig.IdentifierType type = identifierType(request.getHeaders());
+        String identifier = extractIdentifier(request, type);
+        log.debug("Rate limit check for identifier: {} on path: {} (cost {})", identifier, path, route.cost);
+
+        Map<RateLimitConfig.IdentifierType, String> identifiers = hierarchical
+                ? callerIdentifiers(request)
+                : Map.of(type, identifier);
+        if (!identifiers.values().stream().allMatch(RateLimiterService::isValidIdentifier))
+            return sendInvalidIdentifierResponse(exchange.getResponse());
+
+        Mono<RateLimitDecision> check = hierarchical
+                ? rateLimiterService.tryAcquireAll(identifiers, type, route.cost, route.limit)
+                : rateLimiterService.tryAcquire(identifier, type, route.cost, route.limit);
+        return check.flatMap(decision -> {
+            addRateLimitHeaders(exchange.getResponse(), decision);
+            if (decision.isAllowed()) {
+                exchange.getAttributes().put(RateLimitFilter.DECISION_ATTRIBUTE, decision);
+                return chain.filter(exchange);
+            }
+            return sendRateLimitExceededResponse(exchange.getResponse(), identifier, decision);
+        });
+    }
+
+    /**
+     * Which header identifies the caller: X-User-Id, then X-API-Key, else the client IP.
+     */
+    private RateLimitConfig.IdentifierType identifierType(HttpHeaders headers) {
+        String userId = headers.getFirst(RateLimitFilter.USER_ID_HEADER);
+        if (userId != null && !userId.isBlank())
+            return RateLimitConfig.IdentifierType.USER_ID;
+
+        String apiKey = headers.getFirst(RateLimitFilter.API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank())
+            return RateLimitConfig.IdentifierType.API_KEY;
+
+        return RateLimitConfig.IdentifierType.IP_ADDRESS;
+    }
+
+    private String extractIdentifier(ServerHttpRequest request, RateLimitConfig.IdentifierType type) {
+        HttpHeaders headers = request.getHeaders();
+        if (type == RateLimitConfig.IdentifierType.USER_ID)
+            return headers.getFirst(RateLimitFilter.USER_ID_HEADER).trim();
+        if (type == RateLimitConfig.IdentifierType.API_KEY)
+            return headers.getFirst(RateLimitFilter.API_KEY_HEADER).trim();
+        return clientIp(request);
+    }
+
+    /** Every identifier the request carries (see RateLimitFilter). */
+    private Map<RateLimitConfig.IdentifierType, String> callerIdentifiers(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        Map<RateLimitConfig.IdentifierType, String> identifiers = new EnumMap<>(RateLimitConfig.IdentifierType.class);
+        String userId = headers.getFirst(RateLimitFilter.USER_ID_HEADER);
+        if (userId != null && !userId.isBlank())
+            identifiers.put(RateLimitConfig.IdentifierType.USER_ID, userId.trim());
+        String apiKey = headers.getFirst(RateLimitFilter.API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank())
+            identifiers.put(RateLimitConfig.IdentifierType.API_KEY, apiKey.trim());
+        identifiers.put(RateLimitConfig.IdentifierType.IP_ADDRESS, clientIp(request));
+        return identifiers;
+    }
+
+    private static String clientIp(ServerHttpRequest request) {
+        String forwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
+        if (forwardedFor != null && !forwardedFor.isBlank())
+            return forwardedFor.split(",")[0].trim();
+
+        InetSocketAddress remote = request.getRemoteAddress();
+        return remote == null ? "unknown" : remote.getAddress().getHostAddress();
+    }
+
+    private void addRateLimitHeaders(ServerHttpResponse response, RateLimitDecision decision) {
+        HttpHeaders headers = response.getHeaders();
+        headers.set(RateLimitFilter.HEADER_LIMIT, String.valueOf(decision.getLimit()));
+        headers.set(RateLimitFilter.HEADER_REMAINING, String.valueOf(decision.getRemaining()));
+        headers.set(RateLimitFilter.HEADER_RESET, String.valueOf(decision.getResetAtEpochSeconds()));
+    }
+
+    private Mono<Void> sendInvalidIdentifierResponse(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.BAD_REQUEST);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(RateLimitFilter.INVALID_IDENTIFIER_BODY);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private Mono<Void> sendRateLimitExceededResponse(ServerHttpResponse response, String identifier,
+                                                     RateLimitDecision decision) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().set(RateLimitFilter.HEADER_RETRY, String.valueOf(decision.getRetryAfterSeconds()));
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(RateLimitFilter.rejectionBody(identifier, decision));
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        DataBuffer buffer = response.bufferFactory().wrap(body);
+        return response.writeWith(Mono.just(buffer));
+    }
+}
@@ -0,0 +1,277 @@
+package com.ratelimiter.filter;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Route rules compiled into a trie of path segments, for RateLimitFilter
+ * and ReactiveRateLimitFilter (through RouteRules).
+ *
+ * Concept:
+ * - Each rule's path is split on '/'. A literal segment is a keyed child,
+ * '*' or '{name}' matches any one segment, and a trailing '**' matches the
+ * rest of the path (zero or more segments).
+ * - Rules keep their config order: a request takes the first rule whose
+ * path and method (if set) match, else DEFAULT (cost 1, caller's limit).
+ * - The batch endpoint is exempt ahead of every rule (it limits the items
+ * in its body, not its caller); actuator and API docs are exempt after
+ * them, so a configured rule can still limit those.
+ * - match() walks the path once, following the literal and wildcard child
+ * at each depth. Literal children sit in an open-addressed table probed
+ * with a hash of the segment computed in place, so no substring, segment
+ * list or matcher object is allocated per request.
+ *
+ * Thread Safety: immutable after compile; RouteRules swaps whole matchers.
+ */
+final class RouteMatcher {
+
+    /** Same ceiling as the batch and wire endpoints */
+    static final int MAX_COST = 1000;
+
+    static final Route DEFAULT = new Route("", "", false, 1, null);
+
+    /** Exempt after the configured rules — what the filter used to hard-code */
+    static final List<String> DEFAULT_EXEMPT = List.of(
+            "/actuator/**", "/swagger-ui/**", "/swagger-ui.html",
+            "/api-docs/**", "/api-docs.yaml", "/v3/api-docs/**", "/v3/api-docs.yaml");
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final Node root;
+    private final Route[] routes;
+    private final Map<String, RateLimitConfig> limits; // By limit identifier, first rule wins
+
+    private RouteMatcher(Node root, Route[] routes) {
+        this.root = root;
+        this.routes = routes;
+        Map<String, RateLimitConfig> byIdentifier = new HashMap<>();
+        for (Route route : routes) {
+            if (route.limit != null)
+                byIdentifier.putIfAbsent(route.limit.getIdentifier(), route.limit);
+        }
+        this.limits = Map.copyOf(byIdentifier);
+    }
+
+    /**
+     * Compile rules in order, between the built-in exemptions; the first
+     * that matches a request wins.
+     *
+     * @param defaultWindowSeconds window of a rule with a limit but no window
+     * @throws IllegalArgumentException naming the first invalid rule
+     */
+    static RouteMatcher compile(List<? extends RateLimiterProperties.RouteRule> rules, int defaultWindowSeconds) {
+        BuildNode root = new BuildNode();
+        List<Route> routes = new ArrayList<>(rules.size() + DEFAULT_EXEMPT.size() + 1);
+        exempt(root, routes, RateLimitFilter.CHECK_BATCH_PATH);
+        for (int i = 0; i < rules.size(); i++) {
+            RateLimiterProperties.RouteRule rule = rules.get(i);
+            String name = "rate-limiter.filter.routes[" + i + "]";
+            if (rule.getPath() == null || rule.getPath().isBlank())
+                throw new IllegalArgumentException(name + ": path is required");
+            String path = rule.getPath().trim();
+            if (!path.startsWith("/"))
+                throw new IllegalArgumentException(name + ": path must start with '/', got " + path);
+            if (rule.getCost() < 1 || rule.getCost() > MAX_COST)
+                throw new IllegalArgumentException(name + ": cost must be 1 to " + MAX_COST + ", got " + rule.getCost());
+            if (rule.getLimit() < 0 || rule.getWindowSeconds() < 0 || rule.getRefillRate() < 0)
+                throw new IllegalArgumentException(name + ": limit, window-seconds and refill-rate must not be negative");
+            String method = rule.getMethod() == null ? "" : rule.getMethod().trim().toUpperCase(Locale.ROOT);
+
+            insert(root, path, routes.size(), name);
+            routes.add(new Route(method, path, rule.isExempt(), rule.getCost(),
+                    rule.getLimit() > 0 ? limitConfig(method, path, rule, defaultWindowSeconds) : null));
+        }
+        for (String path : DEFAULT_EXEMPT) {
+            exempt(root, routes, path);
+        }
+        return new RouteMatcher(root.freeze(), routes.toArray(new Route[0]));
+    }
+
+    private static void exempt(BuildNode root, List<Route> routes, String path) {
+        insert(root, path, routes.size(), path);
+        routes.add(new Route("", path, true, 1, null));
+    }
+
+    private static RateLimitConfig limitConfig(String method, String path, RateLimiterProperties.RouteRule rule,
+                                               int defaultWindowSeconds) {
+        int windowSeconds = rule.getWindowSeconds() > 0 ? rule.getWindowSeconds() : defaultWindowSeconds;
+        int refillRate = rule.getRefillRate() > 0 ? rule.getRefillRate() : Math.max(1, rule.getLimit() / windowSeconds);
+        return RateLimitConfig.builder()
+                .identifier("route:" + (method.isEmpty() ? "*" : method) + ":" + path)
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(rule.getLimit())
+                .windowSeconds(windowSeconds)
+                .refillRate(refillRate)
+                .build();
+    }
+
+    private static void insert(BuildNode root, String path, int rule, String name) {
+        String[] segments = Arrays.stream(path.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        BuildNode node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals("**")) {
+                if (i != segments.length - 1)
+                    throw new IllegalArgumentException(name + ": '**' is only allowed as the last segment of " + path);
+                node.tailRules.add(rule);
+                return;
+            }
+            if (segment.equals("*") || (segment.startsWith("{") && segment.endsWith("}") && segment.length() > 2
+                    && segment.indexOf(':') < 0)) {
+                if (node.wildcard == null)
+                    node.wildcard = new BuildNode();
+                node = node.wildcard;
+                continue;
+            }
+            if (segment.indexOf('*') >= 0 || segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0
+                    || segment.indexOf('?') >= 0)
+                throw new IllegalArgumentException(name + ": segment '" + segment + "' of " + path
+                        + " is not supported; use a literal, '*', '{name}' or a trailing '**'");
+            node = node.literals.computeIfAbsent(segment, s -> new BuildNode());
+        }
+        node.endRules.add(rule);
+    }
+
+    /**
+     * The rule for this request, or DEFAULT. Allocation-free.
+     */
+    Route match(String method, String path) {
+        int rule = match(root, path, 0, method, Integer.MAX_VALUE);
+        return rule == Integer.MAX_VALUE ? DEFAULT : routes[rule];
+    }
+
+    /** The limit whose identifier is limitIdentifier ("route:GET:/path"), or null */
+    RateLimitConfig limit(String limitIdentifier) {
+        return limits.get(limitIdentifier);
+    }
+
+    /** Lowest rule index under node that matches path from pos, or best if none beats it */
+    private int match(Node node, String path, int pos, String method, int best) {
+        if (node.minRule >= best)
+            return best; // Nothing below can win
+        best = first(node.tailRules, method, best); // '**' also matches nothing more
+        int start = pos;
+        while (start < path.length() && path.charAt(start) == '/')
+            start++;
+        if (start == path.length())
+            return first(node.endRules, method, best);
+
+        int end = path.indexOf('/', start);
+        if (end < 0)
+            end = path.length();
+        Node literal = node.literal(path, start, end);
+        if (literal != null)
+            best = match(literal, path, end, method, best);
+        if (node.wildcard != null)
+            best = match(node.wildcard, path, end, method, best);
+        return best;
+    }
+
+    private int first(int[] rules, String method, int best) {
+        for (int rule : rules) {
+            if (rule >= best)
+                break;
+            String ruleMethod = routes[rule].method;
+            if (ruleMethod.isEmpty() || ruleMethod.equalsIgnoreCase(method))
+                return rule;
+        }
+        return best;
+    }
+
+    /**
+     * What a matching rule does to a request: skip the limiter, or take cost
+     * permits from the caller's own limit or from limit, the caller's
+     * separate budget for this route.
+     */
+    static final class Route {
+        final String method; // Empty = any
+        final String path;
+        final boolean exempt;
+        final int cost;
+        final RateLimitConfig limit; // null = the caller's own limit
+
+        Route(String method, String path, boolean exempt, int cost, RateLimitConfig limit) {
+            this.method = method;
+            this.path = path;
+            this.exempt = exempt;
+            this.cost = cost;
+            this.limit = limit;
+        }
+    }
+
+    private static final class BuildNode {
+        final Map<String, BuildNode> literals = new LinkedHashMap<>();
+        BuildNode wildcard;
+        final List<Integer> endRules = new ArrayList<>();
+        final List<Integer> tailRules = new ArrayList<>();
+
+        Node freeze() {
+            Node node = new Node();
+            node.endRules = toArray(endRules);
+            node.tailRules = toArray(tailRules);
+            node.wildcard = wildcard == null ? null : wildcard.freeze();
+            int min = Math.min(min(node.endRules), min(node.tailRules));
+            if (node.wildcard != null)
+                min = Math.min(min, node.wildcard.minRule);
+
+            int capacity = Integer.highestOneBit(Math.max(1, literals.size() * 2 - 1)) << 1; // Load ≤ 1/2
+            node.keys = new String[capacity];
+            node.children = new Node[capacity];
+            for (Map.Entry<String, BuildNode> literal : literals.entrySet()) {
+                Node child = literal.getValue().freeze();
+                min = Math.min(min, child.minRule);
+                int slot = spread(literal.getKey().hashCode()) & (capacity - 1);
+                while (node.keys[slot] != null)
+                    slot = (slot + 1) & (capacity - 1);
+                node.keys[slot] = literal.getKey();
+                node.children[slot] = child;
+            }
+            node.minRule = min;
+            return node;
+        }
+
+        private static int[] toArray(List<Integer> rules) {
+            return rules.isEmpty() ? NO_RULES : rules.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private static int min(int[] rules) {
+            return rules.length == 0 ? Integer.MAX_VALUE : rules[0]; // Added in rule order
+        }
+    }
+
+    private static final class Node {
+        String[] keys;
+        Node[] children;
+        Node wildcard;
+        int[] endRules;  // Rules whose path ends here
+        int[] tailRules; // Rules ending in '**' here
+        int minRule;     // Lowest rule index in this subtree
+
+        /** The child for path[start, end), found without building the substring */
+        Node literal(String path, int start, int end) {
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++)
+                hash = 31 * hash + path.charAt(i); // String.hashCode over the range
+            int mask = keys.length - 1;
+            for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && path.regionMatches(start, key, 0, length))
+                    return children[slot];
+            }
+            return null;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
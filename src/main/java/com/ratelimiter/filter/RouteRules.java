@@ -0,0 +1,68 @@
+package com.ratelimiter.filter;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The live route rules shared by RateLimitFilter and ReactiveRateLimitFilter.
+ *
+ * - Starts from rate-limiter.filter.routes; PUT /admin/routes replaces them
+ * without a restart.
+ * - Each rule set is compiled into a RouteMatcher before it goes live, so
+ * an invalid set is refused whole and the old rules stay in force.
+ *
+ * Thread Safety: the compiled matcher sits in a volatile field. A request
+ * reads it once and sees either the old rules or the new ones, never a mix.
+ */
+@Component
+public class RouteRules {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteRules.class);
+
+    private final int defaultWindowSeconds;
+    private volatile List<RateLimiterProperties.RouteRule> rules;
+    private volatile RouteMatcher matcher;
+
+    public RouteRules(RateLimiterProperties properties) {
+        this.defaultWindowSeconds = properties.getDefaultWindowSeconds();
+        replace(properties.getFilter().getRoutes());
+    }
+
+    /** The rule for this request; allocation-free. */
+    RouteMatcher.Route match(String method, String path) {
+        return matcher.match(method, path);
+    }
+
+    /**
+     * The limit of the rule in force whose per-caller budgets are kept under
+     * limitIdentifier (the route part of a RateLimiterService.routeKey, e.g.
+     * "route:GET:/api/v1/search/**"), or null if no rule has it any more.
+     */
+    public RateLimitConfig findLimit(String limitIdentifier) {
+        return matcher.limit(limitIdentifier);
+    }
+
+    /** The configured rules now in force, built-in exemptions not included. */
+    public List<RateLimiterProperties.RouteRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Compile rules and put them in force for every request that starts
+     * after this returns.
+     *
+     * @throws IllegalArgumentException if a rule is invalid; nothing changes
+     */
+    public void replace(List<RateLimiterProperties.RouteRule> newRules) {
+        RouteMatcher compiled = RouteMatcher.compile(newRules, defaultWindowSeconds);
+        this.rules = List.copyOf(newRules);
+        this.matcher = compiled;
+        log.info("Route rules in force: {} configured, {} built-in exemptions", newRules.size(),
+                RouteMatcher.DEFAULT_EXEMPT.size() + 1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ratelimiter.model;
+
+/**
+ * Token bucket state packed into a single long so refill + consume can be
+ * published with one compare-and-set.
+ *
+ * Layout:
+ * - bits 63..24 — last refill time, epoch ms minus EPOCH_BASE_MS (40 bits,
+ *   good until 2055)
+ * - bits 23..0  — available tokens (capacity capped at MAX_TOKENS)
+ *
+ * RateLimitEntry.EVICTED_STATE (all ones) never occurs as a packed value:
+ * the refill-time offset stays far below 2^40 - 1.
+ */
+public final class BucketState {
+
+    /** 2020-09-13T12:26:40Z — offsets fit 40 bits until 2055 */
+    public static final long EPOCH_BASE_MS = 1_600_000_000_000L;
+
+    public static final int TOKEN_BITS = 24;
+    public static final long MAX_TOKENS = (1L << TOKEN_BITS) - 1;
+
+    private BucketState() {
+    }
+
+    public static long pack(long tokens, long refillTimeMs) {
+        return ((refillTimeMs - EPOCH_BASE_MS) << TOKEN_BITS) | Math.min(Math.max(tokens, 0), MAX_TOKENS);
+    }
+
+    public static long tokens(long state) {
+        return state & MAX_TOKENS;
+    }
+
+    public static long refillTimeMs(long state) {
+        return (state >>> TOKEN_BITS) + EPOCH_BASE_MS;
+    }
+
+    /** Bucket capacity as stored — configs above MAX_TOKENS are clamped. */
+    public static long capacity(int maxRequests) {
+        return Math.min(maxRequests, MAX_TOKENS);
+    }
+}
@@ -0,0 +1,30 @@
+package com.ratelimiter.model;
+
+/**
+ * One level of a hierarchical check: an identifier and the limit that
+ * applies to it. A request checked against its user, API key, IP and the
+ * global limit carries four of these, most specific first.
+ */
+public final class LimitKey {
+
+    private final String identifier;
+    private final RateLimitConfig config;
+
+    public LimitKey(String identifier, RateLimitConfig config) {
+        this.identifier = identifier;
+        this.config = config;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public RateLimitConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public String toString() {
+        return "LimitKey{identifier=" + identifier + ", limit=" + config.getMaxRequests() + "}";
+    }
+}
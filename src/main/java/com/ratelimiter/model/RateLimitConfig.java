@@ -34,12 +34,14 @@ public class RateLimitConfig {
     @Column(nullable = false)
     private int windowSeconds;
 
-    /** Token refill rate per second — only used by Token Bucket algorithm */
+    /** Token refill rate per second — used by the Token Bucket and GCRA algorithms */
     @Column(nullable = false)
     private int refillRate;
 
     public enum IdentifierType {
-        USER_ID, IP_ADDRESS, API_KEY
+        USER_ID, IP_ADDRESS, API_KEY,
+        /** The service-wide limit shared by every caller (rate-limiter.dimensions) */
+        GLOBAL
     }
 
     // ── Constructors ─────────────────────────────────────────────────────────
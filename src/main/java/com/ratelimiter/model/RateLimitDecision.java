@@ -0,0 +1,80 @@
+package com.ratelimiter.model;
+
+/**
+ * Immutable outcome of a single rate-limit check.
+ * Produced by RateLimiterStrategy.tryAcquire under one lock acquisition, so
+ * every field describes the same instant — the state AFTER consumption.
+ *
+ * Used by the filter to write X-RateLimit-* headers and the 429 body without
+ * going back to the strategy or the config repository.
+ */
+public final class RateLimitDecision {
+
+    private final boolean allowed;
+    private final long limit;
+    private final long remaining;
+    private final long resetAtEpochSeconds;
+    private final long retryAfterSeconds;
+
+    private RateLimitDecision(boolean allowed, long limit, long remaining,
+            long resetAtEpochSeconds, long retryAfterSeconds) {
+        this.allowed = allowed;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.resetAtEpochSeconds = resetAtEpochSeconds;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** Request accepted; remaining is the count left after this request. */
+    public static RateLimitDecision allowed(long limit, long remaining, long resetAtEpochSeconds) {
+        return new RateLimitDecision(true, limit, Math.max(0, remaining), resetAtEpochSeconds, 0);
+    }
+
+    /** Request rejected; retryAfterSeconds is always at least 1. */
+    public static RateLimitDecision rejected(long limit, long resetAtEpochSeconds, long retryAfterSeconds) {
+        return new RateLimitDecision(false, limit, 0, resetAtEpochSeconds, Math.max(1, retryAfterSeconds));
+    }
+
+    /**
+     * The tighter of two decisions for one request checked against several
+     * limits: a rejection over an admission, the longer Retry-After between
+     * rejections, the fewer remaining between admissions. Either may be null.
+     */
+    public static RateLimitDecision mostRestrictive(RateLimitDecision a, RateLimitDecision b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (a.allowed != b.allowed)
+            return a.allowed ? b : a;
+        if (!a.allowed)
+            return b.retryAfterSeconds > a.retryAfterSeconds ? b : a;
+        return b.remaining < a.remaining ? b : a;
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getResetAtEpochSeconds() {
+        return resetAtEpochSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitDecision{allowed=" + allowed + ", limit=" + limit + ", remaining=" + remaining +
+                ", resetAtEpochSeconds=" + resetAtEpochSeconds + ", retryAfterSeconds=" + retryAfterSeconds + "}";
+    }
+}
@@ -1,35 +1,97 @@
 package com.ratelimiter.model;
 
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.atomic.AtomicLong;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
  * In-memory state for a single rate-limited identifier.
- * Stored in a ConcurrentHashMap — NOT persisted to DB.
+ * Stored in a strategy's EntryStore (ConcurrentHashMap) — NOT persisted to DB.
  *
- * Used by both Token Bucket and Sliding Window strategies.
+ * Used by the Token Bucket, GCRA, Sliding Window and Sliding Window Counter
+ * strategies.
  */
 public class RateLimitEntry {
 
-    // ── Token Bucket fields ──────────────────────────────────────────────────
-    /** Current number of available tokens */
-    public final AtomicLong tokenCount;
+    /** Reserved value of state: the entry has left its store. */
+    public static final long EVICTED_STATE = -1L;
 
-    /** Epoch milliseconds of the last token refill */
-    public final AtomicLong lastRefillTime;
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup()
+                    .findVarHandle(RateLimitEntry.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // ── Lock-free strategies (Token Bucket, GCRA) ───────────────────────────
+    /**
+     * Single-word state updated only via compareAndSetState — no lock.
+     * Token Bucket: tokens + last refill time packed by BucketState.
+     * GCRA: theoretical arrival time.
+     */
+    public volatile long state;
 
     // ── Sliding Window fields ────────────────────────────────────────────────
-    /** Timestamps (epoch ms) of recent requests within the current window */
-    public final ConcurrentLinkedDeque<Long> requestTimestamps;
+    /** Timestamps (epoch ms) of recent requests; primitive ring guarded by the entry lock */
+    public final TimestampRing requestTimestamps;
+
+    // ── Sliding Window Counter fields (guarded by the entry lock) ───────────
+    /** Epoch ms at which the current fixed window started (aligned to window size) */
+    public long windowStartMs;
+
+    /** Requests counted in the current fixed window */
+    public long currentWindowCount;
+
+    /** Requests counted in the window immediately before the current one */
+    public long previousWindowCount;
 
     // ── Shared ──────────────────────────────────────────────────────────────
     /** The identifier this entry belongs to (userId / IP / apiKey) */
     public final String identifier;
 
+    // ── Store bookkeeping ───────────────────────────────────────────────────
+    /**
+     * Epoch ms after which this entry is equivalent to having no entry
+     * (bucket refilled / window empty) or has been idle too long.
+     * Written by strategies before their state change is published (under
+     * the entry lock, or before the CAS), read by the expiry wheel.
+     */
+    public volatile long expiresAtMs;
+
+    /**
+     * Set once the store has retired this entry (under the entry lock, or
+     * after state was CAS'd to EVICTED_STATE). A strategy that
+     * finds an evicted entry must re-fetch from the store.
+     */
+    public volatile boolean evicted;
+
+    /**
+     * Queued for the next journal flush (EntryStore.trackChanges); cleared
+     * by the flush before it reads the state.
+     */
+    public volatile boolean changed;
+
     public RateLimitEntry(String identifier, long initialTokens) {
         this.identifier = identifier;
-        this.tokenCount = new AtomicLong(initialTokens);
-        this.lastRefillTime = new AtomicLong(System.currentTimeMillis());
-        this.requestTimestamps = new ConcurrentLinkedDeque<>();
+        this.state = BucketState.pack(initialTokens, System.currentTimeMillis());
+        this.requestTimestamps = new TimestampRing();
+        this.expiresAtMs = Long.MAX_VALUE;
+    }
+
+    /**
+     * Entry whose lock-free state starts at the given value rather than a
+     * full token bucket.
+     */
+    public static RateLimitEntry withState(String identifier, long initialState) {
+        RateLimitEntry entry = new RateLimitEntry(identifier, 0);
+        entry.state = initialState;
+        return entry;
+    }
+
+    public boolean compareAndSetState(long expected, long next) {
+        return STATE.compareAndSet(this, expected, next);
     }
 }
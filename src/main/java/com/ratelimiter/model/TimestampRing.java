@@ -0,0 +1,248 @@
+package com.ratelimiter.model;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity ring of request timestamps (epoch ms) for the exact sliding
+ * window log, stored in a primitive long[] — no per-request node or boxing.
+ *
+ * Once the ring holds limit timestamps, the oldest slot is exactly the
+ * request limit positions back, so the admit check is a single comparison:
+ * if that slot has left the window the new timestamp overwrites it.
+ *
+ * The backing array grows geometrically up to the limit, so a key with a
+ * 10,000-request limit that sends a handful of requests does not pay 80 KB.
+ *
+ * Not thread-safe: guarded by the owning RateLimitEntry's lock.
+ */
+public final class TimestampRing {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] slots = EMPTY;
+    /** Index of the oldest timestamp */
+    private int head;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Newest stored timestamp; only valid when not empty. */
+    public long newest() {
+        return slots[index(size - 1)];
+    }
+
+    /**
+     * Record a request at timestampMs if fewer than limit timestamps are at or
+     * after windowStartMs. O(1) apart from occasional growth.
+     *
+     * @return true if the timestamp was recorded (request allowed)
+     */
+    public boolean tryAdd(long timestampMs, long windowStartMs, int limit) {
+        if (limit <= 0)
+            return false;
+        if (slots.length > limit)
+            shrinkTo(limit);
+
+        if (size == limit) {
+            // The slot `limit` requests back is still inside the window → full
+            if (slots[head] >= windowStartMs)
+                return false;
+            overwriteOldest(timestampMs);
+            return true;
+        }
+
+        if (size == slots.length) {
+            if (size > 0 && slots[head] < windowStartMs) {
+                // Reuse an expired slot rather than growing
+                overwriteOldest(timestampMs);
+                return true;
+            }
+            grow(limit);
+        }
+        slots[index(size)] = Math.max(timestampMs, size == 0 ? timestampMs : newest());
+        size++;
+        return true;
+    }
+
+    /**
+     * Record count timestamps at timestampMs (one weighted request) if at
+     * most limit − count timestamps are at or after windowStartMs: all of
+     * them or none. O(log n + count).
+     *
+     * @return true if the timestamps were recorded (request allowed)
+     */
+    public boolean tryAdd(long timestampMs, long windowStartMs, int limit, int count) {
+        if (count == 1)
+            return tryAdd(timestampMs, windowStartMs, limit);
+        if (count < 1 || count > limit)
+            return false;
+        if (slots.length > limit)
+            shrinkTo(limit);
+        if (countSince(windowStartMs) + count > limit)
+            return false;
+        // Room for count more: once the ring is full, the oldest count slots have left the window
+        record(timestampMs, count, limit);
+        return true;
+    }
+
+    /**
+     * Whether tryAdd(…, windowStartMs, limit, count) would record. Changes
+     * nothing, so a caller can check several rings before recording in any
+     * (hierarchical limits). O(log n).
+     */
+    public boolean fits(long windowStartMs, int limit, int count) {
+        if (count < 1 || count > limit)
+            return false;
+        // A ring not yet shrunk to a lowered limit keeps only its newest limit timestamps
+        return Math.min(countSince(windowStartMs), limit) + count <= limit;
+    }
+
+    /**
+     * Record count requests at timestampMs without a limit check (usage
+     * reported by a peer). A full ring drops its oldest timestamps.
+     */
+    public void record(long timestampMs, int count, int limit) {
+        if (limit <= 0)
+            return;
+        if (slots.length > limit)
+            shrinkTo(limit);
+
+        for (int i = Math.min(count, limit); i > 0; i--) {
+            if (size == limit) {
+                overwriteOldest(timestampMs);
+                continue;
+            }
+            if (size == slots.length)
+                grow(limit);
+            slots[index(size)] = Math.max(timestampMs, size == 0 ? timestampMs : newest());
+            size++;
+        }
+    }
+
+    /**
+     * Drop the newest count timestamps (a recorded request given back).
+     */
+    public void removeNewest(int count) {
+        size -= Math.min(Math.max(count, 0), size);
+    }
+
+    /** Stored timestamps, oldest first. */
+    public long[] toArray() {
+        long[] ordered = new long[size];
+        for (int i = 0; i < size; i++) {
+            ordered[i] = slots[index(i)];
+        }
+        return ordered;
+    }
+
+    /**
+     * Union with another node's log (state handoff), keeping the newest
+     * limit timestamps.
+     */
+    public void merge(long[] timestamps, int limit) {
+        if (limit <= 0)
+            return;
+        long[] merged = Arrays.copyOf(toArray(), size + timestamps.length);
+        System.arraycopy(timestamps, 0, merged, size, timestamps.length);
+        Arrays.sort(merged);
+        int keep = Math.min(limit, merged.length);
+        slots = new long[Math.max(keep, Math.min(limit, INITIAL_CAPACITY))];
+        System.arraycopy(merged, merged.length - keep, slots, 0, keep);
+        head = 0;
+        size = keep;
+    }
+
+    /**
+     * Replace the stored timestamps with these (oldest first, as toArray
+     * returns them) — a restart restoring a saved log.
+     */
+    public void replace(long[] timestamps) {
+        slots = timestamps.length == 0 ? EMPTY : timestamps.clone();
+        head = 0;
+        size = timestamps.length;
+    }
+
+    /**
+     * Number of stored timestamps at or after windowStartMs — binary search,
+     * since timestamps are kept in non-decreasing order.
+     */
+    public int countSince(long windowStartMs) {
+        return size - firstIndexAtOrAfter(windowStartMs);
+    }
+
+    /**
+     * Oldest timestamp at or after windowStartMs, or -1 if none.
+     */
+    public long oldestSince(long windowStartMs) {
+        int i = firstIndexAtOrAfter(windowStartMs);
+        return i == size ? -1 : slots[index(i)];
+    }
+
+    /**
+     * The n-th oldest timestamp (0 = oldest) at or after windowStartMs, or -1
+     * if there are not that many.
+     */
+    public long nthSince(long windowStartMs, int n) {
+        int i = firstIndexAtOrAfter(windowStartMs) + n;
+        return i >= size ? -1 : slots[index(i)];
+    }
+
+    private void overwriteOldest(long timestampMs) {
+        long floor = newest();
+        slots[head] = Math.max(timestampMs, floor);
+        head = index(1);
+    }
+
+    /** Logical position (0 = oldest) of the first timestamp ≥ windowStartMs. */
+    private int firstIndexAtOrAfter(long windowStartMs) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (slots[index(mid)] < windowStartMs)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int index(int logical) {
+        int i = head + logical;
+        return i >= slots.length ? i - slots.length : i;
+    }
+
+    private void grow(int limit) {
+        int capacity = Math.min(limit, Math.max(INITIAL_CAPACITY, slots.length * 2));
+        relayout(capacity);
+    }
+
+    /** Limit lowered by an admin config change: keep only the newest timestamps. */
+    private void shrinkTo(int limit) {
+        int drop = Math.max(0, size - limit);
+        head = index(drop);
+        size -= drop;
+        relayout(limit);
+    }
+
+    private void relayout(int capacity) {
+        long[] next = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            next[i] = slots[index(i)];
+        }
+        slots = next;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -4,6 +4,8 @@ import com.ratelimiter.model.RateLimitConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -19,6 +21,12 @@ public interface RateLimitConfigRepository extends JpaRepository<RateLimitConfig
      */
     Optional<RateLimitConfig> findByIdentifier(String identifier);
 
+    /**
+     * Configs for many identifiers in one query (batch checks); identifiers
+     * without a custom config are simply absent.
+     */
+    List<RateLimitConfig> findByIdentifierIn(Collection<String> identifiers);
+
     /**
      * Find config by identifier and its type.
      */
@@ -0,0 +1,155 @@
+package com.ratelimiter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded on-heap cache in front of RateLimitConfigRepository.
+ *
+ * - Keyed by identifier; values are Optional so "no custom config" is cached
+ *   too (negative caching). Most traffic runs on the default config and must
+ *   never reach JDBC once warm.
+ * - Size-bounded and expire-after-write, so a missed invalidation heals
+ *   within ttl-seconds.
+ * - Admin writes call evict() for write-through invalidation.
+ * - Misses query the repository outside the cache, not inside
+ *   Cache.get(key, loader): that would run JDBC under a ConcurrentHashMap
+ *   bin lock, a monitor that pins a virtual thread to its carrier for the
+ *   whole query. Concurrent misses on one identifier may each query; an
+ *   evict() that overlaps a load keeps the loaded value out of the cache.
+ * - Hit/miss/eviction stats are published as cache.* meters with
+ *   cache=rateLimitConfig (visible under /actuator/metrics).
+ * - findReactive() is the same lookup for the WebFlux path: hits are
+ *   answered inline, misses are queried on boundedElastic.
+ */
+@Component
+public class RateLimitConfigCache {
+
+    static final String CACHE_NAME = "rateLimitConfig";
+
+    private final RateLimitConfigRepository configRepository;
+    private final Cache<String, Optional<RateLimitConfig>> cache;
+    private final boolean enabled;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public RateLimitConfigCache(RateLimitConfigRepository configRepository,
+            RateLimiterProperties properties,
+            MeterRegistry meterRegistry) {
+        RateLimiterProperties.ConfigCache settings = properties.getConfigCache();
+        this.configRepository = configRepository;
+        this.enabled = settings.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(settings.getTtlSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Custom config for this identifier, or empty when the defaults apply.
+     */
+    public Optional<RateLimitConfig> find(String identifier) {
+        if (!enabled)
+            return configRepository.findByIdentifier(identifier);
+
+        Optional<RateLimitConfig> cached = cache.getIfPresent(identifier);
+        if (cached != null)
+            return cached;
+        return load(identifier);
+    }
+
+    /**
+     * find() for the reactive path. A cache hit completes immediately on the
+     * caller's thread; a miss (or a disabled cache) runs the JDBC query on
+     * boundedElastic, never on an event loop.
+     */
+    public Mono<Optional<RateLimitConfig>> findReactive(String identifier) {
+        if (!enabled)
+            return Mono.fromCallable(() -> configRepository.findByIdentifier(identifier))
+                    .subscribeOn(Schedulers.boundedElastic());
+
+        Optional<RateLimitConfig> cached = cache.getIfPresent(identifier);
+        if (cached != null)
+            return Mono.just(cached);
+        return Mono.fromCallable(() -> load(identifier)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * find() for many identifiers: cache hits first, then every miss in one
+     * repository query (negative results cached as usual).
+     */
+    public Map<String, Optional<RateLimitConfig>> findAll(Collection<String> identifiers) {
+        Map<String, Optional<RateLimitConfig>> found = new HashMap<>(identifiers.size() * 2);
+        Set<String> missing = new LinkedHashSet<>();
+        for (String identifier : identifiers) {
+            Optional<RateLimitConfig> cached = enabled ? cache.getIfPresent(identifier) : null;
+            if (cached != null)
+                found.put(identifier, cached);
+            else
+                missing.add(identifier);
+        }
+        if (missing.isEmpty())
+            return found;
+
+        long generation = invalidations.get();
+        Map<String, RateLimitConfig> loaded = new HashMap<>(missing.size() * 2);
+        for (RateLimitConfig config : configRepository.findByIdentifierIn(missing)) {
+            loaded.putIfAbsent(config.getIdentifier(), config);
+        }
+        for (String identifier : missing) {
+            Optional<RateLimitConfig> config = Optional.ofNullable(loaded.get(identifier));
+            found.put(identifier, config);
+            if (enabled)
+                cache.put(identifier, config);
+        }
+        if (enabled && invalidations.get() != generation)
+            cache.invalidateAll(missing); // An admin write may have landed after our read
+        return found;
+    }
+
+    private Optional<RateLimitConfig> load(String identifier) {
+        long generation = invalidations.get();
+        Optional<RateLimitConfig> loaded = configRepository.findByIdentifier(identifier);
+        cache.put(identifier, loaded);
+        if (invalidations.get() != generation)
+            cache.invalidate(identifier); // An admin write may have landed after our read
+        return loaded;
+    }
+
+    /**
+     * Drop the cached entry (positive or negative) for an identifier.
+     */
+    public void evict(String identifier) {
+        if (identifier != null) {
+            invalidations.incrementAndGet();
+            cache.invalidate(identifier);
+        }
+    }
+
+    public void evictAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
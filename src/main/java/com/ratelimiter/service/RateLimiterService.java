@@ -1,15 +1,37 @@
 package com.ratelimiter.service;
 
 import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.dto.BatchCheckRequest;
 import com.ratelimiter.dto.RateLimitStatusResponse;
+import com.ratelimiter.dto.TopIdentifiersResponse;
+import com.ratelimiter.filter.RouteRules;
+import com.ratelimiter.model.LimitKey;
 import com.ratelimiter.model.RateLimitConfig;
-import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.batch.BatchDecisionSource;
+import com.ratelimiter.service.batch.BatchedCheck;
+import com.ratelimiter.service.batch.DecisionDispatcher;
+import com.ratelimiter.service.cluster.GossipCluster;
+import com.ratelimiter.service.cluster.PeerUsageTarget;
+import com.ratelimiter.service.cluster.ShardedLimiter;
+import com.ratelimiter.service.lease.PermitLeaseManager;
+import com.ratelimiter.service.lease.PermitPool;
 import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import com.ratelimiter.service.topk.HeavyHitterTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 /**
  * Core service that orchestrates rate limiting.
  */
@@ -18,74 +40,593 @@ public class RateLimiterService {
 
     private static final Logger log = LoggerFactory.getLogger(RateLimiterService.class);
 
+    // Below this many distinct identifiers a batch is decided on the caller's thread
+    static final int PARALLEL_BATCH_GROUPS = 64;
+
+    /** Joins a caller's identifier to a route in a routeKey; callers' own identifiers may not hold it */
+    public static final String ROUTE_KEY_SEPARATOR = "|";
+    private static final String ROUTE_KEY_MARKER = ROUTE_KEY_SEPARATOR + "route:";
+
     private final RateLimiterStrategy activeStrategy;
-    private final RateLimitConfigRepository configRepository;
+    private final RateLimitConfigCache configCache;
+    private final RouteRules routeRules;
     private final RateLimiterProperties properties;
+    private final PermitLeaseManager leaseManager; // null unless lease mode is on
+    private final DecisionDispatcher dispatcher;   // null unless batch mode is on
+    private final GossipCluster cluster;           // null unless cluster mode is on
+    private final ShardedLimiter sharding;         // null unless sharding is on
+    private final DecisionMetrics metrics;
+    private final HeavyHitterTracker heavyHitters; // null unless heavy-hitter tracking is on
+    private final List<RateLimitConfig.IdentifierType> levels; // Empty unless hierarchical limits are on
 
     public RateLimiterService(
-            @Qualifier("tokenBucketStrategy") RateLimiterStrategy tokenBucket,
-            @Qualifier("slidingWindowStrategy") RateLimiterStrategy slidingWindow,
-            RateLimitConfigRepository configRepository,
-            RateLimiterProperties properties) {
-        this.configRepository = configRepository;
+            List<RateLimiterStrategy> strategies,
+            RateLimitConfigCache configCache,
+            RouteRules routeRules,
+            RateLimiterProperties properties,
+            MeterRegistry meterRegistry) {
+        this.configCache = configCache;
+        this.routeRules = routeRules;
         this.properties = properties;
+        this.activeStrategy = selectStrategy(strategies, properties.getAlgorithm());
+        log.info("Rate Limiter using: {} algorithm", activeStrategy.getAlgorithmName());
+        this.metrics = new DecisionMetrics(meterRegistry, activeStrategy.getAlgorithmName(),
+                properties.getMetrics().getLatencySampleEvery());
+        this.heavyHitters = properties.getHeavyHitters().isEnabled()
+                ? HeavyHitterTracker.create(properties.getHeavyHitters())
+                : null;
+        this.leaseManager = createLeaseManager(activeStrategy, properties.getLease());
+        this.dispatcher = leaseManager == null
+                ? createDispatcher(activeStrategy, properties.getBatch(), meterRegistry)
+                : null;
+        this.sharding = createSharding(properties.getSharding(), meterRegistry);
+        this.cluster = sharding == null ? createCluster(properties.getCluster(), meterRegistry) : null;
+        this.levels = createLevels(properties.getDimensions());
+    }
+
+    /**
+     * Pick the strategy whose algorithm name matches rate-limiter.algorithm,
+     * falling back to GCRA (the default) for unknown values.
+     */
+    private static RateLimiterStrategy selectStrategy(List<RateLimiterStrategy> strategies, String algorithm) {
+        RateLimiterStrategy fallback = null;
+        for (RateLimiterStrategy strategy : strategies) {
+            if (strategy.getAlgorithmName().equalsIgnoreCase(algorithm))
+                return strategy;
+            if ("GCRA".equals(strategy.getAlgorithmName()))
+                fallback = strategy;
+        }
+        if (fallback == null)
+            throw new IllegalStateException("No rate limiter strategy for algorithm: " + algorithm);
+        log.warn("Unknown rate limiter algorithm '{}', falling back to GCRA", algorithm);
+        return fallback;
+    }
+
+    /**
+     * Lease mode needs a shared pool to lease from; for in-memory strategies
+     * every decision is already local.
+     */
+    private static PermitLeaseManager createLeaseManager(RateLimiterStrategy strategy,
+                                                         RateLimiterProperties.Lease settings) {
+        if (!settings.isEnabled())
+            return null;
+        if (!(strategy instanceof PermitPool)) {
+            log.warn("rate-limiter.lease.enabled ignored: {} has no shared permit pool",
+                    strategy.getAlgorithmName());
+            return null;
+        }
+        log.info("Leasing permits from {}: {} ms leases, up to {} permits",
+                strategy.getAlgorithmName(), settings.getDurationMillis(), settings.getMaxSize());
+        return new PermitLeaseManager((PermitPool) strategy, settings);
+    }
 
-        if ("SLIDING_WINDOW".equalsIgnoreCase(properties.getAlgorithm())) {
-            this.activeStrategy = slidingWindow;
-            log.info("Rate Limiter using: SLIDING_WINDOW algorithm");
+    /**
+     * Batching only pays off when each decision is a store round trip. Lease
+     * mode already decides most checks locally, so it takes precedence.
+     */
+    private static DecisionDispatcher createDispatcher(RateLimiterStrategy strategy,
+                                                       RateLimiterProperties.Batch settings,
+                                                       MeterRegistry meterRegistry) {
+        if (!settings.isEnabled())
+            return null;
+        if (!(strategy instanceof BatchDecisionSource)) {
+            log.warn("rate-limiter.batch.enabled ignored: {} decides in memory",
+                    strategy.getAlgorithmName());
+            return null;
+        }
+        log.info("Batching {} checks: up to {} per round trip, {} µs max wait",
+                strategy.getAlgorithmName(), settings.getMaxBatchSize(), settings.getMaxWaitMicros());
+        return new DecisionDispatcher((BatchDecisionSource) strategy, settings, meterRegistry);
+    }
+
+    /**
+     * Peer-to-peer mode is for the in-memory strategies; the Redis ones
+     * already share state.
+     */
+    private GossipCluster createCluster(RateLimiterProperties.Cluster settings, MeterRegistry meterRegistry) {
+        if (!settings.isEnabled())
+            return null;
+        if (!(activeStrategy instanceof PeerUsageTarget)) {
+            log.warn("rate-limiter.cluster.enabled ignored: {} cannot apply peer usage",
+                    activeStrategy.getAlgorithmName());
+            return null;
+        }
+        GossipCluster gossip = new GossipCluster(activeStrategy, this::getConfigForKey, settings);
+        gossip.bindTo(meterRegistry);
+        log.info("Cluster mode: gossiping {} usage from {} to {} every {} ms", activeStrategy.getAlgorithmName(),
+                gossip.getLocalAddress(), settings.getPeers(), settings.getGossipIntervalMillis());
+        return gossip;
+    }
+
+    /**
+     * Sharding is for the in-memory strategies (the Redis ones already
+     * share one copy of the state). It makes gossip unnecessary, so it
+     * takes precedence over cluster mode.
+     */
+    private ShardedLimiter createSharding(RateLimiterProperties.Sharding settings, MeterRegistry meterRegistry) {
+        if (!settings.isEnabled())
+            return null;
+        if (activeStrategy instanceof BatchDecisionSource) {
+            log.warn("rate-limiter.sharding.enabled ignored: {} already shares state",
+                    activeStrategy.getAlgorithmName());
+            return null;
+        }
+        if (properties.getCluster().isEnabled())
+            log.warn("rate-limiter.cluster.enabled ignored: sharding is on");
+        ShardedLimiter sharded = new ShardedLimiter(activeStrategy, this::getConfigForKey, settings,
+                meterRegistry);
+        log.info("Sharding {} keys as {} over {} ({} virtual nodes each)", activeStrategy.getAlgorithmName(),
+                sharded.getSelf(), sharded.getMembers(), settings.getVirtualNodes());
+        return sharded;
+    }
+
+    /**
+     * Hierarchical limits need one all-or-nothing check across several keys.
+     * The strategy gives that directly (cluster mode gossips the result);
+     * lease and batch modes are bypassed for multi-key checks, and sharding
+     * would spread the keys over different owners, so it turns levels off.
+     */
+    private List<RateLimitConfig.IdentifierType> createLevels(RateLimiterProperties.Dimensions settings) {
+        if (settings.getLevels().isEmpty())
+            return List.of();
+        if (sharding != null) {
+            log.warn("rate-limiter.dimensions.levels ignored: sharding splits a request's keys across nodes");
+            return List.of();
+        }
+        if (leaseManager != null || dispatcher != null)
+            log.info("Hierarchical checks go straight to {}, not through lease or batch mode",
+                    activeStrategy.getAlgorithmName());
+        log.info("Hierarchical limits: {} (global key '{}')", settings.getLevels(), settings.getGlobalIdentifier());
+        return List.copyOf(settings.getLevels());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (dispatcher != null)
+            dispatcher.close();
+        if (cluster != null)
+            cluster.close();
+        if (sharding != null)
+            sharding.close();
+    }
+
+    /**
+     * Resolve the config once and consume one request in a single strategy call.
+     * The returned decision carries everything needed for response headers.
+     * In lease mode most decisions come from the node's local lease; in batch
+     * mode concurrent checks share one store round trip; in sharded mode
+     * checks for keys owned by another node are forwarded to it; in cluster
+     * mode admitted requests are gossiped to peers. Every check also feeds
+     * the metrics and the heavy-hitter tracker.
+     */
+    public RateLimitDecision tryAcquire(String identifier) {
+        return tryAcquire(identifier, null);
+    }
+
+    /**
+     * tryAcquire for a caller whose identifier type is known (the filter
+     * knows which header it came from). The type only tags metrics; null
+     * falls back to the config's type.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig.IdentifierType type) {
+        return tryAcquire(identifier, type, 1);
+    }
+
+    /**
+     * tryAcquire for a weighted request: cost permits are taken in one
+     * atomic step, all or none (a rate-limiter.filter.routes rule's cost).
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig.IdentifierType type, int cost) {
+        return tryAcquire(identifier, type, cost, null);
+    }
+
+    /**
+     * tryAcquire on a route with its own limit (a rate-limiter.filter.routes
+     * rule with a limit): the caller gets a separate budget on that route,
+     * kept under routeKey(identifier, routeLimit), instead of its own limit.
+     * Nothing is looked up. null = the caller's own limit.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig.IdentifierType type, int cost,
+                                        RateLimitConfig routeLimit) {
+        long startNanos = metrics.start();
+        RateLimitConfig config = routeLimit != null ? routeLimit : getConfigForIdentifier(identifier);
+        long configNanos = metrics.configResolved(startNanos);
+        RateLimitDecision decision = decide(routeLimit != null ? routeKey(identifier, routeLimit) : identifier,
+                config, cost);
+        record(identifier, type, config, decision, startNanos, configNanos);
+        return decision;
+    }
+
+    /**
+     * The key a caller's budget on a limited route is kept under, e.g.
+     * "user123|route:GET:/api/v1/search/**". It holds '/', so reset it with
+     * POST /admin/reset?identifier=<key> rather than the path form.
+     */
+    public static String routeKey(String identifier, RateLimitConfig routeLimit) {
+        return identifier + ROUTE_KEY_SEPARATOR + routeLimit.getIdentifier();
+    }
+
+    /**
+     * Whether a caller-supplied identifier may be checked: it must not hold
+     * ROUTE_KEY_SEPARATOR, or "bob|route:GET:/x" sent as a plain identifier
+     * would share bob's budget on that route (and be resolved to the route's
+     * limit on sharding and gossip peers). The filters, the batch endpoint
+     * and the wire protocol reject such identifiers.
+     */
+    public static boolean isValidIdentifier(String identifier) {
+        return !identifier.contains(ROUTE_KEY_SEPARATOR);
+    }
+
+    /**
+     * Whether requests are checked against several levels
+     * (rate-limiter.dimensions.levels); the filters then call tryAcquireAll.
+     */
+    public boolean isHierarchical() {
+        return !levels.isEmpty();
+    }
+
+    /**
+     * One request checked against every configured level it carries, e.g.
+     * its user, API key and IP plus the GLOBAL key, in level order.
+     *
+     * - cost permits are taken from every level or from none: a rejection at
+     * one level never spends the others' (RateLimiterStrategy.tryAcquireAll).
+     * - The decision is the most restrictive level's: a rejection with the
+     * longest Retry-After, else the fewest remaining.
+     * - Configs come from the cache per level; GLOBAL defaults to
+     * rate-limiter.dimensions.global-limit.
+     * - Metrics and heavy hitters count the request once, against the
+     * caller's own identifier (identifiers.get(type)).
+     *
+     * @param identifiers the caller's identifier for each type it carries
+     * @param type        the caller's primary identifier type (header precedence)
+     */
+    public RateLimitDecision tryAcquireAll(Map<RateLimitConfig.IdentifierType, String> identifiers,
+                                           RateLimitConfig.IdentifierType type, int cost) {
+        return tryAcquireAll(identifiers, type, cost, null);
+    }
+
+    /**
+     * tryAcquireAll on a route with its own limit: every level but GLOBAL
+     * uses the route's budget for that identifier (see tryAcquire with a
+     * routeLimit); the GLOBAL key stays shared with every other route.
+     */
+    public RateLimitDecision tryAcquireAll(Map<RateLimitConfig.IdentifierType, String> identifiers,
+                                           RateLimitConfig.IdentifierType type, int cost,
+                                           RateLimitConfig routeLimit) {
+        long startNanos = metrics.start();
+        List<String> levelIdentifiers = levelIdentifiers(identifiers, type);
+        List<LimitKey> keys = new ArrayList<>(levelIdentifiers.size());
+        for (String identifier : levelIdentifiers) {
+            keys.add(routeLimit != null && !isGlobal(identifier)
+                    ? new LimitKey(routeKey(identifier, routeLimit), routeLimit)
+                    : new LimitKey(identifier, getConfigForIdentifier(identifier)));
+        }
+        long configNanos = metrics.configResolved(startNanos);
+        RateLimitDecision decision = decideAll(keys, cost);
+        record(identifiers.get(type), type, keys.get(0).getConfig(), decision, startNanos, configNanos);
+        return decision;
+    }
+
+    /**
+     * The distinct identifiers to check for this caller, in level order;
+     * levels the caller does not carry are skipped. Just the primary
+     * identifier if no level applies.
+     */
+    List<String> levelIdentifiers(Map<RateLimitConfig.IdentifierType, String> identifiers,
+                                  RateLimitConfig.IdentifierType type) {
+        List<String> result = new ArrayList<>(levels.size());
+        for (RateLimitConfig.IdentifierType level : levels) {
+            String identifier = level == RateLimitConfig.IdentifierType.GLOBAL
+                    ? properties.getDimensions().getGlobalIdentifier()
+                    : identifiers.get(level);
+            if (identifier != null && !result.contains(identifier)) // Same key twice would be charged twice
+                result.add(identifier);
+        }
+        if (result.isEmpty())
+            result.add(identifiers.get(type));
+        return result;
+    }
+
+    /** The GLOBAL level's key, when hierarchical limits are on */
+    boolean isGlobal(String identifier) {
+        return !levels.isEmpty() && identifier.equals(properties.getDimensions().getGlobalIdentifier());
+    }
+
+    /** All-or-nothing decision across keys (see tryAcquireAll). */
+    RateLimitDecision decideAll(List<LimitKey> keys, int permits) {
+        if (keys.size() == 1)
+            return decide(keys.get(0).getIdentifier(), keys.get(0).getConfig(), permits);
+        if (cluster != null)
+            return cluster.tryAcquireAll(keys, permits);
+        return activeStrategy.tryAcquireAll(keys, permits);
+    }
+
+    /**
+     * Decide many checks in one call (POST /api/v1/check-batch). Result i
+     * answers items[i].
+     *
+     * - Configs for every distinct identifier come from one cache pass, with
+     * all misses in a single repository query.
+     * - Items for the same identifier are decided in request order; distinct
+     * identifiers are independent. With a Redis strategy (and no lease mode)
+     * the whole batch is one pipelined round trip. With an in-memory strategy
+     * decided in place, identifier groups are decided in parallel once there
+     * are enough of them to pay for the fork. Anything that may block (lease
+     * refills, sharding forwards) stays on the caller's thread: a blocked
+     * common-pool worker would hold up every other user of that pool,
+     * EntryStore expiry included.
+     * - An item costing N takes N permits in one atomic step, or none.
+     * - Every item is counted in the decision meters and heavy hitters;
+     * batch items are not timed (their latency is the batch's).
+     */
+    public List<RateLimitDecision> tryAcquireBatch(List<BatchCheckRequest.Item> items) {
+        Map<String, List<Integer>> itemsByIdentifier = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            itemsByIdentifier.computeIfAbsent(items.get(i).getIdentifier(), id -> new ArrayList<>()).add(i);
+        }
+        Map<String, Optional<RateLimitConfig>> custom = configCache.findAll(itemsByIdentifier.keySet());
+
+        RateLimitDecision[] decisions = new RateLimitDecision[items.size()];
+        if (leaseManager == null && sharding == null && activeStrategy instanceof BatchDecisionSource) {
+            decidePipelined(items, itemsByIdentifier, custom, decisions);
         } else {
-            this.activeStrategy = tokenBucket;
-            log.info("Rate Limiter using: TOKEN_BUCKET algorithm");
+            Stream<Map.Entry<String, List<Integer>>> groups = itemsByIdentifier.entrySet().stream();
+            if (itemsByIdentifier.size() >= PARALLEL_BATCH_GROUPS && decidesInMemory())
+                groups = groups.parallel();
+            groups.forEach(group -> {
+                RateLimitConfig config = resolveConfig(group.getKey(), custom.get(group.getKey()));
+                for (int i : group.getValue()) {
+                    decisions[i] = decide(group.getKey(), config, items.get(i).getCost());
+                }
+            });
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            String identifier = items.get(i).getIdentifier();
+            record(identifier, null, resolveConfig(identifier, custom.get(identifier)), decisions[i],
+                    DecisionMetrics.NOT_TIMED, DecisionMetrics.NOT_TIMED);
         }
+        return Arrays.asList(decisions);
     }
 
-    public boolean checkAndConsume(String identifier) {
-        RateLimitConfig config = getConfigForIdentifier(identifier);
-        boolean allowed = activeStrategy.isAllowed(identifier, config);
-        if (!allowed) {
+    /**
+     * One pipelined call for the whole batch. Each run of consecutive items
+     * with the same identifier and cost becomes one BatchedCheck (count
+     * items of cost permits each), so an identifier's items stay in request
+     * order; its decisions (allowed first) go back to the run's items.
+     */
+    private void decidePipelined(List<BatchCheckRequest.Item> items, Map<String, List<Integer>> itemsByIdentifier,
+                                 Map<String, Optional<RateLimitConfig>> custom, RateLimitDecision[] decisions) {
+        List<BatchedCheck> checks = new ArrayList<>(itemsByIdentifier.size());
+        List<List<Integer>> runs = new ArrayList<>(itemsByIdentifier.size());
+        for (Map.Entry<String, List<Integer>> group : itemsByIdentifier.entrySet()) {
+            RateLimitConfig config = resolveConfig(group.getKey(), custom.get(group.getKey()));
+            List<Integer> run = new ArrayList<>();
+            for (int i : group.getValue()) {
+                if (!run.isEmpty() && items.get(run.get(0)).getCost() != items.get(i).getCost()) {
+                    checks.add(new BatchedCheck(group.getKey(), config, run.size(), items.get(run.get(0)).getCost()));
+                    runs.add(run);
+                    run = new ArrayList<>();
+                }
+                run.add(i);
+            }
+            checks.add(new BatchedCheck(group.getKey(), config, run.size(), items.get(run.get(0)).getCost()));
+            runs.add(run);
+        }
+        List<List<RateLimitDecision>> replies = ((BatchDecisionSource) activeStrategy).tryAcquireBatch(checks);
+
+        for (int r = 0; r < runs.size(); r++) {
+            List<RateLimitDecision> runDecisions = replies.get(r);
+            List<Integer> run = runs.get(r);
+            for (int k = 0; k < run.size(); k++) {
+                decisions[run.get(k)] = runDecisions.get(k);
+            }
+        }
+    }
+
+    /** One decision through whichever mode is on (see tryAcquire). */
+    RateLimitDecision decide(String identifier, RateLimitConfig config) {
+        return decide(identifier, config, 1);
+    }
+
+    /** decide() for a request costing permits, all or none. */
+    RateLimitDecision decide(String identifier, RateLimitConfig config, int permits) {
+        if (leaseManager != null)
+            return leaseManager.tryAcquire(identifier, config, permits);
+        if (dispatcher != null)
+            return dispatcher.tryAcquire(identifier, config, permits);
+        if (sharding != null)
+            return sharding.tryAcquire(identifier, config, permits);
+        if (cluster != null)
+            return cluster.tryAcquire(identifier, config, permits);
+        return activeStrategy.tryAcquire(identifier, config, permits);
+    }
+
+    /**
+     * The strategy when checks go straight to it; null when lease, batch or
+     * sharded mode stands in between. Lets ReactiveRateLimiterService pick
+     * a path.
+     */
+    RateLimiterStrategy directStrategy() {
+        return leaseManager == null && dispatcher == null && sharding == null ? activeStrategy : null;
+    }
+
+    /**
+     * Whether decide() never leaves this JVM: an in-memory strategy with no
+     * lease, batch or sharded mode in between (gossip only sends later).
+     */
+    private boolean decidesInMemory() {
+        return directStrategy() != null && !(activeStrategy instanceof BatchDecisionSource);
+    }
+
+    /** Metrics, heavy hitters and the rejection log line for one decided check. */
+    void record(String identifier, RateLimitConfig.IdentifierType type, RateLimitConfig config,
+                RateLimitDecision decision, long startNanos, long configNanos) {
+        metrics.record(decision, type != null ? type : config.getIdentifierType(), startNanos, configNanos);
+        if (heavyHitters != null)
+            heavyHitters.record(identifier, !decision.isAllowed());
+        if (!decision.isAllowed()) {
             log.warn("Rate limit exceeded for identifier: {}", identifier);
         }
-        return allowed;
+    }
+
+    DecisionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean checkAndConsume(String identifier) {
+        return tryAcquire(identifier).isAllowed();
     }
 
     public void reset(String identifier) {
-        RateLimitConfig config = getConfigForIdentifier(identifier);
-        activeStrategy.reset(identifier, config);
+        RateLimitConfig config = getConfigForKey(identifier);
+        if (sharding != null)
+            sharding.reset(identifier, config);
+        else
+            activeStrategy.reset(identifier, config);
+        if (leaseManager != null)
+            leaseManager.invalidate(identifier);
         log.info("Rate limit reset for identifier: {}", identifier);
     }
 
+    /**
+     * Replace the sharding member list; keys this node no longer owns are
+     * handed to their new owners.
+     *
+     * @throws IllegalStateException if sharding is off
+     */
+    public List<String> updateShardMembers(List<String> members) {
+        if (sharding == null)
+            throw new IllegalStateException("Sharding is not enabled");
+        sharding.updateMembers(members);
+        return sharding.getMembers();
+    }
+
+    /**
+     * Remaining budget and reset time for identifier, consuming nothing.
+     * Under sharding the owner answers; in cluster mode this node's view
+     * (its own usage plus the peer usage gossiped so far).
+     */
     public RateLimitStatusResponse getStatus(String identifier) {
         RateLimitConfig config = getConfigForIdentifier(identifier);
+        RateLimitDecision view = peek(identifier, config);
         return RateLimitStatusResponse.builder()
                 .identifier(identifier)
-                .tokensRemaining(activeStrategy.getRemainingRequests(identifier, config))
+                .tokensRemaining(view.getRemaining())
                 .totalLimit(config.getMaxRequests())
                 .windowSeconds(config.getWindowSeconds())
-                .resetAtEpochSeconds(activeStrategy.getResetTimeEpochSeconds(identifier, config))
+                .resetAtEpochSeconds(view.getResetAtEpochSeconds())
                 .algorithm(activeStrategy.getAlgorithmName())
                 .build();
     }
 
+    /**
+     * Identifiers sending the most requests and drawing the most rejections
+     * over the last windowSeconds (capped at what the tracker retains).
+     *
+     * @throws IllegalStateException if heavy-hitter tracking is off
+     */
+    public TopIdentifiersResponse getTopIdentifiers(int k, int windowSeconds) {
+        if (heavyHitters == null)
+            throw new IllegalStateException("Heavy-hitter tracking is off (rate-limiter.heavy-hitters.enabled)");
+        int limit = Math.max(1, Math.min(k, heavyHitters.getTrackedKeys()));
+        int window = (int) Math.max(1, Math.min(windowSeconds, heavyHitters.getMaxWindowSeconds()));
+        return TopIdentifiersResponse.builder()
+                .windowSeconds(window)
+                .sampleEvery(heavyHitters.getSampleEvery())
+                .requests(heavyHitters.topRequests(limit, window))
+                .rejections(heavyHitters.topRejections(limit, window))
+                .build();
+    }
+
     public long getRemainingRequests(String identifier) {
         RateLimitConfig config = getConfigForIdentifier(identifier);
+        if (sharding != null)
+            return sharding.peek(identifier, config).getRemaining();
         return activeStrategy.getRemainingRequests(identifier, config);
     }
 
     public long getResetTimeEpochSeconds(String identifier) {
         RateLimitConfig config = getConfigForIdentifier(identifier);
+        if (sharding != null)
+            return sharding.peek(identifier, config).getResetAtEpochSeconds();
         return activeStrategy.getResetTimeEpochSeconds(identifier, config);
     }
 
+    private RateLimitDecision peek(String identifier, RateLimitConfig config) {
+        if (sharding != null)
+            return sharding.peek(identifier, config);
+        return RateLimitDecision.allowed(config.getMaxRequests(),
+                activeStrategy.getRemainingRequests(identifier, config),
+                activeStrategy.getResetTimeEpochSeconds(identifier, config));
+    }
+
     public long getLimit(String identifier) {
         return getConfigForIdentifier(identifier).getMaxRequests();
     }
 
     public RateLimitConfig getConfigForIdentifier(String identifier) {
-        return configRepository.findByIdentifier(identifier)
-                .orElseGet(() -> buildDefaultConfig(identifier));
+        return resolveConfig(identifier, configCache.find(identifier));
+    }
+
+    /**
+     * The config for a key that arrives without one: a check forwarded by a
+     * sharding peer, a handoff, gossiped usage, a reset. A routeKey resolves to its
+     * route rule's limit, or the caller's own limit (the identifier before
+     * the marker) if the rule is gone; any other key like getConfigForIdentifier.
+     */
+    public RateLimitConfig getConfigForKey(String key) {
+        int marker = key.indexOf(ROUTE_KEY_MARKER); // Identifiers never hold the separator
+        if (marker < 0)
+            return getConfigForIdentifier(key);
+        RateLimitConfig routeLimit = routeRules.findLimit(key.substring(marker + ROUTE_KEY_SEPARATOR.length()));
+        return routeLimit != null ? routeLimit : getConfigForIdentifier(key.substring(0, marker));
+    }
+
+    /** The custom config if there is one, else the defaults. */
+    RateLimitConfig resolveConfig(String identifier, Optional<RateLimitConfig> custom) {
+        return custom.orElseGet(() -> buildDefaultConfig(identifier));
+    }
+
+    /**
+     * Invalidate the cached config for an identifier after an admin write.
+     */
+    public void evictConfig(String identifier) {
+        configCache.evict(identifier);
     }
 
     private RateLimitConfig buildDefaultConfig(String identifier) {
+        RateLimiterProperties.Dimensions dimensions = properties.getDimensions();
+        if (isGlobal(identifier)) {
+            return RateLimitConfig.builder()
+                    .identifier(identifier)
+                    .identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                    .maxRequests(dimensions.getGlobalLimit())
+                    .windowSeconds(properties.getDefaultWindowSeconds())
+                    .refillRate(dimensions.getGlobalRefillRate())
+                    .build();
+        }
         return RateLimitConfig.builder()
                 .identifier(identifier)
                 .identifierType(RateLimitConfig.IdentifierType.USER_ID)
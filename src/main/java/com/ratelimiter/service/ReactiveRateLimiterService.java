@@ -0,0 +1,152 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.batch.BatchDecisionSource;
+import com.ratelimiter.service.reactive.ReactiveDecisionSource;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking front to RateLimiterService for the WebFlux path.
+ *
+ * Concept:
+ * - Same strategies, same RateLimitConfig model, same metrics and heavy
+ * hitters: this class only decides where each step runs.
+ * - Config: RateLimitConfigCache.findReactive — a hit is answered inline,
+ * a miss is queried on boundedElastic.
+ * - Decision, by mode:
+ *   - Redis strategies (ReactiveDecisionSource): the Lua script goes out on
+ *   the reactive connection; the event loop never waits on the reply.
+ *   - In-memory strategies (and cluster mode, which only adds a counter):
+ *   decided inline — a CAS or a short striped lock, the same work the
+ *   servlet path does.
+ *   - Lease, batch and sharded modes park the caller (lease refills,
+ *   dispatcher waits, forwarded checks), so they run on boundedElastic.
+ *   - Hierarchical checks (several keys at once) are decided inline by
+ *   the in-memory strategies; the Redis ones pipeline every key on the
+ *   blocking connection, so they run on boundedElastic.
+ *
+ * Thread Safety:
+ * - Stateless; everything shared lives in RateLimiterService and the strategies.
+ */
+@Service
+public class ReactiveRateLimiterService {
+
+    private final RateLimiterService rateLimiterService;
+    private final RateLimitConfigCache configCache;
+
+    public ReactiveRateLimiterService(RateLimiterService rateLimiterService, RateLimitConfigCache configCache) {
+        this.rateLimiterService = rateLimiterService;
+        this.configCache = configCache;
+    }
+
+    /**
+     * Resolve the config and consume one request; the decision carries
+     * everything needed for response headers. Nothing runs until subscribed.
+     */
+    public Mono<RateLimitDecision> tryAcquire(String identifier, RateLimitConfig.IdentifierType type) {
+        return tryAcquire(identifier, type, 1);
+    }
+
+    /**
+     * tryAcquire for a weighted request: cost permits, all or none.
+     */
+    public Mono<RateLimitDecision> tryAcquire(String identifier, RateLimitConfig.IdentifierType type, int cost) {
+        return tryAcquire(identifier, type, cost, null);
+    }
+
+    /**
+     * tryAcquire on a route with its own limit (see RateLimiterService);
+     * nothing is looked up, so no cache miss can send it off the caller's
+     * thread. null = the caller's own limit.
+     */
+    public Mono<RateLimitDecision> tryAcquire(String identifier, RateLimitConfig.IdentifierType type, int cost,
+                                              RateLimitConfig routeLimit) {
+        if (routeLimit != null) {
+            return Mono.defer(() -> {
+                DecisionMetrics metrics = rateLimiterService.getMetrics();
+                long startNanos = metrics.start();
+                long configNanos = metrics.configResolved(startNanos);
+                return decide(RateLimiterService.routeKey(identifier, routeLimit), routeLimit, cost)
+                        .doOnNext(decision -> rateLimiterService.record(identifier, type, routeLimit, decision,
+                                startNanos, configNanos));
+            });
+        }
+        return Mono.defer(() -> {
+            DecisionMetrics metrics = rateLimiterService.getMetrics();
+            long startNanos = metrics.start();
+            return configCache.findReactive(identifier)
+                    .map(custom -> rateLimiterService.resolveConfig(identifier, custom))
+                    .flatMap(config -> {
+                        long configNanos = metrics.configResolved(startNanos);
+                        return decide(identifier, config, cost).doOnNext(decision -> rateLimiterService.record(
+                                identifier, type, config, decision, startNanos, configNanos));
+                    });
+        });
+    }
+
+    /** See RateLimiterService.isHierarchical. */
+    public boolean isHierarchical() {
+        return rateLimiterService.isHierarchical();
+    }
+
+    /**
+     * RateLimiterService.tryAcquireAll without blocking: each level's config
+     * from the cache (misses on boundedElastic), then one all-or-nothing
+     * decision across the levels.
+     */
+    public Mono<RateLimitDecision> tryAcquireAll(Map<RateLimitConfig.IdentifierType, String> identifiers,
+                                                 RateLimitConfig.IdentifierType type, int cost) {
+        return tryAcquireAll(identifiers, type, cost, null);
+    }
+
+    /** tryAcquireAll on a route with its own limit (see RateLimiterService). */
+    public Mono<RateLimitDecision> tryAcquireAll(Map<RateLimitConfig.IdentifierType, String> identifiers,
+                                                 RateLimitConfig.IdentifierType type, int cost,
+                                                 RateLimitConfig routeLimit) {
+        return Mono.defer(() -> {
+            DecisionMetrics metrics = rateLimiterService.getMetrics();
+            long startNanos = metrics.start();
+            return Flux.fromIterable(rateLimiterService.levelIdentifiers(identifiers, type))
+                    .concatMap(identifier -> routeLimit != null && !rateLimiterService.isGlobal(identifier)
+                            ? Mono.just(new LimitKey(RateLimiterService.routeKey(identifier, routeLimit), routeLimit))
+                            : configCache.findReactive(identifier).map(custom ->
+                                    new LimitKey(identifier, rateLimiterService.resolveConfig(identifier, custom))))
+                    .collectList()
+                    .flatMap(keys -> {
+                        long configNanos = metrics.configResolved(startNanos);
+                        return decideAll(keys, cost).doOnNext(decision -> rateLimiterService.record(
+                                identifiers.get(type), type, keys.get(0).getConfig(), decision, startNanos,
+                                configNanos));
+                    });
+        });
+    }
+
+    private Mono<RateLimitDecision> decideAll(List<LimitKey> keys, int cost) {
+        if (keys.size() == 1)
+            return decide(keys.get(0).getIdentifier(), keys.get(0).getConfig(), cost);
+        RateLimiterStrategy strategy = rateLimiterService.directStrategy();
+        if (strategy != null && !(strategy instanceof BatchDecisionSource))
+            return Mono.fromSupplier(() -> rateLimiterService.decideAll(keys, cost)); // In memory
+        return Mono.fromCallable(() -> rateLimiterService.decideAll(keys, cost))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<RateLimitDecision> decide(String identifier, RateLimitConfig config, int cost) {
+        RateLimiterStrategy strategy = rateLimiterService.directStrategy();
+        if (strategy instanceof ReactiveDecisionSource)
+            return ((ReactiveDecisionSource) strategy).tryAcquireReactive(identifier, config, cost);
+        if (strategy != null && !(strategy instanceof BatchDecisionSource))
+            return Mono.fromSupplier(() -> rateLimiterService.decide(identifier, config, cost)); // In memory
+        return Mono.fromCallable(() -> rateLimiterService.decide(identifier, config, cost))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,19 @@
+package com.ratelimiter.service.batch;
+
+import com.ratelimiter.model.RateLimitDecision;
+
+import java.util.List;
+
+/**
+ * A store that can decide many checks in one round trip.
+ *
+ * Implemented by the Redis strategies (one pipeline per batch).
+ */
+public interface BatchDecisionSource {
+
+    /**
+     * Decide every check. The result is aligned with checks; entry i holds
+     * exactly checks[i].count decisions, allowed ones first.
+     */
+    List<List<RateLimitDecision>> tryAcquireBatch(List<BatchedCheck> checks);
+}
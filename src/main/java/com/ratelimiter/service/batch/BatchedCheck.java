@@ -0,0 +1,44 @@
+package com.ratelimiter.service.batch;
+
+import com.ratelimiter.model.RateLimitConfig;
+
+/**
+ * All checks for one identifier (and one cost) in a batch, merged: count
+ * callers of permits each, one store call.
+ */
+public final class BatchedCheck {
+
+    private final String identifier;
+    private final RateLimitConfig config;
+    private final int count;
+    private final int permits;
+
+    public BatchedCheck(String identifier, RateLimitConfig config, int count) {
+        this(identifier, config, count, 1);
+    }
+
+    public BatchedCheck(String identifier, RateLimitConfig config, int count, int permits) {
+        this.identifier = identifier;
+        this.config = config;
+        this.count = count;
+        this.permits = permits;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public RateLimitConfig getConfig() {
+        return config;
+    }
+
+    /** Callers waiting on this identifier */
+    public int getCount() {
+        return count;
+    }
+
+    /** Cost of each caller's request; each is granted whole or not at all */
+    public int getPermits() {
+        return permits;
+    }
+}
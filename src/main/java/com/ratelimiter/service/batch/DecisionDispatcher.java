@@ -0,0 +1,217 @@
+package com.ratelimiter.service.batch;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batching front for a shared-store strategy.
+ *
+ * Concept:
+ * - Request threads enqueue a check and wait on its future. One dispatcher
+ * thread takes the first pending check, keeps collecting until maxBatchSize
+ * checks or maxWaitMicros after that first one was enqueued, then decides
+ * the whole batch in one BatchDecisionSource call (one pipelined round trip).
+ * - Checks for the same identifier and cost are merged: one store call
+ * decides all of them, in arrival order.
+ * - Under light load a batch is one check and costs at most maxWaitMicros;
+ * under heavy load batches fill up and the wait disappears.
+ *
+ * Thread Safety:
+ * - Bounded MPSC hand-off (ArrayBlockingQueue); only the dispatcher thread
+ * touches a batch. When the queue is full the caller decides its own check
+ * inline, so a stalled store never queues unbounded work.
+ * - Shutdown: close() drains the queue once. A caller whose offer lands
+ * after that drain sees running == false on its re-check and drains the
+ * queue itself, so no future is left for a worker that has stopped.
+ *
+ * Metrics:
+ * - ratelimiter.batch.size (checks per batch), ratelimiter.batch.merged
+ * (checks that shared a store call), ratelimiter.batch.queue.delay (enqueue
+ * to dispatch).
+ */
+public class DecisionDispatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionDispatcher.class);
+
+    private final BatchDecisionSource source;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSize;
+    private final Counter merged;
+    private final Timer queueDelay;
+
+    public DecisionDispatcher(BatchDecisionSource source, RateLimiterProperties.Batch settings,
+                              MeterRegistry meterRegistry) {
+        this.source = source;
+        this.maxBatchSize = Math.max(1, settings.getMaxBatchSize());
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(settings.getMaxWaitMicros());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+
+        this.batchSize = DistributionSummary.builder("ratelimiter.batch.size")
+                .description("Checks decided per store round trip")
+                .register(meterRegistry);
+        this.merged = Counter.builder("ratelimiter.batch.merged")
+                .description("Checks that shared a store call with an earlier check for the same identifier")
+                .register(meterRegistry);
+        this.queueDelay = Timer.builder("ratelimiter.batch.queue.delay")
+                .description("Time a check waited before its batch was dispatched")
+                .register(meterRegistry);
+
+        this.worker = new Thread(this::run, "rate-limit-batcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Decide one check, blocking until its batch has been dispatched.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config) {
+        return tryAcquire(identifier, config, 1);
+    }
+
+    /**
+     * Decide one check costing permits, blocking until its batch has been dispatched.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        Pending pending = new Pending(identifier, config, permits, System.nanoTime());
+        if (!running || !queue.offer(pending)) {
+            // Saturated (or shutting down): don't wait behind the queue
+            dispatch(Collections.singletonList(pending));
+        } else if (!running) {
+            // close() may have drained the queue just before this offer
+            dispatchQueued();
+        }
+        try {
+            return pending.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = first.enqueuedNanos + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Take what is already queued without waiting
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0)
+                        continue;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0)
+                        break;
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty())
+                    dispatch(batch); // Never strand callers already collected
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Rate limit batch dispatch failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /** Merge by identifier and cost, decide in one call, complete every future. */
+    private void dispatch(List<Pending> batch) {
+        long now = System.nanoTime();
+        Map<String, List<Pending>> byIdentifier = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            queueDelay.record(now - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+            // The cost is last and has no ':' in it, so distinct pairs never share a key
+            byIdentifier.computeIfAbsent(pending.identifier + ':' + pending.permits, id -> new ArrayList<>(1))
+                    .add(pending);
+        }
+        batchSize.record(batch.size());
+        merged.increment(batch.size() - byIdentifier.size());
+
+        List<BatchedCheck> checks = new ArrayList<>(byIdentifier.size());
+        for (List<Pending> callers : byIdentifier.values()) {
+            Pending first = callers.get(0);
+            checks.add(new BatchedCheck(first.identifier, first.config, callers.size(), first.permits));
+        }
+
+        try {
+            List<List<RateLimitDecision>> decisions = source.tryAcquireBatch(checks);
+            int i = 0;
+            for (List<Pending> callers : byIdentifier.values()) {
+                List<RateLimitDecision> forIdentifier = decisions.get(i++);
+                for (int c = 0; c < callers.size(); c++) {
+                    callers.get(c).future.complete(forIdentifier.get(c));
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Stop the dispatcher; checks still queued are decided on the way out.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        dispatchQueued();
+    }
+
+    /** Decide whatever is queued on the calling thread. */
+    private void dispatchQueued() {
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty())
+            dispatch(rest);
+    }
+
+    private static final class Pending {
+        final String identifier;
+        final RateLimitConfig config;
+        final int permits;
+        final long enqueuedNanos;
+        final CompletableFuture<RateLimitDecision> future = new CompletableFuture<>();
+
+        Pending(String identifier, RateLimitConfig config, int permits, long enqueuedNanos) {
+            this.identifier = identifier;
+            this.config = config;
+            this.permits = permits;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
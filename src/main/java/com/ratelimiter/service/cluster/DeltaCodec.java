@@ -0,0 +1,231 @@
+package com.ratelimiter.service.cluster;
+
+import javax.crypto.Mac;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary wire format for gossiped usage deltas. One datagram:
+ *
+ * <pre>
+ * offset size  field
+ *      0    2  magic 0x524C ("RL")
+ *      2    1  version (1)
+ *      3    1  flags (bit 0: signed; the rest reserved, 0)
+ *      4    8  sender node id
+ *     12    8  sender packet sequence (per node, +1 per datagram)
+ *     20    8  sent at (sender epoch ms)
+ *     28    2  entry count
+ *     30    …  entries: id length (u16) | id (UTF-8) | permits (unsigned LEB128 varint)
+ *   end−16   16  signed only: HMAC-SHA256 of everything before it, truncated
+ * </pre>
+ *
+ * Big-endian. A typical entry (12-byte id, under 128 permits) is 15 bytes,
+ * so a 1400-byte datagram carries ~90 identifiers. Deltas are counts since
+ * the sender's previous flush, so a lost datagram under-reports (never
+ * double counts) that interval.
+ */
+public final class DeltaCodec {
+
+    static final short MAGIC = 0x524C;
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = 30;
+    /** Identifiers longer than this are not gossiped */
+    static final int MAX_IDENTIFIER_BYTES = 512;
+    static final byte FLAG_SIGNED = 1;
+    /** Truncated HMAC appended to a signed datagram */
+    static final int TAG_BYTES = 16;
+
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private DeltaCodec() {
+    }
+
+    /**
+     * Encode deltas into as many datagrams of at most maxPacketBytes as
+     * needed. firstSequence numbers the first datagram; the rest follow.
+     */
+    public static List<ByteBuffer> encode(long nodeId, long firstSequence, long sentAtMs,
+                                          Map<String, Long> deltas, int maxPacketBytes) {
+        List<ByteBuffer> packets = new ArrayList<>();
+        ByteBuffer packet = null;
+        int count = 0;
+        long sequence = firstSequence;
+
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            byte[] id = delta.getKey().getBytes(StandardCharsets.UTF_8);
+            if (id.length > MAX_IDENTIFIER_BYTES || delta.getValue() <= 0)
+                continue;
+            int entryBytes = 2 + id.length + MAX_VARINT_BYTES;
+
+            if (packet != null && (packet.remaining() < entryBytes || count == 0xFFFF)) {
+                packets.add(finish(packet, count));
+                packet = null;
+            }
+            if (packet == null) {
+                packet = ByteBuffer.allocate(Math.max(maxPacketBytes, HEADER_BYTES + entryBytes));
+                writeHeader(packet, nodeId, sequence++, sentAtMs);
+                count = 0;
+            }
+            packet.putShort((short) id.length);
+            packet.put(id);
+            writeVarint(packet, delta.getValue());
+            count++;
+        }
+        if (packet != null)
+            packets.add(finish(packet, count));
+        return packets;
+    }
+
+    /**
+     * Decode one datagram.
+     *
+     * @throws IllegalArgumentException if it is not a well-formed v1 packet
+     */
+    public static DeltaPacket decode(ByteBuffer packet) {
+        try {
+            if (packet.getShort() != MAGIC)
+                throw new IllegalArgumentException("Bad magic");
+            byte version = packet.get();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported version " + version);
+            packet.get(); // flags
+            long nodeId = packet.getLong();
+            long sequence = packet.getLong();
+            long sentAtMs = packet.getLong();
+            int count = Short.toUnsignedInt(packet.getShort());
+
+            String[] identifiers = new String[count];
+            long[] permits = new long[count];
+            for (int i = 0; i < count; i++) {
+                int length = Short.toUnsignedInt(packet.getShort());
+                if (length > MAX_IDENTIFIER_BYTES || length > packet.remaining())
+                    throw new IllegalArgumentException("Bad identifier length " + length);
+                byte[] id = new byte[length];
+                packet.get(id);
+                identifiers[i] = new String(id, StandardCharsets.UTF_8);
+                permits[i] = readVarint(packet);
+            }
+            return new DeltaPacket(nodeId, sequence, sentAtMs, identifiers, permits);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated packet", e);
+        }
+    }
+
+    /**
+     * Copy of an encoded datagram with FLAG_SIGNED set and an HMAC tag
+     * appended (TAG_BYTES longer than packet).
+     */
+    public static ByteBuffer sign(ByteBuffer packet, Mac mac) {
+        ByteBuffer signed = ByteBuffer.allocate(packet.remaining() + TAG_BYTES);
+        signed.put(packet.duplicate());
+        signed.put(3, (byte) (signed.get(3) | FLAG_SIGNED));
+        mac.update(signed.duplicate().flip());
+        signed.put(mac.doFinal(), 0, TAG_BYTES);
+        return signed.flip();
+    }
+
+    /**
+     * The datagram without its tag, ready for decode.
+     *
+     * @throws IllegalArgumentException if it is unsigned or its tag does not
+     * match (sent without the shared key, or altered on the way)
+     */
+    public static ByteBuffer verify(ByteBuffer datagram, Mac mac) {
+        int length = datagram.remaining() - TAG_BYTES;
+        if (length < HEADER_BYTES || (datagram.get(datagram.position() + 3) & FLAG_SIGNED) == 0)
+            throw new IllegalArgumentException("Unsigned packet");
+        ByteBuffer body = datagram.duplicate().limit(datagram.position() + length);
+        mac.update(body.duplicate());
+        byte[] expected = Arrays.copyOf(mac.doFinal(), TAG_BYTES);
+        byte[] tag = new byte[TAG_BYTES];
+        datagram.get(datagram.position() + length, tag);
+        if (!MessageDigest.isEqual(expected, tag))
+            throw new IllegalArgumentException("Bad packet signature");
+        return body;
+    }
+
+    private static void writeHeader(ByteBuffer packet, long nodeId, long sequence, long sentAtMs) {
+        packet.putShort(MAGIC);
+        packet.put(VERSION);
+        packet.put((byte) 0);
+        packet.putLong(nodeId);
+        packet.putLong(sequence);
+        packet.putLong(sentAtMs);
+        packet.putShort((short) 0); // Entry count, patched in finish()
+    }
+
+    private static ByteBuffer finish(ByteBuffer packet, int count) {
+        packet.putShort(HEADER_BYTES - 2, (short) count);
+        packet.flip();
+        return packet;
+    }
+
+    private static void writeVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    /**
+     * One decoded datagram: parallel arrays of identifiers and permits.
+     */
+    public static final class DeltaPacket {
+        private final long nodeId;
+        private final long sequence;
+        private final long sentAtMs;
+        private final String[] identifiers;
+        private final long[] permits;
+
+        DeltaPacket(long nodeId, long sequence, long sentAtMs, String[] identifiers, long[] permits) {
+            this.nodeId = nodeId;
+            this.sequence = sequence;
+            this.sentAtMs = sentAtMs;
+            this.identifiers = identifiers;
+            this.permits = permits;
+        }
+
+        public long getNodeId() {
+            return nodeId;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getSentAtMs() {
+            return sentAtMs;
+        }
+
+        public int size() {
+            return identifiers.length;
+        }
+
+        public String identifier(int i) {
+            return identifiers[i];
+        }
+
+        public long permits(int i) {
+            return permits[i];
+        }
+    }
+}
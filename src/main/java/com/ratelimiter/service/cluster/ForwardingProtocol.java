@@ -0,0 +1,98 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.model.RateLimitDecision;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Frames exchanged between ShardedLimiter nodes over a persistent TCP
+ * connection. Every frame:
+ *
+ * <pre>
+ * size  field
+ *    1  type
+ *    8  correlation id (chosen by the requester, echoed in the reply)
+ *    …  payload
+ *
+ * type           payload                                       reply
+ * DECIDE         id (u16 length + modified UTF-8)              DECISION
+ * DECIDE_PERMITS id | permits (u16) — a weighted check         DECISION
+ * DECISION       allowed (u8) | limit | remaining | resetAt |
+ *                retryAfter (i64 each)                         —
+ * HANDOFF        id | n (u16) | n × state (i64)                ACK
+ * RESET          id                                            ACK
+ * PEEK           id — remaining and reset, nothing consumed    DECISION
+ * ACK            —                                             —
+ * ERROR          message (u16 length + modified UTF-8)         —
+ * </pre>
+ *
+ * Handshake, only with rate-limiter.sharding.shared-secret set: on accept
+ * the server sends a random NONCE_BYTES nonce, and the client's first
+ * PROOF_BYTES are HMAC-SHA256(secret, nonce). The server closes a
+ * connection whose proof does not match before reading any frame.
+ *
+ * Big-endian (DataOutput). A DECIDE for a 12-byte id is 23 bytes and its
+ * DECISION 42, so a forwarded check costs well under one TCP segment each
+ * way. Replies can arrive out of order; the correlation id matches them.
+ */
+final class ForwardingProtocol {
+
+    static final byte DECIDE = 1;
+    static final byte DECISION = 2;
+    static final byte HANDOFF = 3;
+    static final byte RESET = 4;
+    static final byte ACK = 5;
+    static final byte ERROR = 6;
+    static final byte DECIDE_PERMITS = 7;
+    static final byte PEEK = 8;
+
+    static final int NONCE_BYTES = 16;
+    static final int PROOF_BYTES = 32;
+
+    /** More state words than any strategy exports (the sliding window log is capped by this) */
+    static final int MAX_STATE_WORDS = 0xFFFF;
+
+    private ForwardingProtocol() {
+    }
+
+    static void writeDecision(DataOutput out, RateLimitDecision decision) throws IOException {
+        out.writeBoolean(decision.isAllowed());
+        out.writeLong(decision.getLimit());
+        out.writeLong(decision.getRemaining());
+        out.writeLong(decision.getResetAtEpochSeconds());
+        out.writeLong(decision.getRetryAfterSeconds());
+    }
+
+    static RateLimitDecision readDecision(DataInput in) throws IOException {
+        boolean allowed = in.readBoolean();
+        long limit = in.readLong();
+        long remaining = in.readLong();
+        long resetAt = in.readLong();
+        long retryAfter = in.readLong();
+        return allowed
+                ? RateLimitDecision.allowed(limit, remaining, resetAt)
+                : RateLimitDecision.rejected(limit, resetAt, retryAfter);
+    }
+
+    /**
+     * Writes the newest MAX_STATE_WORDS words at most (state arrays are
+     * oldest first, so the tail is what still matters).
+     */
+    static void writeState(DataOutput out, long[] state) throws IOException {
+        int count = Math.min(state.length, MAX_STATE_WORDS);
+        out.writeShort(count);
+        for (int i = state.length - count; i < state.length; i++) {
+            out.writeLong(state[i]);
+        }
+    }
+
+    static long[] readState(DataInput in) throws IOException {
+        long[] state = new long[in.readUnsignedShort()];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = in.readLong();
+        }
+        return state;
+    }
+}
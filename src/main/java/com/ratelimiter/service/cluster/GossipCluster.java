@@ -0,0 +1,365 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Peer-to-peer cluster mode: no shared store, no per-request network hop.
+ *
+ * Concept:
+ * - Every node decides locally with its in-memory strategy and counts what
+ * it admitted per identifier.
+ * - Every gossipIntervalMillis the counts since the last flush are encoded
+ * (DeltaCodec) and sent as UDP datagrams to each static peer.
+ * - A node receiving a delta charges it to its own state
+ * (PeerUsageTarget.applyPeerUsage), so all nodes converge on the cluster-wide
+ * usage within about one interval plus network latency.
+ *
+ * Accuracy:
+ * - Until a peer's delta arrives, each node only knows its own usage: the
+ * global limit can be overshot by roughly (nodes − 1) × per-node rate ×
+ * gossip interval. A lost datagram is never resent (its usage is simply not
+ * seen by that peer); losses are counted from sequence gaps.
+ *
+ * Trust:
+ * - A datagram is applied only if it comes from a configured peer's
+ * address, and (with a shared secret) carries a valid HMAC tag.
+ * - Replays: a datagram whose signed send time is more than maxPacketAgeMillis
+ * from the receiver's clock is dropped, and so is one no newer than the
+ * last seen from its sender. The sequence check alone does not survive a
+ * receiver restart; the age check does, so a captured datagram can only be
+ * replayed within maxPacketAgeMillis of being sent, and only once.
+ * - Last-seen sequences are forgotten after two packet ages of silence: by
+ * then every datagram they could reject is too old anyway. A restarted
+ * peer (new nodeId) does not leave an entry behind for good.
+ * - Dropped datagrams are counted as rejected.
+ * - Source addresses can be spoofed on an open network: without a shared
+ * secret, keep the gossip port firewalled to the peers.
+ *
+ * Thread Safety:
+ * - Pending deltas: ConcurrentHashMap merge on the request path; the flusher
+ * removes each key atomically, so no increment is lost or sent twice.
+ * - One flusher thread (sends) and one receiver thread (applies), each with
+ * its own Mac.
+ */
+public class GossipCluster implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GossipCluster.class);
+
+    private final RateLimiterStrategy strategy;
+    private final PeerUsageTarget target;
+    private final Function<String, RateLimitConfig> configResolver;
+    private final long nodeId = ThreadLocalRandom.current().nextLong();
+    private final int maxPacketBytes;
+    private final Mac sendMac;    // null: unsigned; flusher thread only
+    private final Mac receiveMac; // receiver thread only
+
+    private final DatagramChannel channel;
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Long> pending = new ConcurrentHashMap<>();
+    private final long maxPacketAgeMs;
+    private final Map<Long, PeerSequence> lastSequenceByPeer = new HashMap<>(); // Receiver thread only
+    private long nextPruneAtMs; // Receiver thread only
+    private final ScheduledExecutorService flusher;
+    private final Thread receiver;
+    private long nextSequence;
+
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder packetsReceived = new LongAdder();
+    private final LongAdder packetsLost = new LongAdder();
+    private final LongAdder packetsRejected = new LongAdder();
+    private final LongAdder permitsApplied = new LongAdder();
+
+    /**
+     * @param strategy       local strategy; must also be a PeerUsageTarget
+     * @param configResolver limits for identifiers reported by peers
+     */
+    public GossipCluster(RateLimiterStrategy strategy, Function<String, RateLimitConfig> configResolver,
+                         RateLimiterProperties.Cluster settings) {
+        if (!(strategy instanceof PeerUsageTarget))
+            throw new IllegalArgumentException(strategy.getAlgorithmName() + " cannot apply peer usage");
+        this.strategy = strategy;
+        this.target = (PeerUsageTarget) strategy;
+        this.configResolver = configResolver;
+        String secret = settings.getSharedSecret();
+        boolean signed = SharedSecret.isSet(secret);
+        this.sendMac = signed ? SharedSecret.mac(secret) : null;
+        this.receiveMac = signed ? SharedSecret.mac(secret) : null;
+        this.maxPacketBytes = settings.getMaxPacketBytes() - (signed ? DeltaCodec.TAG_BYTES : 0);
+        this.maxPacketAgeMs = settings.getMaxPacketAgeMillis();
+
+        try {
+            this.channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(settings.getBindAddress(), settings.getBindPort()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot bind gossip port " + settings.getBindPort(), e);
+        }
+        if (!signed && !getLocalAddress().getAddress().isLoopbackAddress())
+            log.warn("Gossip on {} is unsigned; set rate-limiter.cluster.shared-secret or firewall it to the peers",
+                    getLocalAddress());
+        for (String peer : settings.getPeers()) {
+            addPeer(parsePeer(peer));
+        }
+
+        this.receiver = new Thread(this::receiveLoop, "rate-limit-gossip-rx");
+        receiver.setDaemon(true);
+        receiver.start();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-gossip-tx");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, settings.getGossipIntervalMillis(),
+                settings.getGossipIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Decide locally; admitted requests are gossiped on the next flush.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config) {
+        return tryAcquire(identifier, config, 1);
+    }
+
+    /**
+     * tryAcquire for a request costing permits; peers are charged the whole cost.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        RateLimitDecision decision = strategy.tryAcquire(identifier, config, permits);
+        if (decision.isAllowed())
+            pending.merge(identifier, (long) permits, Long::sum);
+        return decision;
+    }
+
+    /**
+     * Hierarchical check through the strategy (all keys or none); every key
+     * of an admitted request is charged on the peers.
+     */
+    public RateLimitDecision tryAcquireAll(List<LimitKey> keys, int permits) {
+        RateLimitDecision decision = strategy.tryAcquireAll(keys, permits);
+        if (decision.isAllowed()) {
+            for (LimitKey key : keys) {
+                pending.merge(key.getIdentifier(), (long) permits, Long::sum);
+            }
+        }
+        return decision;
+    }
+
+    public void addPeer(InetSocketAddress peer) {
+        peers.add(peer);
+    }
+
+    /** Send every pending delta to every peer. */
+    void flush() {
+        if (pending.isEmpty())
+            return;
+        Map<String, Long> deltas = new HashMap<>();
+        for (String identifier : pending.keySet()) {
+            Long permits = pending.remove(identifier);
+            if (permits != null)
+                deltas.put(identifier, permits);
+        }
+
+        List<ByteBuffer> packets = DeltaCodec.encode(nodeId, nextSequence, System.currentTimeMillis(),
+                deltas, maxPacketBytes);
+        nextSequence += packets.size();
+        for (ByteBuffer packet : packets) {
+            if (sendMac != null)
+                packet = DeltaCodec.sign(packet, sendMac);
+            for (InetSocketAddress peer : peers) {
+                try {
+                    channel.send(packet.duplicate(), peer);
+                    packetsSent.increment();
+                } catch (IOException e) {
+                    log.debug("Gossip to {} failed: {}", peer, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(65_535);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                buffer.flip();
+                if (!peers.contains(sender)) {
+                    packetsRejected.increment();
+                    log.debug("Dropped gossip packet from {}: not a peer", sender);
+                    continue;
+                }
+                apply(DeltaCodec.decode(receiveMac == null ? buffer : DeltaCodec.verify(buffer, receiveMac)));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IllegalArgumentException e) {
+                packetsRejected.increment();
+                log.debug("Dropped gossip packet: {}", e.getMessage());
+            } catch (IOException e) {
+                log.debug("Dropped gossip packet: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply gossip packet", e);
+            }
+        }
+    }
+
+    private void apply(DeltaCodec.DeltaPacket packet) {
+        if (packet.getNodeId() == nodeId)
+            return;
+        long now = System.currentTimeMillis();
+        if (Math.abs(now - packet.getSentAtMs()) > maxPacketAgeMs) {
+            // Stale or future-dated: a replay, or a peer whose clock is off by too much
+            packetsRejected.increment();
+            log.debug("Dropped gossip packet from node {}: sent {} ms from now", packet.getNodeId(),
+                    packet.getSentAtMs() - now);
+            return;
+        }
+        PeerSequence last = lastSequenceByPeer.get(packet.getNodeId());
+        if (last != null && packet.getSequence() <= last.sequence) {
+            // A replay, or overtaken by a newer datagram: its usage is lost either way
+            packetsRejected.increment();
+            return;
+        }
+        packetsReceived.increment();
+        if (last == null) {
+            last = new PeerSequence();
+            lastSequenceByPeer.put(packet.getNodeId(), last);
+        } else if (packet.getSequence() > last.sequence + 1) {
+            packetsLost.add(packet.getSequence() - last.sequence - 1);
+        }
+        last.sequence = packet.getSequence();
+        last.seenAtMs = now;
+        pruneSequences(now);
+
+        for (int i = 0; i < packet.size(); i++) {
+            String identifier = packet.identifier(i);
+            target.applyPeerUsage(identifier, configResolver.apply(identifier), packet.permits(i));
+            permitsApplied.add(packet.permits(i));
+        }
+    }
+
+    /**
+     * Forget nodes silent for two packet ages. Any datagram they sent is at
+     * least one packet age old by then, so the age check rejects it alone.
+     */
+    private void pruneSequences(long now) {
+        if (now < nextPruneAtMs)
+            return;
+        nextPruneAtMs = now + maxPacketAgeMs;
+        lastSequenceByPeer.values().removeIf(peer -> now - peer.seenAtMs > 2 * maxPacketAgeMs);
+    }
+
+    /**
+     * Nodes whose last sequence number is remembered (tests; read after
+     * getPermitsApplied shows the receiver has applied what was sent).
+     */
+    int getTrackedNodes() {
+        return lastSequenceByPeer.size();
+    }
+
+    private static InetSocketAddress parsePeer(String peer) {
+        int colon = peer.lastIndexOf(':');
+        if (colon <= 0)
+            throw new IllegalArgumentException("Peer must be host:port, got: " + peer);
+        return new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1)));
+    }
+
+    /**
+     * Publish gossip traffic counters.
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ratelimiter.cluster.packets", packetsSent, LongAdder::sum)
+                .description("Gossip datagrams")
+                .tag("direction", "sent")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.cluster.packets", packetsReceived, LongAdder::sum)
+                .description("Gossip datagrams")
+                .tag("direction", "received")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.cluster.packets", packetsLost, LongAdder::sum)
+                .description("Gossip datagrams")
+                .tag("direction", "lost")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.cluster.packets", packetsRejected, LongAdder::sum)
+                .description("Gossip datagrams")
+                .tag("direction", "rejected")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.cluster.peer.permits", permitsApplied, LongAdder::sum)
+                .description("Permits consumed on peers and applied locally")
+                .register(registry);
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        try {
+            return (InetSocketAddress) channel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    public long getPacketsLost() {
+        return packetsLost.sum();
+    }
+
+    public long getPacketsRejected() {
+        return packetsRejected.sum();
+    }
+
+    public long getPermitsApplied() {
+        return permitsApplied.sum();
+    }
+
+    /**
+     * Flush what is pending, then stop both threads.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Closing gossip channel: {}", e.getMessage());
+        }
+    }
+
+    private static final class PeerSequence {
+        long sequence;
+        long seenAtMs;
+    }
+}
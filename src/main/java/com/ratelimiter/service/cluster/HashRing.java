@@ -0,0 +1,84 @@
+package com.ratelimiter.service.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring: maps each identifier to exactly one member.
+ *
+ * Concept:
+ * - Every member is hashed onto a 64-bit ring at virtualNodes positions
+ * ("member#0", "member#1", …). An identifier belongs to the first position
+ * clockwise from its own hash.
+ * - Many small arcs per member keep ownership within a few percent of even,
+ * and adding or removing one member only moves the keys on that member's
+ * arcs (~1/n of all keys) — everything else keeps its owner.
+ *
+ * Thread Safety:
+ * - Immutable; a membership change builds a new ring.
+ */
+public final class HashRing {
+
+    private final List<String> members;
+    private final long[] positions;
+    private final String[] owners;
+
+    public HashRing(Collection<String> members, int virtualNodes) {
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String member : members) {
+            for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                // On the (unlikely) collision the smaller name wins on every node alike
+                ring.merge(hash(member + "#" + i), member, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+        this.positions = new long[ring.size()];
+        this.owners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> position : ring.entrySet()) {
+            positions[i] = position.getKey();
+            owners[i++] = position.getValue();
+        }
+    }
+
+    /**
+     * The member owning identifier.
+     *
+     * @throws IllegalStateException if the ring has no members
+     */
+    public String ownerOf(String identifier) {
+        if (positions.length == 0)
+            throw new IllegalStateException("Hash ring has no members");
+        int i = Arrays.binarySearch(positions, hash(identifier));
+        if (i < 0)
+            i = -i - 1; // First position after the hash
+        return owners[i == positions.length ? 0 : i];
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * 64-bit FNV-1a finished with murmur3 fmix64 (same as the off-heap table),
+     * so ring positions do not depend on String.hashCode.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,215 @@
+package com.ratelimiter.service.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client side of one persistent connection to a peer's ShardedLimiter.
+ *
+ * Concept:
+ * - Requests from any thread are written on the same socket and tagged with
+ * a correlation id; a reader thread completes the matching future, so many
+ * checks can be in flight on one connection.
+ * - Connects lazily. After a failed connect, requests fail fast for
+ * RECONNECT_BACKOFF_MS instead of each paying a connect timeout.
+ * - With a shared secret, a new connection first answers the owner's
+ * challenge (ForwardingProtocol handshake); the proof goes out with the
+ * first frame.
+ *
+ * Thread Safety:
+ * - Writes are serialized by one ReentrantLock; in-flight futures live in a
+ * ConcurrentHashMap. When the socket breaks every in-flight request fails
+ * and the next request reconnects.
+ */
+final class PeerConnection implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerConnection.class);
+
+    private static final int CONNECT_TIMEOUT_MS = 1_000;
+    private static final long RECONNECT_BACKOFF_MS = 1_000;
+
+    private final String address;
+    private final String secret; // null: no handshake
+    private final ConcurrentHashMap<Long, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+
+    // Guarded by lock — a ReentrantLock, not this object's monitor, so a
+    // virtual thread blocked connecting or writing doesn't pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private Socket socket;
+    private DataOutputStream out;
+    private long retryAtNanos;
+    private boolean closed;
+
+    /** Writes one frame payload */
+    interface Payload {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    PeerConnection(String address, String secret) {
+        this.address = address;
+        this.secret = secret;
+    }
+
+    /**
+     * Send one frame. The future completes with the reply: a
+     * RateLimitDecision for DECIDE, Boolean.TRUE for an ACK.
+     */
+    CompletableFuture<Object> send(byte type, Payload payload) {
+        long correlationId = nextCorrelationId.incrementAndGet();
+        CompletableFuture<Object> reply = new CompletableFuture<>();
+        inFlight.put(correlationId, reply);
+        Socket current = null;
+        try {
+            lock.lock();
+            try {
+                current = connect();
+                out.writeByte(type);
+                out.writeLong(correlationId);
+                payload.writeTo(out);
+                out.flush();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            inFlight.remove(correlationId);
+            reply.completeExceptionally(e);
+            if (current != null)
+                disconnect(current, e);
+        }
+        return reply;
+    }
+
+    private Socket connect() throws IOException {
+        if (closed)
+            throw new IOException("Connection to " + address + " closed");
+        if (socket != null)
+            return socket;
+        if (System.nanoTime() < retryAtNanos)
+            throw new IOException("Peer " + address + " unreachable, backing off");
+
+        Socket fresh = new Socket();
+        DataOutputStream freshOut;
+        DataInputStream in;
+        try {
+            fresh.setTcpNoDelay(true); // Tiny frames: don't let Nagle hold them back
+            fresh.connect(parse(address), CONNECT_TIMEOUT_MS);
+            freshOut = new DataOutputStream(new BufferedOutputStream(fresh.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(fresh.getInputStream()));
+            if (secret != null) {
+                byte[] nonce = new byte[ForwardingProtocol.NONCE_BYTES];
+                fresh.setSoTimeout(CONNECT_TIMEOUT_MS);
+                in.readFully(nonce);
+                fresh.setSoTimeout(0);
+                freshOut.write(SharedSecret.mac(secret).doFinal(nonce));
+            }
+        } catch (IOException e) {
+            fresh.close();
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RECONNECT_BACKOFF_MS);
+            throw e;
+        }
+        socket = fresh;
+        out = freshOut;
+        Thread reader = new Thread(() -> readLoop(fresh, in), "rate-limit-shard-peer");
+        reader.setDaemon(true);
+        reader.start();
+        return fresh;
+    }
+
+    private void readLoop(Socket from, DataInputStream in) {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                long correlationId = in.readLong();
+                Object reply;
+                switch (type) {
+                    case ForwardingProtocol.DECISION:
+                        reply = ForwardingProtocol.readDecision(in);
+                        break;
+                    case ForwardingProtocol.ACK:
+                        reply = Boolean.TRUE;
+                        break;
+                    case ForwardingProtocol.ERROR:
+                        reply = new IllegalStateException("Peer " + address + ": " + in.readUTF());
+                        break;
+                    default:
+                        throw new IOException("Unknown frame type " + type);
+                }
+                CompletableFuture<Object> future = inFlight.remove(correlationId);
+                if (future == null)
+                    continue; // Caller already gave up (connection was reset)
+                if (reply instanceof Exception)
+                    future.completeExceptionally((Exception) reply);
+                else
+                    future.complete(reply);
+            }
+        } catch (IOException e) {
+            disconnect(from, e);
+        }
+    }
+
+    /**
+     * Drop a broken socket (if still current) and fail what was in flight on it.
+     */
+    private void disconnect(Socket broken, IOException cause) {
+        lock.lock();
+        try {
+            if (socket != broken)
+                return;
+            socket = null;
+            out = null;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            broken.close();
+        } catch (IOException e) {
+            // Already broken
+        }
+        if (!closed)
+            log.debug("Connection to {} lost: {}", address, cause.getMessage());
+        for (Long correlationId : inFlight.keySet()) {
+            CompletableFuture<Object> future = inFlight.remove(correlationId);
+            if (future != null)
+                future.completeExceptionally(cause);
+        }
+    }
+
+    String getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        Socket current;
+        lock.lock();
+        try {
+            closed = true;
+            current = socket;
+        } finally {
+            lock.unlock();
+        }
+        if (current != null)
+            disconnect(current, new IOException("Connection to " + address + " closed"));
+    }
+
+    static InetSocketAddress parse(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0)
+            throw new IllegalArgumentException("Member must be host:port, got: " + address);
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+}
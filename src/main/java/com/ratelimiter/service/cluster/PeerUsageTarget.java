@@ -0,0 +1,19 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.model.RateLimitConfig;
+
+/**
+ * A local strategy that can fold in usage reported by cluster peers.
+ *
+ * Implemented by the in-memory strategies (TOKEN_BUCKET, SLIDING_WINDOW,
+ * GCRA) so each node's local decision accounts for the whole cluster.
+ */
+public interface PeerUsageTarget {
+
+    /**
+     * Charge permits consumed on another node against the local state.
+     * Never rejects; usage beyond the limit empties the local state but does
+     * not overdraw it.
+     */
+    void applyPeerUsage(String identifier, RateLimitConfig config, long permits);
+}
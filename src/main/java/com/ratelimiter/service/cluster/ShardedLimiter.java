@@ -0,0 +1,561 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Sharded mode: every identifier is owned by exactly one node, so its
+ * limit is enforced exactly with plain in-memory state.
+ *
+ * Concept:
+ * - A HashRing (virtual nodes) over the configured members names the owner
+ * of each identifier. The owner decides locally; any other node forwards
+ * the check to the owner over a persistent TCP connection
+ * (ForwardingProtocol) and returns the owner's decision.
+ * - A forwarded check is always decided by the receiving node, never
+ * forwarded again, so two nodes with different member lists cannot loop.
+ * - Membership change (updateMembers): the new ring takes effect at once;
+ * then each local key now owned elsewhere is handed to its new owner
+ * (StateTransfer: exported, merged on arrival keeping the stricter state)
+ * and dropped locally. Every HANDOFF frame is sent before any ACK is
+ * awaited, and all ACKs share one forwardTimeoutMillis deadline; sending
+ * to an owner stops at its first failure. An unreachable owner costs one
+ * timeout, not one per key.
+ * - Status reads (peek) go to the owner as well, so remaining and reset
+ * describe the budget that is actually enforced.
+ *
+ * Availability:
+ * - If the owner does not answer within forwardTimeoutMillis the check is
+ * decided locally, so a dead node degrades its keys to per-node limits
+ * rather than failing requests. Counted as ratelimiter.sharding.fallbacks.
+ * - Checks that reach a new owner before the handoff for their key arrives
+ * start from fresh state; the merge keeps the stricter side, so a key can
+ * be slightly over-admitted during a rebalance, never under-counted after.
+ *
+ * Trust:
+ * - The listener binds loopback unless configured otherwise. With a shared
+ * secret, every connection must answer an HMAC challenge before its first
+ * frame (ForwardingProtocol handshake); failures are counted as
+ * ratelimiter.sharding.rejected. Without one, anything that reaches the
+ * port can spend or reset any identifier's budget: firewall it to the members.
+ *
+ * Thread Safety:
+ * - Ring is an immutable snapshot in a volatile field; connections are
+ * created once per member (ConcurrentHashMap); updateMembers is synchronized.
+ * - Server: one thread accepts; each inbound connection is decided and
+ * answered in order on a thread from a pool capped at maxConnections.
+ * A connection accepted while every pool thread is busy is closed at once
+ * (ratelimiter.sharding.refused), so neither peers nor strangers stalling
+ * in the handshake can exhaust the node's threads.
+ *
+ * Metrics:
+ * - ratelimiter.sharding.decisions{route=local|forwarded|fallback|served},
+ * ratelimiter.sharding.forward.latency, ratelimiter.sharding.handoffs,
+ * ratelimiter.sharding.rejected, ratelimiter.sharding.refused.
+ */
+public class ShardedLimiter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedLimiter.class);
+
+    private static final int HANDSHAKE_TIMEOUT_MS = 1_000;
+
+    private final RateLimiterStrategy strategy;
+    private final StateTransfer transfer; // null: keys restart fresh on their new owner
+    private final Function<String, RateLimitConfig> configResolver;
+    private final int virtualNodes;
+    private final long forwardTimeoutMs;
+    private final String secret; // null: peers are not authenticated
+    private final SecureRandom random = new SecureRandom();
+
+    private final ServerSocket server;
+    private final String self;
+    private final Thread acceptor;
+    private final ThreadPoolExecutor handlers;
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final Map<String, PeerConnection> peers = new ConcurrentHashMap<>();
+    private volatile HashRing ring;
+    private volatile boolean running = true;
+
+    private final Counter local;
+    private final Counter forwarded;
+    private final Counter fallbacks;
+    private final Counter served;
+    private final Counter handoffs;
+    private final Counter rejected;
+    private final Counter refused;
+    private final Timer forwardLatency;
+
+    /**
+     * @param strategy       local strategy; handoff needs it to be a StateTransfer
+     * @param configResolver limits for identifiers forwarded or handed over by peers
+     */
+    public ShardedLimiter(RateLimiterStrategy strategy, Function<String, RateLimitConfig> configResolver,
+                          RateLimiterProperties.Sharding settings, MeterRegistry meterRegistry) {
+        this.strategy = strategy;
+        this.transfer = strategy instanceof StateTransfer ? (StateTransfer) strategy : null;
+        this.configResolver = configResolver;
+        this.virtualNodes = settings.getVirtualNodes();
+        this.forwardTimeoutMs = settings.getForwardTimeoutMillis();
+        this.secret = SharedSecret.isSet(settings.getSharedSecret()) ? settings.getSharedSecret() : null;
+        if (transfer == null)
+            log.warn("{} cannot hand off state; keys restart fresh when ownership moves",
+                    strategy.getAlgorithmName());
+
+        try {
+            this.server = new ServerSocket();
+            server.bind(new InetSocketAddress(settings.getBindAddress(), settings.getBindPort()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot bind sharding port " + settings.getBindPort(), e);
+        }
+        this.self = advertisedAddress(settings, server);
+        if (secret == null && !server.getInetAddress().isLoopbackAddress())
+            log.warn("Sharding port {} accepts unauthenticated peers; set rate-limiter.sharding.shared-secret " +
+                    "or firewall it to the members", server.getLocalSocketAddress());
+
+        this.local = decisions(meterRegistry, "local");
+        this.forwarded = decisions(meterRegistry, "forwarded");
+        this.fallbacks = decisions(meterRegistry, "fallback");
+        this.served = decisions(meterRegistry, "served");
+        this.handoffs = Counter.builder("ratelimiter.sharding.handoffs")
+                .description("Identifiers whose state was handed to a new owner")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("ratelimiter.sharding.rejected")
+                .description("Inbound connections that failed the shared-secret handshake")
+                .register(meterRegistry);
+        this.refused = Counter.builder("ratelimiter.sharding.refused")
+                .description("Inbound connections closed because max-connections were already being served")
+                .register(meterRegistry);
+        this.forwardLatency = Timer.builder("ratelimiter.sharding.forward.latency")
+                .description("Round trip of a check forwarded to its owner")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        List<String> members = settings.getMembers().isEmpty() ? List.of(self) : settings.getMembers();
+        if (!members.contains(self))
+            log.warn("This node ({}) is not in rate-limiter.sharding.members; it owns no keys", self);
+        this.ring = new HashRing(members, virtualNodes);
+
+        // No queue: a connection is served by an idle thread, a new one below the cap, or refused
+        int maxConnections = Math.max(1, settings.getMaxConnections());
+        AtomicInteger handlerIds = new AtomicInteger();
+        this.handlers = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "rate-limit-shard-conn-" + handlerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        handlers.allowCoreThreadTimeOut(true);
+
+        this.acceptor = new Thread(this::acceptLoop, "rate-limit-shard-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Decide locally if this node owns identifier, otherwise ask the owner.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config) {
+        return tryAcquire(identifier, config, 1);
+    }
+
+    /**
+     * tryAcquire for a request costing permits; a unit check keeps the
+     * shorter DECIDE frame.
+     */
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        String owner = ring.ownerOf(identifier);
+        if (owner.equals(self)) {
+            local.increment();
+            return strategy.tryAcquire(identifier, config, permits);
+        }
+
+        long start = System.nanoTime();
+        try {
+            Object reply = await(permits == 1
+                    ? peer(owner).send(ForwardingProtocol.DECIDE, out -> out.writeUTF(identifier))
+                    : peer(owner).send(ForwardingProtocol.DECIDE_PERMITS, out -> {
+                        out.writeUTF(identifier);
+                        out.writeShort(permits);
+                    }));
+            forwardLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            forwarded.increment();
+            return (RateLimitDecision) reply;
+        } catch (IOException | RuntimeException e) {
+            // Owner unreachable or slow: enforce per-node rather than fail the request
+            log.debug("Forward of {} to {} failed, deciding locally: {}", identifier, owner, e.getMessage());
+            fallbacks.increment();
+            return strategy.tryAcquire(identifier, config, permits);
+        }
+    }
+
+    /**
+     * Remaining requests and reset time for identifier as its owner sees
+     * them, consuming nothing (an allowed decision). The local state if the
+     * owner does not answer.
+     */
+    public RateLimitDecision peek(String identifier, RateLimitConfig config) {
+        String owner = ring.ownerOf(identifier);
+        if (!owner.equals(self)) {
+            try {
+                return (RateLimitDecision) await(peer(owner).send(ForwardingProtocol.PEEK,
+                        out -> out.writeUTF(identifier)));
+            } catch (IOException | RuntimeException e) {
+                log.debug("Peek of {} on {} failed, reading locally: {}", identifier, owner, e.getMessage());
+            }
+        }
+        return peekLocal(identifier, config);
+    }
+
+    private RateLimitDecision peekLocal(String identifier, RateLimitConfig config) {
+        return RateLimitDecision.allowed(config.getMaxRequests(), strategy.getRemainingRequests(identifier, config),
+                strategy.getResetTimeEpochSeconds(identifier, config));
+    }
+
+    /**
+     * Reset identifier on its owner (and any local fallback state).
+     */
+    public void reset(String identifier, RateLimitConfig config) {
+        strategy.reset(identifier, config);
+        String owner = ring.ownerOf(identifier);
+        if (owner.equals(self))
+            return;
+        try {
+            await(peer(owner).send(ForwardingProtocol.RESET, out -> out.writeUTF(identifier)));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Reset of {} on owner {} failed: {}", identifier, owner, e.getMessage());
+        }
+    }
+
+    /**
+     * Switch to a new member list and hand every local key this node no
+     * longer owns to its new owner.
+     *
+     * @return number of identifiers handed off
+     */
+    public synchronized int updateMembers(List<String> members) {
+        HashRing next = new HashRing(members, virtualNodes);
+        ring = next;
+        for (String member : new ArrayList<>(peers.keySet())) {
+            if (!members.contains(member)) {
+                PeerConnection removed = peers.remove(member);
+                if (removed != null)
+                    removed.close();
+            }
+        }
+        if (transfer == null)
+            return 0;
+
+        Map<String, List<String>> byOwner = new LinkedHashMap<>();
+        for (String identifier : new ArrayList<>(transfer.identifiers())) {
+            String owner = next.ownerOf(identifier);
+            if (!owner.equals(self))
+                byOwner.computeIfAbsent(owner, o -> new ArrayList<>()).add(identifier);
+        }
+
+        // Pipeline every frame first, then wait for the ACKs against one deadline
+        Map<String, List<Handoff>> sent = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> group : byOwner.entrySet()) {
+            sent.put(group.getKey(), sendHandoffs(group.getKey(), group.getValue()));
+        }
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(forwardTimeoutMs);
+        int moved = 0;
+        for (Map.Entry<String, List<Handoff>> group : sent.entrySet()) {
+            boolean failed = false;
+            for (Handoff handoff : group.getValue()) {
+                if (handoff.reply != null) {
+                    // After a failure only ACKs already in still count
+                    long waitNanos = failed ? 0 : Math.max(0, deadlineNanos - System.nanoTime());
+                    try {
+                        handoff.reply.get(waitNanos, TimeUnit.NANOSECONDS);
+                    } catch (ExecutionException | TimeoutException e) {
+                        if (!failed)
+                            log.warn("Handoff to {} failed at {}: {}", group.getKey(), handoff.identifier,
+                                    e instanceof TimeoutException ? "no reply within " + forwardTimeoutMs + " ms"
+                                            : e.getCause().getMessage());
+                        failed = true;
+                        continue; // Keep it: still useful for fallback decisions or if ownership moves back
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failed = true;
+                        continue;
+                    }
+                    moved++;
+                    handoffs.increment();
+                }
+                strategy.reset(handoff.identifier, configResolver.apply(handoff.identifier));
+            }
+        }
+        log.info("Sharding members now {}; handed off {} identifiers", members, moved);
+        return moved;
+    }
+
+    /**
+     * Send HANDOFF frames for identifiers to owner without waiting, stopping
+     * at the first frame that cannot be written. An identifier with no state
+     * to export gets a Handoff with no reply: nothing to send, just drop it.
+     */
+    private List<Handoff> sendHandoffs(String owner, List<String> identifiers) {
+        PeerConnection connection = peer(owner);
+        List<Handoff> sent = new ArrayList<>(identifiers.size());
+        for (String identifier : identifiers) {
+            long[] state = transfer.exportState(identifier);
+            if (state == null) {
+                sent.add(new Handoff(identifier, null));
+                continue;
+            }
+            CompletableFuture<Object> reply = connection.send(ForwardingProtocol.HANDOFF, out -> {
+                out.writeUTF(identifier);
+                ForwardingProtocol.writeState(out, state);
+            });
+            sent.add(new Handoff(identifier, reply));
+            if (reply.isCompletedExceptionally())
+                break; // Owner unreachable: the rest stay here
+        }
+        return sent;
+    }
+
+    private static final class Handoff {
+        final String identifier;
+        final CompletableFuture<Object> reply; // null: no state, nothing sent
+
+        Handoff(String identifier, CompletableFuture<Object> reply) {
+            this.identifier = identifier;
+            this.reply = reply;
+        }
+    }
+
+    private Object await(CompletableFuture<Object> reply) throws IOException {
+        try {
+            return reply.get(forwardTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("No reply within " + forwardTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for owner");
+        }
+    }
+
+    private PeerConnection peer(String member) {
+        return peers.computeIfAbsent(member, address -> new PeerConnection(address, secret));
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+                try {
+                    handlers.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    refused.increment();
+                    log.debug("Refused sharding connection from {}: max-connections reached",
+                            socket.getRemoteSocketAddress());
+                    inbound.remove(socket);
+                    socket.close();
+                }
+            } catch (IOException e) {
+                if (running)
+                    log.warn("Accepting sharding connection failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Decide every frame a peer sends, in order, on this connection's thread.
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            if (secret != null && !authenticate(socket, in, out)) {
+                rejected.increment();
+                log.debug("Sharding connection from {} failed the handshake", socket.getRemoteSocketAddress());
+                return;
+            }
+            while (running) {
+                byte type = in.readByte();
+                long correlationId = in.readLong();
+                String identifier = in.readUTF();
+                try {
+                    switch (type) {
+                        case ForwardingProtocol.DECIDE:
+                        case ForwardingProtocol.DECIDE_PERMITS: {
+                            int permits = type == ForwardingProtocol.DECIDE ? 1 : in.readUnsignedShort();
+                            RateLimitDecision decision = strategy.tryAcquire(identifier,
+                                    configResolver.apply(identifier), permits);
+                            served.increment();
+                            out.writeByte(ForwardingProtocol.DECISION);
+                            out.writeLong(correlationId);
+                            ForwardingProtocol.writeDecision(out, decision);
+                            break;
+                        }
+                        case ForwardingProtocol.HANDOFF: {
+                            long[] state = ForwardingProtocol.readState(in);
+                            if (transfer != null)
+                                transfer.importState(identifier, configResolver.apply(identifier), state);
+                            ack(out, correlationId);
+                            break;
+                        }
+                        case ForwardingProtocol.PEEK: {
+                            out.writeByte(ForwardingProtocol.DECISION);
+                            out.writeLong(correlationId);
+                            ForwardingProtocol.writeDecision(out, peekLocal(identifier, configResolver.apply(identifier)));
+                            break;
+                        }
+                        case ForwardingProtocol.RESET:
+                            strategy.reset(identifier, configResolver.apply(identifier));
+                            ack(out, correlationId);
+                            break;
+                        default:
+                            throw new IOException("Unknown frame type " + type);
+                    }
+                } catch (RuntimeException e) {
+                    out.writeByte(ForwardingProtocol.ERROR);
+                    out.writeLong(correlationId);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                if (in.available() == 0)
+                    out.flush(); // Pipelined requests waiting: answer them in one write
+            }
+        } catch (EOFException | SocketException e) {
+            // Peer closed the connection
+        } catch (IOException e) {
+            log.debug("Sharding connection from {} dropped: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    /**
+     * Challenge the connecting peer to prove it holds the shared secret.
+     */
+    private boolean authenticate(Socket socket, DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] nonce = new byte[ForwardingProtocol.NONCE_BYTES];
+        random.nextBytes(nonce);
+        out.write(nonce);
+        out.flush();
+        byte[] proof = new byte[ForwardingProtocol.PROOF_BYTES];
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        in.readFully(proof);
+        socket.setSoTimeout(0);
+        return MessageDigest.isEqual(SharedSecret.mac(secret).doFinal(nonce), proof);
+    }
+
+    private static void ack(DataOutputStream out, long correlationId) throws IOException {
+        out.writeByte(ForwardingProtocol.ACK);
+        out.writeLong(correlationId);
+    }
+
+    private static Counter decisions(MeterRegistry registry, String route) {
+        return Counter.builder("ratelimiter.sharding.decisions")
+                .description("Checks by where they were decided")
+                .tag("route", route)
+                .register(registry);
+    }
+
+    private static String advertisedAddress(RateLimiterProperties.Sharding settings, ServerSocket server) {
+        if (settings.getAdvertisedAddress() != null && !settings.getAdvertisedAddress().isBlank())
+            return settings.getAdvertisedAddress();
+        InetAddress bound = server.getInetAddress();
+        String host = bound.isAnyLocalAddress() ? "127.0.0.1" : bound.getHostAddress();
+        return host + ":" + server.getLocalPort();
+    }
+
+    /** This node's name on the ring ("host:port") */
+    public String getSelf() {
+        return self;
+    }
+
+    public String ownerOf(String identifier) {
+        return ring.ownerOf(identifier);
+    }
+
+    public List<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    public long getForwarded() {
+        return (long) forwarded.count();
+    }
+
+    public long getFallbacks() {
+        return (long) fallbacks.count();
+    }
+
+    public long getHandoffs() {
+        return (long) handoffs.count();
+    }
+
+    public long getRejected() {
+        return (long) rejected.count();
+    }
+
+    public long getRefused() {
+        return (long) refused.count();
+    }
+
+    /**
+     * Stop serving peers and close every connection.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            log.debug("Closing sharding server: {}", e.getMessage());
+        }
+        for (Socket socket : inbound) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        handlers.shutdownNow();
+        peers.values().forEach(PeerConnection::close);
+        peers.clear();
+    }
+}
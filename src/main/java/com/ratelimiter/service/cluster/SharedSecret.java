@@ -0,0 +1,33 @@
+package com.ratelimiter.service.cluster;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * HMAC-SHA256 keyed by a cluster's shared secret
+ * (rate-limiter.cluster.shared-secret, rate-limiter.sharding.shared-secret).
+ *
+ * A Mac is not thread-safe: every thread that signs or checks uses its own.
+ */
+final class SharedSecret {
+
+    private SharedSecret() {
+    }
+
+    /** False for a missing or empty secret: peers are not authenticated */
+    static boolean isSet(String secret) {
+        return secret != null && !secret.isEmpty();
+    }
+
+    static Mac mac(String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
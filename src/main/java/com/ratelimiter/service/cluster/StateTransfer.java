@@ -0,0 +1,35 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.model.RateLimitConfig;
+
+import java.util.Collection;
+
+/**
+ * A local strategy whose per-identifier state can move to another node
+ * when key ownership changes (ShardedLimiter rebalancing).
+ *
+ * Implemented by the in-memory strategies (TOKEN_BUCKET, SLIDING_WINDOW,
+ * GCRA). State is an opaque long[] that only the same algorithm on the
+ * receiving node understands.
+ */
+public interface StateTransfer {
+
+    /**
+     * Identifiers with local state. Empty when the store cannot enumerate
+     * its keys (OFF_HEAP keeps only hashes) — those keys start fresh on
+     * their new owner.
+     */
+    Collection<String> identifiers();
+
+    /**
+     * Snapshot of one identifier's state, or null if there is none.
+     */
+    long[] exportState(String identifier);
+
+    /**
+     * Merge state handed over by the previous owner. Keeps the more
+     * restrictive of the incoming and the local state, so a handoff never
+     * frees permits.
+     */
+    void importState(String identifier, RateLimitConfig config, long[] state);
+}
@@ -0,0 +1,44 @@
+package com.ratelimiter.service.lease;
+
+/**
+ * Immutable result of one PermitPool lease call.
+ */
+public final class PermitGrant {
+
+    private final long granted;
+    private final long remaining;
+    private final long resetAtEpochMs;
+    private final long retryAfterMs;
+
+    public PermitGrant(long granted, long remaining, long resetAtEpochMs, long retryAfterMs) {
+        this.granted = granted;
+        this.remaining = remaining;
+        this.resetAtEpochMs = resetAtEpochMs;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /** Permits handed to the caller */
+    public long getGranted() {
+        return granted;
+    }
+
+    /** Permits left in the shared pool after this grant */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getResetAtEpochMs() {
+        return resetAtEpochMs;
+    }
+
+    /** When nothing was granted: ms until the pool has a permit again */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    @Override
+    public String toString() {
+        return "PermitGrant{granted=" + granted + ", remaining=" + remaining +
+                ", resetAtEpochMs=" + resetAtEpochMs + ", retryAfterMs=" + retryAfterMs + "}";
+    }
+}
@@ -0,0 +1,267 @@
+package com.ratelimiter.service.lease;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hybrid local/shared limiting: lease permit batches from a PermitPool and
+ * spend them locally.
+ *
+ * Concept:
+ * - Each node holds at most one lease per identifier: a handful of permits
+ * valid for durationMillis. Requests consume a local permit; only an empty or
+ * expired lease costs a round trip, which hands back the leftover and takes
+ * the next batch in the same call.
+ * - Lease size follows the observed per-key rate (EWMA of requests/second ×
+ * lease duration), capped by maxSize and by maxShareOfRemaining of what the
+ * pool had left — near an empty bucket leases shrink to 1 and every request
+ * goes to the pool again.
+ * - An empty grant blocks the key locally until the pool's retry-after (at
+ * most one lease duration), so rejected traffic doesn't hammer the pool.
+ * - A weighted request spends its whole cost from the lease. If the lease
+ * holds too few, the round trip tops it up (keeping what it has) by at least
+ * the shortfall; a top-up that still falls short rejects the request and
+ * blocks that cost, while cheaper requests keep spending the lease.
+ *
+ * Accuracy:
+ * - Permits sitting in other nodes' leases are invisible to the pool, so a
+ * burst can be admitted while other nodes still hold stock: the global limit
+ * can be overshot by at most the permits outstanding in leases. Idle leases
+ * are returned on expiry (cache eviction).
+ *
+ * Thread Safety:
+ * - One ReentrantLock per lease (per identifier per node); different keys
+ * never contend. A ReentrantLock rather than the lease's monitor because the
+ * pool round trip runs while it is held: on virtual threads a monitor would
+ * pin the carrier for the whole call.
+ * - A lease removed from the cache is marked retired under its lock so a
+ * racing request re-reads the cache instead of spending returned permits.
+ */
+public class PermitLeaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(PermitLeaseManager.class);
+
+    // Weight of the newest rate sample in the per-key EWMA
+    private static final double RATE_SMOOTHING = 0.5;
+
+    private final PermitPool pool;
+    private final long durationMs;
+    private final long maxSize;
+    private final double maxShareOfRemaining;
+    private final Cache<String, Lease> leases;
+
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder localDecisions = new LongAdder();
+
+    public PermitLeaseManager(PermitPool pool, RateLimiterProperties.Lease settings) {
+        this.pool = pool;
+        this.durationMs = settings.getDurationMillis();
+        this.maxSize = Math.max(1, settings.getMaxSize());
+        this.maxShareOfRemaining = settings.getMaxShareOfRemaining();
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxIdentifiers())
+                .expireAfterAccess(Duration.ofMillis(durationMs))
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((String identifier, Lease lease, RemovalCause cause) -> {
+                    if (identifier != null && lease != null && cause != RemovalCause.EXPLICIT)
+                        returnLeftover(identifier, lease);
+                })
+                .build();
+    }
+
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config) {
+        return tryAcquireAt(identifier, config, 1, System.currentTimeMillis());
+    }
+
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        return tryAcquireAt(identifier, config, permits, System.currentTimeMillis());
+    }
+
+    // Package-private for simulated-clock tests
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, long nowMs) {
+        return tryAcquireAt(identifier, config, 1, nowMs);
+    }
+
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, int permits, long nowMs) {
+        while (true) {
+            Lease lease = leases.get(identifier, id -> new Lease());
+            lease.lock.lock();
+            try {
+                if (lease.retired)
+                    continue; // Evicted under us — its permits went back to the pool
+                return acquire(identifier, config, permits, lease, nowMs);
+            } finally {
+                lease.lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the lease lock
+    private RateLimitDecision acquire(String identifier, RateLimitConfig config, int permits, Lease lease,
+                                      long now) {
+        lease.served += permits;
+        boolean live = now < lease.expiresAtMs;
+
+        if (live && lease.permits >= permits) {
+            lease.permits -= permits;
+            localDecisions.increment();
+            return RateLimitDecision.allowed(config.getMaxRequests(), lease.poolRemaining + lease.permits,
+                    lease.resetAtMs / 1000); // ✅ Allowed (local)
+        }
+        if (now < lease.blockedUntilMs && permits >= lease.blockedCost) {
+            localDecisions.increment();
+            return rejected(config, lease, now); // ❌ Rejected (local)
+        }
+
+        // Hand back what an expired lease didn't use and take the next batch;
+        // a live lease keeps its permits and is topped up by at least the shortfall
+        long kept = live ? lease.permits : 0;
+        long returned = live ? 0 : lease.permits;
+        long size = Math.max(nextLeaseSize(lease, now), permits - kept);
+        PermitGrant grant = pool.lease(identifier, config, returned, size);
+        roundTrips.increment();
+
+        lease.config = config;
+        lease.permits = kept + grant.getGranted();
+        lease.poolRemaining = grant.getRemaining();
+        lease.resetAtMs = grant.getResetAtEpochMs();
+        lease.expiresAtMs = now + durationMs;
+        lease.lastSize = size;
+
+        if (lease.permits < permits) {
+            lease.blockedUntilMs = now + Math.min(grant.getRetryAfterMs(), durationMs);
+            lease.blockedCost = permits;
+            return rejected(config, lease, now); // ❌ Rejected
+        }
+        lease.permits -= permits;
+        return RateLimitDecision.allowed(config.getMaxRequests(), lease.poolRemaining + lease.permits,
+                lease.resetAtMs / 1000); // ✅ Allowed
+    }
+
+    /**
+     * Batch to ask for: expected requests over one lease duration, shrunk
+     * as the pool runs low. Updates the rate estimate as a side effect.
+     */
+    private long nextLeaseSize(Lease lease, long now) {
+        if (lease.sampledAtMs == 0) {
+            lease.sampledAtMs = now;
+            lease.served = 0;
+            return 1; // Nothing known yet
+        }
+
+        double elapsedSeconds = Math.max(1, now - lease.sampledAtMs) / 1000.0;
+        double sample = lease.served / elapsedSeconds;
+        lease.ratePerSecond = lease.ratePerSecond == 0
+                ? sample
+                : RATE_SMOOTHING * sample + (1 - RATE_SMOOTHING) * lease.ratePerSecond;
+        lease.sampledAtMs = now;
+        lease.served = 0;
+
+        long size = (long) Math.ceil(lease.ratePerSecond * durationMs / 1000.0);
+        size = Math.min(Math.max(1, size), maxSize);
+        long share = (long) (lease.poolRemaining * maxShareOfRemaining);
+        return Math.min(size, Math.max(1, share));
+    }
+
+    private RateLimitDecision rejected(RateLimitConfig config, Lease lease, long now) {
+        long retryAfterSeconds = Math.max(1, (lease.blockedUntilMs - now + 999) / 1000);
+        return RateLimitDecision.rejected(config.getMaxRequests(), lease.resetAtMs / 1000, retryAfterSeconds);
+    }
+
+    private void returnLeftover(String identifier, Lease lease) {
+        long leftover;
+        lease.lock.lock();
+        try {
+            lease.retired = true;
+            leftover = lease.permits;
+            lease.permits = 0;
+        } finally {
+            lease.lock.unlock();
+        }
+        if (leftover == 0)
+            return;
+        try {
+            pool.lease(identifier, lease.config, leftover, 0);
+            roundTrips.increment();
+        } catch (RuntimeException e) {
+            log.warn("Could not return {} leased permits for {}: {}", leftover, identifier, e.getMessage());
+        }
+    }
+
+    /**
+     * Drop this node's lease without returning it (after a reset the pool
+     * starts full anyway).
+     */
+    public void invalidate(String identifier) {
+        Lease lease = leases.getIfPresent(identifier);
+        if (lease != null) {
+            lease.lock.lock();
+            try {
+                lease.retired = true;
+                lease.permits = 0;
+            } finally {
+                lease.lock.unlock();
+            }
+        }
+        leases.invalidate(identifier);
+    }
+
+    /** Run pending expiry now (returns idle leftovers). */
+    public void cleanUp() {
+        leases.cleanUp();
+    }
+
+    /** Calls made to the pool, including leftover returns */
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    /** Decisions made from local lease state without a round trip */
+    public long getLocalDecisions() {
+        return localDecisions.sum();
+    }
+
+    /** Size requested by the identifier's last lease, 0 if it has none */
+    long lastLeaseSize(String identifier) {
+        Lease lease = leases.getIfPresent(identifier);
+        if (lease == null)
+            return 0;
+        lease.lock.lock();
+        try {
+            return lease.lastSize;
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    /** Per-identifier lease state; guarded by its lock. */
+    private static final class Lease {
+        final ReentrantLock lock = new ReentrantLock();
+        RateLimitConfig config;
+        long permits;
+        long expiresAtMs;
+        long blockedUntilMs;
+        long blockedCost; // Requests costing at least this wait out blockedUntilMs
+        long poolRemaining;
+        long resetAtMs;
+        long lastSize;
+
+        // Rate estimate
+        long served;
+        long sampledAtMs;
+        double ratePerSecond;
+
+        boolean retired;
+    }
+}
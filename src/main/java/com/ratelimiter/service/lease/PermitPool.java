@@ -0,0 +1,21 @@
+package com.ratelimiter.service.lease;
+
+import com.ratelimiter.model.RateLimitConfig;
+
+/**
+ * A shared permit counter that nodes can lease batches from, so most
+ * requests are decided locally instead of with a round trip each.
+ *
+ * Implemented by strategies whose state lives outside the JVM
+ * (REDIS_TOKEN_BUCKET).
+ */
+public interface PermitPool {
+
+    /**
+     * Return unused permits and take up to requested more, atomically.
+     *
+     * @param returned  permits from an expired lease, credited back first
+     * @param requested batch size wanted; the grant may be smaller (or 0)
+     */
+    PermitGrant lease(String identifier, RateLimitConfig config, long returned, long requested);
+}
@@ -0,0 +1,294 @@
+package com.ratelimiter.service.persist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped snapshot of one strategy's state, split into fixed-size
+ * chunks so several threads can load it at once.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic "RLSS" | version | generation (8) | saved at ms (8) | chunk bytes | chunk count
+ *   chunk i  at HEADER_BYTES + i × chunk bytes (the last one cut to its used length):
+ *            used bytes | record count | CRC32C of the records | records
+ *   record   identifier length (2) | identifier (UTF-8) | expires at ms (8) | state length (4) | state longs
+ * </pre>
+ *
+ * A record never spans chunks, so each chunk decodes on its own. The file
+ * is written under a temporary name and renamed into place once forced to
+ * disk: a crash mid-write leaves the previous snapshot intact.
+ *
+ * Journal frames (StateJournal) hold the same records; a record with an
+ * empty state there means the identifier was removed.
+ */
+final class SnapshotFile {
+
+    static final int MAGIC = 0x524C5353; // "RLSS"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int CHUNK_HEADER_BYTES = 12;
+    /** ~200k token-bucket records per chunk */
+    static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+    static final int MAX_IDENTIFIER_BYTES = 0xFFFF;
+
+    private SnapshotFile() {
+    }
+
+    /** Receives decoded records, in file order. */
+    @FunctionalInterface
+    interface RecordSink {
+        void accept(String identifier, long expiresAtMs, long[] state);
+    }
+
+    static int recordBytes(int identifierBytes, int stateLength) {
+        return 2 + identifierBytes + 8 + 4 + stateLength * 8;
+    }
+
+    static void putRecord(ByteBuffer buffer, byte[] identifier, long expiresAtMs, long[] state) {
+        buffer.putShort((short) identifier.length);
+        buffer.put(identifier);
+        buffer.putLong(expiresAtMs);
+        buffer.putInt(state.length);
+        for (long value : state) {
+            buffer.putLong(value);
+        }
+    }
+
+    /**
+     * Decode records from buffer's position to its limit.
+     *
+     * @throws IOException if a record runs past the limit
+     */
+    static int readRecords(ByteBuffer buffer, RecordSink sink) throws IOException {
+        int records = 0;
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < 2)
+                throw new IOException("Truncated record at " + buffer.position());
+            int identifierBytes = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < identifierBytes + 12)
+                throw new IOException("Truncated record at " + buffer.position());
+            byte[] identifier = new byte[identifierBytes];
+            buffer.get(identifier);
+            long expiresAtMs = buffer.getLong();
+            int stateLength = buffer.getInt();
+            if (stateLength < 0 || buffer.remaining() < stateLength * 8L)
+                throw new IOException("Bad state length " + stateLength + " at " + buffer.position());
+            long[] state = new long[stateLength];
+            for (int i = 0; i < stateLength; i++) {
+                state[i] = buffer.getLong();
+            }
+            sink.accept(new String(identifier, StandardCharsets.UTF_8), expiresAtMs, state);
+            records++;
+        }
+        return records;
+    }
+
+    static int crc(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes one snapshot. Not thread-safe; add() from a single thread, then
+     * finish() to put the file in place, or abort() to discard it.
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final long generation;
+        private final int chunkBytes;
+        private final List<MappedByteBuffer> chunks = new ArrayList<>();
+        private MappedByteBuffer chunk;
+        private int chunkRecords;
+        private long records;
+        private long oversized;
+        private boolean done;
+
+        Writer(Path target, long generation, int chunkBytes) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.generation = generation;
+            this.chunkBytes = chunkBytes;
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Append one record. A record too large for a chunk is skipped and
+         * counted (that identifier starts fresh after a restart).
+         */
+        void add(String identifier, long expiresAtMs, long[] state) throws IOException {
+            byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+            int size = recordBytes(bytes.length, state.length);
+            if (bytes.length > MAX_IDENTIFIER_BYTES || size > chunkBytes - CHUNK_HEADER_BYTES) {
+                oversized++;
+                return;
+            }
+            if (chunk == null || chunk.remaining() < size) {
+                seal();
+                long offset = HEADER_BYTES + (long) chunks.size() * chunkBytes;
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, offset, chunkBytes);
+                chunk.position(CHUNK_HEADER_BYTES);
+                chunks.add(chunk);
+                chunkRecords = 0;
+            }
+            putRecord(chunk, bytes, expiresAtMs, state);
+            chunkRecords++;
+            records++;
+        }
+
+        private void seal() {
+            if (chunk == null)
+                return;
+            int used = chunk.position();
+            chunk.putInt(0, used);
+            chunk.putInt(4, chunkRecords);
+            chunk.putInt(8, crc(chunk.duplicate().position(CHUNK_HEADER_BYTES).limit(used)));
+        }
+
+        /**
+         * Force the file to disk and rename it over the target.
+         *
+         * @return file size in bytes
+         */
+        long finish(long savedAtMs) throws IOException {
+            seal();
+            long size = chunks.isEmpty() ? HEADER_BYTES
+                    : HEADER_BYTES + (long) (chunks.size() - 1) * chunkBytes + chunk.position();
+            for (MappedByteBuffer mapped : chunks) {
+                mapped.force();
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).putLong(savedAtMs)
+                    .putInt(chunkBytes).putInt(chunks.size()).flip();
+            channel.write(header, 0);
+            channel.truncate(size);
+            channel.force(true);
+            channel.close();
+            chunks.clear();
+            chunk = null;
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+            return size;
+        }
+
+        long getRecords() {
+            return records;
+        }
+
+        long getOversized() {
+            return oversized;
+        }
+
+        /** Discards the temporary file unless finish() succeeded. */
+        @Override
+        public void close() throws IOException {
+            if (done)
+                return;
+            chunks.clear();
+            chunk = null;
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * An open snapshot. readChunk may be called from several threads at
+     * once, each chunk mapped on its own.
+     */
+    static final class Reader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long generation;
+        private final long savedAtMs;
+        private final int chunkBytes;
+        private final int chunkCount;
+
+        private Reader(FileChannel channel, long size, ByteBuffer header) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("Not a version " + VERSION + " state snapshot");
+            this.generation = header.getLong();
+            this.savedAtMs = header.getLong();
+            this.chunkBytes = header.getInt();
+            this.chunkCount = header.getInt();
+            if (chunkBytes <= CHUNK_HEADER_BYTES || chunkCount < 0
+                    || size < HEADER_BYTES + (long) Math.max(0, chunkCount - 1) * chunkBytes)
+                throw new IOException("Snapshot header does not match its size " + size);
+        }
+
+        /** The snapshot at path, or null if there is none. */
+        static Reader open(Path path) throws IOException {
+            if (!Files.exists(path))
+                return null;
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                    // Read the whole header
+                }
+                if (header.hasRemaining())
+                    throw new IOException("Snapshot shorter than its header");
+                return new Reader(channel, size, header.flip());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+
+        long getSavedAtMs() {
+            return savedAtMs;
+        }
+
+        int getChunkCount() {
+            return chunkCount;
+        }
+
+        /**
+         * Decode chunk index into sink.
+         *
+         * @return records in the chunk
+         * @throws IOException if the chunk is damaged (nothing from it is read)
+         */
+        int readChunk(int index, RecordSink sink) throws IOException {
+            long offset = HEADER_BYTES + (long) index * chunkBytes;
+            int length = (int) Math.min(chunkBytes, size - offset);
+            if (length < CHUNK_HEADER_BYTES)
+                throw new IOException("Chunk " + index + " is truncated");
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            int used = mapped.getInt(0);
+            if (used < CHUNK_HEADER_BYTES || used > length)
+                throw new IOException("Chunk " + index + " has a bad length " + used);
+            ByteBuffer records = mapped.position(CHUNK_HEADER_BYTES).limit(used);
+            if (crc(records) != mapped.getInt(8))
+                throw new IOException("Chunk " + index + " fails its checksum");
+            return readRecords(records, sink);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
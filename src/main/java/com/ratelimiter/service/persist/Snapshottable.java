@@ -0,0 +1,32 @@
+package com.ratelimiter.service.persist;
+
+import com.ratelimiter.service.cluster.StateTransfer;
+import com.ratelimiter.service.store.EntryStore;
+
+/**
+ * A local strategy whose state StateSnapshotter writes to disk and reloads
+ * on startup (TOKEN_BUCKET, SLIDING_WINDOW, GCRA).
+ *
+ * Saving reuses the handoff export (StateTransfer.exportState). Restoring
+ * cannot merge the way a handoff does: the config of millions of
+ * identifiers is not at hand at startup. Instead each record carries the
+ * entry's deadline, and the state goes back exactly as it was saved — the
+ * strategy ages it lazily on the next request (a bucket refills for the
+ * downtime, a window's old timestamps fall out of it).
+ */
+public interface Snapshottable extends StateTransfer {
+
+    String getAlgorithmName();
+
+    /** The store whose identifiers are saved and whose changes are journaled */
+    EntryStore getStore();
+
+    /**
+     * Put back one identifier's saved state, replacing any state it has.
+     *
+     * @param state       as returned by exportState
+     * @param expiresAtMs the entry's deadline when it was saved; the caller
+     *                    skips records whose deadline has already passed
+     */
+    void restoreState(String identifier, long[] state, long expiresAtMs);
+}
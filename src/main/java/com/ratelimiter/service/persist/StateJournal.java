@@ -0,0 +1,204 @@
+package com.ratelimiter.service.persist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only journal of the entries changed since the last snapshot.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header  magic "RLSJ" | version | generation (8)
+ *   frame   payload bytes | CRC32C of the payload | records (SnapshotFile record format)
+ * </pre>
+ *
+ * - Each flush appends whole frames, then forces them to disk. A crash
+ * mid-append leaves a torn last frame; replay stops at the first frame that
+ * is short or fails its checksum, and reopening truncates it away.
+ * - The generation ties the journal to the snapshot it follows: a journal
+ * whose generation differs from the snapshot's is stale (its changes are
+ * already in the snapshot) and is not replayed.
+ *
+ * Not thread-safe: StateSnapshotter drives it from one thread.
+ */
+final class StateJournal implements AutoCloseable {
+
+    static final int MAGIC = 0x524C534A; // "RLSJ"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int FRAME_HEADER_BYTES = 8;
+    /** A flush writes frames of at most this much */
+    static final int MAX_FRAME_BYTES = 1024 * 1024;
+
+    private static final long[] REMOVED = new long[0];
+
+    private final FileChannel channel;
+    private final long generation;
+    private ByteBuffer frame = ByteBuffer.allocate(64 * 1024);
+    private long size;
+
+    private StateJournal(FileChannel channel, long generation, long size) {
+        this.channel = channel;
+        this.generation = generation;
+        this.size = size;
+        frame.position(FRAME_HEADER_BYTES);
+    }
+
+    /**
+     * Start an empty journal at path for this generation, replacing any
+     * journal there.
+     */
+    static StateJournal create(Path path, long generation) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return append(path, generation, HEADER_BYTES);
+    }
+
+    /**
+     * Keep appending to a journal that replay accepted, cutting off anything
+     * after its last intact frame.
+     */
+    static StateJournal append(Path path, long generation, long validBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(validBytes);
+            channel.position(validBytes);
+            return new StateJournal(channel, generation, validBytes);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /** Bytes on disk, header included. */
+    long size() {
+        return size;
+    }
+
+    /** Buffer one identifier's state; written by the next flush(). */
+    void add(String identifier, long expiresAtMs, long[] state) throws IOException {
+        byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        int recordBytes = SnapshotFile.recordBytes(bytes.length, state.length);
+        if (bytes.length > SnapshotFile.MAX_IDENTIFIER_BYTES || recordBytes > MAX_FRAME_BYTES - FRAME_HEADER_BYTES)
+            return; // Would not fit a snapshot chunk either
+        if (frame.remaining() < recordBytes) {
+            if (frame.position() + recordBytes <= MAX_FRAME_BYTES) {
+                frame = ByteBuffer.allocate(Math.min(MAX_FRAME_BYTES, Math.max(frame.capacity() * 2,
+                        frame.position() + recordBytes))).put(frame.flip());
+            } else {
+                writeFrame();
+            }
+        }
+        SnapshotFile.putRecord(frame, bytes, expiresAtMs, state);
+    }
+
+    /** Buffer a removal: on replay the identifier is dropped. */
+    void addRemoved(String identifier) throws IOException {
+        add(identifier, 0, REMOVED);
+    }
+
+    /** Write what add() buffered and force it to disk. */
+    void flush() throws IOException {
+        if (frame.position() == FRAME_HEADER_BYTES)
+            return;
+        writeFrame();
+        channel.force(false);
+    }
+
+    private void writeFrame() throws IOException {
+        int payload = frame.position() - FRAME_HEADER_BYTES;
+        if (payload == 0)
+            return;
+        frame.putInt(0, payload);
+        frame.putInt(4, SnapshotFile.crc(frame.duplicate().position(FRAME_HEADER_BYTES).limit(frame.position())));
+        frame.flip();
+        while (frame.hasRemaining()) {
+            size += channel.write(frame);
+        }
+        frame.clear().position(FRAME_HEADER_BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Apply the journal at path to sink, frame by frame in write order, if
+     * it belongs to generation.
+     *
+     * @param deadlineMs stop before a frame that starts after this epoch ms
+     * @return where replay ended, or null if there is no journal for this
+     * generation
+     */
+    static Replay replay(Path path, long generation, long deadlineMs, SnapshotFile.RecordSink sink)
+            throws IOException {
+        if (!Files.exists(path))
+            return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (!readFully(channel, header, 0) || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(8) != generation)
+                return null;
+
+            Replay replay = new Replay();
+            long position = HEADER_BYTES;
+            ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+            while (true) {
+                replay.validBytes = position;
+                if (System.currentTimeMillis() > deadlineMs) {
+                    replay.complete = false;
+                    return replay;
+                }
+                if (!readFully(channel, frameHeader.clear(), position))
+                    return replay; // Clean end, or a torn frame header
+                int payload = frameHeader.getInt(0);
+                if (payload <= 0 || payload > MAX_FRAME_BYTES)
+                    return replay;
+                ByteBuffer records = ByteBuffer.allocate(payload);
+                if (!readFully(channel, records, position + FRAME_HEADER_BYTES)
+                        || SnapshotFile.crc(records.flip()) != frameHeader.getInt(4))
+                    return replay; // Torn or damaged: everything after it is unusable
+                replay.records += SnapshotFile.readRecords(records, sink);
+                position += FRAME_HEADER_BYTES + payload;
+            }
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /** How far a replay got. */
+    static final class Replay {
+        long records;
+        /** Bytes up to the end of the last intact frame */
+        long validBytes;
+        /** False if the deadline stopped replay early */
+        boolean complete = true;
+    }
+}
@@ -0,0 +1,480 @@
+package com.ratelimiter.service.persist;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.store.EntryStore;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps TOKEN_BUCKET, SLIDING_WINDOW and GCRA state across restarts, so a deploy
+ * does not hand every caller — abusive ones included — a fresh budget.
+ * Only created when rate-limiter.persistence.enabled=true.
+ *
+ * Concept:
+ * - Every snapshot interval each Snapshottable strategy's store is written
+ * to &lt;directory&gt;/&lt;ALGORITHM&gt;.snapshot (SnapshotFile: memory-mapped,
+ * chunked, renamed into place when complete).
+ * - In between, EntryStore queues each entry the first time it changes;
+ * every journal-flush-millis the queued identifiers' current state is
+ * appended to &lt;ALGORITHM&gt;.journal (StateJournal) and forced to disk. A
+ * crash loses at most one flush interval of changes.
+ * - A snapshot starts with a flush and ends by starting an empty journal
+ * of the new generation; both run on the one persistence thread, so the
+ * journal only ever holds changes newer than the snapshot it follows.
+ * A journal that outgrows its snapshot triggers the next snapshot early.
+ *
+ * Restore (in the constructor, before the server takes traffic):
+ * - Snapshot chunks are decoded by restore-threads threads in parallel,
+ * then the journal is replayed over them in write order.
+ * - Time-based aging: a record whose deadline passed while the service was
+ * down is dropped (the bucket would be full, the window empty). Anything
+ * else goes back exactly as saved and the strategy ages it on the next
+ * request — buckets refill for the downtime, old timestamps leave the window.
+ * - Bounded: threads stop taking chunks once max-restore-millis has passed;
+ * identifiers not restored by then start fresh. The time taken is logged
+ * and published as ratelimiter.persistence.restore.seconds.
+ *
+ * Thread Safety:
+ * - Flushes and snapshots run under one ReentrantLock, normally on the
+ * persistence thread. Reading state goes through exportState, i.e. the
+ * strategy's own CAS or entry lock.
+ * - A token-bucket change racing a flush (its entry queued before the
+ * flush, its CAS just after the flush read it) waits for the entry's next
+ * change or the next snapshot.
+ *
+ * Memory: OFF_HEAP stores keep only identifier hashes and cannot be listed,
+ * so nothing is saved for them. Nor for the REDIS_* algorithms, whose state
+ * already outlives the process. Startup warns when the active algorithm is
+ * one of these.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rate-limiter.persistence", name = "enabled", havingValue = "true")
+public class StateSnapshotter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(StateSnapshotter.class);
+
+    // Snapshot early once the journal is this much bigger than the snapshot it follows
+    private static final long JOURNAL_SLACK_BYTES = 64L * 1024 * 1024;
+    // Strategies that keep their state in an OffHeapStateTable under store.mode=OFF_HEAP
+    private static final Set<String> OFF_HEAP_ALGORITHMS = Set.of("TOKEN_BUCKET", "GCRA");
+
+    private final List<Target> targets = new ArrayList<>();
+    private final Map<String, RestoreStats> restoreStats = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+    private final long snapshotIntervalMs;
+    private final int chunkBytes;
+    private final Counter snapshots;
+    private final Counter failures;
+    private volatile long nextSnapshotAtMs;
+    private volatile boolean closed;
+
+    public StateSnapshotter(List<RateLimiterStrategy> strategies, RateLimiterProperties properties,
+                            MeterRegistry meterRegistry) {
+        this(strategies, properties, meterRegistry, SnapshotFile.DEFAULT_CHUNK_BYTES);
+    }
+
+    StateSnapshotter(List<RateLimiterStrategy> strategies, RateLimiterProperties properties,
+                     MeterRegistry meterRegistry, int chunkBytes) {
+        RateLimiterProperties.Persistence settings = properties.getPersistence();
+        Path directory = Path.of(settings.getDirectory());
+        this.chunkBytes = chunkBytes;
+        this.snapshotIntervalMs = settings.getSnapshotIntervalSeconds() * 1000L;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create state directory " + directory, e);
+        }
+
+        int threads = settings.getRestoreThreads() > 0
+                ? settings.getRestoreThreads() : Runtime.getRuntime().availableProcessors();
+        long deadlineMs = System.currentTimeMillis() + settings.getMaxRestoreMillis();
+        for (RateLimiterStrategy strategy : strategies) {
+            if (!(strategy instanceof Snapshottable))
+                continue;
+            Snapshottable snapshottable = (Snapshottable) strategy;
+            Target target = new Target(snapshottable, directory);
+            RestoreStats stats = restore(target, threads, deadlineMs);
+            restoreStats.put(target.algorithm, stats);
+            targets.add(target);
+            snapshottable.getStore().trackChanges(); // After restore: restoring is not a change
+            bindTo(meterRegistry, target, stats);
+        }
+        warnIfNotPersisted(strategies, properties);
+
+        this.snapshots = Counter.builder("ratelimiter.persistence.snapshots")
+                .description("State snapshots written")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failures = Counter.builder("ratelimiter.persistence.snapshots")
+                .description("State snapshots written")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+
+        this.nextSnapshotAtMs = System.currentTimeMillis() + snapshotIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushMillis = Math.max(1, settings.getJournalFlushMillis());
+        scheduler.scheduleWithFixedDelay(this::tick, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Persistence was asked for; say so if the algorithm actually serving
+     * requests is one it cannot save.
+     */
+    private static void warnIfNotPersisted(List<RateLimiterStrategy> strategies, RateLimiterProperties properties) {
+        String algorithm = properties.getAlgorithm();
+        for (RateLimiterStrategy strategy : strategies) {
+            if (!strategy.getAlgorithmName().equalsIgnoreCase(algorithm))
+                continue;
+            if (!(strategy instanceof Snapshottable))
+                log.warn("Persistence is enabled but {} state is not saved by this service; it starts fresh " +
+                        "on restart unless its backing store keeps it", strategy.getAlgorithmName());
+            else if (properties.getStore().getMode() == RateLimiterProperties.Store.Mode.OFF_HEAP
+                    && OFF_HEAP_ALGORITHMS.contains(strategy.getAlgorithmName()))
+                log.warn("Persistence is enabled but rate-limiter.store.mode=OFF_HEAP cannot be saved; " +
+                        "{} state starts fresh on restart", strategy.getAlgorithmName());
+            return;
+        }
+    }
+
+    private void bindTo(MeterRegistry registry, Target target, RestoreStats stats) {
+        Gauge.builder("ratelimiter.persistence.restore.seconds", stats, s -> s.getMillis() / 1000.0)
+                .description("Time taken to reload saved state on startup")
+                .tag("algorithm", target.algorithm)
+                .register(registry);
+        Gauge.builder("ratelimiter.persistence.restored", stats, RestoreStats::getRestored)
+                .description("Identifiers whose saved state was reloaded on startup")
+                .tag("algorithm", target.algorithm)
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.persistence.journal.records", target.journaled, AtomicLong::get)
+                .description("Changed entries appended to the journal")
+                .tag("algorithm", target.algorithm)
+                .register(registry);
+    }
+
+    /** Per algorithm, what startup restored. */
+    public Map<String, RestoreStats> getRestoreStats() {
+        return Collections.unmodifiableMap(restoreStats);
+    }
+
+    private RestoreStats restore(Target target, int threads, long deadlineMs) {
+        long start = System.currentTimeMillis();
+        RestoreStats stats = new RestoreStats();
+        long generation = 0;
+        StateJournal.Replay replay = null;
+        try {
+            try (SnapshotFile.Reader snapshot = SnapshotFile.Reader.open(target.snapshotPath)) {
+                if (snapshot != null) {
+                    generation = snapshot.getGeneration();
+                    target.snapshotBytes = Files.size(target.snapshotPath);
+                    loadChunks(target, snapshot, threads, deadlineMs, stats);
+                }
+            }
+            // Journal records are newer than the snapshot: they replace, and may remove
+            replay = StateJournal.replay(target.journalPath, generation, deadlineMs, (identifier, expiresAtMs, state) -> {
+                if (state.length == 0 || expiresAtMs <= System.currentTimeMillis()) {
+                    target.strategy.getStore().remove(identifier);
+                    return;
+                }
+                target.strategy.restoreState(identifier, state, expiresAtMs);
+            });
+            if (replay != null) {
+                stats.journalRecords = replay.records;
+                stats.complete &= replay.complete;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable state is not worth failing startup over: those callers start fresh
+            stats.complete = false;
+            log.warn("Could not restore {} state from {}; remaining identifiers start fresh",
+                    target.algorithm, target.snapshotPath, e);
+        }
+
+        try {
+            target.generation = generation;
+            target.journal = replay != null
+                    ? StateJournal.append(target.journalPath, generation, replay.validBytes)
+                    : StateJournal.create(target.journalPath, generation);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open state journal " + target.journalPath, e);
+        }
+
+        stats.restored = target.strategy.getStore().size();
+        stats.millis = System.currentTimeMillis() - start;
+        if (stats.complete)
+            log.info("Restored {} {} identifiers in {} ms ({} aged out, {} journal records)",
+                    stats.restored, target.algorithm, stats.millis, stats.aged, stats.journalRecords);
+        else
+            log.warn("Restored only {} {} identifiers in {} ms (out of time, or damaged files); the rest start fresh",
+                    stats.restored, target.algorithm, stats.millis);
+        return stats;
+    }
+
+    private static void loadChunks(Target target, SnapshotFile.Reader snapshot, int threads, long deadlineMs,
+                                   RestoreStats stats) throws IOException {
+        int chunkCount = snapshot.getChunkCount();
+        AtomicInteger nextChunk = new AtomicInteger();
+        LongAdder aged = new LongAdder();
+        LongAdder damaged = new LongAdder();
+        Runnable worker = () -> {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                if (System.currentTimeMillis() > deadlineMs)
+                    return;
+                long now = System.currentTimeMillis();
+                try {
+                    snapshot.readChunk(chunk, (identifier, expiresAtMs, state) -> {
+                        if (expiresAtMs <= now) {
+                            aged.increment(); // Would be a fresh entry by now
+                            return;
+                        }
+                        target.strategy.restoreState(identifier, state, expiresAtMs);
+                    });
+                } catch (IOException e) {
+                    damaged.increment();
+                    log.warn("Skipping {} snapshot chunk {}: {}", target.algorithm, chunk, e.getMessage());
+                }
+            }
+        };
+
+        int workers = Math.min(threads, chunkCount);
+        if (workers <= 1) {
+            worker.run();
+        } else {
+            AtomicInteger threadIds = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "rate-limit-restore-" + threadIds.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> running = new ArrayList<>(workers);
+                for (int i = 0; i < workers; i++) {
+                    running.add(pool.submit(worker));
+                }
+                for (Future<?> future : running) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while restoring", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Restore worker failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        stats.aged = aged.sum();
+        stats.complete = nextChunk.get() >= chunkCount && damaged.sum() == 0;
+    }
+
+    private void tick() {
+        try {
+            boolean snapshotDue = System.currentTimeMillis() >= nextSnapshotAtMs;
+            for (Target target : targets) {
+                if (snapshotDue || target.journal.size() > target.snapshotBytes + JOURNAL_SLACK_BYTES)
+                    snapshot(target);
+                else
+                    flush(target);
+            }
+            if (snapshotDue)
+                nextSnapshotAtMs = System.currentTimeMillis() + snapshotIntervalMs;
+        } catch (RuntimeException e) {
+            log.warn("State persistence tick failed", e); // Keep the schedule alive
+        }
+    }
+
+    /** Append every changed entry to its journal now. */
+    public void flush() {
+        for (Target target : targets) {
+            flush(target);
+        }
+    }
+
+    /** Write a snapshot of every store now (and start new journals). */
+    public void snapshot() {
+        for (Target target : targets) {
+            snapshot(target);
+        }
+    }
+
+    private void flush(Target target) {
+        lock.lock();
+        try {
+            if (target.journal == null)
+                return;
+            EntryStore store = target.strategy.getStore();
+            StateJournal journal = target.journal;
+            store.drainChanges(identifier -> {
+                try {
+                    RateLimitEntry entry = store.get(identifier);
+                    long[] state = entry == null ? null : target.strategy.exportState(identifier);
+                    if (state == null)
+                        journal.addRemoved(identifier);
+                    else
+                        journal.add(identifier, entry.expiresAtMs, state);
+                    target.journaled.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            journal.flush();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not append to {}; those changes wait for the next snapshot", target.journalPath, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void snapshot(Target target) {
+        lock.lock();
+        try {
+            if (target.journal == null)
+                return;
+            flush(target); // Everything up to now is on disk before the journal is replaced
+            long start = System.currentTimeMillis();
+            long generation = target.generation + 1;
+            EntryStore store = target.strategy.getStore();
+            long size;
+            long records;
+            try (SnapshotFile.Writer writer = new SnapshotFile.Writer(target.snapshotPath, generation, chunkBytes)) {
+                for (String identifier : store.identifiers()) {
+                    RateLimitEntry entry = store.get(identifier);
+                    long[] state = entry == null ? null : target.strategy.exportState(identifier);
+                    if (state != null)
+                        writer.add(identifier, entry.expiresAtMs, state);
+                }
+                size = writer.finish(start);
+                records = writer.getRecords();
+                if (writer.getOversized() > 0)
+                    log.warn("{} {} identifiers have too much state for a snapshot chunk and were not saved",
+                            writer.getOversized(), target.algorithm);
+            }
+            // Changes made during the scan are still queued; they go to the new journal
+            target.journal.close();
+            target.journal = StateJournal.create(target.journalPath, generation);
+            target.generation = generation;
+            target.snapshotBytes = size;
+            snapshots.increment();
+            log.debug("Saved {} {} identifiers ({} bytes) in {} ms", records, target.algorithm, size,
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            log.warn("Could not write {}; the previous snapshot and journal stay in use", target.snapshotPath, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stop the schedule and leave a final snapshot for the next start. */
+    @Override
+    @PreDestroy
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            for (Target target : targets) {
+                snapshot(target);
+                try {
+                    target.journal.close();
+                } catch (IOException e) {
+                    // Already forced; nothing to lose
+                }
+                target.journal = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** What startup restored for one algorithm. */
+    public static final class RestoreStats {
+        private long restored;
+        private long aged;
+        private long journalRecords;
+        private long millis;
+        private boolean complete = true;
+
+        /** Identifiers in the store once restore finished */
+        public long getRestored() {
+            return restored;
+        }
+
+        /** Snapshot records dropped because their deadline passed during the downtime */
+        public long getAged() {
+            return aged;
+        }
+
+        public long getJournalRecords() {
+            return journalRecords;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /** False if the deadline, a damaged chunk or an I/O error cut restore short */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private static final class Target {
+        final Snapshottable strategy;
+        final String algorithm;
+        final Path snapshotPath;
+        final Path journalPath;
+        final AtomicLong journaled = new AtomicLong();
+        long generation;
+        long snapshotBytes;
+        StateJournal journal;
+
+        Target(Snapshottable strategy, Path directory) {
+            this.strategy = strategy;
+            this.algorithm = strategy.getAlgorithmName();
+            this.snapshotPath = directory.resolve(algorithm + ".snapshot");
+            this.journalPath = directory.resolve(algorithm + ".journal");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ratelimiter.service.reactive;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import reactor.core.publisher.Mono;
+
+/**
+ * A store that can decide a check without blocking the calling thread.
+ *
+ * Implemented by the Redis strategies (script over the reactive Lettuce
+ * connection). The in-memory strategies don't need it: their decisions are
+ * a CAS or a short lock and run inline on the event loop.
+ */
+public interface ReactiveDecisionSource {
+
+    /**
+     * tryAcquire whose reply arrives as a Mono; nothing blocks between
+     * subscription and the store's answer.
+     */
+    default Mono<RateLimitDecision> tryAcquireReactive(String identifier, RateLimitConfig config) {
+        return tryAcquireReactive(identifier, config, 1);
+    }
+
+    /**
+     * Weighted tryAcquireReactive: permits taken whole or not at all.
+     */
+    Mono<RateLimitDecision> tryAcquireReactive(String identifier, RateLimitConfig config, int permits);
+}
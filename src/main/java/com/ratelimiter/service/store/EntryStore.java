@@ -0,0 +1,437 @@
+package com.ratelimiter.service.store;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitEntry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bounded identifier → RateLimitEntry store shared by the in-memory strategies.
+ *
+ * Memory is bounded two ways:
+ * - Idle expiry: every entry carries expiresAtMs (set by the strategy to the
+ *   moment it becomes equivalent to "no entry", capped at now + idleExpiry).
+ *   A hashed TimingWheel reclaims entries once that deadline passes.
+ * - Max entries: inserting past maxEntries force-evicts the entries closest
+ *   to their deadline — the ones whose state is nearest to a fresh entry.
+ *
+ * Maintenance (advancing the wheel) is triggered from the request path once
+ * per tick and runs on the given executor, so no dedicated thread is needed.
+ *
+ * Thread Safety:
+ * - ConcurrentHashMap for the map.
+ * - Entry locks are striped: lock(entry) takes one of LOCK_STRIPES
+ *   ReentrantLocks picked by the identifier's hash. Unlike a monitor on the
+ *   entry, a ReentrantLock never pins a virtual thread to its carrier, and
+ *   entries carry no lock of their own.
+ * - Eviction retires the entry before removing it. By default that marks
+ *   entry.evicted under the entry lock; lock-free strategies install their
+ *   own Retirer. Strategies that find a retired entry retry with a fresh
+ *   one, so a consume can never land on an entry that has left the map.
+ *
+ * Change tracking (persistence only): once trackChanges() is called, the
+ * first touch of an entry queues it for the next journal flush; later
+ * touches cost one volatile read until the flush drains it.
+ */
+public class EntryStore {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int LOCK_STRIPES = 1024; // Power of two; ~48 KB of locks per store
+
+    private final ConcurrentHashMap<String, RateLimitEntry> map = new ConcurrentHashMap<>();
+    private final TimingWheel wheel;
+    private final long maxEntries;
+    private final long idleExpiryMs;
+    private final Executor maintenanceExecutor;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+    private volatile long nextMaintenanceAtMs;
+
+    private volatile Retirer retirer = this::retireLocked;
+    private volatile Queue<RateLimitEntry> changes; // null unless trackChanges() was called
+
+    private final LongAdder expiredEvictions = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+
+    public static EntryStore create(RateLimiterProperties.Store settings) {
+        return new EntryStore(settings.getMaxEntries(),
+                settings.getIdleExpirySeconds() * 1000L,
+                settings.getTickMillis());
+    }
+
+    public EntryStore(long maxEntries, long idleExpiryMs, long tickMs) {
+        this(maxEntries, idleExpiryMs, tickMs, ForkJoinPool.commonPool());
+    }
+
+    public EntryStore(long maxEntries, long idleExpiryMs, long tickMs, Executor maintenanceExecutor) {
+        long now = System.currentTimeMillis();
+        this.maxEntries = maxEntries;
+        this.idleExpiryMs = idleExpiryMs;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.wheel = new TimingWheel(tickMs, WHEEL_SIZE, now);
+        this.nextMaintenanceAtMs = wheel.nextTickAtMs();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Decides, atomically with respect to the owning strategy's updates,
+     * whether an entry may leave the store, and marks it evicted if so.
+     */
+    @FunctionalInterface
+    public interface Retirer {
+        /**
+         * @param nowMs current time; when force is false, retire only if the
+         *              entry's deadline is at or before nowMs
+         * @param force retire regardless of deadline (capacity, admin reset)
+         * @return true if this call retired the entry
+         */
+        boolean tryRetire(RateLimitEntry entry, long nowMs, boolean force);
+    }
+
+    /**
+     * Replace the default lock-based retirement. Called by strategies that
+     * update entries without holding the entry lock.
+     */
+    public void setRetirer(Retirer retirer) {
+        this.retirer = retirer;
+    }
+
+    /**
+     * Existing entry for this identifier, or a new one from the factory.
+     * The caller must still check entry.evicted once it holds the entry lock.
+     */
+    public RateLimitEntry getOrCreate(String identifier, Function<String, RateLimitEntry> factory) {
+        long now = System.currentTimeMillis();
+        if (now >= nextMaintenanceAtMs)
+            scheduleMaintenance();
+
+        RateLimitEntry entry = map.get(identifier);
+        if (entry != null)
+            return entry;
+
+        RateLimitEntry created = factory.apply(identifier);
+        created.expiresAtMs = now + idleExpiryMs;
+        entry = map.putIfAbsent(identifier, created);
+        if (entry != null)
+            return entry;
+
+        // The strategy sets the real deadline right after this; look again next tick
+        wheel.schedule(created, now);
+        if (map.size() > maxEntries && maintenanceLock.tryLock()) {
+            try {
+                evictToCapacity();
+            } finally {
+                maintenanceLock.unlock();
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Acquire the lock guarding this entry's non-CAS fields and return it;
+     * the caller unlocks it in a finally block. Waits are counted as
+     * ratelimiter.store.contention{kind=lock_wait}.
+     */
+    public ReentrantLock lock(RateLimitEntry entry) {
+        ReentrantLock lock = locks[stripe(entry)];
+        if (!lock.tryLock()) {
+            lockWaits.increment();
+            lock.lock();
+        }
+        return lock;
+    }
+
+    /**
+     * lock() for several entries that must be checked and updated together
+     * (hierarchical limits). Each stripe is taken once, in index order, so
+     * two callers locking overlapping sets cannot deadlock. The caller
+     * releases them with unlockAll in a finally block.
+     */
+    public ReentrantLock[] lockAll(RateLimitEntry[] entries) {
+        int[] stripes = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            stripes[i] = stripe(entries[i]);
+        }
+        Arrays.sort(stripes);
+        ReentrantLock[] held = new ReentrantLock[entries.length];
+        int count = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (i > 0 && stripes[i] == stripes[i - 1])
+                continue;
+            ReentrantLock lock = locks[stripes[i]];
+            if (!lock.tryLock()) {
+                lockWaits.increment();
+                lock.lock();
+            }
+            held[count++] = lock;
+        }
+        return count == held.length ? held : Arrays.copyOf(held, count);
+    }
+
+    /** Release locks taken by lockAll, in reverse order. */
+    public static void unlockAll(ReentrantLock[] held) {
+        for (int i = held.length - 1; i >= 0; i--) {
+            held[i].unlock();
+        }
+    }
+
+    /** Whether any of these entries was reclaimed (check with their locks held). */
+    public static boolean anyEvicted(RateLimitEntry[] entries) {
+        for (RateLimitEntry entry : entries) {
+            if (entry.evicted)
+                return true;
+        }
+        return false;
+    }
+
+    private static int stripe(RateLimitEntry entry) {
+        int h = entry.identifier.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    /** Live entry for this identifier, or null. */
+    public RateLimitEntry get(String identifier) {
+        RateLimitEntry entry = map.get(identifier);
+        return entry == null || entry.evicted ? null : entry;
+    }
+
+    /**
+     * Record when this entry becomes reclaimable. Call under the entry lock
+     * (or before the state CAS) after every state change; idle expiry caps
+     * the deadline.
+     *
+     * @param reclaimableAtMs epoch ms at which the entry equals a fresh one
+     *                        (Long.MAX_VALUE if it never does on its own)
+     */
+    public void touch(RateLimitEntry entry, long nowMs, long reclaimableAtMs) {
+        long deadline = Math.min(reclaimableAtMs, nowMs + idleExpiryMs);
+        // Skip the store when unchanged — a rejected request leaves the hot key's line clean
+        if (entry.expiresAtMs != deadline)
+            entry.expiresAtMs = deadline;
+        markChanged(entry);
+    }
+
+    /**
+     * Start queueing changed entries for drainChanges. Entries removed by
+     * eviction or remove() are queued too, so the journal can forget them;
+     * entries that simply expire are not (they are equal to no entry).
+     */
+    public void trackChanges() {
+        if (changes == null)
+            changes = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Hand every identifier queued since the last drain to sink, clearing
+     * each entry's changed flag first: a change made while sink runs queues
+     * the entry again. The sink should look the identifier up afresh — the
+     * queued entry may have been replaced or removed since.
+     *
+     * @return identifiers drained
+     */
+    public int drainChanges(Consumer<String> sink) {
+        Queue<RateLimitEntry> queue = changes;
+        if (queue == null)
+            return 0;
+        int drained = 0;
+        RateLimitEntry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.changed = false;
+            sink.accept(entry.identifier);
+            drained++;
+        }
+        return drained;
+    }
+
+    private void markChanged(RateLimitEntry entry) {
+        Queue<RateLimitEntry> queue = changes;
+        if (queue != null && !entry.changed) {
+            entry.changed = true;
+            queue.add(entry);
+        }
+    }
+
+    /** Remove an identifier outright (e.g. admin reset back to a fresh state). */
+    public void remove(String identifier) {
+        RateLimitEntry entry = map.get(identifier);
+        if (entry != null)
+            evict(entry);
+    }
+
+    public long size() {
+        return map.size();
+    }
+
+    /** Live view of the tracked identifiers (e.g. for state handoff). */
+    public Collection<String> identifiers() {
+        return Collections.unmodifiableSet(map.keySet());
+    }
+
+    public long getExpiredEvictions() {
+        return expiredEvictions.sum();
+    }
+
+    public long getSizeEvictions() {
+        return sizeEvictions.sum();
+    }
+
+    /**
+     * Called by lock-free strategies when a state CAS loses to another
+     * thread and the update has to be recomputed.
+     */
+    public void recordCasRetry() {
+        casRetries.increment();
+    }
+
+    public long getCasRetries() {
+        return casRetries.sum();
+    }
+
+    /** lock() calls that found the entry's stripe held by another thread */
+    public long getLockWaits() {
+        return lockWaits.sum();
+    }
+
+    /**
+     * Run maintenance now on the calling thread: reclaim every entry whose
+     * deadline has passed, then enforce maxEntries.
+     */
+    public void cleanUp() {
+        maintenanceLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            wheel.advance(now, entry -> expireIfDue(entry, now));
+            evictToCapacity();
+            nextMaintenanceAtMs = wheel.nextTickAtMs();
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * Publish live-entry, eviction and contention meters tagged with the
+     * owning algorithm: CAS retries for the lock-free strategies, lock waits
+     * for the ones that take the entry lock.
+     */
+    public void bindTo(MeterRegistry registry, String algorithm) {
+        Gauge.builder("ratelimiter.store.entries", this, EntryStore::size)
+                .description("Identifiers currently tracked in memory")
+                .tag("algorithm", algorithm)
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.evictions", this, EntryStore::getExpiredEvictions)
+                .description("Entries reclaimed from the in-memory store")
+                .tag("algorithm", algorithm)
+                .tag("cause", "expired")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.evictions", this, EntryStore::getSizeEvictions)
+                .description("Entries reclaimed from the in-memory store")
+                .tag("algorithm", algorithm)
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.contention", this, EntryStore::getCasRetries)
+                .description("State updates that had to wait for or retry against another thread")
+                .tag("algorithm", algorithm)
+                .tag("kind", "cas_retry")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.contention", this, EntryStore::getLockWaits)
+                .description("State updates that had to wait for or retry against another thread")
+                .tag("algorithm", algorithm)
+                .tag("kind", "lock_wait")
+                .register(registry);
+    }
+
+    private void scheduleMaintenance() {
+        if (!maintenanceScheduled.compareAndSet(false, true))
+            return;
+        try {
+            maintenanceExecutor.execute(() -> {
+                try {
+                    cleanUp();
+                } finally {
+                    maintenanceScheduled.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            maintenanceScheduled.set(false);
+        }
+    }
+
+    private boolean expireIfDue(RateLimitEntry entry, long now) {
+        // The retirer re-checks the deadline atomically: a request may have just pushed it out
+        if (!retirer.tryRetire(entry, now, false))
+            return false;
+        map.remove(entry.identifier, entry);
+        expiredEvictions.increment();
+        return true;
+    }
+
+    private void evictToCapacity() {
+        if (map.size() <= maxEntries)
+            return;
+        wheel.evictAhead(() -> map.size() > maxEntries, entry -> {
+            if (evict(entry))
+                sizeEvictions.increment();
+        });
+    }
+
+    private boolean evict(RateLimitEntry entry) {
+        if (!retirer.tryRetire(entry, System.currentTimeMillis(), true))
+            return false;
+        map.remove(entry.identifier, entry);
+        markChanged(entry);
+        return true;
+    }
+
+    /**
+     * Retire policy for strategies that update entry.state by CAS without
+     * holding the entry lock: win a CAS to EVICTED_STATE against concurrent
+     * consumers. Expiry reads the deadline after the state, so a consume that
+     * published a later deadline makes the CAS fail.
+     */
+    public static boolean retireByStateCas(RateLimitEntry entry, long nowMs, boolean force) {
+        while (true) {
+            long state = entry.state;
+            if (state == RateLimitEntry.EVICTED_STATE)
+                return false;
+            if (!force && entry.expiresAtMs > nowMs)
+                return false;
+            if (entry.compareAndSetState(state, RateLimitEntry.EVICTED_STATE)) {
+                entry.evicted = true;
+                return true;
+            }
+        }
+    }
+
+    private boolean retireLocked(RateLimitEntry entry, long nowMs, boolean force) {
+        ReentrantLock lock = lock(entry);
+        try {
+            if (entry.evicted || (!force && entry.expiresAtMs > nowMs))
+                return false;
+            entry.evicted = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.ratelimiter.service.store;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Off-heap open-addressing table of single-long rate limit state (token
+ * bucket BucketState, GCRA TAT), keyed by a 64-bit hash of the identifier.
+ *
+ * Layout:
+ * - Split into power-of-two segments, each a preallocated direct ByteBuffer
+ *   of 24-byte slots: [keyHash | state | expiresAtMs], linear probing.
+ * - keyHash 0 marks an empty slot. Deletes shift the probe run back, so
+ *   there are no tombstones.
+ *
+ * Memory:
+ * - Sized up front for maxEntries at ≤ 75% load: about 32–48 bytes of native
+ *   memory per key, no per-key heap object, nothing for the GC to trace.
+ * - Slots past their deadline read as absent and are reused in place. A
+ *   segment at its load limit sweeps expired slots (at most once per
+ *   second); if it is still full, the nearest-deadline slot of a small
+ *   sample around the insert position is evicted.
+ *
+ * Thread Safety:
+ * - Striped locking: one ReentrantLock per segment guards every read and
+ *   write of that segment's buffer. Different keys rarely share a stripe.
+ *   Acquisitions that had to wait are counted (ratelimiter.store.contention).
+ * - Identifiers with equal 64-bit hashes share state (≈ n² / 2^65 for n keys).
+ */
+public class OffHeapStateTable {
+
+    /** get() result for an identifier with no live state */
+    public static final long ABSENT = -1L;
+
+    private static final int SLOT_BYTES = 24;
+    private static final int STATE_OFFSET = 8;
+    private static final int EXPIRES_OFFSET = 16;
+    private static final double MAX_LOAD = 0.75;
+    private static final int EVICTION_SAMPLE = 8;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    private final ByteBuffer[] segments;
+    private final ReentrantLock[] locks;
+    // Per-segment bookkeeping, guarded by the segment's lock
+    private final int[] sizes;
+    private final long[] lastSweepAtMs;
+
+    private final int segmentMask;
+    private final int slotMask;
+    private final int maxLoad;
+    private final long idleExpiryMs;
+
+    private final LongAdder liveEntries = new LongAdder();
+    private final LongAdder expiredEvictions = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+
+    public static OffHeapStateTable create(RateLimiterProperties.Store settings) {
+        return new OffHeapStateTable(settings.getMaxEntries(),
+                settings.getIdleExpirySeconds() * 1000L,
+                settings.getOffHeapSegments());
+    }
+
+    /** Table for OFF_HEAP mode, or null when state stays in the heap EntryStore. */
+    public static OffHeapStateTable createIfEnabled(RateLimiterProperties.Store settings) {
+        return settings.getMode() == RateLimiterProperties.Store.Mode.OFF_HEAP ? create(settings) : null;
+    }
+
+    public OffHeapStateTable(long maxEntries, long idleExpiryMs, int segmentCount) {
+        int segmentTotal = (int) nextPowerOfTwo(Math.max(1, segmentCount));
+        long slotsNeeded = (long) Math.ceil(maxEntries / MAX_LOAD / segmentTotal);
+        long slotsPerSegment = nextPowerOfTwo(Math.max(EVICTION_SAMPLE * 2L, slotsNeeded));
+        if (slotsPerSegment * SLOT_BYTES > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Off-heap segment over 2 GB for " + maxEntries
+                    + " entries — raise rate-limiter.store.off-heap-segments");
+
+        this.segments = new ByteBuffer[segmentTotal];
+        this.locks = new ReentrantLock[segmentTotal];
+        for (int i = 0; i < segmentTotal; i++) {
+            // Direct buffers start zeroed — every slot empty
+            segments[i] = ByteBuffer.allocateDirect((int) slotsPerSegment * SLOT_BYTES)
+                    .order(ByteOrder.nativeOrder());
+            locks[i] = new ReentrantLock();
+        }
+        this.sizes = new int[segmentTotal];
+        this.lastSweepAtMs = new long[segmentTotal];
+        this.segmentMask = segmentTotal - 1;
+        this.slotMask = (int) slotsPerSegment - 1;
+        this.maxLoad = (int) (slotsPerSegment * MAX_LOAD);
+        this.idleExpiryMs = idleExpiryMs;
+    }
+
+    /**
+     * Atomically replace this identifier's state with transition(current)
+     * and record when the new state becomes reclaimable.
+     *
+     * @param initialState  current state when the identifier has no live slot
+     * @param transition    pure function of the current state; may be
+     *                      re-applied by the caller to rebuild its decision
+     * @param reclaimableAt epoch ms at which a state equals initialState
+     *                      (Long.MAX_VALUE if never); idle expiry caps it
+     * @return the state before the transition
+     */
+    public long getAndUpdate(String identifier, long initialState, long nowMs,
+                             LongUnaryOperator transition, LongUnaryOperator reclaimableAt) {
+        long hash = hash64(identifier);
+        int segment = segmentOf(hash);
+        ReentrantLock lock = lock(segment);
+        try {
+            ByteBuffer buffer = segments[segment];
+            int slot = find(buffer, hash);
+            long current;
+            if (slot >= 0) {
+                int offset = slot * SLOT_BYTES;
+                if (buffer.getLong(offset + EXPIRES_OFFSET) <= nowMs) {
+                    // Expired in place — reuse the slot for a fresh state
+                    expiredEvictions.increment();
+                    current = initialState;
+                } else {
+                    current = buffer.getLong(offset + STATE_OFFSET);
+                }
+            } else {
+                if (sizes[segment] >= maxLoad) {
+                    makeRoom(segment, buffer, hash, nowMs);
+                    slot = find(buffer, hash);
+                }
+                slot = -slot - 1;
+                buffer.putLong(slot * SLOT_BYTES, hash);
+                sizes[segment]++;
+                liveEntries.increment();
+                current = initialState;
+            }
+
+            long next = transition.applyAsLong(current);
+            int offset = slot * SLOT_BYTES;
+            buffer.putLong(offset + STATE_OFFSET, next);
+            buffer.putLong(offset + EXPIRES_OFFSET,
+                    Math.min(reclaimableAt.applyAsLong(next), nowMs + idleExpiryMs));
+            return current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Live state for this identifier, or ABSENT. */
+    public long get(String identifier, long nowMs) {
+        long hash = hash64(identifier);
+        int segment = segmentOf(hash);
+        ReentrantLock lock = lock(segment);
+        try {
+            ByteBuffer buffer = segments[segment];
+            int slot = find(buffer, hash);
+            if (slot < 0)
+                return ABSENT;
+            int offset = slot * SLOT_BYTES;
+            if (buffer.getLong(offset + EXPIRES_OFFSET) <= nowMs)
+                return ABSENT;
+            return buffer.getLong(offset + STATE_OFFSET);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Remove an identifier outright (e.g. admin reset back to a fresh state). */
+    public void remove(String identifier) {
+        long hash = hash64(identifier);
+        int segment = segmentOf(hash);
+        ReentrantLock lock = lock(segment);
+        try {
+            int slot = find(segments[segment], hash);
+            if (slot >= 0)
+                deleteAt(segment, segments[segment], slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acquire a segment's lock. An uncontended tryLock costs the same as
+     * lock(), so only acquisitions that actually had to wait are counted.
+     */
+    private ReentrantLock lock(int segment) {
+        ReentrantLock lock = locks[segment];
+        if (!lock.tryLock()) {
+            lockWaits.increment();
+            lock.lock();
+        }
+        return lock;
+    }
+
+    /** Occupied slots, including expired ones not yet swept. */
+    public long size() {
+        return liveEntries.sum();
+    }
+
+    public long getExpiredEvictions() {
+        return expiredEvictions.sum();
+    }
+
+    public long getSizeEvictions() {
+        return sizeEvictions.sum();
+    }
+
+    /** Segment lock acquisitions that found the lock held by another thread. */
+    public long getLockWaits() {
+        return lockWaits.sum();
+    }
+
+    /** Native memory reserved for slots, independent of how many are used. */
+    public long getAllocatedBytes() {
+        return (long) segments.length * (slotMask + 1) * SLOT_BYTES;
+    }
+
+    /** Keys the table holds before it starts evicting. */
+    public long getCapacity() {
+        return (long) segments.length * maxLoad;
+    }
+
+    /**
+     * Publish the same entry/eviction/contention meters as EntryStore, plus reserved bytes.
+     */
+    public void bindTo(MeterRegistry registry, String algorithm) {
+        Gauge.builder("ratelimiter.store.entries", this, OffHeapStateTable::size)
+                .description("Identifiers currently tracked in memory")
+                .tag("algorithm", algorithm)
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.evictions", this, OffHeapStateTable::getExpiredEvictions)
+                .description("Entries reclaimed from the in-memory store")
+                .tag("algorithm", algorithm)
+                .tag("cause", "expired")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.evictions", this, OffHeapStateTable::getSizeEvictions)
+                .description("Entries reclaimed from the in-memory store")
+                .tag("algorithm", algorithm)
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.store.contention", this, OffHeapStateTable::getLockWaits)
+                .description("State updates that had to wait for or retry against another thread")
+                .tag("algorithm", algorithm)
+                .tag("kind", "lock_wait")
+                .register(registry);
+        Gauge.builder("ratelimiter.store.offheap.bytes", this, OffHeapStateTable::getAllocatedBytes)
+                .description("Native memory reserved by the off-heap state table")
+                .tag("algorithm", algorithm)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Slot holding this hash, or -(empty slot where it would go) - 1.
+     */
+    private int find(ByteBuffer buffer, long hash) {
+        int slot = (int) hash & slotMask;
+        while (true) {
+            long key = buffer.getLong(slot * SLOT_BYTES);
+            if (key == hash)
+                return slot;
+            if (key == 0)
+                return -slot - 1;
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * Segment at its load limit: drop expired slots, then if still full evict
+     * the nearest-deadline slot among those probed from the new key's home.
+     */
+    private void makeRoom(int segment, ByteBuffer buffer, long hash, long nowMs) {
+        if (nowMs - lastSweepAtMs[segment] >= SWEEP_INTERVAL_MS) {
+            lastSweepAtMs[segment] = nowMs;
+            for (int slot = 0; slot <= slotMask; ) {
+                int offset = slot * SLOT_BYTES;
+                if (buffer.getLong(offset) != 0 && buffer.getLong(offset + EXPIRES_OFFSET) <= nowMs) {
+                    deleteAt(segment, buffer, slot);
+                    expiredEvictions.increment();
+                    continue; // a later slot may have shifted into this one
+                }
+                slot++;
+            }
+        }
+        if (sizes[segment] < maxLoad)
+            return;
+
+        int victim = -1;
+        long victimExpiresAt = Long.MAX_VALUE;
+        int slot = (int) hash & slotMask;
+        for (int sampled = 0; sampled < EVICTION_SAMPLE; slot = (slot + 1) & slotMask) {
+            int offset = slot * SLOT_BYTES;
+            if (buffer.getLong(offset) == 0)
+                continue;
+            sampled++;
+            long expiresAt = buffer.getLong(offset + EXPIRES_OFFSET);
+            if (expiresAt < victimExpiresAt) {
+                victim = slot;
+                victimExpiresAt = expiresAt;
+            }
+        }
+        deleteAt(segment, buffer, victim);
+        sizeEvictions.increment();
+    }
+
+    /**
+     * Empty a slot and shift later members of its probe run back into the
+     * hole so lookups never stop early.
+     */
+    private void deleteAt(int segment, ByteBuffer buffer, int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & slotMask;
+            long key = buffer.getLong(next * SLOT_BYTES);
+            if (key == 0)
+                break;
+            int home = (int) key & slotMask;
+            // Movable if the hole lies on its probe path [home, next)
+            if (((next - home) & slotMask) >= ((next - hole) & slotMask)) {
+                copySlot(buffer, next, hole);
+                hole = next;
+            }
+        }
+        int offset = hole * SLOT_BYTES;
+        buffer.putLong(offset, 0);
+        buffer.putLong(offset + STATE_OFFSET, 0);
+        buffer.putLong(offset + EXPIRES_OFFSET, 0);
+        sizes[segment]--;
+        liveEntries.decrement();
+    }
+
+    private static void copySlot(ByteBuffer buffer, int from, int to) {
+        int src = from * SLOT_BYTES;
+        int dst = to * SLOT_BYTES;
+        buffer.putLong(dst, buffer.getLong(src));
+        buffer.putLong(dst + STATE_OFFSET, buffer.getLong(src + STATE_OFFSET));
+        buffer.putLong(dst + EXPIRES_OFFSET, buffer.getLong(src + EXPIRES_OFFSET));
+    }
+
+    private int segmentOf(long hash) {
+        // High bits pick the segment, low bits the slot within it
+        return (int) (hash >>> 40) & segmentMask;
+    }
+
+    /**
+     * 64-bit FNV-1a over the identifier's chars, finished with the murmur3
+     * fmix64 step to spread FNV's weak high bits. Never returns 0 (empty).
+     */
+    static long hash64(String identifier) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < identifier.length(); i++) {
+            h ^= identifier.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static long nextPowerOfTwo(long n) {
+        long p = Long.highestOneBit(Math.max(1, n));
+        return p == n ? p : p << 1;
+    }
+}
@@ -0,0 +1,119 @@
+package com.ratelimiter.service.store;
+
+import com.ratelimiter.model.RateLimitEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timing wheel of RateLimitEntry deadlines.
+ *
+ * Each live entry sits in exactly one slot: (deadline / tickMs) mod wheelSize.
+ * Deadlines are read lazily — strategies only bump entry.expiresAtMs, and the
+ * wheel re-checks it when the slot comes round. An entry whose deadline moved
+ * further out is simply re-slotted, so request threads never touch the wheel
+ * after the first insert and expiry never scans the whole map.
+ *
+ * advance() and evictAhead() must be called by a single thread at a time
+ * (EntryStore holds its maintenance lock); schedule() is safe from any thread.
+ */
+class TimingWheel {
+
+    private final long tickMs;
+    private final int mask;
+    private final ConcurrentLinkedQueue<RateLimitEntry>[] slots;
+
+    /** Last tick whose slot has been fully processed. */
+    private volatile long cursorTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int wheelSize, long nowMs) {
+        if (Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException("wheelSize must be a power of two: " + wheelSize);
+        this.tickMs = Math.max(1, tickMs);
+        this.mask = wheelSize - 1;
+        this.slots = (ConcurrentLinkedQueue<RateLimitEntry>[]) new ConcurrentLinkedQueue<?>[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.cursorTick = nowMs / this.tickMs;
+    }
+
+    long tickMs() {
+        return tickMs;
+    }
+
+    /** Epoch ms at which the next slot becomes due. */
+    long nextTickAtMs() {
+        return (cursorTick + 1) * tickMs;
+    }
+
+    void schedule(RateLimitEntry entry) {
+        schedule(entry, entry.expiresAtMs);
+    }
+
+    /**
+     * Slot the entry for a first look at atMs. Because deadlines are read
+     * lazily, an entry must never sit in a slot later than its deadline;
+     * after the first look, deadlines only ever move out.
+     */
+    void schedule(RateLimitEntry entry, long atMs) {
+        // Never place into an already-processed slot: it would wait a full revolution
+        long tick = Math.max(atMs / tickMs, cursorTick + 1);
+        slots[(int) (tick & mask)].add(entry);
+    }
+
+    /**
+     * Process every slot up to nowMs. Entries past their deadline are offered
+     * to expire (which returns false if the entry was refreshed concurrently);
+     * everything else is re-slotted by its current deadline.
+     */
+    void advance(long nowMs, Predicate<RateLimitEntry> expire) {
+        long nowTick = nowMs / tickMs;
+        long from = cursorTick + 1;
+        // More than one revolution behind — each slot only needs one visit
+        if (nowTick - from > mask)
+            from = nowTick - mask;
+
+        List<RateLimitEntry> survivors = new ArrayList<>();
+        for (long tick = from; tick <= nowTick; tick++) {
+            ConcurrentLinkedQueue<RateLimitEntry> slot = slots[(int) (tick & mask)];
+            RateLimitEntry entry;
+            while ((entry = slot.poll()) != null) {
+                if (entry.evicted)
+                    continue;
+                if (entry.expiresAtMs > nowMs || !expire.test(entry)) {
+                    if (!entry.evicted)
+                        survivors.add(entry);
+                }
+            }
+        }
+        cursorTick = Math.max(cursorTick, nowTick);
+        for (RateLimitEntry survivor : survivors) {
+            schedule(survivor);
+        }
+    }
+
+    /**
+     * Capacity pressure: walk slots from the cursor forward (soonest deadlines
+     * first) and force-evict entries while overCapacity holds.
+     */
+    void evictAhead(BooleanSupplier overCapacity, Consumer<RateLimitEntry> evict) {
+        for (int i = 1; i <= mask + 1; i++) {
+            ConcurrentLinkedQueue<RateLimitEntry> slot = slots[(int) ((cursorTick + i) & mask)];
+            while (overCapacity.getAsBoolean()) {
+                RateLimitEntry entry = slot.poll();
+                if (entry == null)
+                    break;
+                if (!entry.evicted)
+                    evict.accept(entry);
+            }
+            if (!overCapacity.getAsBoolean())
+                return;
+        }
+    }
+}
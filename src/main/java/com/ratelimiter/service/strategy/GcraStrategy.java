@@ -0,0 +1,368 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.cluster.PeerUsageTarget;
+import com.ratelimiter.service.persist.Snapshottable;
+import com.ratelimiter.service.store.EntryStore;
+import com.ratelimiter.service.store.OffHeapStateTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * GCRA (Generic Cell Rate Algorithm) Rate Limiting.
+ *
+ * Concept:
+ * - Each identifier stores one number: its theoretical arrival time (TAT),
+ * the moment its bucket would be full again if no more requests arrived.
+ * - Emission interval T = 1 / refillRate (or windowSeconds / maxRequests
+ * when refillRate is 0). Burst tolerance = maxRequests × T.
+ * - A request at time now is allowed if max(TAT, now) + T − now ≤ burst;
+ * allowing it moves TAT forward by T. A request costing n permits is
+ * charged n × T in the same test, so it is admitted whole or not at all.
+ * - Hierarchical checks (tryAcquireAll) advance each TAT in turn and
+ * move it back by the same cost (release) if a later level rejects.
+ * - Same burst and rate as a token bucket of capacity maxRequests refilled
+ * at refillRate, but with no refill step and no second field.
+ *
+ * Thread Safety:
+ * - EntryStore (backed by ConcurrentHashMap) for the store.
+ * - Lock-free: TAT is a single long on the entry, advanced with one CAS;
+ * a lost race recomputes and shows up in the store's contention counter.
+ * - Eviction CASes the state to RateLimitEntry.EVICTED_STATE, so a consume
+ * and a reclaim of the same entry cannot both succeed — the loser re-fetches.
+ *
+ * Memory:
+ * - With rate-limiter.store.mode=OFF_HEAP the TAT lives in an
+ * OffHeapStateTable slot instead of a RateLimitEntry (segment-locked).
+ * - Once TAT is in the past the key is equivalent to a fresh one, so TAT
+ * is the entry's deadline; EntryStore reclaims it after that (or after idle
+ * expiry, whichever comes first).
+ * - TAT is an absolute time, so a restored key (rate-limiter.persistence)
+ * ages through the downtime with no adjustment.
+ */
+@Component("gcraStrategy")
+public class GcraStrategy implements RateLimiterStrategy, PeerUsageTarget, Snapshottable {
+
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+    /** A TAT of 0 is always in the past — a full bucket */
+    private static final long FRESH_TAT = 0L;
+
+    // In-memory store: identifier → entry (bounded, idle entries reclaimed)
+    private final EntryStore store;
+    // Off-heap state table; null unless rate-limiter.store.mode is OFF_HEAP
+    private final OffHeapStateTable table;
+
+    public GcraStrategy() {
+        this(EntryStore.create(new RateLimiterProperties.Store()));
+    }
+
+    public GcraStrategy(EntryStore store) {
+        this(store, null);
+    }
+
+    public GcraStrategy(OffHeapStateTable table) {
+        this(EntryStore.create(new RateLimiterProperties.Store()), table);
+    }
+
+    private GcraStrategy(EntryStore store, OffHeapStateTable table) {
+        this.store = store;
+        this.table = table;
+        store.setRetirer(EntryStore::retireByStateCas);
+    }
+
+    @Autowired
+    public GcraStrategy(RateLimiterProperties properties, MeterRegistry meterRegistry) {
+        this(EntryStore.create(properties.getStore()), OffHeapStateTable.createIfEnabled(properties.getStore()));
+        if (table != null)
+            table.bindTo(meterRegistry, getAlgorithmName());
+        else
+            store.bindTo(meterRegistry, getAlgorithmName());
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        return tryAcquireAt(identifier, config, permits, System.currentTimeMillis());
+    }
+
+    /**
+     * tryAcquire against an explicit clock — lets tests replay arrivals.
+     */
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, long nowMs) {
+        return tryAcquireAt(identifier, config, 1, nowMs);
+    }
+
+    /** Weighted tryAcquire against an explicit clock. */
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, int permits, long nowMs) {
+        long intervalUs = emissionIntervalUs(config);
+        long burstUs = burstToleranceUs(config, intervalUs);
+        long costUs = permits * intervalUs;
+        long nowUs = nowMs * 1000L;
+
+        if (table != null) {
+            long tat = table.getAndUpdate(identifier, FRESH_TAT, nowMs,
+                    current -> advance(current, nowUs, costUs, burstUs),
+                    GcraStrategy::ceilMs);
+            return decide(tat, advance(tat, nowUs, costUs, burstUs), nowUs, intervalUs, costUs, burstUs, config);
+        }
+
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, FRESH_TAT));
+        while (true) {
+            long tat = entry.state;
+            if (tat == RateLimitEntry.EVICTED_STATE) {
+                // Reclaimed between lookup and update — fetch a fresh entry
+                entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, FRESH_TAT));
+                continue;
+            }
+
+            long newTat = advance(tat, nowUs, costUs, burstUs);
+            // Deadline first: an evictor that sees the new TAT also sees the new deadline
+            store.touch(entry, nowMs, ceilMs(newTat));
+            if (newTat != tat && !entry.compareAndSetState(tat, newTat)) {
+                store.recordCasRetry();
+                continue; // Lost the race — re-read and recompute
+            }
+
+            return decide(tat, newTat, nowUs, intervalUs, costUs, burstUs, config);
+        }
+    }
+
+    /**
+     * Requests admitted by cluster peers push TAT forward too.
+     */
+    @Override
+    public void applyPeerUsage(String identifier, RateLimitConfig config, long permits) {
+        long nowMs = System.currentTimeMillis();
+        long intervalUs = emissionIntervalUs(config);
+        long burstUs = burstToleranceUs(config, intervalUs);
+        long nowUs = nowMs * 1000L;
+
+        if (table != null) {
+            table.getAndUpdate(identifier, FRESH_TAT, nowMs,
+                    current -> charge(current, nowUs, permits, intervalUs, burstUs),
+                    GcraStrategy::ceilMs);
+            return;
+        }
+
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, FRESH_TAT));
+        while (true) {
+            long tat = entry.state;
+            if (tat == RateLimitEntry.EVICTED_STATE) {
+                entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, FRESH_TAT));
+                continue;
+            }
+            long newTat = charge(tat, nowUs, permits, intervalUs, burstUs);
+            store.touch(entry, nowMs, ceilMs(newTat));
+            if (newTat == tat || entry.compareAndSetState(tat, newTat))
+                return;
+        }
+    }
+
+    /**
+     * A request that a later level rejected is taken back off the TAT. A TAT
+     * in the past is a full bucket either way, so there is no floor to keep.
+     */
+    @Override
+    public void release(String identifier, RateLimitConfig config, int permits) {
+        long nowMs = System.currentTimeMillis();
+        long costUs = permits * emissionIntervalUs(config);
+        if (table != null) {
+            table.getAndUpdate(identifier, FRESH_TAT, nowMs, current -> Math.max(FRESH_TAT, current - costUs),
+                    GcraStrategy::ceilMs);
+            return;
+        }
+
+        RateLimitEntry entry = store.get(identifier);
+        while (entry != null) {
+            long tat = entry.state;
+            if (tat == RateLimitEntry.EVICTED_STATE)
+                return; // Reclaimed as full — nothing to give back
+            long newTat = Math.max(FRESH_TAT, tat - costUs);
+            store.touch(entry, nowMs, ceilMs(newTat));
+            if (newTat == tat || entry.compareAndSetState(tat, newTat))
+                return;
+            store.recordCasRetry();
+        }
+    }
+
+    @Override
+    public Collection<String> identifiers() {
+        return table != null ? Collections.emptyList() : store.identifiers();
+    }
+
+    @Override
+    public long[] exportState(String identifier) {
+        long tat = currentTat(identifier, System.currentTimeMillis());
+        return tat == RateLimitEntry.EVICTED_STATE ? null : new long[]{tat};
+    }
+
+    /**
+     * The later TAT is the one with less burst left.
+     */
+    @Override
+    public void importState(String identifier, RateLimitConfig config, long[] state) {
+        long nowMs = System.currentTimeMillis();
+        long incoming = state[0];
+        if (table != null) {
+            table.getAndUpdate(identifier, incoming, nowMs, current -> Math.max(current, incoming),
+                    GcraStrategy::ceilMs);
+            return;
+        }
+
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, FRESH_TAT));
+        while (true) {
+            long tat = entry.state;
+            if (tat == RateLimitEntry.EVICTED_STATE) {
+                entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, FRESH_TAT));
+                continue;
+            }
+            long newTat = Math.max(tat, incoming);
+            store.touch(entry, nowMs, ceilMs(newTat));
+            if (newTat == tat || entry.compareAndSetState(tat, newTat))
+                return;
+        }
+    }
+
+    /**
+     * Put the saved TAT back as it was. Heap store only — OFF_HEAP cannot
+     * list its identifiers, so there is never anything to restore.
+     */
+    @Override
+    public void restoreState(String identifier, long[] state, long expiresAtMs) {
+        if (table != null)
+            return;
+        long saved = state[0];
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, saved));
+        while (true) {
+            long tat = entry.state;
+            if (tat == RateLimitEntry.EVICTED_STATE) {
+                entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, saved));
+                continue;
+            }
+            store.touch(entry, System.currentTimeMillis(), expiresAtMs);
+            if (tat == saved || entry.compareAndSetState(tat, saved))
+                return;
+        }
+    }
+
+    /**
+     * TAT after permits unconditional requests, capped at the burst limit
+     * (an exhausted key stays exhausted; usage beyond that is not carried).
+     */
+    private static long charge(long tat, long nowUs, long permits, long intervalUs, long burstUs) {
+        long charged = Math.max(tat, nowUs) + Math.min(permits, burstUs / intervalUs + 1) * intervalUs;
+        return Math.max(tat, Math.min(charged, nowUs + burstUs));
+    }
+
+    /**
+     * TAT after a request at nowUs costing costUs (permits × interval): that
+     * much later if it stays within the burst tolerance, otherwise unchanged
+     * (rejected).
+     */
+    private static long advance(long tat, long nowUs, long costUs, long burstUs) {
+        long newTat = Math.max(tat, nowUs) + costUs;
+        return newTat - nowUs > burstUs ? tat : newTat;
+    }
+
+    private static RateLimitDecision decide(long tat, long newTat, long nowUs, long intervalUs, long costUs,
+                                            long burstUs, RateLimitConfig config) {
+        if (newTat != tat) {
+            return RateLimitDecision.allowed(config.getMaxRequests(),
+                    remaining(newTat, nowUs, intervalUs, burstUs),
+                    newTat / MICROS_PER_SECOND); // ✅ Allowed
+        }
+        // A cost above the burst never fits; report when the bucket is full again
+        long retryAfterUs = Math.max(tat, nowUs) + Math.min(costUs, burstUs) - burstUs - nowUs;
+        return RateLimitDecision.rejected(config.getMaxRequests(), tat / MICROS_PER_SECOND,
+                (retryAfterUs + MICROS_PER_SECOND - 1) / MICROS_PER_SECOND); // ❌ Rejected — over rate
+    }
+
+    /**
+     * Microseconds between requests at the sustained rate.
+     */
+    private static long emissionIntervalUs(RateLimitConfig config) {
+        if (config.getRefillRate() > 0)
+            return Math.max(1, MICROS_PER_SECOND / config.getRefillRate());
+        // No refill rate configured: spread maxRequests evenly over the window
+        return Math.max(1, config.getWindowSeconds() * MICROS_PER_SECOND / Math.max(1, config.getMaxRequests()));
+    }
+
+    /**
+     * How far ahead of now TAT may run — maxRequests intervals (the bucket capacity).
+     */
+    private static long burstToleranceUs(RateLimitConfig config, long intervalUs) {
+        return Math.max(0, config.getMaxRequests()) * intervalUs;
+    }
+
+    /**
+     * Requests that could still be admitted right now: free intervals in the burst tolerance.
+     */
+    private static long remaining(long tat, long nowUs, long intervalUs, long burstUs) {
+        long free = nowUs + burstUs - Math.max(tat, nowUs);
+        return Math.max(0, free / intervalUs);
+    }
+
+    private static long ceilMs(long us) {
+        return (us + 999) / 1000;
+    }
+
+    @Override
+    public RateLimitEntry getEntry(String identifier) {
+        return store.get(identifier);
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitConfig config) {
+        // A past TAT is the same as no entry — the next request starts fresh
+        if (table != null)
+            table.remove(identifier);
+        else
+            store.remove(identifier);
+    }
+
+    @Override
+    public long getRemainingRequests(String identifier, RateLimitConfig config) {
+        long now = System.currentTimeMillis();
+        long tat = currentTat(identifier, now);
+        if (tat == RateLimitEntry.EVICTED_STATE)
+            return config.getMaxRequests();
+        long intervalUs = emissionIntervalUs(config);
+        return remaining(tat, now * 1000L, intervalUs, burstToleranceUs(config, intervalUs));
+    }
+
+    @Override
+    public long getResetTimeEpochSeconds(String identifier, RateLimitConfig config) {
+        long now = System.currentTimeMillis();
+        long tat = currentTat(identifier, now);
+        if (tat == RateLimitEntry.EVICTED_STATE)
+            return now / 1000 + config.getWindowSeconds();
+        return Math.max(tat / MICROS_PER_SECOND, now / 1000);
+    }
+
+    /**
+     * Snapshot of the TAT, or EVICTED_STATE if there is none.
+     */
+    private long currentTat(String identifier, long now) {
+        if (table != null) {
+            long tat = table.get(identifier, now);
+            return tat == OffHeapStateTable.ABSENT ? RateLimitEntry.EVICTED_STATE : tat;
+        }
+        RateLimitEntry entry = store.get(identifier);
+        return entry == null ? RateLimitEntry.EVICTED_STATE : entry.state;
+    }
+
+    public EntryStore getStore() {
+        return store;
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "GCRA";
+    }
+}
@@ -1,17 +1,87 @@
 package com.ratelimiter.service.strategy;
 
+import com.ratelimiter.model.LimitKey;
 import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.model.RateLimitEntry;
 
+import java.util.List;
+
 /**
  * Strategy interface for rate limiting algorithms.
- * Implementations: TokenBucketStrategy, SlidingWindowStrategy.
+ * Implementations: GcraStrategy, TokenBucketStrategy, SlidingWindowStrategy,
+ * SlidingWindowCounterStrategy and the Redis-backed RedisTokenBucketStrategy
+ * and RedisSlidingWindowStrategy.
  *
  * Using the Strategy Pattern allows swapping algorithms at runtime
  * via configuration without changing the calling code.
  */
 public interface RateLimiterStrategy {
 
+    /**
+     * Try to consume one request for this identifier and report the outcome.
+     * Check, consume and the remaining/reset snapshot are one atomic step: a
+     * single CAS (GCRA, token bucket), one hold of the entry lock (sliding
+     * window, sliding window counter) or one Redis script.
+     *
+     * @param identifier userId, IP address, or API key
+     * @param config     rate limit configuration for this identifier
+     * @return decision describing the state after consumption
+     */
+    default RateLimitDecision tryAcquire(String identifier, RateLimitConfig config) {
+        return tryAcquire(identifier, config, 1);
+    }
+
+    /**
+     * Try to consume permits units of capacity for one weighted request
+     * (an expensive call costs more than a cheap one). All or nothing: either
+     * every permit is taken or none is, in the same atomic step as a single
+     * permit. A request costing more than the limit is always rejected.
+     *
+     * @param identifier userId, IP address, or API key
+     * @param config     rate limit configuration for this identifier
+     * @param permits    cost of the request, at least 1
+     * @return decision describing the state after consumption
+     */
+    RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits);
+
+    /**
+     * Take permits from every key or from none: one request checked against
+     * hierarchical limits (user, API key, IP, global), keys in order. Returns
+     * the most restrictive decision (RateLimitDecision.mostRestrictive).
+     *
+     * The default is a CAS sequence: each key in turn, and if one rejects,
+     * the keys before it get their permits back through release(). A
+     * concurrent request may briefly see those permits taken. Lock-based
+     * strategies instead lock every key first and consume only once all of
+     * them fit; the Redis ones check every key in one script.
+     *
+     * @param keys    distinct identifiers with their configs, at least one
+     * @param permits cost of the request, taken from each key
+     * @return decision of the most restrictive key
+     */
+    default RateLimitDecision tryAcquireAll(List<LimitKey> keys, int permits) {
+        RateLimitDecision decision = null;
+        for (int i = 0; i < keys.size(); i++) {
+            LimitKey key = keys.get(i);
+            RateLimitDecision level = tryAcquire(key.getIdentifier(), key.getConfig(), permits);
+            if (!level.isAllowed()) {
+                for (int j = i - 1; j >= 0; j--) {
+                    release(keys.get(j).getIdentifier(), keys.get(j).getConfig(), permits);
+                }
+                return level; // ❌ Rejected — no key keeps the permits
+            }
+            decision = RateLimitDecision.mostRestrictive(decision, level);
+        }
+        return decision;
+    }
+
+    /**
+     * Give back permits that a successful tryAcquire took (tryAcquireAll
+     * rolling back after a later key rejected). Never beyond a full limit.
+     */
+    void release(String identifier, RateLimitConfig config, int permits);
+
     /**
      * Check if the request from this identifier is allowed.
      * If allowed, the counter/token is consumed atomically.
@@ -20,11 +90,20 @@ public interface RateLimiterStrategy {
      * @param config     rate limit configuration for this identifier
      * @return true if request is allowed, false if rate limit exceeded
      */
-    boolean isAllowed(String identifier, RateLimitConfig config);
+    default boolean isAllowed(String identifier, RateLimitConfig config) {
+        return tryAcquire(identifier, config).isAllowed();
+    }
+
+    /**
+     * isAllowed for a request costing permits (see tryAcquire).
+     */
+    default boolean isAllowed(String identifier, RateLimitConfig config, int permits) {
+        return tryAcquire(identifier, config, permits).isAllowed();
+    }
 
     /**
      * Get the current in-memory state for an identifier.
-     * Returns null if no entry exists yet.
+     * Returns null if no entry exists yet, or if state is kept off-heap.
      */
     RateLimitEntry getEntry(String identifier);
 
@@ -0,0 +1,212 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One rate-limit Lua script for the Redis strategies.
+ *
+ * The script is SCRIPT LOADed up front so the first request already goes
+ * out as EVALSHA; Spring's script executor falls back to EVAL if the server
+ * has lost it (NOSCRIPT after a restart or SCRIPT FLUSH).
+ *
+ * Check scripts reply {allowed (0/1), remaining, reset at (epoch ms), retry
+ * after (ms)}, which maps straight onto a RateLimitDecision.
+ */
+final class RedisRateLimitScript {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisRateLimitScript.class);
+
+    private final StringRedisTemplate redis;
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> script;
+    private final boolean failOpen;
+
+    RedisRateLimitScript(StringRedisTemplate redis, String classpathLocation, boolean failOpen) {
+        this.redis = redis;
+        this.failOpen = failOpen;
+        this.script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(classpathLocation));
+        script.setResultType(List.class);
+        preload();
+    }
+
+    /**
+     * SCRIPT LOAD the body. A failure only costs one EVAL on first use.
+     */
+    void preload() {
+        try {
+            String sha = redis.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                    .scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            log.info("Preloaded rate limit script {} as {}", script.getSha1(), sha);
+        } catch (DataAccessException e) {
+            log.warn("Could not preload rate limit script {}: {}", script.getSha1(), e.getMessage());
+        }
+    }
+
+    /**
+     * Run the script against one key. When Redis is unreachable the request
+     * is allowed (fail-open) unless configured otherwise.
+     */
+    RateLimitDecision execute(String key, RateLimitConfig config, String... args) {
+        return toDecision(call(key, args), config);
+    }
+
+    /**
+     * execute() without blocking: the script goes out on the reactive
+     * connection (EVALSHA, EVAL on NOSCRIPT) and the decision arrives as a
+     * Mono. Same fail-open rule.
+     */
+    Mono<RateLimitDecision> executeReactive(ReactiveStringRedisTemplate reactiveRedis, String key,
+                                            RateLimitConfig config, String... args) {
+        return reactiveRedis.execute(script, Collections.singletonList(key), Arrays.asList((Object[]) args))
+                .next()
+                .map(reply -> toDecision(reply, config))
+                .onErrorResume(DataAccessException.class, e -> {
+                    if (!failOpen)
+                        return Mono.error(e);
+                    log.warn("Redis unavailable, allowing request for {}: {}", key, e.getMessage());
+                    return Mono.just(toDecision(null, config));
+                });
+    }
+
+    /** A {allowed, remaining, reset at, retry after} reply; null = failing open */
+    static RateLimitDecision toDecision(List<?> reply, RateLimitConfig config) {
+        if (reply == null) {
+            return RateLimitDecision.allowed(config.getMaxRequests(), config.getMaxRequests(),
+                    System.currentTimeMillis() / 1000 + config.getWindowSeconds());
+        }
+
+        long allowed = ((Number) reply.get(0)).longValue();
+        long remaining = ((Number) reply.get(1)).longValue();
+        long resetAtMs = ((Number) reply.get(2)).longValue();
+        long retryAfterMs = ((Number) reply.get(3)).longValue();
+        if (allowed == 1)
+            return RateLimitDecision.allowed(config.getMaxRequests(), remaining, resetAtMs / 1000); // ✅ Allowed
+        return RateLimitDecision.rejected(config.getMaxRequests(), resetAtMs / 1000,
+                (retryAfterMs + 999) / 1000); // ❌ Rejected
+    }
+
+    /**
+     * Raw script reply, or null if Redis is unreachable and failing open.
+     */
+    List<?> call(String key, String... args) {
+        try {
+            return redis.execute(script, Collections.singletonList(key), (Object[]) args);
+        } catch (DataAccessException e) {
+            if (!failOpen)
+                throw e;
+            log.warn("Redis unavailable, allowing request for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Run the script once per key in a single pipeline (one round trip).
+     * Replies are aligned with keys; null if Redis is unreachable and failing
+     * open. A NOSCRIPT reply reloads the script and retries once.
+     */
+    List<List<?>> callPipelined(List<String> keys, List<String[]> args) {
+        try {
+            return pipeline(keys, args);
+        } catch (DataAccessException e) {
+            if (isNoScript(e)) {
+                preload();
+                try {
+                    return pipeline(keys, args);
+                } catch (DataAccessException retry) {
+                    e = retry;
+                }
+            }
+            if (!failOpen)
+                throw e;
+            log.warn("Redis unavailable, allowing batch of {} keys: {}", keys.size(), e.getMessage());
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<?>> pipeline(List<String> keys, List<String[]> args) {
+        List<Object> replies = redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                connection.scriptingCommands().evalSha(script.getSha1(), ReturnType.MULTI, 1,
+                        keysAndArgs(keys.get(i), args.get(i)));
+            }
+            return null;
+        });
+        List<List<?>> result = new ArrayList<>(replies.size());
+        for (Object reply : replies) {
+            result.add((List<?>) reply);
+        }
+        return result;
+    }
+
+    private static byte[][] keysAndArgs(String key, String[] args) {
+        byte[][] bytes = new byte[args.length + 1][];
+        bytes[0] = key.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < args.length; i++) {
+            bytes[i + 1] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT"))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Expand a {granted, remaining, reset at, retry after} reply for count
+     * merged callers of permits each: the first granted are allowed, the
+     * rest rejected.
+     */
+    static List<RateLimitDecision> toDecisions(List<?> reply, RateLimitConfig config, int count, int permits) {
+        List<RateLimitDecision> decisions = new ArrayList<>(count);
+        if (reply == null) {
+            for (int i = 0; i < count; i++) {
+                decisions.add(RateLimitDecision.allowed(config.getMaxRequests(), config.getMaxRequests(),
+                        System.currentTimeMillis() / 1000 + config.getWindowSeconds()));
+            }
+            return decisions;
+        }
+
+        long granted = ((Number) reply.get(0)).longValue();
+        long remaining = ((Number) reply.get(1)).longValue();
+        long resetAtMs = ((Number) reply.get(2)).longValue();
+        long retryAfterMs = ((Number) reply.get(3)).longValue();
+        for (int i = 0; i < count; i++) {
+            if (i < granted) {
+                // Each earlier caller saw the permits the later ones took
+                decisions.add(RateLimitDecision.allowed(config.getMaxRequests(),
+                        remaining + (granted - 1 - i) * permits, resetAtMs / 1000)); // ✅ Allowed
+            } else {
+                decisions.add(RateLimitDecision.rejected(config.getMaxRequests(), resetAtMs / 1000,
+                        (retryAfterMs + 999) / 1000)); // ❌ Rejected
+            }
+        }
+        return decisions;
+    }
+
+    String getSha1() {
+        return script.getSha1();
+    }
+}
@@ -0,0 +1,269 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.batch.BatchDecisionSource;
+import com.ratelimiter.service.batch.BatchedCheck;
+import com.ratelimiter.service.reactive.ReactiveDecisionSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distributed Sliding Window (Log) — state shared by every replica in Redis.
+ *
+ * Concept:
+ * - Same exact rolling window as SlidingWindowStrategy, with the log kept
+ * as a sorted set of request timestamps per identifier.
+ * - Prune + count + record run in one Lua script (redis/sliding_window.lua),
+ * so N replicas enforce one limit instead of N× the limit. A weighted
+ * request records one member per permit, all or none.
+ *
+ * Thread Safety:
+ * - Redis runs each script atomically; no client-side locking.
+ * - Timestamps come from the Redis server clock; members carry a per-replica
+ * id + sequence so requests in the same millisecond never collide.
+ *
+ * Memory:
+ * - Up to maxRequests members per key; the key's TTL is one window, renewed
+ * on each request, so idle identifiers vanish on their own.
+ *
+ * Hierarchical checks (tryAcquireAll) run the script on every level's key
+ * in one pipelined round trip. If a level rejects, a second pipeline
+ * removes the members the request recorded at the other levels. Each key
+ * keeps its own hash tag, so this works on Redis Cluster.
+ *
+ * With rate-limiter.batch.enabled concurrent checks share one pipelined
+ * call. Also a ReactiveDecisionSource: the WebFlux path runs the same
+ * script on the reactive connection.
+ *
+ * Only created when rate-limiter.algorithm=REDIS_SLIDING_WINDOW, so the
+ * other profiles never touch Redis.
+ */
+@Component("redisSlidingWindowStrategy")
+@ConditionalOnProperty(prefix = "rate-limiter", name = "algorithm", havingValue = "REDIS_SLIDING_WINDOW")
+public class RedisSlidingWindowStrategy implements RateLimiterStrategy, BatchDecisionSource, ReactiveDecisionSource {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSlidingWindowStrategy.class);
+
+    static final String SCRIPT_LOCATION = "redis/sliding_window.lua";
+
+    private final StringRedisTemplate redis;
+    private final ReactiveStringRedisTemplate reactiveRedis; // null = reactive calls offloaded
+    private final RedisRateLimitScript script;
+    private final String keyPrefix;
+
+    // Unique sorted-set members: replica id + local sequence
+    private final String replicaId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RedisSlidingWindowStrategy(StringRedisTemplate redis, RateLimiterProperties properties) {
+        this(redis, (ReactiveStringRedisTemplate) null, properties);
+    }
+
+    @Autowired
+    public RedisSlidingWindowStrategy(StringRedisTemplate redis, ObjectProvider<ReactiveStringRedisTemplate> reactiveRedis,
+                                      RateLimiterProperties properties) {
+        this(redis, reactiveRedis.getIfAvailable(), properties);
+    }
+
+    public RedisSlidingWindowStrategy(StringRedisTemplate redis, ReactiveStringRedisTemplate reactiveRedis,
+                                      RateLimiterProperties properties) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.keyPrefix = properties.getRedis().getKeyPrefix() + "sw:";
+        this.script = new RedisRateLimitScript(redis, SCRIPT_LOCATION, properties.getRedis().isFailOpen());
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        return script.execute(key(identifier), config, scriptArgs(config, permits));
+    }
+
+    /**
+     * The same script over the reactive connection; without one, the
+     * blocking call moves to boundedElastic so the caller's thread never waits.
+     */
+    @Override
+    public Mono<RateLimitDecision> tryAcquireReactive(String identifier, RateLimitConfig config, int permits) {
+        if (reactiveRedis == null) {
+            return Mono.fromCallable(() -> tryAcquire(identifier, config, permits))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return Mono.defer(() -> script.executeReactive(reactiveRedis, key(identifier), config,
+                scriptArgs(config, permits)));
+    }
+
+    @Override
+    public RateLimitDecision tryAcquireAll(List<LimitKey> keys, int permits) {
+        String member = replicaId + ":" + sequence.incrementAndGet(); // Same id at every level
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        List<String[]> args = new ArrayList<>(keys.size());
+        for (LimitKey key : keys) {
+            redisKeys.add(key(key.getIdentifier()));
+            args.add(scriptArgs(key.getConfig(), member, permits));
+        }
+        List<List<?>> replies = script.callPipelined(redisKeys, args);
+
+        RateLimitDecision decision = null;
+        List<byte[]> admitted = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            RateLimitDecision level = RedisRateLimitScript.toDecision(replies == null ? null : replies.get(i),
+                    keys.get(i).getConfig());
+            if (level.isAllowed())
+                admitted.add(redisKeys.get(i).getBytes(StandardCharsets.UTF_8));
+            decision = RateLimitDecision.mostRestrictive(decision, level);
+        }
+        if (!decision.isAllowed() && !admitted.isEmpty())
+            removeMembers(admitted, recordedMembers(member, permits)); // ❌ Rejected somewhere — no level keeps it
+        return decision;
+    }
+
+    /**
+     * Drop the newest permits members. A concurrent request's members may go
+     * instead of the released ones; the count, which is all the limit sees,
+     * is the same.
+     */
+    @Override
+    public void release(String identifier, RateLimitConfig config, int permits) {
+        try {
+            redis.opsForZSet().popMax(key(identifier), permits);
+        } catch (DataAccessException e) {
+            log.warn("Could not release {} permits for {}: {}", permits, identifier, e.getMessage());
+        }
+    }
+
+    /** Members redis/sliding_window.lua records for one request */
+    private static byte[][] recordedMembers(String member, int permits) {
+        if (permits == 1)
+            return new byte[][]{member.getBytes(StandardCharsets.UTF_8)};
+        byte[][] members = new byte[permits][];
+        for (int i = 0; i < permits; i++) {
+            members[i] = (member + ":" + (i + 1)).getBytes(StandardCharsets.UTF_8);
+        }
+        return members;
+    }
+
+    /** ZREM the members from every key in one pipeline; on failure they expire with the window. */
+    private void removeMembers(List<byte[]> keys, byte[][] members) {
+        try {
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] key : keys) {
+                    connection.zSetCommands().zRem(key, members);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Could not roll back a rejected request on {} keys: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    /** One request of permits; a fresh member id per call */
+    private String[] scriptArgs(RateLimitConfig config, int permits) {
+        return scriptArgs(config, replicaId + ":" + sequence.incrementAndGet(), permits);
+    }
+
+    private static String[] scriptArgs(RateLimitConfig config, String member, int permits) {
+        return new String[]{
+                String.valueOf(config.getMaxRequests()),
+                String.valueOf(config.getWindowSeconds() * 1000L),
+                member,
+                "1",
+                String.valueOf(permits)};
+    }
+
+    /**
+     * One pipelined round trip for the whole batch; merged callers of one
+     * identifier (and cost) are recorded by a single script call.
+     */
+    @Override
+    public List<List<RateLimitDecision>> tryAcquireBatch(List<BatchedCheck> checks) {
+        List<String> keys = new ArrayList<>(checks.size());
+        List<String[]> args = new ArrayList<>(checks.size());
+        for (BatchedCheck check : checks) {
+            keys.add(key(check.getIdentifier()));
+            args.add(new String[]{
+                    String.valueOf(check.getConfig().getMaxRequests()),
+                    String.valueOf(check.getConfig().getWindowSeconds() * 1000L),
+                    replicaId + ":" + sequence.incrementAndGet(),
+                    String.valueOf(check.getCount()),
+                    String.valueOf(check.getPermits())});
+        }
+        List<List<?>> replies = script.callPipelined(keys, args);
+
+        List<List<RateLimitDecision>> decisions = new ArrayList<>(checks.size());
+        for (int i = 0; i < checks.size(); i++) {
+            BatchedCheck check = checks.get(i);
+            decisions.add(RedisRateLimitScript.toDecisions(replies == null ? null : replies.get(i),
+                    check.getConfig(), check.getCount(), check.getPermits()));
+        }
+        return decisions;
+    }
+
+    private String key(String identifier) {
+        // Braces: the identifier is the cluster hash tag
+        return keyPrefix + "{" + identifier + "}";
+    }
+
+    @Override
+    public RateLimitEntry getEntry(String identifier) {
+        return null; // State lives in Redis
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitConfig config) {
+        redis.delete(key(identifier));
+    }
+
+    /**
+     * Read-only count for the status endpoint, windowed on the local clock
+     * (the authoritative check uses the Redis clock).
+     */
+    @Override
+    public long getRemainingRequests(String identifier, RateLimitConfig config) {
+        long windowStart = System.currentTimeMillis() - config.getWindowSeconds() * 1000L;
+        Long count = redis.opsForZSet().count(key(identifier), windowStart, Double.POSITIVE_INFINITY);
+        return Math.max(0, config.getMaxRequests() - (count == null ? 0 : count));
+    }
+
+    @Override
+    public long getResetTimeEpochSeconds(String identifier, RateLimitConfig config) {
+        long windowMs = config.getWindowSeconds() * 1000L;
+        long now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> oldest =
+                redis.opsForZSet().rangeByScoreWithScores(key(identifier), now - windowMs,
+                        Double.POSITIVE_INFINITY, 0, 1);
+        if (oldest == null || oldest.isEmpty())
+            return (now + windowMs) / 1000;
+        return (oldest.iterator().next().getScore().longValue() + windowMs) / 1000;
+    }
+
+    String getScriptSha1() {
+        return script.getSha1();
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "REDIS_SLIDING_WINDOW";
+    }
+}
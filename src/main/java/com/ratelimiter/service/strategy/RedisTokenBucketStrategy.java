@@ -0,0 +1,260 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.batch.BatchDecisionSource;
+import com.ratelimiter.service.batch.BatchedCheck;
+import com.ratelimiter.service.lease.PermitGrant;
+import com.ratelimiter.service.lease.PermitPool;
+import com.ratelimiter.service.reactive.ReactiveDecisionSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distributed Token Bucket — state shared by every replica in Redis.
+ *
+ * Concept:
+ * - Same bucket as TokenBucketStrategy (capacity maxRequests, refillRate
+ * tokens/second), stored as a hash {tokens, ts} per identifier.
+ * - Refill + consume run in one Lua script (redis/token_bucket.lua), so N
+ * replicas enforce one limit instead of N× the limit. A weighted request
+ * takes its whole cost in the same script call, or nothing.
+ *
+ * Thread Safety:
+ * - Redis runs each script atomically; no client-side locking.
+ * - The script reads the Redis server clock, so replica clock skew does not
+ * change refill.
+ *
+ * Memory:
+ * - The key's TTL is the time until the bucket is full again (a missing key
+ * is a full bucket). With refillRate 0 the bucket lives one window from its
+ * first request.
+ *
+ * Hierarchical checks (tryAcquireAll) run the script on every level's key
+ * in one pipelined round trip. If a level rejects, a second pipeline gives
+ * the other levels their tokens back (the lease script, returning without
+ * requesting). Each key keeps its own hash tag, so this works on Redis
+ * Cluster, where one multi-key script could not span the levels' slots.
+ *
+ * Also a PermitPool: with rate-limiter.lease.enabled each node leases
+ * batches from the same bucket and decides most requests locally. With
+ * rate-limiter.batch.enabled concurrent checks share one pipelined call.
+ * Also a ReactiveDecisionSource: the WebFlux path runs the same script on
+ * the reactive connection.
+ *
+ * Only created when rate-limiter.algorithm=REDIS_TOKEN_BUCKET, so the other
+ * profiles never touch Redis.
+ */
+@Component("redisTokenBucketStrategy")
+@ConditionalOnProperty(prefix = "rate-limiter", name = "algorithm", havingValue = "REDIS_TOKEN_BUCKET")
+public class RedisTokenBucketStrategy implements RateLimiterStrategy, BatchDecisionSource, PermitPool,
+        ReactiveDecisionSource {
+
+    static final String SCRIPT_LOCATION = "redis/token_bucket.lua";
+    static final String LEASE_SCRIPT_LOCATION = "redis/token_bucket_lease.lua";
+
+    private final StringRedisTemplate redis;
+    private final ReactiveStringRedisTemplate reactiveRedis; // null = reactive calls offloaded
+    private final RedisRateLimitScript script;
+    private final RedisRateLimitScript leaseScript;
+    private final String keyPrefix;
+
+    public RedisTokenBucketStrategy(StringRedisTemplate redis, RateLimiterProperties properties) {
+        this(redis, (ReactiveStringRedisTemplate) null, properties);
+    }
+
+    @Autowired
+    public RedisTokenBucketStrategy(StringRedisTemplate redis, ObjectProvider<ReactiveStringRedisTemplate> reactiveRedis,
+                                    RateLimiterProperties properties) {
+        this(redis, reactiveRedis.getIfAvailable(), properties);
+    }
+
+    public RedisTokenBucketStrategy(StringRedisTemplate redis, ReactiveStringRedisTemplate reactiveRedis,
+                                    RateLimiterProperties properties) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.keyPrefix = properties.getRedis().getKeyPrefix() + "tb:";
+        this.script = new RedisRateLimitScript(redis, SCRIPT_LOCATION, properties.getRedis().isFailOpen());
+        this.leaseScript = new RedisRateLimitScript(redis, LEASE_SCRIPT_LOCATION, properties.getRedis().isFailOpen());
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        return script.execute(key(identifier), config, scriptArgs(config, permits));
+    }
+
+    /**
+     * The same script over the reactive connection; without one, the
+     * blocking call moves to boundedElastic so the caller's thread never waits.
+     */
+    @Override
+    public Mono<RateLimitDecision> tryAcquireReactive(String identifier, RateLimitConfig config, int permits) {
+        if (reactiveRedis == null) {
+            return Mono.fromCallable(() -> tryAcquire(identifier, config, permits))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return script.executeReactive(reactiveRedis, key(identifier), config, scriptArgs(config, permits));
+    }
+
+    @Override
+    public RateLimitDecision tryAcquireAll(List<LimitKey> keys, int permits) {
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        List<String[]> args = new ArrayList<>(keys.size());
+        for (LimitKey key : keys) {
+            redisKeys.add(key(key.getIdentifier()));
+            args.add(scriptArgs(key.getConfig(), permits));
+        }
+        List<List<?>> replies = script.callPipelined(redisKeys, args);
+
+        RateLimitDecision decision = null;
+        List<String> admitted = new ArrayList<>(keys.size());
+        List<String[]> refunds = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            RateLimitConfig config = keys.get(i).getConfig();
+            RateLimitDecision level = RedisRateLimitScript.toDecision(replies == null ? null : replies.get(i), config);
+            if (level.isAllowed()) {
+                admitted.add(redisKeys.get(i));
+                refunds.add(leaseArgs(config, permits, 0, 1));
+            }
+            decision = RateLimitDecision.mostRestrictive(decision, level);
+        }
+        if (!decision.isAllowed() && !admitted.isEmpty())
+            leaseScript.callPipelined(admitted, refunds); // ❌ Rejected somewhere — no level keeps the tokens
+        return decision;
+    }
+
+    /** Tokens a later level's rejection made unnecessary go back, up to capacity. */
+    @Override
+    public void release(String identifier, RateLimitConfig config, int permits) {
+        leaseScript.call(key(identifier), leaseArgs(config, permits, 0, 1));
+    }
+
+    private static String[] scriptArgs(RateLimitConfig config, int permits) {
+        return new String[]{
+                String.valueOf(config.getMaxRequests()),
+                String.valueOf(config.getRefillRate()),
+                String.valueOf(config.getWindowSeconds() * 1000L),
+                String.valueOf(permits)};
+    }
+
+    /**
+     * Lease a batch of permits from the same bucket (redis/token_bucket_lease.lua).
+     * Failing open grants the whole request locally.
+     */
+    @Override
+    public PermitGrant lease(String identifier, RateLimitConfig config, long returned, long requested) {
+        List<?> reply = leaseScript.call(key(identifier), leaseArgs(config, returned, requested, 1));
+        if (reply == null) {
+            return new PermitGrant(requested, config.getMaxRequests(),
+                    System.currentTimeMillis() + config.getWindowSeconds() * 1000L, 0);
+        }
+        return new PermitGrant(((Number) reply.get(0)).longValue(), ((Number) reply.get(1)).longValue(),
+                ((Number) reply.get(2)).longValue(), ((Number) reply.get(3)).longValue());
+    }
+
+    /**
+     * One pipelined round trip for the whole batch; merged callers of one
+     * identifier (and cost) take their tokens in a single lease call.
+     */
+    @Override
+    public List<List<RateLimitDecision>> tryAcquireBatch(List<BatchedCheck> checks) {
+        List<String> keys = new ArrayList<>(checks.size());
+        List<String[]> args = new ArrayList<>(checks.size());
+        for (BatchedCheck check : checks) {
+            keys.add(key(check.getIdentifier()));
+            args.add(leaseArgs(check.getConfig(), 0, check.getCount(), check.getPermits()));
+        }
+        List<List<?>> replies = leaseScript.callPipelined(keys, args);
+
+        List<List<RateLimitDecision>> decisions = new ArrayList<>(checks.size());
+        for (int i = 0; i < checks.size(); i++) {
+            BatchedCheck check = checks.get(i);
+            decisions.add(RedisRateLimitScript.toDecisions(replies == null ? null : replies.get(i),
+                    check.getConfig(), check.getCount(), check.getPermits()));
+        }
+        return decisions;
+    }
+
+    /** redis/token_bucket_lease.lua arguments: return some permits, request count grants of unit each */
+    private static String[] leaseArgs(RateLimitConfig config, long returned, long requested, int unit) {
+        return new String[]{
+                String.valueOf(config.getMaxRequests()),
+                String.valueOf(config.getRefillRate()),
+                String.valueOf(config.getWindowSeconds() * 1000L),
+                String.valueOf(returned),
+                String.valueOf(requested),
+                String.valueOf(unit)};
+    }
+
+    private String key(String identifier) {
+        // Braces: the identifier is the cluster hash tag
+        return keyPrefix + "{" + identifier + "}";
+    }
+
+    @Override
+    public RateLimitEntry getEntry(String identifier) {
+        return null; // State lives in Redis
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitConfig config) {
+        // A missing key is a full bucket
+        redis.delete(key(identifier));
+    }
+
+    /**
+     * Read-only estimate for the status endpoint, refilled against the local
+     * clock (the authoritative check uses the Redis clock).
+     */
+    @Override
+    public long getRemainingRequests(String identifier, RateLimitConfig config) {
+        long[] state = readState(identifier);
+        if (state == null)
+            return config.getMaxRequests();
+        long tokens = state[0];
+        if (config.getRefillRate() > 0) {
+            long elapsedMs = Math.max(0, System.currentTimeMillis() - state[1]);
+            tokens = Math.min(config.getMaxRequests(), tokens + elapsedMs * config.getRefillRate() / 1000L);
+        }
+        return tokens;
+    }
+
+    @Override
+    public long getResetTimeEpochSeconds(String identifier, RateLimitConfig config) {
+        long[] state = readState(identifier);
+        if (state == null || config.getRefillRate() <= 0)
+            return System.currentTimeMillis() / 1000 + config.getWindowSeconds();
+        long msToFull = (config.getMaxRequests() - state[0]) * 1000L / config.getRefillRate();
+        return (state[1] + msToFull) / 1000;
+    }
+
+    /** {tokens, ts} or null if the bucket has no key (full). */
+    private long[] readState(String identifier) {
+        List<Object> values = redis.opsForHash().multiGet(key(identifier), Arrays.asList("tokens", "ts"));
+        if (values.get(0) == null || values.get(1) == null)
+            return null;
+        return new long[]{Long.parseLong((String) values.get(0)), Long.parseLong((String) values.get(1))};
+    }
+
+    String getScriptSha1() {
+        return script.getSha1();
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "REDIS_TOKEN_BUCKET";
+    }
+}
@@ -0,0 +1,319 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.store.EntryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sliding Window Counter (approximate) Rate Limiting Algorithm.
+ *
+ * Concept:
+ * - Time is cut into fixed windows of windowSeconds, aligned to the epoch.
+ * - Keep only two counters per identifier: the previous and the current window.
+ * - Estimate the rolling count as
+ *   previous × (fraction of previous window still overlapping) + current.
+ * - If estimate + cost > limit → reject (HTTP 429); cost is 1, or the
+ * permits of a weighted request, counted whole or not at all.
+ * - O(1) memory and O(1) time per request, no per-request timestamps.
+ *
+ * Error bounds (limit N, window W, elapsed fraction f of the current window):
+ * - Exact when requests in the previous window were evenly spread.
+ * - Over-admission: if the previous window's requests were bunched at its
+ *   end, a true trailing window of length W can see up to
+ *   previous + current ≈ N + previous × f, i.e. at most 2N requests
+ *   (reached only as f → 1 after a full burst at the boundary).
+ * - Under-admission: if they were bunched at its start, they are still
+ *   weighted in after leaving the true window, so some requests are rejected
+ *   early. Never admits more than N within a single aligned window.
+ * - SlidingWindowCounterStrategyTest replays traffic against the exact
+ *   SlidingWindowStrategy to quantify this.
+ *
+ * Thread Safety:
+ * - EntryStore (backed by ConcurrentHashMap) for the store.
+ * - EntryStore.lock(entry) (a striped ReentrantLock) for atomic roll +
+ * estimate + count.
+ * - Hierarchical checks (tryAcquireAll) take every key's stripe in index
+ * order (EntryStore.lockAll) and count only once all of them fit.
+ * - Entries reclaimed while a request waits on the lock are retried.
+ *
+ * Memory:
+ * - Both counters are zero two windows after the last request, which is the
+ * same as no entry; EntryStore reclaims it after that.
+ */
+@Component("slidingWindowCounterStrategy")
+public class SlidingWindowCounterStrategy implements RateLimiterStrategy {
+
+    // In-memory store: identifier → entry (two counters; bounded, idle entries reclaimed)
+    private final EntryStore store;
+
+    public SlidingWindowCounterStrategy() {
+        this(EntryStore.create(new RateLimiterProperties.Store()));
+    }
+
+    public SlidingWindowCounterStrategy(EntryStore store) {
+        this.store = store;
+    }
+
+    @Autowired
+    public SlidingWindowCounterStrategy(RateLimiterProperties properties, MeterRegistry meterRegistry) {
+        this(EntryStore.create(properties.getStore()));
+        store.bindTo(meterRegistry, getAlgorithmName());
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        return tryAcquireAt(identifier, config, permits, System.currentTimeMillis());
+    }
+
+    /**
+     * tryAcquire at an explicit instant — lets tests replay traffic on a
+     * simulated clock.
+     */
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, long now) {
+        return tryAcquireAt(identifier, config, 1, now);
+    }
+
+    /** Weighted tryAcquire at an explicit instant. */
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, int permits, long now) {
+        while (true) {
+            RateLimitEntry entry = store.getOrCreate(
+                    identifier,
+                    id -> new RateLimitEntry(id, config.getMaxRequests()));
+
+            ReentrantLock lock = store.lock(entry);
+            try {
+                if (entry.evicted)
+                    continue; // Reclaimed between lookup and lock — fetch a fresh entry
+
+                if (fits(entry, config, permits, now))
+                    return admit(entry, config, permits, now); // ✅ Allowed
+                return rejected(entry, config, permits, now); // ❌ Rejected — estimate at limit
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Every key's entry is locked (stripes in order) and checked before any
+     * counter moves, so a limit reached at one level leaves all the others
+     * untouched.
+     */
+    @Override
+    public RateLimitDecision tryAcquireAll(List<LimitKey> keys, int permits) {
+        return tryAcquireAllAt(keys, permits, System.currentTimeMillis());
+    }
+
+    /** tryAcquireAll at an explicit instant. */
+    RateLimitDecision tryAcquireAllAt(List<LimitKey> keys, int permits, long now) {
+        RateLimitEntry[] entries = new RateLimitEntry[keys.size()];
+        while (true) {
+            for (int i = 0; i < entries.length; i++) {
+                RateLimitConfig config = keys.get(i).getConfig();
+                entries[i] = store.getOrCreate(
+                        keys.get(i).getIdentifier(),
+                        id -> new RateLimitEntry(id, config.getMaxRequests()));
+            }
+
+            ReentrantLock[] locks = store.lockAll(entries);
+            try {
+                if (EntryStore.anyEvicted(entries))
+                    continue; // Reclaimed between lookup and lock — fetch fresh entries
+
+                RateLimitDecision rejection = null;
+                for (int i = 0; i < entries.length; i++) {
+                    if (!fits(entries[i], keys.get(i).getConfig(), permits, now))
+                        rejection = RateLimitDecision.mostRestrictive(rejection,
+                                rejected(entries[i], keys.get(i).getConfig(), permits, now));
+                }
+                if (rejection != null)
+                    return rejection; // ❌ Rejected — no counter moves
+
+                RateLimitDecision decision = null;
+                for (int i = 0; i < entries.length; i++) {
+                    decision = RateLimitDecision.mostRestrictive(decision,
+                            admit(entries[i], keys.get(i).getConfig(), permits, now));
+                }
+                return decision; // ✅ Allowed at every level
+            } finally {
+                EntryStore.unlockAll(locks);
+            }
+        }
+    }
+
+    /**
+     * A request that a later level rejected is uncounted: from the current
+     * window, or from the previous one if a boundary has rolled it over.
+     */
+    @Override
+    public void release(String identifier, RateLimitConfig config, int permits) {
+        RateLimitEntry entry = store.get(identifier);
+        if (entry == null)
+            return; // Reclaimed as zero — nothing to give back
+
+        ReentrantLock lock = store.lock(entry);
+        try {
+            if (entry.evicted)
+                return;
+            long fromCurrent = Math.min(permits, entry.currentWindowCount);
+            entry.currentWindowCount -= fromCurrent;
+            entry.previousWindowCount = Math.max(0, entry.previousWindowCount - (permits - fromCurrent));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Roll the windows and test estimate + permits against the limit.
+     * Must be called with the entry lock held.
+     */
+    private boolean fits(RateLimitEntry entry, RateLimitConfig config, int permits, long now) {
+        long windowMs = config.getWindowSeconds() * 1000L;
+        rollWindows(entry, windowMs, now);
+        long weightedPrevious = weightedPrevious(entry, windowMs, now - entry.windowStartMs);
+        return weightedPrevious + entry.currentWindowCount + permits <= config.getMaxRequests();
+    }
+
+    /** Count permits in the current window. Call right after a fits() that returned true. */
+    private RateLimitDecision admit(RateLimitEntry entry, RateLimitConfig config, int permits, long now) {
+        long windowMs = config.getWindowSeconds() * 1000L;
+        long limit = config.getMaxRequests();
+        entry.currentWindowCount += permits;
+        store.touch(entry, now, reclaimableAtMs(entry, windowMs));
+        long remaining = limit - weightedPrevious(entry, windowMs, now - entry.windowStartMs)
+                - entry.currentWindowCount;
+        return RateLimitDecision.allowed(limit, remaining, reclaimableAtMs(entry, windowMs) / 1000);
+    }
+
+    /** Decision for permits that do not fit. Call right after a fits() that returned false. */
+    private RateLimitDecision rejected(RateLimitEntry entry, RateLimitConfig config, int permits, long now) {
+        long windowMs = config.getWindowSeconds() * 1000L;
+        store.touch(entry, now, reclaimableAtMs(entry, windowMs));
+        long retryAfterMs = msUntilNextSlot(entry, config.getMaxRequests(), permits, windowMs,
+                now - entry.windowStartMs);
+        return RateLimitDecision.rejected(config.getMaxRequests(), reclaimableAtMs(entry, windowMs) / 1000,
+                (retryAfterMs + 999) / 1000);
+    }
+
+    /**
+     * Shift the counters forward if one or more window boundaries have passed.
+     * Must be called with the entry lock held.
+     */
+    private void rollWindows(RateLimitEntry entry, long windowMs, long now) {
+        long currentStart = now - Math.floorMod(now, windowMs);
+        if (currentStart == entry.windowStartMs)
+            return;
+
+        if (currentStart - entry.windowStartMs == windowMs) {
+            entry.previousWindowCount = entry.currentWindowCount;
+        } else {
+            entry.previousWindowCount = 0; // More than one full window idle
+        }
+        entry.currentWindowCount = 0;
+        entry.windowStartMs = currentStart;
+    }
+
+    /**
+     * previous × (windowMs − elapsedMs) / windowMs, rounded down.
+     */
+    private long weightedPrevious(RateLimitEntry entry, long windowMs, long elapsedMs) {
+        if (entry.previousWindowCount == 0)
+            return 0;
+        return entry.previousWindowCount * (windowMs - elapsedMs) / windowMs;
+    }
+
+    /**
+     * Time until the estimate drops low enough to admit permits more. A cost
+     * above the limit never fits; that reports the end of the next window.
+     */
+    private long msUntilNextSlot(RateLimitEntry entry, long limit, int permits, long windowMs, long elapsedMs) {
+        long untilWindowEnd = windowMs - elapsedMs;
+        long room = limit - permits + 1; // The estimate must fall below this
+        if (room <= 0)
+            return untilWindowEnd + windowMs;
+
+        if (entry.currentWindowCount < room && entry.previousWindowCount > 0) {
+            // Solve previous × (W − e) / W < room − current for e
+            long budget = room - entry.currentWindowCount;
+            long overlapAllowedMs = (budget * windowMs - 1) / entry.previousWindowCount;
+            return Math.max(1, (windowMs - overlapAllowedMs) - elapsedMs);
+        }
+
+        // Current window is too full: wait for it to become "previous" and decay enough
+        long overlapAllowedMs = (room * windowMs - 1) / Math.max(1, entry.currentWindowCount);
+        return untilWindowEnd + Math.max(0, windowMs - overlapAllowedMs);
+    }
+
+    /**
+     * Both counters are zero from this instant, i.e. the entry is fresh again.
+     */
+    private long reclaimableAtMs(RateLimitEntry entry, long windowMs) {
+        return entry.currentWindowCount > 0
+                ? entry.windowStartMs + 2 * windowMs
+                : entry.windowStartMs + windowMs;
+    }
+
+    @Override
+    public RateLimitEntry getEntry(String identifier) {
+        return store.get(identifier);
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitConfig config) {
+        // Zero counters are the same as no entry — the next request starts fresh
+        store.remove(identifier);
+    }
+
+    @Override
+    public long getRemainingRequests(String identifier, RateLimitConfig config) {
+        RateLimitEntry entry = store.get(identifier);
+        if (entry == null)
+            return config.getMaxRequests();
+
+        ReentrantLock lock = store.lock(entry);
+        try {
+            long now = System.currentTimeMillis();
+            long windowMs = config.getWindowSeconds() * 1000L;
+            rollWindows(entry, windowMs, now);
+            long estimate = weightedPrevious(entry, windowMs, now - entry.windowStartMs)
+                    + entry.currentWindowCount;
+            return Math.max(0, config.getMaxRequests() - estimate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getResetTimeEpochSeconds(String identifier, RateLimitConfig config) {
+        RateLimitEntry entry = store.get(identifier);
+        if (entry == null)
+            return System.currentTimeMillis() / 1000 + config.getWindowSeconds();
+
+        ReentrantLock lock = store.lock(entry);
+        try {
+            long windowMs = config.getWindowSeconds() * 1000L;
+            rollWindows(entry, windowMs, System.currentTimeMillis());
+            return reclaimableAtMs(entry, windowMs) / 1000;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public EntryStore getStore() {
+        return store;
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "SLIDING_WINDOW_COUNTER";
+    }
+}
@@ -1,77 +1,310 @@
 package com.ratelimiter.service.strategy;
 
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
 import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.model.TimestampRing;
+import com.ratelimiter.service.cluster.PeerUsageTarget;
+import com.ratelimiter.service.persist.Snapshottable;
+import com.ratelimiter.service.store.EntryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Sliding Window Counter Rate Limiting Algorithm.
+ * Sliding Window (Log) Rate Limiting Algorithm.
  *
  * Concept:
  * - Track timestamps of all requests within a rolling time window.
  * - Window slides with time (not fixed boundaries like "top of the minute").
  * - Count requests in [now - windowSize, now].
- * - If count >= limit → reject (HTTP 429).
+ * - If count >= limit → reject (HTTP 429). A request costing n permits
+ * takes n timestamps and needs count + n <= limit.
  * - More accurate than fixed window; prevents boundary bursts.
  *
+ * Storage:
+ * - Timestamps live in a primitive TimestampRing sized up to maxRequests.
+ * - Once full, the oldest slot is the request maxRequests positions back:
+ * if it has left the window the new request overwrites it, otherwise the
+ * window is full. O(1) per check, no boxing, no per-request allocation.
+ *
  * Thread Safety:
- * - ConcurrentHashMap for the store.
- * - synchronized block on the entry for atomic prune + count + add.
+ * - EntryStore (backed by ConcurrentHashMap) for the store.
+ * - EntryStore.lock(entry) (a striped ReentrantLock) for atomic check + add;
+ * no monitor, so a virtual thread waiting on a hot key never pins its carrier.
+ * - Hierarchical checks (tryAcquireAll) take every key's stripe in index
+ * order (EntryStore.lockAll) and record only once all of them fit.
+ * - Entries reclaimed while a request waits on the lock are retried.
+ *
+ * Memory:
+ * - An entry with no timestamps in the window is the same as no entry, so each entry's
+ * deadline is newest timestamp + window; EntryStore reclaims it after that
+ * (or after idle expiry, whichever comes first).
  */
 @Component("slidingWindowStrategy")
-public class SlidingWindowStrategy implements RateLimiterStrategy {
+public class SlidingWindowStrategy implements RateLimiterStrategy, PeerUsageTarget, Snapshottable {
+
+    // In-memory store: identifier → entry (with timestamp ring; bounded, idle entries reclaimed)
+    private final EntryStore store;
+
+    public SlidingWindowStrategy() {
+        this(EntryStore.create(new RateLimiterProperties.Store()));
+    }
 
-    // In-memory store: identifier → entry (with timestamp deque)
-    private final ConcurrentHashMap<String, RateLimitEntry> store = new ConcurrentHashMap<>();
+    public SlidingWindowStrategy(EntryStore store) {
+        this.store = store;
+    }
+
+    @Autowired
+    public SlidingWindowStrategy(RateLimiterProperties properties, MeterRegistry meterRegistry) {
+        this(EntryStore.create(properties.getStore()));
+        store.bindTo(meterRegistry, getAlgorithmName());
+    }
 
     @Override
-    public boolean isAllowed(String identifier, RateLimitConfig config) {
-        RateLimitEntry entry = store.computeIfAbsent(
-                identifier,
-                id -> new RateLimitEntry(id, config.getMaxRequests()));
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        return tryAcquireAt(identifier, config, permits, System.currentTimeMillis());
+    }
 
-        synchronized (entry) {
-            long now = System.currentTimeMillis();
-            long windowStartMs = now - (config.getWindowSeconds() * 1000L);
+    /**
+     * tryAcquire at an explicit instant — lets tests replay traffic on a
+     * simulated clock.
+     */
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, long now) {
+        return tryAcquireAt(identifier, config, 1, now);
+    }
+
+    /** Weighted tryAcquire at an explicit instant. */
+    RateLimitDecision tryAcquireAt(String identifier, RateLimitConfig config, int permits, long now) {
+        while (true) {
+            RateLimitEntry entry = store.getOrCreate(
+                    identifier,
+                    id -> new RateLimitEntry(id, config.getMaxRequests()));
 
-            // Remove timestamps outside the current window
-            pruneOldTimestamps(entry, windowStartMs);
+            ReentrantLock lock = store.lock(entry);
+            try {
+                if (entry.evicted)
+                    continue; // Reclaimed between lookup and lock — fetch a fresh entry
 
-            if (entry.requestTimestamps.size() < config.getMaxRequests()) {
-                entry.requestTimestamps.addLast(now);
-                return true; // ✅ Allowed
+                long windowStartMs = now - config.getWindowSeconds() * 1000L;
+                // O(1) for one permit: compare with the slot maxRequests positions back
+                if (entry.requestTimestamps.tryAdd(now, windowStartMs, config.getMaxRequests(), permits))
+                    return admitted(entry, config, now); // ✅ Allowed
+                return rejected(entry, config, permits, now); // ❌ Rejected — window full
+            } finally {
+                lock.unlock();
             }
-            return false; // ❌ Rejected — window full
         }
     }
 
     /**
-     * Remove all timestamps older than windowStart.
-     * Must be called inside a synchronized block on the entry.
+     * Every key's entry is locked (stripes in order) and checked before any
+     * timestamp is recorded, so a full window at one level leaves all the
+     * others untouched.
      */
-    private void pruneOldTimestamps(RateLimitEntry entry, long windowStartMs) {
-        while (!entry.requestTimestamps.isEmpty()
-                && entry.requestTimestamps.peekFirst() < windowStartMs) {
-            entry.requestTimestamps.pollFirst();
+    @Override
+    public RateLimitDecision tryAcquireAll(List<LimitKey> keys, int permits) {
+        return tryAcquireAllAt(keys, permits, System.currentTimeMillis());
+    }
+
+    /** tryAcquireAll at an explicit instant. */
+    RateLimitDecision tryAcquireAllAt(List<LimitKey> keys, int permits, long now) {
+        RateLimitEntry[] entries = new RateLimitEntry[keys.size()];
+        while (true) {
+            for (int i = 0; i < entries.length; i++) {
+                RateLimitConfig config = keys.get(i).getConfig();
+                entries[i] = store.getOrCreate(
+                        keys.get(i).getIdentifier(),
+                        id -> new RateLimitEntry(id, config.getMaxRequests()));
+            }
+
+            ReentrantLock[] locks = store.lockAll(entries);
+            try {
+                if (EntryStore.anyEvicted(entries))
+                    continue; // Reclaimed between lookup and lock — fetch fresh entries
+
+                RateLimitDecision rejection = null;
+                for (int i = 0; i < entries.length; i++) {
+                    RateLimitConfig config = keys.get(i).getConfig();
+                    long windowStartMs = now - config.getWindowSeconds() * 1000L;
+                    if (!entries[i].requestTimestamps.fits(windowStartMs, config.getMaxRequests(), permits))
+                        rejection = RateLimitDecision.mostRestrictive(rejection,
+                                rejected(entries[i], config, permits, now));
+                }
+                if (rejection != null)
+                    return rejection; // ❌ Rejected — no window records the request
+
+                RateLimitDecision decision = null;
+                for (int i = 0; i < entries.length; i++) {
+                    RateLimitConfig config = keys.get(i).getConfig();
+                    long windowStartMs = now - config.getWindowSeconds() * 1000L;
+                    entries[i].requestTimestamps.tryAdd(now, windowStartMs, config.getMaxRequests(), permits);
+                    decision = RateLimitDecision.mostRestrictive(decision, admitted(entries[i], config, now));
+                }
+                return decision; // ✅ Allowed at every level
+            } finally {
+                EntryStore.unlockAll(locks);
+            }
         }
     }
 
+    /**
+     * A request that a later level rejected loses its timestamps: the newest
+     * permits in the log, since nothing newer can have been recorded for it.
+     */
     @Override
-    public RateLimitEntry getEntry(String identifier) {
-        return store.get(identifier);
+    public void release(String identifier, RateLimitConfig config, int permits) {
+        RateLimitEntry entry = store.get(identifier);
+        if (entry == null)
+            return; // Reclaimed as empty — nothing to give back
+
+        ReentrantLock lock = store.lock(entry);
+        try {
+            if (!entry.evicted)
+                entry.requestTimestamps.removeNewest(permits);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Decision after recording a request. Must be called with the entry lock held. */
+    private RateLimitDecision admitted(RateLimitEntry entry, RateLimitConfig config, long now) {
+        long windowMs = config.getWindowSeconds() * 1000L;
+        long windowStartMs = now - windowMs;
+        TimestampRing timestamps = entry.requestTimestamps;
+        store.touch(entry, now, now + windowMs);
+        long remaining = config.getMaxRequests() - timestamps.countSince(windowStartMs);
+        long resetAt = (timestamps.oldestSince(windowStartMs) + windowMs) / 1000;
+        return RateLimitDecision.allowed(config.getMaxRequests(), remaining, resetAt);
     }
 
+    /** Decision for a request that does not fit. Must be called with the entry lock held. */
+    private RateLimitDecision rejected(RateLimitEntry entry, RateLimitConfig config, int permits, long now) {
+        long windowMs = config.getWindowSeconds() * 1000L;
+        long windowStartMs = now - windowMs;
+        TimestampRing timestamps = entry.requestTimestamps;
+
+        // The oldest timestamp in the window — when it expires, a slot opens
+        long oldest = timestamps.oldestSince(windowStartMs);
+        store.touch(entry, now, timestamps.isEmpty() ? now : timestamps.newest() + windowMs);
+        long slotOpensMs = oldest < 0 ? now + windowMs : oldest + windowMs;
+        // permits slots open once this many of the oldest have left the window
+        int mustExpire = timestamps.countSince(windowStartMs)
+                + Math.min(permits, config.getMaxRequests()) - config.getMaxRequests();
+        long lastToExpire = mustExpire < 1 ? -1 : timestamps.nthSince(windowStartMs, mustExpire - 1);
+        long slotsOpenMs = lastToExpire < 0 ? now + windowMs : lastToExpire + windowMs;
+        return RateLimitDecision.rejected(config.getMaxRequests(), slotOpensMs / 1000,
+                (slotsOpenMs - now + 999) / 1000);
+    }
+
+    /**
+     * Requests admitted by cluster peers take slots in the local log,
+     * timestamped on arrival.
+     */
     @Override
-    public void reset(String identifier, RateLimitConfig config) {
+    public void applyPeerUsage(String identifier, RateLimitConfig config, long permits) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            RateLimitEntry entry = store.getOrCreate(
+                    identifier,
+                    id -> new RateLimitEntry(id, config.getMaxRequests()));
+
+            ReentrantLock lock = store.lock(entry);
+            try {
+                if (entry.evicted)
+                    continue;
+                entry.requestTimestamps.record(now, (int) Math.min(permits, Integer.MAX_VALUE),
+                        config.getMaxRequests());
+                store.touch(entry, now, now + config.getWindowSeconds() * 1000L);
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Collection<String> identifiers() {
+        return store.identifiers();
+    }
+
+    @Override
+    public long[] exportState(String identifier) {
         RateLimitEntry entry = store.get(identifier);
-        if (entry != null) {
-            synchronized (entry) {
-                entry.requestTimestamps.clear();
+        if (entry == null)
+            return null;
+        ReentrantLock lock = store.lock(entry);
+        try {
+            return entry.evicted || entry.requestTimestamps.isEmpty() ? null : entry.requestTimestamps.toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Union of both logs, newest maxRequests kept — every request either
+     * node admitted still counts against the window.
+     */
+    @Override
+    public void importState(String identifier, RateLimitConfig config, long[] state) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            RateLimitEntry entry = store.getOrCreate(
+                    identifier,
+                    id -> new RateLimitEntry(id, config.getMaxRequests()));
+
+            ReentrantLock lock = store.lock(entry);
+            try {
+                if (entry.evicted)
+                    continue;
+                TimestampRing timestamps = entry.requestTimestamps;
+                timestamps.merge(state, config.getMaxRequests());
+                long windowMs = config.getWindowSeconds() * 1000L;
+                store.touch(entry, now, timestamps.isEmpty() ? now : timestamps.newest() + windowMs);
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Put the saved log back as it was; timestamps that have left the window
+     * since stop counting on the next request.
+     */
+    @Override
+    public void restoreState(String identifier, long[] state, long expiresAtMs) {
+        while (true) {
+            RateLimitEntry entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, 0));
+
+            ReentrantLock lock = store.lock(entry);
+            try {
+                if (entry.evicted)
+                    continue;
+                entry.requestTimestamps.replace(state);
+                store.touch(entry, System.currentTimeMillis(), expiresAtMs);
+                return;
+            } finally {
+                lock.unlock();
             }
         }
-        // If no entry exists, nothing to reset
+    }
+
+    @Override
+    public RateLimitEntry getEntry(String identifier) {
+        return store.get(identifier);
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitConfig config) {
+        // An empty window is the same as no entry — the next request starts fresh
+        store.remove(identifier);
     }
 
     @Override
@@ -80,28 +313,38 @@ public class SlidingWindowStrategy implements RateLimiterStrategy {
         if (entry == null)
             return config.getMaxRequests();
 
-        synchronized (entry) {
+        ReentrantLock lock = store.lock(entry);
+        try {
             long windowStartMs = System.currentTimeMillis() - (config.getWindowSeconds() * 1000L);
-            pruneOldTimestamps(entry, windowStartMs);
-            return Math.max(0, config.getMaxRequests() - entry.requestTimestamps.size());
+            return Math.max(0, config.getMaxRequests() - entry.requestTimestamps.countSince(windowStartMs));
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public long getResetTimeEpochSeconds(String identifier, RateLimitConfig config) {
         RateLimitEntry entry = store.get(identifier);
-        if (entry == null || entry.requestTimestamps.isEmpty()) {
+        if (entry == null) {
             return System.currentTimeMillis() / 1000 + config.getWindowSeconds();
         }
-        synchronized (entry) {
+        ReentrantLock lock = store.lock(entry);
+        try {
             // The oldest timestamp in the window — when it expires, a slot opens
-            Long oldest = entry.requestTimestamps.peekFirst();
-            if (oldest == null)
+            long windowMs = config.getWindowSeconds() * 1000L;
+            long oldest = entry.requestTimestamps.oldestSince(System.currentTimeMillis() - windowMs);
+            if (oldest < 0)
                 return System.currentTimeMillis() / 1000 + config.getWindowSeconds();
-            return (oldest + config.getWindowSeconds() * 1000L) / 1000;
+            return (oldest + windowMs) / 1000;
+        } finally {
+            lock.unlock();
         }
     }
 
+    public EntryStore getStore() {
+        return store;
+    }
+
     @Override
     public String getAlgorithmName() {
         return "SLIDING_WINDOW";
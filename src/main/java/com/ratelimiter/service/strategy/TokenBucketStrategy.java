@@ -1,10 +1,20 @@
 package com.ratelimiter.service.strategy;
 
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.BucketState;
 import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
 import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.cluster.PeerUsageTarget;
+import com.ratelimiter.service.persist.Snapshottable;
+import com.ratelimiter.service.store.EntryStore;
+import com.ratelimiter.service.store.OffHeapStateTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Token Bucket Rate Limiting Algorithm.
@@ -12,60 +22,301 @@ import java.util.concurrent.ConcurrentHashMap;
  * Concept:
  * - Each identifier has a "bucket" with a max capacity of tokens.
  * - Tokens refill at a constant rate (refillRate tokens/second).
- * - Each request consumes 1 token.
- * - If the bucket is empty → reject (HTTP 429).
+ * - Each request consumes 1 token, or its cost in tokens (weighted
+ * requests); the whole cost or nothing.
+ * - If the bucket holds fewer tokens than the cost → reject (HTTP 429).
+ * - Hierarchical checks (tryAcquireAll) take from each bucket in turn and
+ * put the tokens back (release) if a later bucket rejects.
  * - Allows brief bursts if tokens have accumulated.
  *
  * Thread Safety:
- * - ConcurrentHashMap for the store (safe concurrent reads/writes per key).
- * - synchronized block on the RateLimitEntry object for atomic refill +
- * consume.
+ * - EntryStore (backed by ConcurrentHashMap) for the store.
+ * - Lock-free: tokens and last refill time are packed into one long
+ * (BucketState) and refill + consume is published with a single CAS.
+ * A failed CAS re-reads and retries; no thread ever blocks on a hot key.
+ * Retries are counted as ratelimiter.store.contention{kind=cas_retry}.
+ * - Eviction CASes the state to RateLimitEntry.EVICTED_STATE, so a consume
+ * and a reclaim of the same entry cannot both succeed — the loser re-fetches.
+ *
+ * Memory:
+ * - With rate-limiter.store.mode=OFF_HEAP the packed state lives in an
+ * OffHeapStateTable slot instead of a RateLimitEntry (segment-locked).
+ * - A bucket that has refilled to capacity is the same as no entry, so each
+ * entry's deadline is the moment it would be full again; EntryStore reclaims
+ * it after that (or after idle expiry, whichever comes first).
+ * - The deadline is written before the CAS that makes it true. A thread that
+ * loses the race may briefly leave a deadline from a slightly older state;
+ * at worst a bucket a few tokens short of full is reclaimed as full.
  */
 @Component("tokenBucketStrategy")
-public class TokenBucketStrategy implements RateLimiterStrategy {
+public class TokenBucketStrategy implements RateLimiterStrategy, PeerUsageTarget, Snapshottable {
+
+    // In-memory store: identifier → entry (bounded, idle entries reclaimed)
+    private final EntryStore store;
+    // Off-heap state table; null unless rate-limiter.store.mode is OFF_HEAP
+    private final OffHeapStateTable table;
+
+    public TokenBucketStrategy() {
+        this(EntryStore.create(new RateLimiterProperties.Store()));
+    }
+
+    public TokenBucketStrategy(EntryStore store) {
+        this(store, null);
+    }
+
+    public TokenBucketStrategy(OffHeapStateTable table) {
+        this(EntryStore.create(new RateLimiterProperties.Store()), table);
+    }
+
+    private TokenBucketStrategy(EntryStore store, OffHeapStateTable table) {
+        this.store = store;
+        this.table = table;
+        store.setRetirer(EntryStore::retireByStateCas);
+    }
 
-    // In-memory store: identifier → entry
-    private final ConcurrentHashMap<String, RateLimitEntry> store = new ConcurrentHashMap<>();
+    @Autowired
+    public TokenBucketStrategy(RateLimiterProperties properties, MeterRegistry meterRegistry) {
+        this(EntryStore.create(properties.getStore()), OffHeapStateTable.createIfEnabled(properties.getStore()));
+        if (table != null)
+            table.bindTo(meterRegistry, getAlgorithmName());
+        else
+            store.bindTo(meterRegistry, getAlgorithmName());
+    }
 
     @Override
-    public boolean isAllowed(String identifier, RateLimitConfig config) {
-        RateLimitEntry entry = store.computeIfAbsent(
-                identifier,
-                id -> new RateLimitEntry(id, config.getMaxRequests()));
+    public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+        if (table != null)
+            return tryAcquireOffHeap(identifier, config, permits);
+
+        long capacity = BucketState.capacity(config.getMaxRequests());
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, capacity));
+
+        while (true) {
+            long state = entry.state;
+            if (state == RateLimitEntry.EVICTED_STATE) {
+                // Reclaimed between lookup and update — fetch a fresh entry
+                entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, capacity));
+                continue;
+            }
 
-        synchronized (entry) {
-            refillTokens(entry, config);
+            long now = System.currentTimeMillis();
+            long refilled = refill(state, config, now);
+            long next = consume(refilled, permits);
+
+            // Deadline first: an evictor that sees the new state also sees the new deadline
+            store.touch(entry, now, reclaimableAtMs(next, config));
+            if (next != state && !entry.compareAndSetState(state, next)) {
+                store.recordCasRetry();
+                continue; // Lost the race — re-read and recompute
+            }
+
+            return decide(refilled, next, config, now, permits);
+        }
+    }
+
+    /**
+     * Same refill + consume applied under the table's segment lock. The
+     * transition is pure, so the decision is rebuilt from the prior state.
+     */
+    private RateLimitDecision tryAcquireOffHeap(String identifier, RateLimitConfig config, int permits) {
+        long now = System.currentTimeMillis();
+        long fresh = BucketState.pack(BucketState.capacity(config.getMaxRequests()), now);
+        long previous = table.getAndUpdate(identifier, fresh, now,
+                state -> consume(refill(state, config, now), permits),
+                state -> reclaimableAtMs(state, config));
+        long refilled = refill(previous, config, now);
+        return decide(refilled, consume(refilled, permits), config, now, permits);
+    }
+
+    /**
+     * Tokens spent on cluster peers come out of the local bucket too.
+     */
+    @Override
+    public void applyPeerUsage(String identifier, RateLimitConfig config, long permits) {
+        long now = System.currentTimeMillis();
+        long capacity = BucketState.capacity(config.getMaxRequests());
+        if (table != null) {
+            table.getAndUpdate(identifier, BucketState.pack(capacity, now), now,
+                    state -> drain(refill(state, config, now), permits),
+                    state -> reclaimableAtMs(state, config));
+            return;
+        }
 
-            if (entry.tokenCount.get() >= 1) {
-                entry.tokenCount.decrementAndGet();
-                return true; // ✅ Allowed
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, capacity));
+        while (true) {
+            long state = entry.state;
+            if (state == RateLimitEntry.EVICTED_STATE) {
+                entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, capacity));
+                continue;
             }
-            return false; // ❌ Rejected — bucket empty
+            long next = drain(refill(state, config, now), permits);
+            store.touch(entry, now, reclaimableAtMs(next, config));
+            if (next == state || entry.compareAndSetState(state, next))
+                return;
+        }
+    }
+
+    /**
+     * Tokens taken by a request that a later level rejected go back in,
+     * up to capacity.
+     */
+    @Override
+    public void release(String identifier, RateLimitConfig config, int permits) {
+        long now = System.currentTimeMillis();
+        long capacity = BucketState.capacity(config.getMaxRequests());
+        if (table != null) {
+            table.getAndUpdate(identifier, BucketState.pack(capacity, now), now,
+                    state -> restore(refill(state, config, now), permits, capacity),
+                    state -> reclaimableAtMs(state, config));
+            return;
+        }
+
+        RateLimitEntry entry = store.get(identifier);
+        while (entry != null) {
+            long state = entry.state;
+            if (state == RateLimitEntry.EVICTED_STATE)
+                return; // Reclaimed as full — nothing to give back
+            long next = restore(refill(state, config, now), permits, capacity);
+            store.touch(entry, now, reclaimableAtMs(next, config));
+            if (next == state || entry.compareAndSetState(state, next))
+                return;
+            store.recordCasRetry();
         }
     }
 
+    @Override
+    public Collection<String> identifiers() {
+        return table != null ? Collections.emptyList() : store.identifiers();
+    }
+
+    @Override
+    public long[] exportState(String identifier) {
+        long state = currentState(identifier, System.currentTimeMillis());
+        return state == RateLimitEntry.EVICTED_STATE ? null : new long[]{state};
+    }
+
     /**
-     * Refill tokens based on elapsed time since last refill.
-     * Must be called inside a synchronized block on the entry.
+     * Keep whichever bucket has fewer tokens once both are refilled to now.
      */
-    private void refillTokens(RateLimitEntry entry, RateLimitConfig config) {
+    @Override
+    public void importState(String identifier, RateLimitConfig config, long[] state) {
         long now = System.currentTimeMillis();
-        long lastRefill = entry.lastRefillTime.get();
+        long incoming = refill(state[0], config, now);
+        if (table != null) {
+            table.getAndUpdate(identifier, incoming, now,
+                    current -> fewerTokens(refill(current, config, now), incoming),
+                    current -> reclaimableAtMs(current, config));
+            return;
+        }
+
+        long capacity = BucketState.capacity(config.getMaxRequests());
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, capacity));
+        while (true) {
+            long current = entry.state;
+            if (current == RateLimitEntry.EVICTED_STATE) {
+                entry = store.getOrCreate(identifier, id -> new RateLimitEntry(id, capacity));
+                continue;
+            }
+            long next = fewerTokens(refill(current, config, now), incoming);
+            store.touch(entry, now, reclaimableAtMs(next, config));
+            if (next == current || entry.compareAndSetState(current, next))
+                return;
+        }
+    }
+
+    /**
+     * Put the saved bucket back as it was; the next request refills it for
+     * the time since it was saved. Heap store only — OFF_HEAP cannot list
+     * its identifiers, so there is never anything to restore.
+     */
+    @Override
+    public void restoreState(String identifier, long[] state, long expiresAtMs) {
+        if (table != null)
+            return;
+        long saved = state[0];
+        RateLimitEntry entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, saved));
+        while (true) {
+            long current = entry.state;
+            if (current == RateLimitEntry.EVICTED_STATE) {
+                entry = store.getOrCreate(identifier, id -> RateLimitEntry.withState(id, saved));
+                continue;
+            }
+            store.touch(entry, System.currentTimeMillis(), expiresAtMs);
+            if (current == saved || entry.compareAndSetState(current, saved))
+                return;
+        }
+    }
+
+    private static long fewerTokens(long a, long b) {
+        return BucketState.tokens(b) < BucketState.tokens(a) ? b : a;
+    }
+
+    /**
+     * Remove up to permits tokens; an empty bucket stays empty (no debt).
+     */
+    private static long drain(long refilled, long permits) {
+        long tokens = Math.max(0, BucketState.tokens(refilled) - permits);
+        return BucketState.pack(tokens, BucketState.refillTimeMs(refilled));
+    }
+
+    /**
+     * Add permits tokens back, never beyond capacity.
+     */
+    private static long restore(long refilled, long permits, long capacity) {
+        long tokens = Math.min(capacity, BucketState.tokens(refilled) + permits);
+        return BucketState.pack(tokens, BucketState.refillTimeMs(refilled));
+    }
+
+    /**
+     * Take permits tokens if there are that many; otherwise the state is unchanged.
+     */
+    private static long consume(long refilled, int permits) {
+        long tokens = BucketState.tokens(refilled);
+        return tokens >= permits ? BucketState.pack(tokens - permits, BucketState.refillTimeMs(refilled)) : refilled;
+    }
+
+    private static RateLimitDecision decide(long refilled, long next, RateLimitConfig config, long now, int permits) {
+        long resetAt = computeResetTimeEpochSeconds(next, config);
+        if (BucketState.tokens(refilled) >= permits) {
+            return RateLimitDecision.allowed(config.getMaxRequests(), BucketState.tokens(next),
+                    resetAt); // ✅ Allowed
+        }
+        return RateLimitDecision.rejected(config.getMaxRequests(), resetAt,
+                computeRetryAfterSeconds(next, config, permits, resetAt, now)); // ❌ Rejected — too few tokens
+    }
+
+    /**
+     * When this bucket will be full again (Long.MAX_VALUE if it never refills).
+     */
+    private static long reclaimableAtMs(long state, RateLimitConfig config) {
+        if (config.getRefillRate() <= 0)
+            return Long.MAX_VALUE;
+        long tokensNeeded = Math.max(0, BucketState.capacity(config.getMaxRequests()) - BucketState.tokens(state));
+        long msToFull = (tokensNeeded * 1000L + config.getRefillRate() - 1) / config.getRefillRate();
+        return BucketState.refillTimeMs(state) + msToFull;
+    }
+
+    /**
+     * Add tokens for the time elapsed since the last refill. Pure: returns
+     * the refilled state without publishing it.
+     */
+    private static long refill(long state, RateLimitConfig config, long now) {
+        long lastRefill = BucketState.refillTimeMs(state);
         long elapsedMs = now - lastRefill;
 
         if (elapsedMs <= 0)
-            return;
+            return state;
 
         // Calculate how many tokens to add
         long tokensToAdd = (elapsedMs * config.getRefillRate()) / 1000L;
 
-        if (tokensToAdd > 0) {
-            long newTokens = Math.min(
-                    config.getMaxRequests(),
-                    entry.tokenCount.get() + tokensToAdd);
-            entry.tokenCount.set(newTokens);
-            entry.lastRefillTime.set(now);
-        }
+        if (tokensToAdd <= 0)
+            return state;
+
+        long newTokens = Math.min(
+                BucketState.capacity(config.getMaxRequests()),
+                BucketState.tokens(state) + tokensToAdd);
+        return BucketState.pack(newTokens, now);
     }
 
     @Override
@@ -75,40 +326,70 @@ public class TokenBucketStrategy implements RateLimiterStrategy {
 
     @Override
     public void reset(String identifier, RateLimitConfig config) {
-        RateLimitEntry entry = store.get(identifier);
-        if (entry != null) {
-            synchronized (entry) {
-                entry.tokenCount.set(config.getMaxRequests());
-                entry.lastRefillTime.set(System.currentTimeMillis());
-            }
-        } else {
-            // Create fresh entry at full capacity
-            store.put(identifier, new RateLimitEntry(identifier, config.getMaxRequests()));
-        }
+        // A full bucket is the same as no entry — the next request starts fresh
+        if (table != null)
+            table.remove(identifier);
+        else
+            store.remove(identifier);
     }
 
     @Override
     public long getRemainingRequests(String identifier, RateLimitConfig config) {
-        RateLimitEntry entry = store.get(identifier);
-        if (entry == null)
+        long now = System.currentTimeMillis();
+        long state = currentState(identifier, now);
+        if (state == RateLimitEntry.EVICTED_STATE)
             return config.getMaxRequests();
-        synchronized (entry) {
-            refillTokens(entry, config);
-            return Math.max(0, entry.tokenCount.get());
-        }
+        return BucketState.tokens(refill(state, config, now));
     }
 
     @Override
     public long getResetTimeEpochSeconds(String identifier, RateLimitConfig config) {
+        long now = System.currentTimeMillis();
+        long state = currentState(identifier, now);
+        if (state == RateLimitEntry.EVICTED_STATE)
+            return now / 1000 + config.getWindowSeconds();
+        return computeResetTimeEpochSeconds(state, config);
+    }
+
+    /**
+     * Snapshot of the packed state, or EVICTED_STATE if there is none.
+     */
+    private long currentState(String identifier, long now) {
+        if (table != null) {
+            long state = table.get(identifier, now);
+            return state == OffHeapStateTable.ABSENT ? RateLimitEntry.EVICTED_STATE : state;
+        }
         RateLimitEntry entry = store.get(identifier);
-        if (entry == null)
-            return System.currentTimeMillis() / 1000 + config.getWindowSeconds();
+        return entry == null ? RateLimitEntry.EVICTED_STATE : entry.state;
+    }
 
-        long lastRefill = entry.lastRefillTime.get();
-        // Next full refill time = lastRefill + time to refill all tokens
-        long tokensNeeded = config.getMaxRequests() - entry.tokenCount.get();
+    /**
+     * Next full refill time = lastRefill + time to refill all tokens.
+     */
+    private static long computeResetTimeEpochSeconds(long state, RateLimitConfig config) {
+        long tokensNeeded = BucketState.capacity(config.getMaxRequests()) - BucketState.tokens(state);
         long msToFull = (tokensNeeded * 1000L) / Math.max(1, config.getRefillRate());
-        return (lastRefill + msToFull) / 1000;
+        return (BucketState.refillTimeMs(state) + msToFull) / 1000;
+    }
+
+    /**
+     * Seconds until the bucket holds permits tokens (a full bucket for a
+     * cost above capacity), rounded up. Falls back to the full reset time
+     * when the bucket never refills.
+     */
+    private static long computeRetryAfterSeconds(long state, RateLimitConfig config, int permits, long resetAt,
+                                                 long now) {
+        if (config.getRefillRate() <= 0)
+            return resetAt - now / 1000;
+
+        long wanted = Math.min(permits, BucketState.capacity(config.getMaxRequests()));
+        long missing = Math.max(1, wanted - BucketState.tokens(state));
+        long msUntilTokens = (missing * 1000L + config.getRefillRate() - 1) / config.getRefillRate();
+        return (BucketState.refillTimeMs(state) + msUntilTokens - now + 999) / 1000;
+    }
+
+    public EntryStore getStore() {
+        return store;
     }
 
     @Override
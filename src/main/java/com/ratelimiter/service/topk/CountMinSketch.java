@@ -0,0 +1,104 @@
+package com.ratelimiter.service.topk;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch: approximate per-identifier counts in fixed memory.
+ *
+ * Concept:
+ * - depth rows of width counters. Each identifier maps to one counter per
+ * row; its estimate is the smallest of those counters. Collisions only
+ * ever add, so an estimate is never below the true count, and with
+ * probability 1 − e^−depth it is at most e / width × total above it.
+ * - Conservative update: an add only raises the counters that sit at the
+ * current minimum, which keeps collisions from inflating every row.
+ * - Row indices come from one 64-bit hash of the identifier's characters
+ * (FNV-1a + fmix64), split into two halves for double hashing — not
+ * String.hashCode, whose collisions are trivial to construct.
+ *
+ * Thread Safety:
+ * - None; HeavyHitterTracker guards each sketch with its lock.
+ *
+ * Memory:
+ * - width × depth ints, allocated once (4096 × 4 → 64 KB).
+ */
+final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final int[] counters;
+    private final int[] indexes; // Scratch for add(), reused under the caller's lock
+
+    CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(16, width) - 1) << 1; // Next power of two
+        this.depth = Math.max(1, depth);
+        this.mask = this.width - 1;
+        this.counters = new int[this.width * this.depth];
+        this.indexes = new int[this.depth];
+    }
+
+    /**
+     * Count one occurrence of the identifier.
+     *
+     * @return the identifier's estimate after the add
+     */
+    int add(String identifier) {
+        long hash = hash(identifier);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + slot(hash, row);
+            indexes[row] = index;
+            min = Math.min(min, counters[index]);
+        }
+        int next = min == Integer.MAX_VALUE ? min : min + 1;
+        for (int row = 0; row < depth; row++) {
+            if (counters[indexes[row]] < next)
+                counters[indexes[row]] = next;
+        }
+        return next;
+    }
+
+    /** Upper-bound estimate of how often the identifier was added. */
+    int estimate(String identifier) {
+        long hash = hash(identifier);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + slot(hash, row)]);
+        }
+        return min;
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    /** Kirsch–Mitzenmacher: row i uses h1 + i × h2, as good as depth independent hashes. */
+    private int slot(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + row * h2) & mask;
+    }
+
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
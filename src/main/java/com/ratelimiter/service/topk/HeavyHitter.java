@@ -0,0 +1,29 @@
+package com.ratelimiter.service.topk;
+
+/**
+ * One identifier in a top-K answer with its estimated count over the window
+ * (an upper bound, scaled up by the sampling rate).
+ */
+public final class HeavyHitter {
+
+    private final String identifier;
+    private final long estimatedCount;
+
+    public HeavyHitter(String identifier, long estimatedCount) {
+        this.identifier = identifier;
+        this.estimatedCount = estimatedCount;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public long getEstimatedCount() {
+        return estimatedCount;
+    }
+
+    @Override
+    public String toString() {
+        return identifier + "=" + estimatedCount;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ratelimiter.service.topk;
+
+import com.ratelimiter.config.RateLimiterProperties;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Streaming top-K of the identifiers sending the most requests and drawing
+ * the most rejections, over a sliding window, in fixed memory.
+ *
+ * Concept:
+ * - Time is cut into intervals (interval-seconds); a ring keeps the last
+ * `intervals` of them. Each interval has a CountMinSketch + SpaceSavingTable
+ * for requests and another pair for rejections. An interval slot is
+ * cleared and reused when its time comes round again.
+ * - A query sums each candidate's sketch estimates over the intervals in
+ * the window and ranks them. The window is rounded up to whole intervals,
+ * the current (partial) one included.
+ * - Only one check in sample-every is recorded, chosen at random. Heavy
+ * hitters are by definition frequent, so sampling barely moves the ranking;
+ * counts are scaled back up by sample-every.
+ *
+ * Thread Safety:
+ * - Unsampled checks touch nothing shared: one ThreadLocalRandom draw.
+ * - Sampled checks and queries take the tracker's monitor. At 1 in 32 the
+ * lock sees ~3% of traffic and is held for a few hundred ns.
+ *
+ * Memory:
+ * - Fixed: intervals × 2 × (sketch-width × sketch-depth ints + tracked-keys
+ * candidates) — ~800 KB with the defaults, whatever the key space.
+ */
+public class HeavyHitterTracker {
+
+    private final Interval[] ring;
+    private final long intervalMs;
+    private final int sampleEvery;
+    private final int trackedKeys;
+
+    public static HeavyHitterTracker create(RateLimiterProperties.HeavyHitters settings) {
+        return new HeavyHitterTracker(settings.getSampleEvery(), settings.getIntervalSeconds() * 1000L,
+                settings.getIntervals(), settings.getTrackedKeys(), settings.getSketchWidth(),
+                settings.getSketchDepth());
+    }
+
+    public HeavyHitterTracker(int sampleEvery, long intervalMs, int intervals, int trackedKeys,
+                              int sketchWidth, int sketchDepth) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.intervalMs = Math.max(1, intervalMs);
+        this.trackedKeys = Math.max(1, trackedKeys);
+        this.ring = new Interval[Math.max(1, intervals)];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Interval(this.trackedKeys, sketchWidth, sketchDepth);
+        }
+    }
+
+    /**
+     * Count one rate limit check. Called on every request; returns after a
+     * single random draw unless this check is sampled.
+     */
+    public void record(String identifier, boolean rejected) {
+        if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0)
+            return;
+        recordSampled(identifier, rejected, System.currentTimeMillis());
+    }
+
+    /** Record unconditionally at an explicit instant — lets tests replay traffic. */
+    synchronized void recordSampled(String identifier, boolean rejected, long nowMs) {
+        Interval interval = intervalAt(nowMs / intervalMs);
+        interval.requests.add(identifier);
+        if (rejected)
+            interval.rejections.add(identifier);
+    }
+
+    /** Top k identifiers by requests over the last windowSeconds. */
+    public List<HeavyHitter> topRequests(int k, int windowSeconds) {
+        return top(k, windowSeconds * 1000L, System.currentTimeMillis(), false);
+    }
+
+    /** Top k identifiers by rejections over the last windowSeconds. */
+    public List<HeavyHitter> topRejections(int k, int windowSeconds) {
+        return top(k, windowSeconds * 1000L, System.currentTimeMillis(), true);
+    }
+
+    synchronized List<HeavyHitter> top(int k, long windowMs, long nowMs, boolean rejections) {
+        long current = nowMs / intervalMs;
+        long covered = Math.min(ring.length, Math.max(1, (windowMs + intervalMs - 1) / intervalMs));
+
+        List<Counts> live = new ArrayList<>();
+        Set<String> candidates = new HashSet<>();
+        for (long epoch = current - covered + 1; epoch <= current; epoch++) {
+            Interval interval = ring[slot(epoch)];
+            if (interval.epoch != epoch)
+                continue; // No traffic was sampled in that interval
+            Counts counts = rejections ? interval.rejections : interval.requests;
+            live.add(counts);
+            candidates.addAll(counts.table.identifiers());
+        }
+
+        List<HeavyHitter> ranked = new ArrayList<>(candidates.size());
+        for (String identifier : candidates) {
+            long estimate = 0;
+            for (Counts counts : live) {
+                estimate += counts.sketch.estimate(identifier);
+            }
+            ranked.add(new HeavyHitter(identifier, estimate * sampleEvery));
+        }
+        ranked.sort((a, b) -> Long.compare(b.getEstimatedCount(), a.getEstimatedCount()));
+        return ranked.subList(0, Math.min(Math.max(0, k), ranked.size()));
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public int getTrackedKeys() {
+        return trackedKeys;
+    }
+
+    /** Longest window a query can cover. */
+    public long getMaxWindowSeconds() {
+        return ring.length * intervalMs / 1000;
+    }
+
+    /** The interval for this epoch, cleared first if its slot still holds an older one. */
+    private Interval intervalAt(long epoch) {
+        Interval interval = ring[slot(epoch)];
+        if (interval.epoch != epoch) {
+            interval.requests.clear();
+            interval.rejections.clear();
+            interval.epoch = epoch;
+        }
+        return interval;
+    }
+
+    private int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) ring.length);
+    }
+
+    private static final class Interval {
+        long epoch = Long.MIN_VALUE;
+        final Counts requests;
+        final Counts rejections;
+
+        Interval(int trackedKeys, int sketchWidth, int sketchDepth) {
+            this.requests = new Counts(trackedKeys, sketchWidth, sketchDepth);
+            this.rejections = new Counts(trackedKeys, sketchWidth, sketchDepth);
+        }
+    }
+
+    /** One stream's sketch and candidates for one interval */
+    private static final class Counts {
+        final CountMinSketch sketch;
+        final SpaceSavingTable table;
+
+        Counts(int trackedKeys, int sketchWidth, int sketchDepth) {
+            this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+            this.table = new SpaceSavingTable(trackedKeys);
+        }
+
+        void add(String identifier) {
+            table.offer(identifier, sketch.add(identifier));
+        }
+
+        void clear() {
+            sketch.clear();
+            table.clear();
+        }
+    }
+}
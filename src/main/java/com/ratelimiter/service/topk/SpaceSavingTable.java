@@ -0,0 +1,101 @@
+package com.ratelimiter.service.topk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving candidate table: the identifiers most likely to be heavy
+ * hitters, at most capacity of them.
+ *
+ * Concept:
+ * - A tracked identifier's count is raised to its latest sketch estimate.
+ * - An untracked identifier is admitted while there is room; once full, it
+ * replaces the lowest candidate only if its estimate is higher. Plain
+ * Space-Saving would evict on every miss and credit the newcomer with the
+ * evicted count; taking the Count-Min estimate instead keeps the long tail
+ * of one-off identifiers from churning the table and gives the newcomer a
+ * tighter upper bound.
+ * - Estimates never undercount, so an identifier that has become heavier
+ * than the lowest candidate gets in on its next occurrence.
+ *
+ * Thread Safety:
+ * - None; HeavyHitterTracker guards each table with its lock.
+ *
+ * Memory:
+ * - capacity entries; the lowest is found by a scan, cached until it
+ * changes, so a scan only follows an eviction or an update of the lowest.
+ */
+final class SpaceSavingTable {
+
+    private final int capacity;
+    private final Map<String, Candidate> candidates;
+    private Candidate lowest; // null = recompute on next miss
+
+    SpaceSavingTable(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.candidates = new HashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * @param estimate the identifier's current Count-Min estimate
+     */
+    void offer(String identifier, int estimate) {
+        Candidate candidate = candidates.get(identifier);
+        if (candidate != null) {
+            candidate.count = Math.max(candidate.count, estimate);
+            if (candidate == lowest)
+                lowest = null;
+            return;
+        }
+        if (candidates.size() < capacity) {
+            candidates.put(identifier, new Candidate(identifier, estimate));
+            lowest = null;
+            return;
+        }
+
+        Candidate weakest = lowest();
+        if (estimate <= weakest.count)
+            return; // Not (yet) heavier than anything tracked
+        candidates.remove(weakest.identifier);
+        weakest.identifier = identifier;
+        weakest.count = estimate;
+        candidates.put(identifier, weakest);
+        lowest = null;
+    }
+
+    /** Tracked identifiers, in no particular order. */
+    List<String> identifiers() {
+        return new ArrayList<>(candidates.keySet());
+    }
+
+    void clear() {
+        candidates.clear();
+        lowest = null;
+    }
+
+    int size() {
+        return candidates.size();
+    }
+
+    private Candidate lowest() {
+        if (lowest == null) {
+            for (Candidate candidate : candidates.values()) {
+                if (lowest == null || candidate.count < lowest.count)
+                    lowest = candidate;
+            }
+        }
+        return lowest;
+    }
+
+    private static final class Candidate {
+        String identifier;
+        int count;
+
+        Candidate(String identifier, int count) {
+            this.identifier = identifier;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.ratelimiter.wire;
+
+import com.ratelimiter.model.RateLimitDecision;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client for DecisionServer over one persistent connection, safe to share
+ * between threads.
+ *
+ * - checkAsync() sends a request and returns at once; any number can be in
+ * flight (pipelining). A reader thread completes them as responses arrive.
+ * - check() is checkAsync() plus a wait.
+ * - checkAll() sends a list in one write and waits for all of it — the
+ * cheapest way to check a fan-out.
+ *
+ * An INVALID response fails its future with IllegalArgumentException, an
+ * ERROR response with IllegalStateException, a lost connection every
+ * pending future with UncheckedIOException.
+ *
+ * Thread Safety:
+ * - Writes are serialized by a ReentrantLock (a writer parks rather than
+ * pinning a virtual thread); request ids come from the same lock.
+ */
+public class DecisionClient implements AutoCloseable {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024);
+    private final Map<Integer, CompletableFuture<RateLimitDecision>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+    private int nextId;
+    private volatile boolean closed;
+
+    public DecisionClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.reader = new Thread(this::readLoop, "rate-limit-wire-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public CompletableFuture<RateLimitDecision> checkAsync(String identifier, int cost) {
+        writeLock.lock();
+        try {
+            CompletableFuture<RateLimitDecision> future = enqueue(identifier, cost);
+            send();
+            return future;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public RateLimitDecision check(String identifier, int cost) {
+        return await(checkAsync(identifier, cost));
+    }
+
+    public RateLimitDecision check(String identifier) {
+        return check(identifier, 1);
+    }
+
+    /** Check every identifier (cost 1) in as few writes as the buffer allows; results in order. */
+    public List<RateLimitDecision> checkAll(List<String> identifiers) {
+        List<CompletableFuture<RateLimitDecision>> futures = new ArrayList<>(identifiers.size());
+        writeLock.lock();
+        try {
+            for (String identifier : identifiers) {
+                if (writeBuffer.remaining() < WireProtocol.MAX_REQUEST_BYTES)
+                    send();
+                futures.add(enqueue(identifier, 1));
+            }
+            send();
+        } finally {
+            writeLock.unlock();
+        }
+        List<RateLimitDecision> decisions = new ArrayList<>(futures.size());
+        for (CompletableFuture<RateLimitDecision> future : futures) {
+            decisions.add(await(future));
+        }
+        return decisions;
+    }
+
+    /** Encode one request into the write buffer; caller holds writeLock. */
+    private CompletableFuture<RateLimitDecision> enqueue(String identifier, int cost) {
+        if (closed)
+            throw new IllegalStateException("Client is closed");
+        int id = nextId++;
+        WireProtocol.writeRequest(writeBuffer, id, identifier, cost);
+        CompletableFuture<RateLimitDecision> future = new CompletableFuture<>();
+        pending.put(id, future);
+        return future;
+    }
+
+    /** Write out the buffer; caller holds writeLock. */
+    private void send() {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        } catch (IOException e) {
+            failAll(new UncheckedIOException(e));
+            throw new UncheckedIOException(e);
+        } finally {
+            writeBuffer.clear();
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        try {
+            while (!closed) {
+                if (channel.read(in) < 0)
+                    throw new EOFException("Server closed the connection");
+                in.flip();
+                while (in.remaining() >= WireProtocol.RESPONSE_BYTES) {
+                    int id = WireProtocol.peekId(in);
+                    byte status = WireProtocol.peekStatus(in);
+                    RateLimitDecision decision = WireProtocol.readDecision(in);
+                    CompletableFuture<RateLimitDecision> future = pending.remove(id);
+                    if (future == null)
+                        continue;
+                    if (status == WireProtocol.INVALID)
+                        future.completeExceptionally(new IllegalArgumentException("Invalid identifier or cost"));
+                    else if (status == WireProtocol.ERROR)
+                        future.completeExceptionally(new IllegalStateException("Server could not decide"));
+                    else
+                        future.complete(decision);
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            if (!closed)
+                failAll(new UncheckedIOException(e));
+        }
+    }
+
+    private void failAll(RuntimeException cause) {
+        for (Integer id : pending.keySet()) {
+            CompletableFuture<RateLimitDecision> future = pending.remove(id);
+            if (future != null)
+                future.completeExceptionally(cause);
+        }
+    }
+
+    private static RateLimitDecision await(CompletableFuture<RateLimitDecision> future) {
+        try {
+            return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new UncheckedIOException(new IOException("No response within " + TIMEOUT_MS + " ms"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a decision", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        failAll(new IllegalStateException("Client is closed"));
+    }
+}
@@ -0,0 +1,355 @@
+package com.ratelimiter.wire;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.dto.BatchCheckRequest;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.RateLimiterService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP listener for the binary decision protocol (WireProtocol), for
+ * sidecars and gateways that would otherwise pay for HTTP, MVC dispatch and
+ * JSON on every check. Only created when rate-limiter.wire.enabled=true.
+ *
+ * Concept:
+ * - One selector thread accepts connections, reads frames and writes
+ * responses; it never decides. Connections are long-lived and a client may
+ * pipeline: keep many requests in flight without waiting.
+ * - Every complete frame read from a connection (up to 1,000) goes to a
+ * worker as one RateLimiterService.tryAcquireBatch call: one config query
+ * for the lot, one Redis pipeline with a Redis strategy. A single frame
+ * takes the plain tryAcquire path. A frame's cost is taken atomically,
+ * all or none.
+ * - One batch in flight per connection, so responses go back in request
+ * order. Frames that arrive meanwhile wait in the read buffer and form the
+ * next batch; the batch's responses leave in one write.
+ *
+ * Trust:
+ * - The protocol has no authentication: any client that reaches the port
+ * can spend any identifier's budget. The listener binds loopback unless
+ * rate-limiter.wire.bind-address says otherwise; firewall it if so.
+ *
+ * Backpressure:
+ * - A connection is not read while its 64 KB read buffer is full or while
+ * responses are still queued for it (a client that stops reading stops
+ * being served, without buffering unbounded output).
+ * - A frame with an impossible length closes the connection; a frame with a
+ * bad cost or identifier gets an INVALID response.
+ *
+ * Thread Safety:
+ * - Connection state is touched only by the selector thread. Workers hand
+ * responses back through a concurrent queue and wake the selector.
+ *
+ * Metrics:
+ * - ratelimiter.wire.requests (frames decided), ratelimiter.wire.connections.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rate-limiter.wire", name = "enabled", havingValue = "true")
+public class DecisionServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionServer.class);
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    // Frames per worker task: the batch check's item limit
+    static final int MAX_FRAMES_PER_BATCH = 1000;
+
+    private final RateLimiterService rateLimiterService;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = new HashSet<>(); // Selector thread only
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final Counter requests;
+    private volatile boolean running = true;
+
+    public DecisionServer(RateLimiterService rateLimiterService, RateLimiterProperties properties,
+                          MeterRegistry meterRegistry) {
+        RateLimiterProperties.Wire settings = properties.getWire();
+        this.rateLimiterService = rateLimiterService;
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(settings.getBindAddress(), settings.getBindPort()), 1024);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot bind wire protocol port " + settings.getBindPort(), e);
+        }
+
+        AtomicInteger workerIds = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, settings.getWorkerThreads()), r -> {
+            Thread thread = new Thread(r, "rate-limit-wire-worker-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requests = Counter.builder("ratelimiter.wire.requests")
+                .description("Checks decided over the binary wire protocol")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.wire.connections", openConnections, AtomicInteger::get)
+                .description("Open wire protocol connections")
+                .register(meterRegistry);
+
+        this.selectorThread = new Thread(this::selectLoop, "rate-limit-wire-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Wire protocol listening on {}:{} ({} worker threads)", settings.getBindAddress(), getPort(),
+                Math.max(1, settings.getWorkerThreads()));
+        if (!server.socket().getInetAddress().isLoopbackAddress())
+            log.warn("Wire protocol port {} is unauthenticated and reachable beyond loopback; firewall it",
+                    getPort());
+    }
+
+    /** The bound port (useful when rate-limiter.wire.bind-port is 0). */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Completion done;
+                while ((done = completions.poll()) != null) {
+                    finish(done);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable())
+                            flush(connection);
+                        if (key.isValid() && key.isReadable())
+                            read(connection);
+                    } catch (IOException | IllegalArgumentException e) {
+                        log.debug("Closing wire connection {}: {}", connection.remote, e.getMessage());
+                        close(connection);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running)
+                log.error("Wire protocol selector failed", e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                close(connection);
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel, channel.getRemoteAddress());
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            openConnections.incrementAndGet();
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(connection);
+            return;
+        }
+        dispatch(connection);
+    }
+
+    /** Hand every complete frame to a worker, unless the connection already has a batch out. */
+    private void dispatch(Connection connection) {
+        if (!connection.busy) {
+            List<WireProtocol.Request> frames = new ArrayList<>();
+            connection.in.flip();
+            try {
+                while (frames.size() < MAX_FRAMES_PER_BATCH && WireProtocol.completeRequestLength(connection.in) > 0) {
+                    frames.add(WireProtocol.readRequest(connection.in));
+                }
+            } finally {
+                connection.in.compact();
+            }
+            if (!frames.isEmpty()) {
+                connection.busy = true;
+                try {
+                    workers.execute(() -> decide(connection, frames));
+                } catch (RejectedExecutionException e) {
+                    return; // Shutting down
+                }
+            }
+        }
+        updateInterest(connection);
+    }
+
+    /** Worker: decide a batch, encode its responses, hand them to the selector thread. */
+    private void decide(Connection connection, List<WireProtocol.Request> frames) {
+        ByteBuffer out = ByteBuffer.allocate(frames.size() * WireProtocol.RESPONSE_BYTES);
+        try {
+            List<BatchCheckRequest.Item> items = new ArrayList<>(frames.size());
+            for (WireProtocol.Request frame : frames) {
+                if (frame.isValid())
+                    items.add(new BatchCheckRequest.Item(frame.identifier, frame.cost));
+            }
+            List<RateLimitDecision> decisions;
+            if (items.size() == 1)
+                decisions = List.of(rateLimiterService.tryAcquire(items.get(0).getIdentifier(), null,
+                        items.get(0).getCost()));
+            else
+                decisions = items.isEmpty() ? List.of() : rateLimiterService.tryAcquireBatch(items);
+
+            int next = 0;
+            for (WireProtocol.Request frame : frames) {
+                if (frame.isValid())
+                    WireProtocol.writeDecision(out, frame.id, decisions.get(next++));
+                else
+                    WireProtocol.writeStatus(out, frame.id, WireProtocol.INVALID);
+            }
+            requests.increment(items.size());
+        } catch (RuntimeException e) {
+            log.warn("Wire protocol batch of {} failed: {}", frames.size(), e.toString());
+            out.clear();
+            for (WireProtocol.Request frame : frames) {
+                WireProtocol.writeStatus(out, frame.id, WireProtocol.ERROR);
+            }
+        }
+        out.flip();
+        completions.add(new Completion(connection, out));
+        selector.wakeup();
+    }
+
+    private void finish(Completion done) {
+        Connection connection = done.connection;
+        connection.busy = false;
+        if (connection.closed)
+            return;
+        connection.out.add(done.responses);
+        try {
+            flush(connection);
+            dispatch(connection);
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Closing wire connection {}: {}", connection.remote, e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void flush(Connection connection) throws IOException {
+        while (!connection.out.isEmpty()) {
+            ByteBuffer responses = connection.out.peek();
+            connection.channel.write(responses);
+            if (responses.hasRemaining())
+                break; // Socket buffer full — OP_WRITE resumes
+            connection.out.poll();
+        }
+        updateInterest(connection);
+    }
+
+    private void updateInterest(Connection connection) {
+        if (connection.closed)
+            return;
+        int ops = 0;
+        if (!connection.out.isEmpty())
+            ops |= SelectionKey.OP_WRITE;
+        else if (connection.in.hasRemaining())
+            ops |= SelectionKey.OP_READ;
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection) {
+        if (connection.closed)
+            return;
+        connection.closed = true;
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+        connections.remove(connection);
+        openConnections.decrementAndGet();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Already closed
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        if (!running)
+            return;
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final Object remote;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        final Queue<ByteBuffer> out = new ArrayDeque<>();
+        SelectionKey key;
+        boolean busy;   // A batch from this connection is with a worker
+        boolean closed;
+
+        Connection(SocketChannel channel, Object remote) {
+            this.channel = channel;
+            this.remote = remote;
+        }
+    }
+
+    private static final class Completion {
+        final Connection connection;
+        final ByteBuffer responses;
+
+        Completion(Connection connection, ByteBuffer responses) {
+            this.connection = connection;
+            this.responses = responses;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ratelimiter.wire;
+
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.RateLimiterService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames of the binary decision protocol spoken by DecisionServer. Every
+ * frame starts with its length, so a reader never has to parse a partial one:
+ *
+ * <pre>
+ * request (client → server)
+ * size  field
+ *    2  length of the rest of the frame (u16)
+ *    4  request id (chosen by the client, echoed in the response)
+ *    2  cost (u16, 1..MAX_COST)
+ *    …  identifier (UTF-8, 1..MAX_IDENTIFIER_BYTES, no '|')
+ *
+ * response (server → client), 35 bytes
+ *    2  length of the rest of the frame (33)
+ *    4  request id
+ *    1  status: ALLOWED, REJECTED, INVALID (bad cost / identifier) or
+ *       ERROR (the server could not decide; the check may be retried)
+ *    8  limit
+ *    8  remaining
+ *    8  reset at (epoch seconds)
+ *    4  retry after (seconds; 0 unless rejected)
+ * </pre>
+ *
+ * Big-endian. A check for a 12-byte identifier is 20 bytes out and 35 back,
+ * against a few hundred bytes of headers and JSON on the REST path. A client
+ * may send many requests without waiting (pipelining); responses on a
+ * connection come back in request order.
+ */
+public final class WireProtocol {
+
+    public static final byte REJECTED = 0;
+    public static final byte ALLOWED = 1;
+    public static final byte INVALID = 2;
+    public static final byte ERROR = 3;
+
+    public static final int MAX_COST = 1000;
+    public static final int MAX_IDENTIFIER_BYTES = 1024;
+
+    static final int LENGTH_BYTES = 2;
+    static final int REQUEST_HEADER_BYTES = 4 + 2; // id + cost
+    static final int MAX_REQUEST_BYTES = LENGTH_BYTES + REQUEST_HEADER_BYTES + MAX_IDENTIFIER_BYTES;
+    public static final int RESPONSE_BYTES = LENGTH_BYTES + 4 + 1 + 8 + 8 + 8 + 4;
+
+    private WireProtocol() {
+    }
+
+    /** A decoded request frame. */
+    static final class Request {
+        final int id;
+        final int cost;
+        final String identifier;
+
+        Request(int id, int cost, String identifier) {
+            this.id = id;
+            this.cost = cost;
+            this.identifier = identifier;
+        }
+
+        boolean isValid() {
+            return !identifier.isEmpty() && RateLimiterService.isValidIdentifier(identifier)
+                    && cost >= 1 && cost <= MAX_COST;
+        }
+    }
+
+    public static void writeRequest(ByteBuffer out, int id, String identifier, int cost) {
+        byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length > MAX_IDENTIFIER_BYTES)
+            throw new IllegalArgumentException("Identifier must be 1 to " + MAX_IDENTIFIER_BYTES + " UTF-8 bytes");
+        if (cost < 1 || cost > MAX_COST)
+            throw new IllegalArgumentException("Cost must be 1 to " + MAX_COST + ", got " + cost);
+        out.putShort((short) (REQUEST_HEADER_BYTES + bytes.length));
+        out.putInt(id);
+        out.putShort((short) cost);
+        out.put(bytes);
+    }
+
+    /**
+     * Length of the frame at in's position including its length field, or -1
+     * if not all of it has arrived. Does not move the position.
+     *
+     * @throws IllegalArgumentException if the length field is out of range
+     */
+    static int completeRequestLength(ByteBuffer in) {
+        if (in.remaining() < LENGTH_BYTES)
+            return -1;
+        int length = Short.toUnsignedInt(in.getShort(in.position()));
+        if (length <= REQUEST_HEADER_BYTES || length > REQUEST_HEADER_BYTES + MAX_IDENTIFIER_BYTES)
+            throw new IllegalArgumentException("Bad request frame length " + length);
+        return in.remaining() < LENGTH_BYTES + length ? -1 : LENGTH_BYTES + length;
+    }
+
+    /** Read one complete frame (see completeRequestLength). */
+    static Request readRequest(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        int id = in.getInt();
+        int cost = Short.toUnsignedInt(in.getShort());
+        byte[] bytes = new byte[length - REQUEST_HEADER_BYTES];
+        in.get(bytes);
+        return new Request(id, cost, new String(bytes, StandardCharsets.UTF_8).trim());
+    }
+
+    static void writeDecision(ByteBuffer out, int id, RateLimitDecision decision) {
+        out.putShort((short) (RESPONSE_BYTES - LENGTH_BYTES));
+        out.putInt(id);
+        out.put(decision.isAllowed() ? ALLOWED : REJECTED);
+        out.putLong(decision.getLimit());
+        out.putLong(decision.getRemaining());
+        out.putLong(decision.getResetAtEpochSeconds());
+        out.putInt((int) Math.min(decision.getRetryAfterSeconds(), Integer.MAX_VALUE));
+    }
+
+    /** A response with no decision: INVALID or ERROR. */
+    static void writeStatus(ByteBuffer out, int id, byte status) {
+        out.putShort((short) (RESPONSE_BYTES - LENGTH_BYTES));
+        out.putInt(id);
+        out.put(status);
+        out.putLong(0);
+        out.putLong(0);
+        out.putLong(0);
+        out.putInt(0);
+    }
+
+    /** Status byte of the complete response frame at in's position. */
+    static byte peekStatus(ByteBuffer in) {
+        return in.get(in.position() + LENGTH_BYTES + 4);
+    }
+
+    /** Request id of the complete response frame at in's position. */
+    static int peekId(ByteBuffer in) {
+        return in.getInt(in.position() + LENGTH_BYTES);
+    }
+
+    /**
+     * Read one complete response frame.
+     *
+     * @return the decision, or null for an INVALID or ERROR response
+     */
+    static RateLimitDecision readDecision(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length != RESPONSE_BYTES - LENGTH_BYTES)
+            throw new IllegalArgumentException("Bad response frame length " + length);
+        in.getInt(); // id
+        byte status = in.get();
+        long limit = in.getLong();
+        long remaining = in.getLong();
+        long resetAt = in.getLong();
+        long retryAfter = in.getInt();
+        if (status == INVALID || status == ERROR)
+            return null;
+        return status == ALLOWED
+                ? RateLimitDecision.allowed(limit, remaining, resetAt)
+                : RateLimitDecision.rejected(limit, resetAt, retryAfter);
+    }
+}
@@ -0,0 +1,53 @@
+-- Sliding window log check + record in one round trip.
+-- KEYS[1] = sorted set of request timestamps (score = epoch ms)
+-- ARGV[1] = limit, ARGV[2] = window (ms), ARGV[3] = unique member for this request
+-- ARGV[4] = requests to record (optional, default 1; members get a ':i' suffix)
+-- ARGV[5] = permits each request costs (optional, default 1; all or nothing)
+-- Returns {allowed (count admitted), remaining, reset at (epoch ms), retry after (ms)}
+local limit = tonumber(ARGV[1])
+local window_ms = tonumber(ARGV[2])
+local requested = tonumber(ARGV[4] or '1')
+local permits = tonumber(ARGV[5] or '1')
+
+-- Server clock, so every replica agrees on the window edges
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local window_start = now - window_ms
+
+-- Keep timestamps >= window_start
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. window_start)
+local count = redis.call('ZCARD', KEYS[1])
+
+local allowed = math.max(0, math.min(requested, math.floor((limit - count) / permits)))
+if requested == 1 and permits == 1 and allowed == 1 then
+    redis.call('ZADD', KEYS[1], now, ARGV[3])
+else
+    for i = 1, allowed * permits do
+        redis.call('ZADD', KEYS[1], now, ARGV[3] .. ':' .. i)
+    end
+end
+count = count + allowed * permits
+-- The whole log is stale one window after its newest entry
+if count > 0 then
+    redis.call('PEXPIRE', KEYS[1], window_ms)
+end
+
+local reset_at = now + window_ms
+local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+if oldest[2] ~= nil then
+    reset_at = tonumber(oldest[2]) + window_ms
+end
+
+local retry_ms = 0
+if allowed < requested then
+    -- Until enough of the oldest entries expire to fit permits more
+    local must_expire = count + math.min(permits, limit) - limit
+    retry_ms = reset_at - now
+    if must_expire > 1 then
+        local last = redis.call('ZRANGE', KEYS[1], must_expire - 1, must_expire - 1, 'WITHSCORES')
+        if last[2] ~= nil then
+            retry_ms = tonumber(last[2]) + window_ms - now
+        end
+    end
+end
+return {allowed, math.max(0, limit - count), reset_at, retry_ms}
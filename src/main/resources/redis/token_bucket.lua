@@ -0,0 +1,62 @@
+-- Token bucket refill + consume in one round trip.
+-- KEYS[1] = bucket hash {tokens, ts}
+-- ARGV[1] = capacity, ARGV[2] = refill rate (tokens/s), ARGV[3] = window (ms)
+-- ARGV[4] = permits this request costs (optional, default 1; all or nothing)
+-- Returns {allowed (0/1), remaining, reset at (epoch ms), retry after (ms)}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local window_ms = tonumber(ARGV[3])
+local permits = tonumber(ARGV[4] or '1')
+
+-- Server clock, so every replica measures refill against the same time
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+local fresh = tokens == nil
+if fresh then
+    tokens = capacity
+    ts = now
+end
+
+if rate > 0 and now > ts then
+    local add = math.floor((now - ts) * rate / 1000)
+    if add > 0 then
+        tokens = math.min(capacity, tokens + add)
+        ts = now
+    end
+end
+
+local allowed = 0
+if tokens >= permits then
+    tokens = tokens - permits
+    allowed = 1
+end
+redis.call('HSET', KEYS[1], 'tokens', tokens, 'ts', ts)
+
+local reset_at
+local retry_ms = 0
+if rate > 0 then
+    -- Expire when the bucket would be full again: a missing key is a full bucket
+    reset_at = ts + math.ceil((capacity - tokens) * 1000 / rate)
+    redis.call('PEXPIRE', KEYS[1], math.max(1, reset_at - now))
+    if allowed == 0 then
+        -- Until the bucket holds permits tokens (full, for a cost above capacity)
+        local missing = math.max(1, math.min(permits, capacity) - tokens)
+        retry_ms = ts + math.ceil(missing * 1000 / rate) - now
+    end
+else
+    -- No refill: the bucket lives for one window from its first request
+    if fresh then
+        redis.call('PEXPIRE', KEYS[1], window_ms)
+    end
+    local ttl = redis.call('PTTL', KEYS[1])
+    reset_at = now + math.max(0, ttl)
+    if allowed == 0 then
+        retry_ms = math.max(0, ttl)
+    end
+end
+
+return {allowed, tokens, reset_at, retry_ms}
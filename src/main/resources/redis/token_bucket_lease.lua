@@ -0,0 +1,60 @@
+-- Token bucket lease: return unused permits and take up to N more, in one round trip.
+-- KEYS[1] = bucket hash {tokens, ts} (same key as token_bucket.lua)
+-- ARGV[1] = capacity, ARGV[2] = refill rate (tokens/s), ARGV[3] = window (ms)
+-- ARGV[4] = permits returned, ARGV[5] = permits requested
+-- ARGV[6] = permits per grant (optional, default 1): requested counts callers of
+-- that cost, each granted whole or not at all
+-- Returns {granted, tokens left, reset at (epoch ms), retry after (ms) when granted < requested}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local window_ms = tonumber(ARGV[3])
+local returned = tonumber(ARGV[4])
+local requested = tonumber(ARGV[5])
+local unit = tonumber(ARGV[6] or '1')
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+local fresh = tokens == nil
+if fresh then
+    tokens = capacity
+    ts = now
+end
+
+if rate > 0 and now > ts then
+    local add = math.floor((now - ts) * rate / 1000)
+    if add > 0 then
+        tokens = math.min(capacity, tokens + add)
+        ts = now
+    end
+end
+
+tokens = math.min(capacity, tokens + returned)
+local granted = math.min(requested, math.floor(tokens / unit))
+tokens = tokens - granted * unit
+redis.call('HSET', KEYS[1], 'tokens', tokens, 'ts', ts)
+
+local reset_at
+local retry_ms = 0
+if rate > 0 then
+    reset_at = ts + math.ceil((capacity - tokens) * 1000 / rate)
+    redis.call('PEXPIRE', KEYS[1], math.max(1, reset_at - now))
+    if granted < requested then
+        local missing = math.max(1, math.min(unit, capacity) - tokens)
+        retry_ms = ts + math.ceil(missing * 1000 / rate) - now
+    end
+else
+    if fresh then
+        redis.call('PEXPIRE', KEYS[1], window_ms)
+    end
+    local ttl = redis.call('PTTL', KEYS[1])
+    reset_at = now + math.max(0, ttl)
+    if granted < requested then
+        retry_ms = math.max(0, ttl)
+    end
+end
+
+return {granted, tokens, reset_at, retry_ms}
@@ -12,6 +12,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
@@ -162,4 +163,138 @@ class RateLimiterIntegrationTest {
 
         assertThat(remainingAfterSecond).isLessThan(remainingAfterFirst);
     }
+
+    @Test
+    @DisplayName("8. Headers and body describe the state after consumption")
+    void testHeadersReflectStateAfterConsumption() throws Exception {
+        String userId = "integration-user-8";
+
+        mockMvc.perform(post("/api/v1/request")
+                .header("X-User-Id", userId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-RateLimit-Limit", String.valueOf(DEFAULT_LIMIT)))
+                .andExpect(header().string("X-RateLimit-Remaining", String.valueOf(DEFAULT_LIMIT - 1)))
+                .andExpect(jsonPath("$.tokensRemaining").value(DEFAULT_LIMIT - 1));
+    }
+
+    @Test
+    @DisplayName("9. Admin config create invalidates the cached default config")
+    void testAdminConfigCreateInvalidatesCache() throws Exception {
+        String userId = "integration-user-9";
+
+        // Warm the cache with the default config
+        mockMvc.perform(get("/api/v1/status").header("X-User-Id", userId))
+                .andExpect(jsonPath("$.totalLimit").value(DEFAULT_LIMIT));
+
+        mockMvc.perform(post("/admin/config")
+                .contentType("application/json")
+                .content("""
+                        {"identifier": "integration-user-9", "identifierType": "USER_ID",
+                         "maxRequests": 42, "windowSeconds": 60, "refillRate": 1}
+                        """))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/status").header("X-User-Id", userId))
+                .andExpect(jsonPath("$.totalLimit").value(42));
+    }
+
+    @Test
+    @DisplayName("10. Admin top endpoint ranks the heaviest and most rejected identifiers")
+    void testAdminTopListsHeavyHitters() throws Exception {
+        String userId = "integration-user-10";
+
+        for (int i = 0; i < DEFAULT_LIMIT + 3; i++) {
+            mockMvc.perform(post("/api/v1/request").header("X-User-Id", userId));
+        }
+
+        mockMvc.perform(get("/admin/top").param("k", "1").param("windowSeconds", "60"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sampleEvery").value(1))
+                .andExpect(jsonPath("$.requests[0].identifier").value(userId))
+                .andExpect(jsonPath("$.requests[0].estimatedCount").value(DEFAULT_LIMIT + 3))
+                .andExpect(jsonPath("$.rejections[0].identifier").value(userId))
+                .andExpect(jsonPath("$.rejections[0].estimatedCount").value(3));
+    }
+
+    @Test
+    @DisplayName("11. Batch check decides every item in one call, in order per identifier")
+    void testCheckBatch() throws Exception {
+        mockMvc.perform(post("/api/v1/check-batch")
+                .contentType("application/json")
+                .content("""
+                        {"items": [
+                          {"identifier": "batch-a", "cost": 3},
+                          {"identifier": "batch-b"},
+                          {"identifier": "batch-a", "cost": 2},
+                          {"identifier": "batch-a"},
+                          {"identifier": "batch-b", "cost": 4}
+                        ]}
+                        """))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-RateLimit-Limit")) // The endpoint itself is not limited
+                .andExpect(jsonPath("$.allowed").value(4))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].identifier").value("batch-a"))
+                .andExpect(jsonPath("$.results[0].allowed").value(true))
+                .andExpect(jsonPath("$.results[0].remaining").value(DEFAULT_LIMIT - 3))
+                .andExpect(jsonPath("$.results[1].allowed").value(true))
+                .andExpect(jsonPath("$.results[2].allowed").value(true))
+                .andExpect(jsonPath("$.results[2].remaining").value(0))
+                .andExpect(jsonPath("$.results[3].allowed").value(false))
+                .andExpect(jsonPath("$.results[3].retryAfterSeconds").isNumber())
+                .andExpect(jsonPath("$.results[4].allowed").value(true))
+                .andExpect(jsonPath("$.results[4].remaining").value(0));
+
+        // The batch drew on the same limits as single requests
+        mockMvc.perform(post("/api/v1/request").header("X-User-Id", "batch-b"))
+                .andExpect(status().isTooManyRequests());
+
+        mockMvc.perform(post("/api/v1/check-batch")
+                .contentType("application/json")
+                .content("""
+                        {"items": [{"identifier": "batch-c", "cost": 0}]}
+                        """))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/check-batch")
+                .contentType("application/json")
+                .content("{\"items\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("12. A caller's budget on a limited route is reset by its route key")
+    void testResetRouteKey() throws Exception {
+        String userId = "integration-user-12";
+        mockMvc.perform(put("/admin/routes")
+                .contentType("application/json")
+                .content("""
+                        [{"path": "/api/v1/request", "method": "POST", "limit": 2, "windowSeconds": 60}]
+                        """))
+                .andExpect(status().isOk());
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/v1/request").header("X-User-Id", userId))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/api/v1/request").header("X-User-Id", userId))
+                .andExpect(status().isTooManyRequests());
+
+        // The key holds '/', so it goes in a parameter, not the path
+        mockMvc.perform(post("/admin/reset").param("identifier", userId + "|route:POST:/api/v1/request"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("success"));
+        mockMvc.perform(post("/api/v1/request").header("X-User-Id", userId))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/admin/reset").param("identifier", " "))
+                .andExpect(status().isBadRequest());
+
+        // A caller cannot pose as someone's route key
+        mockMvc.perform(post("/api/v1/request").header("X-User-Id", userId + "|route:POST:/api/v1/request"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/check-batch")
+                        .contentType("application/json")
+                        .content("{\"items\": [{\"identifier\": \"" + userId + "|route:POST:/api/v1/request\"}]}"))
+                .andExpect(status().isBadRequest());
+    }
 }
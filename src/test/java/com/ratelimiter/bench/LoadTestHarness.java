@@ -0,0 +1,295 @@
+package com.ratelimiter.bench;
+
+import com.ratelimiter.ApiRateLimiterApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test: what RateLimitFilter adds to a request.
+ *
+ * Boots the app in-process on the H2 `local` profile (random port, no Redis,
+ * nothing beyond loopback — runs offline) twice side by side, with
+ * rate-limiter.filter.enabled true and false, each on its own in-memory
+ * database. Every tick sends the same POST /api/v1/request to both, so the
+ * two share the JVM, the JIT state and whatever else the machine is doing;
+ * running one after the other would hand the second run a warmer JIT.
+ *
+ * Load model:
+ * - Open loop: tick i is due at start + i / rps whether or not earlier
+ * requests have returned. Latency is measured from that due time, so a
+ * stalled server shows up as queueing delay instead of silently lowering
+ * the rate (no coordinated omission). Recorded in an HdrHistogram (µs).
+ * - Identifier mix: hot-share of ticks go to one identifier ("hot-user",
+ * soon limited); the rest are spread uniformly over `identifiers` users.
+ * - HttpClient on virtual threads when the JVM has them (21+); on 17 it
+ * falls back to a cached thread pool.
+ *
+ * --rps is per app: in `both` mode the machine serves twice that. The
+ * "Rate limit exceeded" log line is switched off — at these reject rates it
+ * would measure the console, not the filter.
+ *
+ * Not a unit test — run manually:
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *       com.ratelimiter.bench.LoadTestHarness [--rps=250] [--duration=20] [--warmup=40] \
+ *       [--identifiers=1000] [--hot-share=0.2] [--mode=both|on|off] [--<spring.property>=value ...]
+ */
+public class LoadTestHarness {
+
+    private static final int MAX_IN_FLIGHT = 2_000; // One connection each over HTTP/1.1: keep well below the fd limit
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    public static void main(String[] args) {
+        Settings settings = new Settings();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!settings.accept(arg))
+                springArgs.add(arg); // Anything else goes to the app, e.g. --rate-limiter.algorithm=TOKEN_BUCKET
+        }
+        System.out.printf("load test: %d req/s per app for %d s (after %d s warm-up), %d identifiers, " +
+                        "hot share %.2f, %s%n", settings.rps, settings.durationSeconds, settings.warmupSeconds,
+                settings.identifiers, settings.hotShare, clientThreads());
+
+        List<Target> targets = new ArrayList<>();
+        ExecutorService executor = newClientExecutor();
+        try {
+            if (!"off".equals(settings.mode))
+                targets.add(Target.boot("filter ON ", true, springArgs));
+            if (!"on".equals(settings.mode))
+                targets.add(Target.boot("filter OFF", false, springArgs));
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(executor)
+                    .build();
+            Driver driver = new Driver(client, targets, settings);
+            driver.drive(settings.warmupSeconds); // JIT, connection pool, config cache
+            List<Result> results = driver.drive(settings.durationSeconds);
+
+            for (int i = 0; i < targets.size(); i++) {
+                results.get(i).print(targets.get(i).label);
+            }
+            if (results.size() == 2) {
+                Histogram on = results.get(0).latency;
+                Histogram off = results.get(1).latency;
+                System.out.printf("filter overhead: p50 %+d µs, p99 %+d µs, p99.9 %+d µs%n",
+                        on.getValueAtPercentile(50) - off.getValueAtPercentile(50),
+                        on.getValueAtPercentile(99) - off.getValueAtPercentile(99),
+                        on.getValueAtPercentile(99.9) - off.getValueAtPercentile(99.9));
+            }
+        } finally {
+            executor.shutdownNow();
+            targets.forEach(target -> target.app.close());
+        }
+        System.exit(0);
+    }
+
+    /** One running app instance and its request URI */
+    private static final class Target {
+        final String label;
+        final ConfigurableApplicationContext app;
+        final URI uri;
+
+        private Target(String label, ConfigurableApplicationContext app) {
+            this.label = label;
+            this.app = app;
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            this.uri = URI.create("http://127.0.0.1:" + port + "/api/v1/request");
+        }
+
+        static Target boot(String label, boolean filterEnabled, List<String> springArgs) {
+            // Command-line arguments, not builder properties: those are defaults and application.yml would win
+            String database = "loadtest-" + (filterEnabled ? "on" : "off");
+            List<String> appArgs = new ArrayList<>(List.of(
+                    "--spring.profiles.active=local",
+                    "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                    "--server.port=0",
+                    "--rate-limiter.filter.enabled=" + filterEnabled,
+                    "--spring.main.banner-mode=off",
+                    "--logging.level.root=WARN",
+                    "--logging.level.com.ratelimiter=ERROR"));
+            appArgs.addAll(springArgs);
+            return new Target(label, new SpringApplicationBuilder(ApiRateLimiterApplication.class)
+                    .run(appArgs.toArray(new String[0])));
+        }
+    }
+
+    /**
+     * Virtual-thread-per-task executor when the JVM has one (looked up
+     * reflectively so this compiles on 17), else a cached pool.
+     */
+    private static ExecutorService newClientExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "load-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static String clientThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return "virtual-thread client";
+        } catch (NoSuchMethodException e) {
+            return "platform-thread client (no virtual threads on Java " + Runtime.version().feature() + ")";
+        }
+    }
+
+    /** Paces ticks on one thread and records completions from the client's threads. */
+    private static final class Driver {
+        private final HttpClient client;
+        private final List<Target> targets;
+        private final Settings settings;
+        private final SplittableRandom random = new SplittableRandom(42); // Pacer thread only
+
+        Driver(HttpClient client, List<Target> targets, Settings settings) {
+            this.client = client;
+            this.targets = targets;
+            this.settings = settings;
+        }
+
+        /** One Result per target, in target order */
+        List<Result> drive(int seconds) {
+            List<Result> results = new ArrayList<>();
+            targets.forEach(target -> results.add(new Result()));
+            AtomicInteger inFlight = new AtomicInteger();
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rps;
+            long ticks = (long) settings.rps * seconds;
+            long start = System.nanoTime();
+
+            for (long i = 0; i < ticks; i++) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+                String identifier = nextIdentifier();
+                // Alternate which app goes first so neither always gets the head start
+                for (int t = 0; t < targets.size(); t++) {
+                    int index = (int) ((i + t) % targets.size());
+                    send(targets.get(index).uri, identifier, due, results.get(index), inFlight);
+                }
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            long elapsed = System.nanoTime() - start;
+            results.forEach(result -> result.elapsedNanos = elapsed);
+            return results;
+        }
+
+        private void send(URI uri, String identifier, long due, Result result, AtomicInteger inFlight) {
+            if (inFlight.get() >= MAX_IN_FLIGHT) {
+                result.dropped.increment(); // Server hopelessly behind: shed instead of queueing forever
+                return;
+            }
+            inFlight.incrementAndGet();
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("X-User-Id", identifier)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long micros = (System.nanoTime() - due) / 1_000;
+                result.latency.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+                if (error != null)
+                    result.errors.increment();
+                else if (response.statusCode() == 200)
+                    result.ok.increment();
+                else if (response.statusCode() == 429)
+                    result.limited.increment();
+                else
+                    result.other.increment();
+                inFlight.decrementAndGet();
+            });
+        }
+
+        private String nextIdentifier() {
+            if (random.nextDouble() < settings.hotShare)
+                return "hot-user";
+            return "user-" + random.nextInt(settings.identifiers);
+        }
+    }
+
+    private static final class Result {
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder limited = new LongAdder();
+        final LongAdder other = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        long elapsedNanos;
+
+        void print(String label) {
+            long completed = latency.getTotalCount();
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%s: %d requests in %.1f s → %.0f req/s | 200: %d  429: %d  other: %d  " +
+                            "errors: %d  dropped: %d%n", label, completed, seconds, completed / seconds,
+                    ok.sum(), limited.sum(), other.sum(), errors.sum(), dropped.sum());
+            System.out.printf("%s  latency µs: p50 %d  p99 %d  p99.9 %d  max %d%n", label,
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMaxValue());
+        }
+    }
+
+    private static final class Settings {
+        int rps = 250;
+        int durationSeconds = 20;
+        int warmupSeconds = 40;
+        int identifiers = 1_000;
+        double hotShare = 0.2;
+        String mode = "both";
+
+        /** Consume a harness option; false if it belongs to the app */
+        boolean accept(String arg) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                return false;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "rps":
+                    rps = Integer.parseInt(value);
+                    return true;
+                case "duration":
+                    durationSeconds = Integer.parseInt(value);
+                    return true;
+                case "warmup":
+                    warmupSeconds = Integer.parseInt(value);
+                    return true;
+                case "identifiers":
+                    identifiers = Integer.parseInt(value);
+                    return true;
+                case "hot-share":
+                    hotShare = Double.parseDouble(value);
+                    return true;
+                case "mode":
+                    mode = value;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ratelimiter.bench;
+
+import com.ratelimiter.model.TimestampRing;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Sliding window log storage: boxed ConcurrentLinkedDeque (previous
+ * implementation) vs primitive TimestampRing.
+ *
+ * Replays one hot key at a 10,000 req/hour limit on a simulated clock,
+ * offering 2× the limit so the window stays full and both admit and reject
+ * paths are exercised. Reports allocated bytes/op (per-thread allocation
+ * counter) and per-op latency percentiles.
+ *
+ * Not a unit test — run manually after mvn test-compile:
+ *   java -cp target/classes:target/test-classes \
+ *       com.ratelimiter.bench.SlidingWindowLogBenchmark
+ */
+public class SlidingWindowLogBenchmark {
+
+    private static final int LIMIT = 10_000;
+    private static final long WINDOW_MS = 3_600_000;
+    private static final long GAP_MS = WINDOW_MS / (2L * LIMIT);
+    private static final int WARMUP_OPS = 2_000_000;
+    private static final int MEASURED_OPS = 2_000_000;
+
+    interface Log {
+        boolean tryAdd(long now);
+    }
+
+    /** The pre-ring algorithm: prune head, count, add boxed timestamp. */
+    static final class DequeLog implements Log {
+        private final ConcurrentLinkedDeque<Long> timestamps = new ConcurrentLinkedDeque<>();
+
+        @Override
+        public synchronized boolean tryAdd(long now) {
+            long windowStart = now - WINDOW_MS;
+            while (!timestamps.isEmpty() && timestamps.peekFirst() < windowStart)
+                timestamps.pollFirst();
+            if (timestamps.size() < LIMIT) {
+                timestamps.addLast(now);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static final class RingLog implements Log {
+        private final TimestampRing ring = new TimestampRing();
+
+        @Override
+        public synchronized boolean tryAdd(long now) {
+            long windowStart = now - WINDOW_MS;
+            if (ring.tryAdd(now, windowStart, LIMIT)) {
+                ring.countSince(windowStart); // remaining header, as the strategy computes it
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public static void main(String[] args) {
+        run("ConcurrentLinkedDeque<Long>", new DequeLog());
+        run("TimestampRing (long[])", new RingLog());
+    }
+
+    private static void run(String name, Log log) {
+        long now = 0;
+        for (int i = 0; i < WARMUP_OPS; i++) {
+            log.tryAdd(now += GAP_MS);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long[] latencies = new long[MEASURED_OPS];
+        int allowed = 0;
+
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_OPS; i++) {
+            long start = System.nanoTime();
+            if (log.tryAdd(now += GAP_MS))
+                allowed++;
+            latencies[i] = System.nanoTime() - start;
+        }
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-28s alloc=%6.1f B/op  p50=%5d ns  p99=%6d ns  p99.9=%7d ns  allowed=%d%n",
+                name,
+                bytes / (double) MEASURED_OPS,
+                latencies[MEASURED_OPS / 2],
+                latencies[(int) (MEASURED_OPS * 0.99)],
+                latencies[(int) (MEASURED_OPS * 0.999)],
+                allowed);
+    }
+}
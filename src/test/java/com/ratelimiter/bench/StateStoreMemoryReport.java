@@ -0,0 +1,89 @@
+package com.ratelimiter.bench;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.store.EntryStore;
+import com.ratelimiter.service.store.OffHeapStateTable;
+import com.ratelimiter.service.strategy.GcraStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Memory per tracked identifier: heap EntryStore (RateLimitEntry + String key
+ * + map node per key) vs OffHeapStateTable (24-byte slots in direct buffers).
+ *
+ * Inserts N distinct IP-like identifiers through GcraStrategy in each mode and
+ * reports retained heap after GC, native bytes reserved, and a GC pause
+ * sample (a full System.gc() with the keys live).
+ *
+ * Not a unit test — run manually after mvn test-compile (heap must hold N
+ * heap entries):
+ *   java -Xmx2g -cp target/classes:target/test-classes:<micrometer-core.jar> \
+ *       com.ratelimiter.bench.StateStoreMemoryReport [keys]
+ */
+public class StateStoreMemoryReport {
+
+    // Slow refill (one request per 36 s) so no key becomes reclaimable mid-run
+    private static final RateLimitConfig CONFIG = RateLimitConfig.builder()
+            .identifier("default")
+            .identifierType(RateLimitConfig.IdentifierType.IP_ADDRESS)
+            .maxRequests(100)
+            .windowSeconds(3600)
+            .refillRate(0)
+            .build();
+
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] identifiers = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            identifiers[i] = (10 + (i >>> 16)) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff) + ".1";
+        }
+
+        // Identifiers are held by the caller in both runs, so only the store's
+        // own structures count. Off-heap first, so the heap run's garbage
+        // cannot skew its baseline.
+        long baseline = usedHeapAfterGc();
+        OffHeapStateTable table = new OffHeapStateTable(keys, 3_600_000, 256);
+        GcraStrategy offHeap = new GcraStrategy(table);
+        for (String id : identifiers) {
+            offHeap.tryAcquire(id, CONFIG);
+        }
+        long offHeapHeapBytes = usedHeapAfterGc() - baseline;
+        long offHeapPauseMs = gcPauseMs();
+        report("OFF_HEAP (table)", table.size(), offHeapHeapBytes, table.getAllocatedBytes(), offHeapPauseMs);
+        table = null;
+        offHeap = null;
+
+        baseline = usedHeapAfterGc();
+        EntryStore store = new EntryStore(keys, 3_600_000, 1000);
+        GcraStrategy heap = new GcraStrategy(store);
+        for (String id : identifiers) {
+            heap.tryAcquire(id, CONFIG);
+        }
+        long heapBytes = usedHeapAfterGc() - baseline;
+        long heapPauseMs = gcPauseMs();
+        report("HEAP (EntryStore)", store.size(), heapBytes, 0, heapPauseMs);
+    }
+
+    private static void report(String name, long entries, long heapBytes, long nativeBytes, long pauseMs) {
+        System.out.printf("%-18s keys=%,d  heap=%,d B (%.1f B/key)  native=%,d B (%.1f B/key)  full GC=%d ms%n",
+                name, entries,
+                heapBytes, heapBytes / (double) entries,
+                nativeBytes, nativeBytes / (double) entries,
+                pauseMs);
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcPauseMs() {
+        long start = System.nanoTime();
+        System.gc();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
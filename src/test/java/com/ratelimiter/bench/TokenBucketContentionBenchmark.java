@@ -0,0 +1,147 @@
+package com.ratelimiter.bench;
+
+import com.ratelimiter.model.BucketState;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket on a single hot key: synchronized refill + consume (previous
+ * implementation) vs the lock-free packed-state CAS loop.
+ *
+ * The first two rows compare the bucket update alone; the third runs the
+ * full TokenBucketStrategy.tryAcquire (store lookup, deadline, decision).
+ *
+ * Each thread calls tryAcquire on the same identifier for a fixed duration;
+ * the bucket refills fast enough that both admit and reject paths run.
+ * Reports aggregate ops/s at 1, 8 and 64 threads.
+ *
+ * Not a unit test — run manually after mvn test-compile:
+ *   java -cp target/classes:target/test-classes \
+ *       com.ratelimiter.bench.TokenBucketContentionBenchmark
+ */
+public class TokenBucketContentionBenchmark {
+
+    private static final int[] THREADS = {1, 8, 64};
+    private static final long WARMUP_MS = 2_000;
+    private static final long MEASURE_MS = 3_000;
+    private static final String KEY = "hot-key";
+
+    private static final RateLimitConfig CONFIG = RateLimitConfig.builder()
+            .identifier(KEY)
+            .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+            .maxRequests(1_000)
+            .windowSeconds(60)
+            .refillRate(100_000)
+            .build();
+
+    interface Limiter {
+        boolean tryAcquire();
+    }
+
+    /** The pre-CAS algorithm: two AtomicLongs guarded by the entry monitor. */
+    static final class SynchronizedBucket implements Limiter {
+        private final AtomicLong tokens = new AtomicLong(CONFIG.getMaxRequests());
+        private final AtomicLong lastRefill = new AtomicLong(System.currentTimeMillis());
+
+        @Override
+        public synchronized boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            long elapsedMs = now - lastRefill.get();
+            long tokensToAdd = elapsedMs * CONFIG.getRefillRate() / 1000L;
+            if (tokensToAdd > 0) {
+                tokens.set(Math.min(CONFIG.getMaxRequests(), tokens.get() + tokensToAdd));
+                lastRefill.set(now);
+            }
+            if (tokens.get() >= 1) {
+                tokens.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /** The BucketState CAS loop without the store and decision around it. */
+    static final class CasBucket implements Limiter {
+        private final AtomicLong state = new AtomicLong(
+                BucketState.pack(CONFIG.getMaxRequests(), System.currentTimeMillis()));
+
+        @Override
+        public boolean tryAcquire() {
+            while (true) {
+                long current = state.get();
+                long now = System.currentTimeMillis();
+                long tokens = BucketState.tokens(current);
+                long refillTime = BucketState.refillTimeMs(current);
+                long tokensToAdd = (now - refillTime) * CONFIG.getRefillRate() / 1000L;
+                if (tokensToAdd > 0) {
+                    tokens = Math.min(CONFIG.getMaxRequests(), tokens + tokensToAdd);
+                    refillTime = now;
+                }
+                if (tokens < 1)
+                    return false;
+                if (state.compareAndSet(current, BucketState.pack(tokens - 1, refillTime)))
+                    return true;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("available processors: %d%n", Runtime.getRuntime().availableProcessors());
+        for (int threads : THREADS) {
+            run("synchronized", threads, new SynchronizedBucket());
+            run("CAS (BucketState)", threads, new CasBucket());
+            TokenBucketStrategy strategy = new TokenBucketStrategy();
+            run("TokenBucketStrategy", threads, () -> strategy.tryAcquire(KEY, CONFIG).isAllowed());
+        }
+    }
+
+    private static void run(String name, int threads, Limiter limiter) throws InterruptedException {
+        measure(threads, limiter, WARMUP_MS);
+        long[] result = measure(threads, limiter, MEASURE_MS);
+        System.out.printf("%-20s threads=%2d  %,12.0f ops/s  allowed=%5.1f%%%n",
+                name, threads,
+                result[0] * 1000.0 / MEASURE_MS,
+                100.0 * result[1] / Math.max(1, result[0]));
+    }
+
+    /** @return {total ops, allowed ops} */
+    private static long[] measure(int threads, Limiter limiter, long durationMs) throws InterruptedException {
+        AtomicLong ops = new AtomicLong();
+        AtomicLong allowed = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long localOps = 0;
+                long localAllowed = 0;
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline[0]) {
+                        for (int i = 0; i < 256; i++) {
+                            if (limiter.tryAcquire())
+                                localAllowed++;
+                        }
+                        localOps += 256;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ops.addAndGet(localOps);
+                    allowed.addAndGet(localAllowed);
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        deadline[0] = System.nanoTime() + durationMs * 1_000_000;
+        start.countDown();
+        done.await();
+        return new long[]{ops.get(), allowed.get()};
+    }
+}
@@ -0,0 +1,279 @@
+package com.ratelimiter.bench;
+
+import com.ratelimiter.ApiRateLimiterApplication;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Platform vs virtual request threads with many concurrent connections.
+ *
+ * Boots the app in-process on the H2 `local` profile (random port, runs
+ * offline), once per thread mode, with spring.threads.virtual.enabled false
+ * and true. An MVC interceptor (after RateLimitFilter) sleeps
+ * downstream-millis on every admitted request — a stand-in for the slow
+ * blocking downstream call the request thread would make. With platform
+ * threads Tomcat has server.tomcat.threads.max (200) of them, so
+ * throughput stops at roughly threads / downstream time and every other
+ * connection queues; with virtual threads a sleeping request only parks.
+ *
+ * Load model:
+ * - Closed loop: `connections` clients, each with one request outstanding
+ * on its own HTTP/1.1 connection; a response triggers the next request.
+ * Latency is send → response, in an HdrHistogram (µs).
+ * - Client `i` is identifier user-i. Limits default to effectively
+ * unlimited so every request pays the downstream delay; pass
+ * --rate-limiter.default-limit=… to mix in rejections.
+ *
+ * Virtual threads need Java 21+. On an older runtime the virtual run is
+ * skipped with a note (Spring Boot ignores the flag there). To check for
+ * pinning on 21, add -Djdk.tracePinnedThreads=short to the JVM.
+ *
+ * Each connection costs a file descriptor on both sides of loopback: at
+ * 10,000 connections raise `ulimit -n` above 20,000 first.
+ *
+ * Not a unit test — run manually:
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *       com.ratelimiter.bench.VirtualThreadBenchmark [--connections=10000] [--downstream-millis=50] \
+ *       [--duration=20] [--warmup=10] [--threads=both|platform|virtual] [--<spring.property>=value ...]
+ */
+public class VirtualThreadBenchmark {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final String UNLIMITED = "1000000"; // Per identifier: far above one connection's rate
+
+    public static void main(String[] args) {
+        Settings settings = new Settings();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!settings.accept(arg))
+                springArgs.add(arg); // Anything else goes to the app, e.g. --rate-limiter.algorithm=SLIDING_WINDOW
+        }
+        System.out.printf("virtual thread benchmark: %d connections, %d ms downstream, %d s (after %d s warm-up), " +
+                        "Java %d%n", settings.connections, settings.downstreamMillis, settings.durationSeconds,
+                settings.warmupSeconds, Runtime.version().feature());
+
+        List<Result> results = new ArrayList<>();
+        if (!"virtual".equals(settings.threads))
+            results.add(run("platform", false, settings, springArgs));
+        if (!"platform".equals(settings.threads)) {
+            if (Runtime.version().feature() >= 21)
+                results.add(run("virtual ", true, settings, springArgs));
+            else
+                System.out.printf("virtual : skipped — needs Java 21+, running on %d%n", Runtime.version().feature());
+        }
+        results.forEach(Result::print);
+        System.exit(0);
+    }
+
+    private static Result run(String label, boolean virtualThreads, Settings settings, List<String> springArgs) {
+        ConfigurableApplicationContext app = boot(virtualThreads, settings, springArgs);
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "vt-bench-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            URI uri = URI.create("http://127.0.0.1:" + port + "/api/v1/request");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .executor(executor)
+                    .build();
+            new Driver(client, uri, settings.connections, new Result(label)).drive(settings.warmupSeconds);
+            return new Driver(client, uri, settings.connections, new Result(label)).drive(settings.durationSeconds);
+        } finally {
+            executor.shutdownNow();
+            app.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext boot(boolean virtualThreads, Settings settings,
+                                                       List<String> springArgs) {
+        // Command-line arguments, not builder properties: those are defaults and application.yml would win
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--spring.profiles.active=local",
+                "--spring.datasource.url=jdbc:h2:mem:vt-bench-" + virtualThreads
+                        + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.com.ratelimiter=ERROR"));
+        addUnlessGiven(appArgs, springArgs, "server.tomcat.max-connections", String.valueOf(settings.connections + 1_000));
+        addUnlessGiven(appArgs, springArgs, "server.tomcat.accept-count", String.valueOf(settings.connections));
+        addUnlessGiven(appArgs, springArgs, "rate-limiter.default-limit", UNLIMITED);
+        addUnlessGiven(appArgs, springArgs, "rate-limiter.default-refill-rate", UNLIMITED);
+        appArgs.addAll(springArgs);
+
+        long downstreamMillis = settings.downstreamMillis;
+        return new SpringApplicationBuilder(ApiRateLimiterApplication.class)
+                .initializers(context -> ((GenericApplicationContext) context).registerBean("slowDownstream",
+                        WebMvcConfigurer.class, () -> slowDownstream(downstreamMillis)))
+                .run(appArgs.toArray(new String[0]));
+    }
+
+    /** An MVC interceptor runs after every filter, so only admitted requests wait on the "downstream call" */
+    private static WebMvcConfigurer slowDownstream(long millis) {
+        HandlerInterceptor interceptor = new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws InterruptedException {
+                Thread.sleep(millis);
+                return true;
+            }
+        };
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/**");
+            }
+        };
+    }
+
+    /** Duplicate keys on the command line are joined, not overridden — only add a default the user didn't pass */
+    private static void addUnlessGiven(List<String> appArgs, List<String> springArgs, String key, String value) {
+        if (springArgs.stream().noneMatch(arg -> arg.startsWith("--" + key + "=")))
+            appArgs.add("--" + key + "=" + value);
+    }
+
+    /** Keeps one request in flight per connection until the deadline. */
+    private static final class Driver {
+        private final HttpClient client;
+        private final URI uri;
+        private final int connections;
+        private final Result result;
+        private final LongAdder open = new LongAdder();
+        private volatile long deadline;
+
+        Driver(HttpClient client, URI uri, int connections, Result result) {
+            this.client = client;
+            this.uri = uri;
+            this.connections = connections;
+            this.result = result;
+        }
+
+        Result drive(int seconds) {
+            long start = System.nanoTime();
+            deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+            for (int i = 0; i < connections; i++) {
+                open.increment();
+                send("user-" + i);
+            }
+            // Let the last round finish so its connections are free for the next run
+            long drainBy = deadline + TimeUnit.SECONDS.toNanos(60);
+            while (open.sum() > 0 && System.nanoTime() < drainBy) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            result.elapsedNanos = Math.max(deadline, System.nanoTime()) - start;
+            return result;
+        }
+
+        private void send(String identifier) {
+            long sentAt = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("X-User-Id", identifier)
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long now = System.nanoTime();
+                result.latency.recordValue(Math.min((now - sentAt) / 1_000, HIGHEST_TRACKABLE_MICROS));
+                if (error != null)
+                    result.errors.increment();
+                else if (response.statusCode() == 200)
+                    result.ok.increment();
+                else if (response.statusCode() == 429)
+                    result.limited.increment();
+                else
+                    result.other.increment();
+                if (now < deadline)
+                    send(identifier);
+                else
+                    open.decrement();
+            });
+        }
+    }
+
+    private static final class Result {
+        final String label;
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder limited = new LongAdder();
+        final LongAdder other = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        long elapsedNanos;
+
+        Result(String label) {
+            this.label = label;
+        }
+
+        void print() {
+            long completed = latency.getTotalCount();
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%s: %d requests in %.1f s → %.0f req/s | 200: %d  429: %d  other: %d  errors: %d%n",
+                    label, completed, seconds, completed / seconds, ok.sum(), limited.sum(), other.sum(),
+                    errors.sum());
+            System.out.printf("%s  latency ms: p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n", label,
+                    latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                    latency.getValueAtPercentile(99.9) / 1e3, latency.getMaxValue() / 1e3);
+        }
+    }
+
+    private static final class Settings {
+        int connections = 10_000;
+        long downstreamMillis = 50;
+        int durationSeconds = 20;
+        int warmupSeconds = 10;
+        String threads = "both";
+
+        /** Consume a benchmark option; false if it belongs to the app */
+        boolean accept(String arg) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                return false;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "connections":
+                    connections = Integer.parseInt(value);
+                    return true;
+                case "downstream-millis":
+                    downstreamMillis = Long.parseLong(value);
+                    return true;
+                case "duration":
+                    durationSeconds = Integer.parseInt(value);
+                    return true;
+                case "warmup":
+                    warmupSeconds = Integer.parseInt(value);
+                    return true;
+                case "threads":
+                    threads = value;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.ratelimiter.bench;
+
+import com.ratelimiter.ApiRateLimiterApplication;
+import com.ratelimiter.wire.DecisionClient;
+import com.ratelimiter.wire.DecisionServer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Binary wire protocol vs the JSON API, measured on the same running app.
+ *
+ * Boots the app in-process on the H2 `local` profile (random ports, runs
+ * offline) with rate-limiter.wire.enabled, then drives each path with
+ * `threads` closed-loop clients:
+ * - json: POST /api/v1/request with X-User-Id over HTTP/1.1 keep-alive —
+ * the filter decides, MVC dispatches, Jackson writes the body.
+ * - wire: one DecisionClient connection per thread, one check in flight.
+ * - wire-pipelined: one connection per thread, `depth` checks per
+ * checkAll() — decided by the server as one batch, answered in one write.
+ * Latency is per call (per batch of `depth` for wire-pipelined), in an
+ * HdrHistogram (µs). Limits default to effectively unlimited so every check
+ * is allowed; pass --rate-limiter.default-limit=… to mix in rejections.
+ *
+ * Client and server share the machine, so on a small VM the client's own
+ * cost (HttpClient in particular) is part of every number.
+ *
+ * Not a unit test — run manually:
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *       com.ratelimiter.bench.WireProtocolBenchmark [--threads=16] [--depth=32] [--duration=10] \
+ *       [--warmup=5] [--modes=json,wire,wire-pipelined] [--<spring.property>=value ...]
+ */
+public class WireProtocolBenchmark {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.SECONDS.toMicros(10);
+    private static final String UNLIMITED = "1000000000";
+    private static final int IDENTIFIERS_PER_THREAD = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = new Settings();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!settings.accept(arg))
+                springArgs.add(arg); // Anything else goes to the app, e.g. --rate-limiter.algorithm=SLIDING_WINDOW
+        }
+        System.out.printf("wire protocol benchmark: %d threads, pipeline depth %d, %d s (after %d s warm-up), %d CPUs%n",
+                settings.threads, settings.depth, settings.durationSeconds, settings.warmupSeconds,
+                Runtime.getRuntime().availableProcessors());
+
+        ConfigurableApplicationContext app = boot(springArgs);
+        try {
+            int httpPort = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            int wirePort = app.getBean(DecisionServer.class).getPort();
+            List<Result> results = new ArrayList<>();
+            for (String mode : settings.modes) {
+                Path path = path(mode, httpPort, wirePort, settings.depth);
+                run(mode, path, settings.threads, settings.warmupSeconds); // Warm-up, discarded
+                results.add(run(mode, path, settings.threads, settings.durationSeconds));
+            }
+            results.forEach(Result::print);
+        } finally {
+            app.close();
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext boot(List<String> springArgs) {
+        // Command-line arguments, not builder properties: those are defaults and application.yml would win
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--spring.profiles.active=local",
+                "--spring.datasource.url=jdbc:h2:mem:wire-bench;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--server.port=0",
+                "--rate-limiter.wire.enabled=true",
+                "--rate-limiter.wire.bind-address=127.0.0.1",
+                "--rate-limiter.wire.bind-port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.com.ratelimiter=ERROR"));
+        addUnlessGiven(appArgs, springArgs, "rate-limiter.default-limit", UNLIMITED);
+        addUnlessGiven(appArgs, springArgs, "rate-limiter.default-refill-rate", UNLIMITED);
+        appArgs.addAll(springArgs);
+        return new SpringApplicationBuilder(ApiRateLimiterApplication.class).run(appArgs.toArray(new String[0]));
+    }
+
+    /** Duplicate keys on the command line are joined, not overridden — only add a default the user didn't pass */
+    private static void addUnlessGiven(List<String> appArgs, List<String> springArgs, String key, String value) {
+        if (springArgs.stream().noneMatch(arg -> arg.startsWith("--" + key + "=")))
+            appArgs.add("--" + key + "=" + value);
+    }
+
+    /** One client's way of sending checks; returns how many checks the call made */
+    private interface Path {
+        Caller open() throws Exception;
+    }
+
+    private interface Caller extends AutoCloseable {
+        int call(List<String> identifiers) throws Exception;
+
+        int batch();
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private static Path path(String mode, int httpPort, int wirePort, int depth) {
+        switch (mode) {
+            case "json": {
+                URI uri = URI.create("http://127.0.0.1:" + httpPort + "/api/v1/request");
+                HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10)).build();
+                return () -> new Caller() {
+                    @Override
+                    public int call(List<String> identifiers) throws Exception {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("X-User-Id", identifiers.get(0))
+                                .POST(HttpRequest.BodyPublishers.noBody())
+                                .build();
+                        int status = http.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+                        return status == 200 || status == 429 ? 1 : 0;
+                    }
+
+                    @Override
+                    public int batch() {
+                        return 1;
+                    }
+                };
+            }
+            case "wire":
+            case "wire-pipelined": {
+                int batch = "wire".equals(mode) ? 1 : depth;
+                return () -> {
+                    DecisionClient client = new DecisionClient("127.0.0.1", wirePort);
+                    return new Caller() {
+                        @Override
+                        public int call(List<String> identifiers) {
+                            if (batch == 1) {
+                                client.check(identifiers.get(0));
+                                return 1;
+                            }
+                            return client.checkAll(identifiers).size();
+                        }
+
+                        @Override
+                        public int batch() {
+                            return batch;
+                        }
+
+                        @Override
+                        public void close() {
+                            client.close();
+                        }
+                    };
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    private static Result run(String mode, Path path, int threads, int seconds) throws InterruptedException {
+        Result result = new Result(mode);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread client = new Thread(() -> {
+                try (Caller caller = path.open()) {
+                    List<String> identifiers = new ArrayList<>(caller.batch());
+                    long n = 0;
+                    while (System.nanoTime() < deadline) {
+                        identifiers.clear();
+                        for (int i = 0; i < caller.batch(); i++) {
+                            identifiers.add("user-" + thread + "-" + (n++ % IDENTIFIERS_PER_THREAD));
+                        }
+                        long sentAt = System.nanoTime();
+                        int checks = caller.call(identifiers);
+                        result.latency.recordValue(Math.min((System.nanoTime() - sentAt) / 1_000,
+                                HIGHEST_TRACKABLE_MICROS));
+                        result.checks.add(checks);
+                        result.errors.add(caller.batch() - checks);
+                    }
+                } catch (Exception e) {
+                    result.errors.increment();
+                    System.err.printf("%s client %d failed: %s%n", mode, thread, e);
+                } finally {
+                    done.countDown();
+                }
+            }, "wire-bench-client-" + t);
+            client.start();
+        }
+        done.await();
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static final class Result {
+        final String mode;
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder checks = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        long elapsedNanos;
+
+        Result(String mode) {
+            this.mode = mode;
+        }
+
+        void print() {
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%-15s %,10.0f checks/s | per call µs: p50 %,7d  p99 %,7d  p99.9 %,7d | errors %d%n",
+                    mode, checks.sum() / seconds, latency.getValueAtPercentile(50),
+                    latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.9), errors.sum());
+        }
+    }
+
+    private static final class Settings {
+        int threads = 16;
+        int depth = 32;
+        int durationSeconds = 10;
+        int warmupSeconds = 5;
+        List<String> modes = List.of("json", "wire", "wire-pipelined");
+
+        /** Consume a benchmark option; false if it belongs to the app */
+        boolean accept(String arg) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                return false;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "threads":
+                    threads = Integer.parseInt(value);
+                    return true;
+                case "depth":
+                    depth = Integer.parseInt(value);
+                    return true;
+                case "duration":
+                    durationSeconds = Integer.parseInt(value);
+                    return true;
+                case "warmup":
+                    warmupSeconds = Integer.parseInt(value);
+                    return true;
+                case "modes":
+                    modes = List.of(value.split(","));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+}
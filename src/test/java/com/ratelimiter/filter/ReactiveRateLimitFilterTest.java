@@ -0,0 +1,258 @@
+package com.ratelimiter.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.service.RateLimitConfigCache;
+import com.ratelimiter.service.RateLimiterService;
+import com.ratelimiter.service.ReactiveRateLimiterService;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * WebTestClient tests for ReactiveRateLimitFilter in front of a router
+ * function, with a real RateLimiterService (Token Bucket, no refill) and a
+ * mocked repository.
+ * Tests: exact limits under concurrent load, no repository call on a
+ * non-blocking thread, 429 headers and body, custom configs, exclusions,
+ * weighted routes, per-route limits and rule reload.
+ */
+class ReactiveRateLimitFilterTest {
+
+    private static final int LIMIT = 20;
+
+    private RateLimitConfigRepository repository;
+    private Set<String> lookupThreads;
+    private AtomicInteger nonBlockingLookups;
+    private WebTestClient client;
+    private RouteRules routeRules;
+    private RateLimiterProperties.RouteRule export;
+
+    @BeforeEach
+    void setUp() {
+        lookupThreads = ConcurrentHashMap.newKeySet();
+        nonBlockingLookups = new AtomicInteger();
+        repository = mock(RateLimitConfigRepository.class);
+        when(repository.findByIdentifier(anyString())).thenAnswer(invocation -> {
+            lookupThreads.add(Thread.currentThread().getName());
+            if (Schedulers.isInNonBlockingThread())
+                nonBlockingLookups.incrementAndGet(); // A JDBC call here would stall an event loop
+            return Optional.empty();
+        });
+
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.setAlgorithm("TOKEN_BUCKET");
+        properties.setDefaultLimit(LIMIT);
+        properties.setDefaultRefillRate(0); // No refill within the test
+        export = new RateLimiterProperties.RouteRule();
+        export.setPath("/api/v1/export/**");
+        export.setMethod("POST");
+        export.setCost(5);
+        RateLimiterProperties.RouteRule search = new RateLimiterProperties.RouteRule();
+        search.setPath("/api/v1/search");
+        search.setLimit(3);
+        properties.getFilter().setRoutes(List.of(export, search));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimitConfigCache configCache = new RateLimitConfigCache(repository, properties, meterRegistry);
+        routeRules = new RouteRules(properties);
+        RateLimiterService service = new RateLimiterService(
+                List.of(new GcraStrategy(), new TokenBucketStrategy()), configCache, routeRules, properties,
+                meterRegistry);
+        ReactiveRateLimitFilter filter = new ReactiveRateLimitFilter(
+                new ReactiveRateLimiterService(service, configCache), new ObjectMapper(), routeRules);
+
+        RouterFunction<ServerResponse> routes = route(POST("/api/v1/request"), request -> {
+            RateLimitDecision decision = (RateLimitDecision) request.attribute(RateLimitFilter.DECISION_ATTRIBUTE)
+                    .orElseThrow();
+            return ServerResponse.ok().bodyValue("remaining=" + decision.getRemaining());
+        }).andRoute(POST("/api/v1/export/{format}"), request -> ServerResponse.ok().bodyValue("exported"))
+                .andRoute(GET("/api/v1/search"), request -> ServerResponse.ok().bodyValue("results"))
+                .andRoute(GET("/actuator/health"), request -> ServerResponse.ok().bodyValue("UP"));
+        client = WebTestClient.bindToRouterFunction(routes).webFilter(filter).build();
+    }
+
+    private int post(String userId) {
+        return client.post().uri("/api/v1/request")
+                .header("X-User-Id", userId)
+                .exchange()
+                .returnResult(String.class)
+                .getStatus().value();
+    }
+
+    @Test
+    @DisplayName("1. Concurrent load admits exactly the limit per identifier; lookups never run on a non-blocking thread")
+    void testConcurrentLoadAdmitsExactlyTheLimit() throws Exception {
+        int identifiers = 100;
+        int requestsPerIdentifier = LIMIT + 10;
+        Map<String, AtomicInteger> allowed = new ConcurrentHashMap<>();
+        AtomicInteger limited = new AtomicInteger();
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(16,
+                r -> new Thread(r, "caller-" + threadIds.incrementAndGet()));
+        try {
+            List<Future<?>> sent = new ArrayList<>();
+            for (int round = 0; round < requestsPerIdentifier; round++) {
+                for (int i = 0; i < identifiers; i++) {
+                    String userId = "load-user-" + i;
+                    sent.add(callers.submit(() -> {
+                        int status = post(userId);
+                        if (status == 200)
+                            allowed.computeIfAbsent(userId, id -> new AtomicInteger()).incrementAndGet();
+                        else if (status == 429)
+                            limited.incrementAndGet();
+                    }));
+                }
+            }
+            for (Future<?> future : sent) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertThat(allowed).hasSize(identifiers);
+        assertThat(allowed.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(LIMIT));
+        assertThat(limited.get()).isEqualTo(identifiers * (requestsPerIdentifier - LIMIT));
+
+        assertThat(nonBlockingLookups.get()).isZero();
+        assertThat(lookupThreads).isNotEmpty().allSatisfy(name -> assertThat(name).startsWith("boundedElastic"));
+        // Negative caching: each identifier reaches the repository about once, not once per request
+        verify(repository, atMost(identifiers * 2)).findByIdentifier(anyString());
+    }
+
+    @Test
+    @DisplayName("2. A rejection is a 429 with Retry-After, X-RateLimit-* headers and a JSON body")
+    void testRejectionResponse() {
+        for (int i = 0; i < LIMIT; i++) {
+            client.post().uri("/api/v1/request").header("X-User-Id", "alice").exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(RateLimitFilter.HEADER_REMAINING, String.valueOf(LIMIT - 1 - i))
+                    .expectBody(String.class).isEqualTo("remaining=" + (LIMIT - 1 - i));
+        }
+
+        client.post().uri("/api/v1/request").header("X-User-Id", "alice").exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(RateLimitFilter.HEADER_LIMIT, String.valueOf(LIMIT))
+                .expectHeader().valueEquals(RateLimitFilter.HEADER_REMAINING, "0")
+                .expectHeader().exists(RateLimitFilter.HEADER_RESET)
+                .expectHeader().exists(RateLimitFilter.HEADER_RETRY)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(429)
+                .jsonPath("$.identifier").isEqualTo("alice")
+                .jsonPath("$.limitTotal").isEqualTo(LIMIT)
+                .jsonPath("$.limitRemaining").isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("3. Custom configs from the repository apply, per identifier type")
+    void testCustomConfigFromRepository() {
+        when(repository.findByIdentifier("key-123")).thenReturn(Optional.of(RateLimitConfig.builder()
+                .identifier("key-123")
+                .identifierType(RateLimitConfig.IdentifierType.API_KEY)
+                .maxRequests(2)
+                .windowSeconds(60)
+                .refillRate(0)
+                .build()));
+
+        for (int i = 0; i < 2; i++) {
+            client.post().uri("/api/v1/request").header("X-API-Key", "key-123").exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(RateLimitFilter.HEADER_LIMIT, "2");
+        }
+        client.post().uri("/api/v1/request").header("X-API-Key", "key-123").exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // The client IP is a separate identifier with the default limit
+        client.post().uri("/api/v1/request").header("X-Forwarded-For", "10.0.0.7, 10.0.0.1").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(RateLimitFilter.HEADER_LIMIT, String.valueOf(LIMIT));
+    }
+
+    @Test
+    @DisplayName("4. Excluded paths are never limited")
+    void testExcludedPathsBypassTheLimiter() {
+        for (int i = 0; i < LIMIT * 2; i++) {
+            client.get().uri("/actuator/health").header("X-User-Id", "bob").exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().doesNotExist(RateLimitFilter.HEADER_LIMIT);
+        }
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("5. A weighted route takes its cost from the caller's limit")
+    void testWeightedRouteTakesItsCost() {
+        client.post().uri("/api/v1/export/csv").header("X-User-Id", "carol").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(RateLimitFilter.HEADER_REMAINING, String.valueOf(LIMIT - 5));
+        for (int i = 0; i < 3; i++) {
+            assertThat(post("carol")).isEqualTo(200);
+        }
+
+        // 12 left: two more exports fit, a third does not — and leaves the 2 for cheap requests
+        for (int i = 0; i < 2; i++) {
+            client.post().uri("/api/v1/export/csv").header("X-User-Id", "carol").exchange()
+                    .expectStatus().isOk();
+        }
+        client.post().uri("/api/v1/export/csv").header("X-User-Id", "carol").exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(post("carol")).isEqualTo(200);
+        assertThat(post("carol")).isEqualTo(200);
+        assertThat(post("carol")).isEqualTo(429);
+    }
+
+    @Test
+    @DisplayName("6. A route with its own limit keeps a separate budget per caller; reloaded rules apply at once")
+    void testRouteLimitAndReload() {
+        for (int i = 0; i < 3; i++) {
+            client.get().uri("/api/v1/search").header("X-User-Id", "dave").exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(RateLimitFilter.HEADER_LIMIT, "3");
+        }
+        client.get().uri("/api/v1/search").header("X-User-Id", "dave").exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectBody().jsonPath("$.identifier").isEqualTo("dave");
+        // Other routes still draw on dave's own limit, untouched by the searches
+        client.post().uri("/api/v1/request").header("X-User-Id", "dave").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(RateLimitFilter.HEADER_REMAINING, String.valueOf(LIMIT - 1));
+        client.get().uri("/api/v1/search").header("X-User-Id", "erin").exchange()
+                .expectStatus().isOk();
+
+        RateLimiterProperties.RouteRule openSearch = new RateLimiterProperties.RouteRule();
+        openSearch.setPath("/api/v1/search");
+        openSearch.setExempt(true);
+        routeRules.replace(List.of(export, openSearch));
+        client.get().uri("/api/v1/search").header("X-User-Id", "dave").exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(RateLimitFilter.HEADER_LIMIT);
+    }
+}
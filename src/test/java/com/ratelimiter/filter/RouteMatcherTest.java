@@ -0,0 +1,157 @@
+package com.ratelimiter.filter;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for RouteMatcher and RouteRules.
+ * Tests: default cost, first match wins, built-in exemptions, per-route
+ * limits, startup validation, no allocation per match, hot reload.
+ */
+class RouteMatcherTest {
+
+    private static RateLimiterProperties.RouteRule rule(String method, String path, int cost) {
+        RateLimiterProperties.RouteRule rule = new RateLimiterProperties.RouteRule();
+        rule.setMethod(method);
+        rule.setPath(path);
+        rule.setCost(cost);
+        return rule;
+    }
+
+    private static RouteMatcher compile(RateLimiterProperties.RouteRule... rules) {
+        return RouteMatcher.compile(List.of(rules), 60);
+    }
+
+    @Test
+    @DisplayName("1. Without rules every request costs 1")
+    void testDefaultCost() {
+        RouteMatcher matcher = compile();
+        assertThat(matcher.match("POST", "/api/v1/search")).isSameAs(RouteMatcher.DEFAULT);
+        assertThat(matcher.match("POST", "/api/v1/search").cost).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("2. The first matching rule wins; method is optional and case-insensitive")
+    void testFirstMatchWins() {
+        RouteMatcher matcher = compile(
+                rule("post", "/api/v1/search/bulk", 20),
+                rule("", "/api/v1/search/**", 5),
+                rule("GET", "/api/v1/items/{id}", 2),
+                rule("", "/api/v1/*/42", 7),
+                rule("", "/api/v1/items/42", 9)); // Shadowed by the wildcard rules before it
+
+        assertThat(matcher.match("POST", "/api/v1/search/bulk").cost).isEqualTo(20);
+        assertThat(matcher.match("GET", "/api/v1/search/bulk").cost).isEqualTo(5);
+        assertThat(matcher.match("GET", "/api/v1/search").cost).isEqualTo(5);
+        assertThat(matcher.match("GET", "/api/v1/search/").cost).isEqualTo(5);
+        assertThat(matcher.match("GET", "/api/v1/items/42").cost).isEqualTo(2);
+        assertThat(matcher.match("DELETE", "/api/v1/items/42").cost).isEqualTo(7);
+        assertThat(matcher.match("DELETE", "/api/v1/items/43").cost).isEqualTo(1);
+        assertThat(matcher.match("GET", "/api/v1/items/42/parts").cost).isEqualTo(1);
+        assertThat(matcher.match("GET", "/api/v1/other").cost).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("3. An invalid rule fails compilation, naming the rule")
+    void testInvalidRulesRejected() {
+        assertThatThrownBy(() -> compile(rule("GET", " ", 2)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("routes[0]");
+        assertThatThrownBy(() -> compile(rule("GET", "/a", 2), rule("GET", "/b", 0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("routes[1]");
+        assertThatThrownBy(() -> compile(rule("GET", "/a", RouteMatcher.MAX_COST + 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> compile(rule("GET", "/a/**/b", 1)))
+                .hasMessageContaining("last segment");
+        assertThatThrownBy(() -> compile(rule("GET", "/files/*.json", 1)))
+                .hasMessageContaining("not supported");
+        assertThatThrownBy(() -> compile(rule("GET", "api/v1", 1)))
+                .hasMessageContaining("start with '/'");
+    }
+
+    @Test
+    @DisplayName("4. Batch endpoint always exempt; actuator and docs exempt unless a rule says otherwise")
+    void testBuiltInExemptions() {
+        RouteMatcher matcher = compile(rule("", "/api/v1/check-batch", 5), rule("", "/actuator/prometheus", 3));
+
+        assertThat(matcher.match("POST", "/api/v1/check-batch").exempt).isTrue();
+        assertThat(matcher.match("GET", "/actuator/health").exempt).isTrue();
+        assertThat(matcher.match("GET", "/actuator").exempt).isTrue();
+        assertThat(matcher.match("GET", "/swagger-ui.html").exempt).isTrue();
+        assertThat(matcher.match("GET", "/v3/api-docs/swagger-config").exempt).isTrue();
+        assertThat(matcher.match("GET", "/actuator/prometheus").cost).isEqualTo(3);
+        assertThat(matcher.match("GET", "/actuators").exempt).isFalse();
+        assertThat(matcher.match("POST", "/api/v1/request").exempt).isFalse();
+    }
+
+    @Test
+    @DisplayName("5. A rule with a limit carries its own config; windows and refill default sensibly")
+    void testRouteLimit() {
+        RateLimiterProperties.RouteRule search = rule("GET", "/api/v1/search", 1);
+        search.setLimit(120);
+        RateLimiterProperties.RouteRule ping = rule("", "/api/v1/ping", 1);
+        ping.setExempt(true);
+        RouteMatcher matcher = compile(search, ping);
+
+        RouteMatcher.Route route = matcher.match("GET", "/api/v1/search");
+        assertThat(route.limit.getIdentifier()).isEqualTo("route:GET:/api/v1/search");
+        assertThat(route.limit.getMaxRequests()).isEqualTo(120);
+        assertThat(route.limit.getWindowSeconds()).isEqualTo(60);
+        assertThat(route.limit.getRefillRate()).isEqualTo(2);
+        assertThat(matcher.match("POST", "/api/v1/search").limit).isNull();
+        assertThat(matcher.match("GET", "/api/v1/ping").exempt).isTrue();
+    }
+
+    @Test
+    @DisplayName("6. Matching allocates nothing")
+    void testMatchIsAllocationFree() {
+        RouteMatcher matcher = compile(
+                rule("GET", "/api/v1/search/**", 5),
+                rule("", "/api/v1/items/{id}", 2),
+                rule("", "/api/v1/items/{id}/parts", 3),
+                rule("POST", "/api/v1/export/*", 4));
+        String[] paths = {"/api/v1/search/bulk", "/api/v1/items/42/parts", "/api/v1/request", "/actuator/health"};
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int sum = 0;
+        for (int i = 0; i < 100_000; i++) { // Warm up
+            sum += matcher.match("GET", paths[i & 3]).cost;
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            sum += matcher.match("GET", paths[i & 3]).cost;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(sum).isPositive();
+        assertThat(allocated).isLessThan(1_024); // Nothing per call; a little for the counter itself
+    }
+
+    @Test
+    @DisplayName("7. RouteRules swaps rules at runtime; an invalid set leaves the old rules in force")
+    void testHotReload() {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.getFilter().setRoutes(List.of(rule("", "/api/v1/search", 5)));
+        RouteRules rules = new RouteRules(properties);
+        assertThat(rules.match("GET", "/api/v1/search").cost).isEqualTo(5);
+
+        rules.replace(List.of(rule("", "/api/v1/search", 8)));
+        assertThat(rules.match("GET", "/api/v1/search").cost).isEqualTo(8);
+        assertThat(rules.getRules()).hasSize(1);
+
+        assertThatThrownBy(() -> rules.replace(List.of(rule("", "/api/v1/search", 0))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(rules.match("GET", "/api/v1/search").cost).isEqualTo(8);
+        assertThat(rules.match("GET", "/actuator/health").exempt).isTrue();
+    }
+}
@@ -0,0 +1,173 @@
+package com.ratelimiter.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.dto.BatchCheckRequest;
+import com.ratelimiter.filter.RouteRules;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import com.ratelimiter.service.strategy.RedisTokenBucketStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RateLimiterService.tryAcquireBatch.
+ * Tests: exact limits across parallel identifier groups, per-identifier
+ * order and cost, one config query per batch, the pipelined Redis path,
+ * metrics per item, no common-pool work when a decision may block.
+ */
+class BatchCheckTest {
+
+    private static final int LIMIT = 10;
+
+    private RateLimitConfigRepository repository;
+    private RateLimiterProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RateLimitConfigRepository.class);
+        when(repository.findByIdentifierIn(anyCollection())).thenReturn(List.of());
+        properties = new RateLimiterProperties();
+        properties.setAlgorithm("TOKEN_BUCKET");
+        properties.setDefaultLimit(LIMIT);
+        properties.setDefaultRefillRate(0); // No refill within the test
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private RateLimiterService service(List<RateLimiterStrategy> strategies) {
+        return new RateLimiterService(strategies, new RateLimitConfigCache(repository, properties, meterRegistry),
+                new RouteRules(properties), properties, meterRegistry);
+    }
+
+    /** rounds items per identifier, interleaved: id-0, id-1, …, id-0, id-1, … */
+    private static List<BatchCheckRequest.Item> interleaved(int identifiers, int rounds, int cost) {
+        List<BatchCheckRequest.Item> items = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < identifiers; i++) {
+                items.add(new BatchCheckRequest.Item("batch-" + i, cost));
+            }
+        }
+        return items;
+    }
+
+    @Test
+    @DisplayName("1. Parallel identifier groups each admit exactly the limit, in request order")
+    void testParallelGroupsAdmitExactlyTheLimit() {
+        RateLimiterService service = service(List.of(new GcraStrategy(), new TokenBucketStrategy()));
+        int identifiers = RateLimiterService.PARALLEL_BATCH_GROUPS * 4;
+        List<BatchCheckRequest.Item> items = interleaved(identifiers, LIMIT + 5, 1);
+
+        List<RateLimitDecision> decisions = service.tryAcquireBatch(items);
+
+        assertThat(decisions).hasSize(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            boolean withinLimit = i / identifiers < LIMIT;
+            assertThat(decisions.get(i).isAllowed()).as("item %d", i).isEqualTo(withinLimit);
+            if (withinLimit)
+                assertThat(decisions.get(i).getRemaining()).isEqualTo(LIMIT - 1 - i / identifiers);
+        }
+        verify(repository, times(1)).findByIdentifierIn(anyCollection());
+        verify(repository, never()).findByIdentifier(anyString());
+        assertThat(meterRegistry.get("ratelimiter.decisions").tag("outcome", "allowed").counter().count())
+                .isEqualTo(identifiers * LIMIT);
+        assertThat(meterRegistry.get("ratelimiter.decisions").tag("outcome", "rejected").counter().count())
+                .isEqualTo(identifiers * 5);
+    }
+
+    @Test
+    @DisplayName("2. An item's cost takes that many permits; one that doesn't fit takes none")
+    void testCostTakesPermits() {
+        RateLimiterService service = service(List.of(new GcraStrategy(), new TokenBucketStrategy()));
+
+        List<RateLimitDecision> decisions = service.tryAcquireBatch(List.of(
+                new BatchCheckRequest.Item("heavy", 4),
+                new BatchCheckRequest.Item("heavy", 4),
+                new BatchCheckRequest.Item("heavy", 4),
+                new BatchCheckRequest.Item("heavy", 2),
+                new BatchCheckRequest.Item("light", 1)));
+
+        assertThat(decisions.get(0).isAllowed()).isTrue();
+        assertThat(decisions.get(0).getRemaining()).isEqualTo(LIMIT - 4);
+        assertThat(decisions.get(1).isAllowed()).isTrue();
+        assertThat(decisions.get(1).getRemaining()).isEqualTo(LIMIT - 8);
+        assertThat(decisions.get(2).isAllowed()).isFalse();
+        assertThat(decisions.get(2).getRetryAfterSeconds()).isPositive();
+        // The rejected item left the last 2 permits in place
+        assertThat(decisions.get(3).isAllowed()).isTrue();
+        assertThat(decisions.get(3).getRemaining()).isZero();
+        assertThat(decisions.get(4).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("3. With a Redis strategy the batch is one pipelined call with the same results")
+    void testPipelinedRedisBatch() throws Exception {
+        RedisServer server = RedisServer.newRedisServer().start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        try {
+            properties.setAlgorithm("REDIS_TOKEN_BUCKET");
+            RedisTokenBucketStrategy redis = spy(new RedisTokenBucketStrategy(
+                    new StringRedisTemplate(connectionFactory), properties));
+            RateLimiterService service = service(List.of(new GcraStrategy(), redis));
+            List<BatchCheckRequest.Item> items = interleaved(5, 4, 3); // 12 permits asked per identifier
+
+            List<RateLimitDecision> decisions = service.tryAcquireBatch(items);
+
+            verify(redis, times(1)).tryAcquireBatch(anyList());
+            verify(redis, never()).tryAcquire(anyString(), any(RateLimitConfig.class), anyInt());
+            for (int i = 0; i < items.size(); i++) {
+                int round = i / 5;
+                assertThat(decisions.get(i).isAllowed()).as("item %d", i).isEqualTo(round < 3);
+                if (round < 3)
+                    assertThat(decisions.get(i).getRemaining()).isEqualTo(LIMIT - 3 * (round + 1));
+            }
+        } finally {
+            connectionFactory.destroy();
+            server.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("4. When decisions may block (sharded mode) a large batch stays on the caller's thread")
+    void testBlockingModesStaySequential() {
+        properties.getSharding().setEnabled(true);
+        properties.getSharding().setBindPort(0);
+        Set<Thread> deciders = ConcurrentHashMap.newKeySet();
+        TokenBucketStrategy recording = new TokenBucketStrategy() {
+            @Override
+            public RateLimitDecision tryAcquire(String identifier, RateLimitConfig config, int permits) {
+                deciders.add(Thread.currentThread());
+                return super.tryAcquire(identifier, config, permits);
+            }
+        };
+        RateLimiterService service = service(List.of(new GcraStrategy(), recording));
+        try {
+            List<BatchCheckRequest.Item> items = interleaved(RateLimiterService.PARALLEL_BATCH_GROUPS * 4, 2, 1);
+
+            assertThat(service.tryAcquireBatch(items)).allMatch(RateLimitDecision::isAllowed);
+            assertThat(deciders).containsExactly(Thread.currentThread());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.filter.RouteRules;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the decision meters published by RateLimiterService.
+ * Tests: outcome/type counters, latency timers, bounded tag cardinality.
+ */
+class DecisionMetricsTest {
+
+    private MeterRegistry meterRegistry;
+    private RateLimiterService service;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitConfigRepository repository = mock(RateLimitConfigRepository.class);
+        when(repository.findByIdentifier(anyString())).thenReturn(Optional.empty());
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.setDefaultLimit(3);
+        properties.setDefaultRefillRate(0); // No refill within the test — one request per 20 s
+        properties.getMetrics().setLatencySampleEvery(1);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new RateLimiterService(
+                List.of(new GcraStrategy(), new TokenBucketStrategy()),
+                new RateLimitConfigCache(repository, properties, meterRegistry),
+                new RouteRules(properties),
+                properties,
+                meterRegistry);
+    }
+
+    private double decisions(String outcome, RateLimitConfig.IdentifierType type) {
+        return meterRegistry.get("ratelimiter.decisions")
+                .tag("algorithm", "GCRA")
+                .tag("outcome", outcome)
+                .tag("type", type.name())
+                .counter().count();
+    }
+
+    @Test
+    @DisplayName("1. Allowed and rejected checks are counted per identifier type")
+    void testOutcomeCountersByType() {
+        for (int i = 0; i < 5; i++) {
+            service.tryAcquire("key-1", RateLimitConfig.IdentifierType.API_KEY);
+        }
+        service.tryAcquire("10.0.0.1", RateLimitConfig.IdentifierType.IP_ADDRESS);
+
+        assertThat(decisions("allowed", RateLimitConfig.IdentifierType.API_KEY)).isEqualTo(3);
+        assertThat(decisions("rejected", RateLimitConfig.IdentifierType.API_KEY)).isEqualTo(2);
+        assertThat(decisions("allowed", RateLimitConfig.IdentifierType.IP_ADDRESS)).isEqualTo(1);
+        assertThat(decisions("allowed", RateLimitConfig.IdentifierType.USER_ID)).isZero();
+    }
+
+    @Test
+    @DisplayName("2. Callers without a type are counted under the config's type")
+    void testUntypedCallFallsBackToConfigType() {
+        service.tryAcquire("someone");
+
+        assertThat(decisions("allowed", RateLimitConfig.IdentifierType.USER_ID)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("3. Every check records decision and config-lookup latency")
+    void testLatencyTimersRecorded() {
+        for (int i = 0; i < 4; i++) {
+            service.tryAcquire("user-" + i);
+        }
+
+        assertThat(meterRegistry.get("ratelimiter.decision.latency").tag("algorithm", "GCRA").timer().count())
+                .isEqualTo(4);
+        assertThat(meterRegistry.get("ratelimiter.config.lookup").tag("algorithm", "GCRA").timer().count())
+                .isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("4. Sampled timers see a fraction of checks; counters see all of them")
+    void testLatencySampling() {
+        DecisionMetrics sampled = new DecisionMetrics(meterRegistry, "SAMPLED", 16);
+        RateLimitDecision allowed = RateLimitDecision.allowed(10, 9, 0);
+        for (int i = 0; i < 16_000; i++) {
+            long start = sampled.start();
+            sampled.record(allowed, RateLimitConfig.IdentifierType.USER_ID, start, sampled.configResolved(start));
+        }
+
+        long timed = meterRegistry.get("ratelimiter.decision.latency").tag("algorithm", "SAMPLED").timer().count();
+        assertThat(timed).isBetween(700L, 1_300L); // ~1000 expected
+        assertThat(meterRegistry.get("ratelimiter.decisions").tag("algorithm", "SAMPLED")
+                .tag("outcome", "allowed").tag("type", "USER_ID").counter().count()).isEqualTo(16_000);
+    }
+
+    @Test
+    @DisplayName("5. Many identifiers do not create new series — tags stay bounded")
+    void testCardinalityBounded() {
+        int before = meterRegistry.getMeters().size();
+
+        for (int i = 0; i < 1_000; i++) {
+            service.tryAcquire("user-" + i, RateLimitConfig.IdentifierType.USER_ID);
+        }
+
+        assertThat(meterRegistry.getMeters()).hasSize(before);
+        assertThat(meterRegistry.find("ratelimiter.decisions").counters()).hasSize(6); // 2 outcomes × 3 types
+    }
+
+    @Test
+    @DisplayName("6. Strategies publish store size and contention per algorithm")
+    void testStoreMetersBound() {
+        GcraStrategy strategy = new GcraStrategy(new RateLimiterProperties(), meterRegistry);
+        strategy.tryAcquire("a", service.getConfigForIdentifier("a"));
+        strategy.tryAcquire("b", service.getConfigForIdentifier("b"));
+
+        assertThat(meterRegistry.get("ratelimiter.store.entries").tag("algorithm", "GCRA").gauge().value())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("ratelimiter.store.contention").tag("algorithm", "GCRA")
+                .tag("kind", "cas_retry").functionCounter().count()).isZero(); // Single thread never loses a CAS
+    }
+}
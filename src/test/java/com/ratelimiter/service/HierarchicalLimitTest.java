@@ -0,0 +1,128 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.filter.RouteRules;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.SlidingWindowStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for RateLimiterService.tryAcquireAll.
+ * Tests: a global level shared by every caller, all-or-nothing across
+ * levels, level order and dedup, the single-key path when levels are off,
+ * route limits across levels.
+ */
+class HierarchicalLimitTest {
+
+    private static final RateLimitConfig.IdentifierType USER = RateLimitConfig.IdentifierType.USER_ID;
+    private static final RateLimitConfig.IdentifierType API_KEY = RateLimitConfig.IdentifierType.API_KEY;
+    private static final RateLimitConfig.IdentifierType IP = RateLimitConfig.IdentifierType.IP_ADDRESS;
+    private static final RateLimitConfig.IdentifierType GLOBAL = RateLimitConfig.IdentifierType.GLOBAL;
+
+    private RateLimiterProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimiterProperties();
+        properties.setDefaultLimit(4);
+        properties.setDefaultRefillRate(0); // No refill within the test
+        properties.getDimensions().setLevels(List.of(USER, API_KEY, IP, GLOBAL));
+        properties.getDimensions().setGlobalLimit(6);
+        properties.getDimensions().setGlobalRefillRate(0);
+    }
+
+    private RateLimiterService service(String algorithm) {
+        properties.setAlgorithm(algorithm);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new RateLimiterService(
+                List.of(new GcraStrategy(), new TokenBucketStrategy(), new SlidingWindowStrategy()),
+                new RateLimitConfigCache(mock(RateLimitConfigRepository.class), properties, meterRegistry),
+                new RouteRules(properties), properties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("1. The global level is shared by every caller; a rejection takes nothing")
+    void testGlobalLevelIsShared() {
+        for (String algorithm : List.of("TOKEN_BUCKET", "SLIDING_WINDOW")) {
+            RateLimiterService service = service(algorithm);
+            Map<RateLimitConfig.IdentifierType, String> alice = Map.of(USER, "alice", IP, "10.0.0.1");
+            Map<RateLimitConfig.IdentifierType, String> bob = Map.of(USER, "bob", IP, "10.0.0.2");
+
+            RateLimitDecision first = service.tryAcquireAll(alice, USER, 4);
+            assertThat(first.isAllowed()).isTrue();
+            assertThat(first.getRemaining()).isZero(); // Alice's own level is now empty
+
+            // Bob has 4 of his own, but only 2 are left globally
+            assertThat(service.tryAcquireAll(bob, USER, 3).isAllowed()).as(algorithm).isFalse();
+            assertThat(service.getStatus("bob").getTokensRemaining()).as(algorithm).isEqualTo(4);
+            assertThat(service.getStatus("10.0.0.2").getTokensRemaining()).as(algorithm).isEqualTo(4);
+
+            RateLimitDecision last = service.tryAcquireAll(bob, USER, 2);
+            assertThat(last.isAllowed()).as(algorithm).isTrue();
+            assertThat(last.getRemaining()).as(algorithm).isZero(); // The global level is the tightest
+            assertThat(service.getStatus("*").getTokensRemaining()).as(algorithm).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("2. Levels follow the configured order, skip what the caller lacks, never repeat a key")
+    void testLevelIdentifiers() {
+        RateLimiterService service = service("GCRA");
+        assertThat(service.isHierarchical()).isTrue();
+
+        assertThat(service.levelIdentifiers(Map.of(IP, "10.0.0.1", USER, "alice", API_KEY, "key-1"), USER))
+                .containsExactly("alice", "key-1", "10.0.0.1", "*");
+        assertThat(service.levelIdentifiers(Map.of(IP, "10.0.0.1"), IP))
+                .containsExactly("10.0.0.1", "*");
+        assertThat(service.levelIdentifiers(Map.of(USER, "same", API_KEY, "same", IP, "10.0.0.1"), USER))
+                .containsExactly("same", "10.0.0.1", "*");
+
+        // Only configured levels count, even if the caller's own type is not one
+        properties.getDimensions().setLevels(List.of(GLOBAL));
+        assertThat(service("GCRA").levelIdentifiers(Map.of(IP, "10.0.0.1"), IP)).containsExactly("*");
+    }
+
+    @Test
+    @DisplayName("3. Without levels, tryAcquireAll checks only the caller's own identifier")
+    void testNoLevelsChecksPrimaryOnly() {
+        properties.getDimensions().setLevels(List.of());
+        RateLimiterService service = service("TOKEN_BUCKET");
+        assertThat(service.isHierarchical()).isFalse();
+
+        RateLimitDecision decision = service.tryAcquireAll(Map.of(USER, "carol", IP, "10.0.0.3"), USER, 1);
+        assertThat(decision.isAllowed()).isTrue();
+        assertThat(decision.getRemaining()).isEqualTo(3);
+        assertThat(service.getStatus("10.0.0.3").getTokensRemaining()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("4. On a route with its own limit, levels use the route's budget; GLOBAL stays shared")
+    void testRouteLimitWithLevels() {
+        RateLimiterService service = service("TOKEN_BUCKET");
+        RateLimitConfig search = RateLimitConfig.builder()
+                .identifier("route:GET:/api/v1/search").identifierType(USER)
+                .maxRequests(2).windowSeconds(60).refillRate(0).build();
+        Map<RateLimitConfig.IdentifierType, String> alice = Map.of(USER, "alice", IP, "10.0.0.1");
+
+        assertThat(service.tryAcquireAll(alice, USER, 2, search).isAllowed()).isTrue();
+        assertThat(service.tryAcquireAll(alice, USER, 1, search).isAllowed()).isFalse();
+
+        // Alice's own limit is untouched; the global key counted the 2 searches
+        assertThat(service.getStatus("alice").getTokensRemaining()).isEqualTo(4);
+        assertThat(service.getStatus(RateLimiterService.routeKey("alice", search)).getTokensRemaining()).isZero();
+        assertThat(service.getStatus("*").getTokensRemaining()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RateLimitConfigCache.
+ * Tests: positive/negative caching, invalidation, stats meters, evict racing a load,
+ * batched lookups.
+ */
+class RateLimitConfigCacheTest {
+
+    private RateLimitConfigRepository repository;
+    private MeterRegistry meterRegistry;
+    private RateLimitConfigCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RateLimitConfigRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new RateLimitConfigCache(repository, new RateLimiterProperties(), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("1. Default-config identifiers are negatively cached — one DB lookup only")
+    void testNegativeResultCached() {
+        when(repository.findByIdentifier("anon")).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.find("anon")).isEmpty();
+        }
+
+        verify(repository, times(1)).findByIdentifier("anon");
+    }
+
+    @Test
+    @DisplayName("2. Custom configs are cached")
+    void testPositiveResultCached() {
+        RateLimitConfig config = RateLimitConfig.builder()
+                .identifier("vip")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(1000)
+                .windowSeconds(60)
+                .refillRate(50)
+                .build();
+        when(repository.findByIdentifier("vip")).thenReturn(Optional.of(config));
+
+        assertThat(cache.find("vip")).contains(config);
+        assertThat(cache.find("vip")).contains(config);
+
+        verify(repository, times(1)).findByIdentifier("vip");
+    }
+
+    @Test
+    @DisplayName("3. evict() forces the next lookup back to the repository")
+    void testEvictInvalidates() {
+        when(repository.findByIdentifier("user")).thenReturn(Optional.empty());
+        cache.find("user");
+
+        cache.evict("user");
+        cache.find("user");
+
+        verify(repository, times(2)).findByIdentifier("user");
+    }
+
+    @Test
+    @DisplayName("4. Hit and miss counts are exported as cache meters")
+    void testStatsExported() {
+        when(repository.findByIdentifier(anyString())).thenReturn(Optional.empty());
+        cache.find("a");
+        cache.find("a");
+        cache.find("a");
+
+        assertThat(meterRegistry.get("cache.gets")
+                .tag("cache", RateLimitConfigCache.CACHE_NAME)
+                .tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("cache.gets")
+                .tag("cache", RateLimitConfigCache.CACHE_NAME)
+                .tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("5. An evict() that lands while a miss is loading keeps the loaded value out")
+    void testEvictDuringLoadNotCached() {
+        // The admin write (and its evict) happens while this lookup is still reading the old row
+        when(repository.findByIdentifier("racer")).thenAnswer(invocation -> {
+            cache.evict("racer");
+            return Optional.empty();
+        });
+
+        cache.find("racer");
+        cache.find("racer");
+
+        verify(repository, times(2)).findByIdentifier("racer");
+    }
+
+    @Test
+    @DisplayName("6. findAll() answers hits from the cache and every miss in one query")
+    void testFindAllQueriesMissesOnce() {
+        RateLimitConfig vip = RateLimitConfig.builder()
+                .identifier("vip")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(1000)
+                .windowSeconds(60)
+                .refillRate(50)
+                .build();
+        when(repository.findByIdentifier("cached")).thenReturn(Optional.empty());
+        when(repository.findByIdentifierIn(anyCollection())).thenReturn(List.of(vip));
+        cache.find("cached");
+
+        Map<String, Optional<RateLimitConfig>> found = cache.findAll(List.of("cached", "vip", "anon", "vip"));
+
+        assertThat(found).containsOnlyKeys("cached", "vip", "anon");
+        assertThat(found.get("vip")).contains(vip);
+        assertThat(found.get("anon")).isEmpty();
+        verify(repository).findByIdentifier("cached");
+        verify(repository, times(1)).findByIdentifierIn(
+                argThat(ids -> ids.size() == 2 && ids.containsAll(List.of("vip", "anon"))));
+
+        // Both results, the negative one included, are now cached
+        assertThat(cache.find("anon")).isEmpty();
+        assertThat(cache.findAll(List.of("vip", "anon"))).hasSize(2);
+        verify(repository, never()).findByIdentifier("anon");
+        verifyNoMoreInteractions(repository);
+    }
+}
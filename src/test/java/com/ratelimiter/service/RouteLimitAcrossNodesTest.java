@@ -0,0 +1,144 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.filter.RouteRules;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Two RateLimiterService nodes on loopback, checking a route whose limit (3)
+ * is far below the caller's own (100).
+ * Tests: the sharding owner decides forwarded route checks on the route's
+ * limit; gossiped route usage is charged on the route's limit; a key for
+ * a route rule that is gone resolves to the caller's own limit.
+ */
+class RouteLimitAcrossNodesTest {
+
+    private static final RateLimitConfig.IdentifierType USER = RateLimitConfig.IdentifierType.USER_ID;
+
+    private final List<RateLimiterService> nodes = new ArrayList<>();
+    private final List<GcraStrategy> strategies = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(RateLimiterService::shutdown);
+    }
+
+    @Test
+    @DisplayName("1. Sharded: a route limit holds whichever node the checks arrive on")
+    void testShardedRouteLimit() throws IOException {
+        List<String> members = List.of("127.0.0.1:" + freeTcpPort(), "127.0.0.1:" + freeTcpPort());
+        for (String member : members) {
+            RateLimiterProperties properties = properties();
+            properties.getSharding().setEnabled(true);
+            properties.getSharding().setBindPort(Integer.parseInt(member.substring(member.indexOf(':') + 1)));
+            properties.getSharding().setMembers(members);
+            properties.getSharding().setForwardTimeoutMillis(1_000);
+            nodes.add(service(properties));
+        }
+        RateLimitConfig search = routeLimit(nodes.get(0));
+
+        for (int caller = 0; caller < 8; caller++) {
+            long admitted = 0;
+            for (int i = 0; i < 6; i++) {
+                if (nodes.get(i % 2).tryAcquire("caller-" + caller, USER, 1, search).isAllowed())
+                    admitted++;
+            }
+            assertThat(admitted).as("caller-" + caller).isEqualTo(3);
+        }
+    }
+
+    @Test
+    @DisplayName("2. Cluster: usage gossiped from a peer is charged on the route's limit")
+    void testGossipedRouteUsage() throws Exception {
+        int[] ports = {freeUdpPort(), freeUdpPort()};
+        for (int n = 0; n < 2; n++) {
+            RateLimiterProperties properties = properties();
+            properties.getCluster().setEnabled(true);
+            properties.getCluster().setBindPort(ports[n]);
+            properties.getCluster().setPeers(List.of("127.0.0.1:" + ports[1 - n]));
+            nodes.add(service(properties));
+        }
+        RateLimitConfig search = routeLimit(nodes.get(0));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(nodes.get(0).tryAcquire("carol", USER, 1, search).isAllowed()).isTrue();
+        }
+        String routeKey = RateLimiterService.routeKey("carol", search);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (strategies.get(1).getRemainingRequests(routeKey, search) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThat(nodes.get(1).tryAcquire("carol", USER, 1, search).isAllowed()).isFalse(); // ❌ Spent on node 0
+        assertThat(nodes.get(1).tryAcquire("carol", USER).isAllowed()).isTrue();             // ✅ Own limit untouched
+    }
+
+    @Test
+    @DisplayName("3. A route key whose rule is gone resolves to the caller's own limit")
+    void testRemovedRouteFallsBackToCaller() {
+        RateLimiterService node = service(properties());
+        nodes.add(node);
+
+        RateLimitConfig config = node.getConfigForKey("dave|route:GET:/api/v1/gone/**");
+
+        assertThat(config.getIdentifier()).isEqualTo("dave");
+        assertThat(config.getMaxRequests()).isEqualTo(100);
+        assertThat(RateLimiterService.isValidIdentifier("dave")).isTrue();
+        assertThat(RateLimiterService.isValidIdentifier("dave|route:GET:/api/v1/search/**")).isFalse();
+    }
+
+    private static RateLimiterProperties properties() {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.setAlgorithm("GCRA");
+        properties.setDefaultLimit(100);
+        RateLimiterProperties.RouteRule search = new RateLimiterProperties.RouteRule();
+        search.setPath("/api/v1/search/**");
+        search.setMethod("GET");
+        search.setLimit(3);
+        search.setWindowSeconds(3600);
+        properties.getFilter().setRoutes(List.of(search));
+        return properties;
+    }
+
+    private RateLimiterService service(RateLimiterProperties properties) {
+        GcraStrategy strategy = new GcraStrategy();
+        strategies.add(strategy);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new RateLimiterService(List.of(strategy),
+                new RateLimitConfigCache(mock(RateLimitConfigRepository.class), properties, meterRegistry),
+                new RouteRules(properties), properties, meterRegistry);
+    }
+
+    /** The search route's limit, as the filter hands it to tryAcquire */
+    private static RateLimitConfig routeLimit(RateLimiterService node) {
+        return node.getConfigForKey("anyone|route:GET:/api/v1/search/**");
+    }
+
+    private static int freeTcpPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int freeUdpPort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ratelimiter.service.batch;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for DecisionDispatcher against an in-memory BatchDecisionSource
+ * that costs ~1 ms per call (a stand-in for a store round trip).
+ * Tests: coalescing, duplicate merging, max batch size, failures, metrics,
+ * shutdown while callers are still enqueuing.
+ */
+class DecisionDispatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountingSource source = new CountingSource();
+    private DecisionDispatcher dispatcher;
+
+    private final RateLimitConfig config = RateLimitConfig.builder()
+            .identifier("test-user")
+            .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+            .maxRequests(100)
+            .windowSeconds(60)
+            .refillRate(0)
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null)
+            dispatcher.close();
+    }
+
+    @Test
+    @DisplayName("1. Concurrent checks share store calls")
+    void testCoalescesConcurrentChecks() throws Exception {
+        dispatcher = new DecisionDispatcher(source, batch(64, 200), registry);
+
+        List<RateLimitDecision> decisions = runConcurrently(16, 25, t -> "user-" + t);
+
+        assertThat(decisions).hasSize(400).allMatch(RateLimitDecision::isAllowed);
+        assertThat(source.calls.get()).isLessThan(400 / 4);
+        assertThat(registry.get("ratelimiter.batch.size").summary().count()).isEqualTo(source.calls.get());
+        assertThat(registry.get("ratelimiter.batch.queue.delay").timer().count()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("2. Duplicate identifiers in a batch are merged and still enforce the exact limit")
+    void testMergesDuplicates() throws Exception {
+        dispatcher = new DecisionDispatcher(source, batch(64, 200), registry);
+
+        List<RateLimitDecision> decisions = runConcurrently(16, 20, t -> "hot-user");
+
+        assertThat(decisions.stream().filter(RateLimitDecision::isAllowed).count()).isEqualTo(100);
+        assertThat(registry.get("ratelimiter.batch.merged").counter().count()).isGreaterThan(0);
+        assertThat(source.checksSeen.get()).isLessThan(320);
+    }
+
+    @Test
+    @DisplayName("3. Batches never exceed max-batch-size")
+    void testRespectsMaxBatchSize() throws Exception {
+        dispatcher = new DecisionDispatcher(source, batch(8, 1_000), registry);
+
+        runConcurrently(16, 25, t -> "user-" + t);
+
+        assertThat(registry.get("ratelimiter.batch.size").summary().max()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("4. A failing store call fails every caller in the batch with its exception")
+    void testPropagatesFailure() {
+        BatchDecisionSource broken = checks -> {
+            throw new IllegalStateException("store down");
+        };
+        dispatcher = new DecisionDispatcher(broken, batch(64, 200), registry);
+
+        assertThatThrownBy(() -> dispatcher.tryAcquire("any-user", config))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("store down");
+    }
+
+    @Test
+    @DisplayName("5. Closing while callers are still enqueuing strands none of them")
+    void testCloseWhileEnqueuing() throws Exception {
+        BatchDecisionSource instant = checks -> {
+            List<List<RateLimitDecision>> result = new ArrayList<>();
+            for (BatchedCheck check : checks) {
+                result.add(Collections.nCopies(check.getCount(), RateLimitDecision.allowed(100, 99, 0)));
+            }
+            return result;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 500; round++) {
+                DecisionDispatcher closing = new DecisionDispatcher(instant, batch(64, 50), registry);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        int decided = 0;
+                        for (int i = 0; i < 200; i++) {
+                            if (closing.tryAcquire("user-" + i % 16, config).isAllowed())
+                                decided++;
+                        }
+                        return decided;
+                    }));
+                }
+                start.countDown();
+                closing.close(); // Races the first offers
+
+                for (Future<Integer> future : futures) {
+                    assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo(200); // Never hangs
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<RateLimitDecision> runConcurrently(int threads, int perThread, IntFunction<String> identifier)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<RateLimitDecision>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String id = identifier.apply(t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<RateLimitDecision> mine = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    mine.add(dispatcher.tryAcquire(id, config));
+                }
+                return mine;
+            }));
+        }
+        start.countDown();
+
+        List<RateLimitDecision> all = new ArrayList<>();
+        for (Future<List<RateLimitDecision>> future : futures) {
+            all.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return all;
+    }
+
+    private static RateLimiterProperties.Batch batch(int maxBatchSize, long maxWaitMicros) {
+        RateLimiterProperties.Batch settings = new RateLimiterProperties.Batch();
+        settings.setEnabled(true);
+        settings.setMaxBatchSize(maxBatchSize);
+        settings.setMaxWaitMicros(maxWaitMicros);
+        return settings;
+    }
+
+    /** Fixed-window counter per identifier; ~1 ms per call like a network hop. */
+    private static final class CountingSource implements BatchDecisionSource {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger checksSeen = new AtomicInteger();
+        private final Map<String, Long> used = new HashMap<>();
+
+        @Override
+        public synchronized List<List<RateLimitDecision>> tryAcquireBatch(List<BatchedCheck> checks) {
+            calls.incrementAndGet();
+            checksSeen.addAndGet(checks.size());
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<List<RateLimitDecision>> result = new ArrayList<>();
+            for (BatchedCheck check : checks) {
+                long limit = check.getConfig().getMaxRequests();
+                List<RateLimitDecision> decisions = new ArrayList<>();
+                for (int i = 0; i < check.getCount(); i++) {
+                    long count = used.merge(check.getIdentifier(), 1L, Long::sum);
+                    decisions.add(count <= limit
+                            ? RateLimitDecision.allowed(limit, limit - count, 0)
+                            : RateLimitDecision.rejected(limit, 0, 60));
+                }
+                result.add(decisions);
+            }
+            return result;
+        }
+    }
+}
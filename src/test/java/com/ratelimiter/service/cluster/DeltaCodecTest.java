@@ -0,0 +1,82 @@
+package com.ratelimiter.service.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the gossip delta wire format.
+ * Tests: round trip, splitting across datagrams, malformed input.
+ */
+class DeltaCodecTest {
+
+    @Test
+    @DisplayName("1. Deltas survive a round trip, including multi-byte varints and UTF-8 ids")
+    void testRoundTrip() {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        deltas.put("user-1", 1L);
+        deltas.put("api-key-ü", 300L);
+        deltas.put("10.0.0.7", 5_000_000_000L);
+
+        List<ByteBuffer> packets = DeltaCodec.encode(42L, 7L, 1_700_000_000_000L, deltas, 1400);
+        assertThat(packets).hasSize(1);
+        // Header + (2 + id + varint) per entry
+        assertThat(packets.get(0).remaining()).isEqualTo(30 + (2 + 6 + 1) + (2 + 10 + 2) + (2 + 8 + 5));
+
+        DeltaCodec.DeltaPacket packet = DeltaCodec.decode(packets.get(0));
+        assertThat(packet.getNodeId()).isEqualTo(42L);
+        assertThat(packet.getSequence()).isEqualTo(7L);
+        assertThat(packet.getSentAtMs()).isEqualTo(1_700_000_000_000L);
+        Map<String, Long> decoded = new LinkedHashMap<>();
+        for (int i = 0; i < packet.size(); i++) {
+            decoded.put(packet.identifier(i), packet.permits(i));
+        }
+        assertThat(decoded).isEqualTo(deltas);
+    }
+
+    @Test
+    @DisplayName("2. Large flushes split into sequential datagrams under the size cap")
+    void testSplitsAcrossPackets() {
+        Map<String, Long> deltas = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            deltas.put("identifier-" + i, (long) i + 1);
+        }
+
+        List<ByteBuffer> packets = DeltaCodec.encode(1L, 100L, 0L, deltas, 1400);
+
+        assertThat(packets.size()).isGreaterThan(1);
+        long total = 0;
+        int entries = 0;
+        for (int p = 0; p < packets.size(); p++) {
+            assertThat(packets.get(p).remaining()).isLessThanOrEqualTo(1400);
+            DeltaCodec.DeltaPacket packet = DeltaCodec.decode(packets.get(p));
+            assertThat(packet.getSequence()).isEqualTo(100L + p);
+            for (int i = 0; i < packet.size(); i++) {
+                total += packet.permits(i);
+            }
+            entries += packet.size();
+        }
+        assertThat(entries).isEqualTo(1_000);
+        assertThat(total).isEqualTo(1_000L * 1_001 / 2);
+    }
+
+    @Test
+    @DisplayName("3. Foreign or truncated datagrams are rejected")
+    void testRejectsMalformed() {
+        assertThatThrownBy(() -> DeltaCodec.decode(ByteBuffer.wrap("GET / HTTP/1.1".getBytes())))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        ByteBuffer packet = DeltaCodec.encode(1L, 0L, 0L, Map.of("user", 3L), 1400).get(0);
+        packet.limit(packet.limit() - 3);
+        assertThatThrownBy(() -> DeltaCodec.decode(packet))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
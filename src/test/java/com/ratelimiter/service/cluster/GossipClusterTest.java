@@ -0,0 +1,277 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import com.ratelimiter.service.strategy.SlidingWindowStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * In-JVM multi-node harness: several GossipCluster nodes on loopback UDP,
+ * each with its own in-memory strategy, no shared store.
+ * Tests: convergence time, overshoot under paced load (token bucket and
+ * sliding window), loss-free delivery, rejection of strangers, forgeries
+ * and replays, including replays to a restarted node.
+ */
+class GossipClusterTest {
+
+    private static final int NODES = 3;
+
+    private final List<GossipCluster> nodes = new ArrayList<>();
+    private final List<RateLimiterStrategy> strategies = new ArrayList<>();
+
+    private final RateLimitConfig config = RateLimitConfig.builder()
+            .identifier("cluster-user")
+            .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+            .maxRequests(300)
+            .windowSeconds(3600)
+            .refillRate(0)
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(GossipCluster::close);
+    }
+
+    @Test
+    @DisplayName("1. Usage on one node reaches every peer within a few gossip intervals")
+    void testConvergence() throws InterruptedException {
+        startCluster(() -> new TokenBucketStrategy(new RateLimiterProperties(), new SimpleMeterRegistry()));
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(nodes.get(0).tryAcquire("converge-user", config).isAllowed()).isTrue();
+        }
+        long start = System.nanoTime();
+        while (!converged("converge-user", 250) && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2)) {
+            Thread.sleep(1);
+        }
+        long convergenceMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(converged("converge-user", 250)).isTrue();
+        assertThat(convergenceMs).isLessThan(500);
+    }
+
+    @Test
+    @DisplayName("2. Token bucket: paced load on every node overshoots the global limit only slightly")
+    void testTokenBucketOvershoot() throws Exception {
+        startCluster(() -> new TokenBucketStrategy(new RateLimiterProperties(), new SimpleMeterRegistry()));
+
+        long admitted = drive("tb-user");
+
+        assertThat(admitted).isGreaterThanOrEqualTo(config.getMaxRequests())
+                .isLessThan(config.getMaxRequests() * 3 / 2);
+        assertThat(nodes).allMatch(node -> node.getPacketsLost() == 0);
+    }
+
+    @Test
+    @DisplayName("3. Sliding window: paced load on every node overshoots the global limit only slightly")
+    void testSlidingWindowOvershoot() throws Exception {
+        startCluster(SlidingWindowStrategy::new);
+
+        long admitted = drive("sw-user");
+
+        assertThat(admitted).isGreaterThanOrEqualTo(config.getMaxRequests())
+                .isLessThan(config.getMaxRequests() * 3 / 2);
+    }
+
+    @Test
+    @DisplayName("4. Without gossip every node would admit the full limit")
+    void testIsolatedNodesAdmitLimitEach() {
+        long admitted = 0;
+        for (int n = 0; n < NODES; n++) {
+            TokenBucketStrategy isolated = new TokenBucketStrategy(new RateLimiterProperties(),
+                    new SimpleMeterRegistry());
+            for (int i = 0; i < 1_000; i++) {
+                if (isolated.isAllowed("isolated-user", config))
+                    admitted++;
+            }
+        }
+        assertThat(admitted).isEqualTo((long) NODES * config.getMaxRequests());
+    }
+
+    @Test
+    @DisplayName("5. Only signed, fresh datagrams from configured peers are applied")
+    void testUntrustedDatagramsDropped() throws Exception {
+        RateLimiterProperties.Cluster settings = new RateLimiterProperties.Cluster();
+        settings.setBindPort(0);
+        settings.setSharedSecret("s3cret");
+        TokenBucketStrategy strategy = new TokenBucketStrategy(new RateLimiterProperties(), new SimpleMeterRegistry());
+        GossipCluster node = new GossipCluster(strategy, id -> config, settings);
+        nodes.add(node);
+        Mac key = Mac.getInstance("HmacSHA256");
+        key.init(new SecretKeySpec("s3cret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        Mac wrongKey = Mac.getInstance("HmacSHA256");
+        wrongKey.init(new SecretKeySpec("guess".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+
+        try (DatagramChannel sender = DatagramChannel.open()) {
+            sender.bind(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress to = node.getLocalAddress();
+            ByteBuffer drain = DeltaCodec.encode(42, 0, System.currentTimeMillis(),
+                    Map.of("victim", 250L), 1400).get(0);
+
+            sender.send(DeltaCodec.sign(drain, key), to);             // ❌ Not a peer
+            awaitRejected(node, 1);
+            node.addPeer((InetSocketAddress) sender.getLocalAddress());
+            sender.send(drain.duplicate(), to);                       // ❌ Unsigned
+            sender.send(DeltaCodec.sign(drain, wrongKey), to);        // ❌ Wrong key
+            awaitRejected(node, 3);
+            assertThat(strategy.getRemainingRequests("victim", config)).isEqualTo(300);
+
+            sender.send(DeltaCodec.sign(drain, key), to);             // ✅ Signed by a peer
+            sender.send(DeltaCodec.sign(drain, key), to);             // ❌ Replayed
+            awaitRejected(node, 4);
+            assertThat(node.getPermitsApplied()).isEqualTo(250);
+            assertThat(strategy.getRemainingRequests("victim", config)).isEqualTo(50);
+        }
+    }
+
+    @Test
+    @DisplayName("6. A captured datagram replayed to a restarted node is too old to apply")
+    void testReplayAfterRestartDropped() throws Exception {
+        RateLimiterProperties.Cluster settings = new RateLimiterProperties.Cluster();
+        settings.setBindPort(0);
+        settings.setSharedSecret("s3cret");
+        settings.setMaxPacketAgeMillis(200);
+        Mac key = Mac.getInstance("HmacSHA256");
+        key.init(new SecretKeySpec("s3cret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+
+        try (DatagramChannel sender = DatagramChannel.open()) {
+            sender.bind(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress peer = (InetSocketAddress) sender.getLocalAddress();
+            GossipCluster first = new GossipCluster(new TokenBucketStrategy(), id -> config, settings);
+            nodes.add(first);
+            first.addPeer(peer);
+
+            ByteBuffer captured = DeltaCodec.sign(DeltaCodec.encode(42, 0, System.currentTimeMillis(),
+                    Map.of("victim", 250L), 1400).get(0), key);
+            sender.send(captured.duplicate(), first.getLocalAddress());       // ✅ Fresh
+            awaitApplied(first, 250);
+            first.close();
+            Thread.sleep(300);
+
+            // Restarted: no memory of node 42's sequence numbers
+            TokenBucketStrategy strategy = new TokenBucketStrategy();
+            GossipCluster restarted = new GossipCluster(strategy, id -> config, settings);
+            nodes.add(restarted);
+            restarted.addPeer(peer);
+            InetSocketAddress to = restarted.getLocalAddress();
+            sender.send(captured.duplicate(), to);                            // ❌ Replayed, too old
+            ByteBuffer early = DeltaCodec.encode(43, 0, System.currentTimeMillis() + 10_000,
+                    Map.of("victim", 250L), 1400).get(0);
+            sender.send(DeltaCodec.sign(early, key), to);                     // ❌ Future-dated
+            awaitRejected(restarted, 2);
+            assertThat(strategy.getRemainingRequests("victim", config)).isEqualTo(300);
+
+            // A node silent for two packet ages is forgotten
+            sendFresh(sender, key, 44, to);
+            awaitApplied(restarted, 1);
+            Thread.sleep(600);
+            sendFresh(sender, key, 45, to);
+            awaitApplied(restarted, 2);
+            assertThat(restarted.getTrackedNodes()).isEqualTo(1);
+        }
+    }
+
+    private static void sendFresh(DatagramChannel sender, Mac key, long nodeId, InetSocketAddress to)
+            throws IOException {
+        ByteBuffer packet = DeltaCodec.encode(nodeId, 0, System.currentTimeMillis(),
+                Map.of("other", 1L), 1400).get(0);
+        sender.send(DeltaCodec.sign(packet, key), to);
+    }
+
+    private static void awaitApplied(GossipCluster node, long permits) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (node.getPermitsApplied() < permits && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(node.getPermitsApplied()).isEqualTo(permits);
+    }
+
+    private static void awaitRejected(GossipCluster node, long rejected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (node.getPacketsRejected() < rejected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(node.getPacketsRejected()).isEqualTo(rejected);
+    }
+
+    /** One thread per node, ~5k req/s each, for one second. Returns admits cluster-wide. */
+    private long drive(String identifier) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (GossipCluster node : nodes) {
+            results.add(executor.submit(() -> {
+                start.await();
+                long admitted = 0;
+                long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                while (System.nanoTime() < end) {
+                    if (node.tryAcquire(identifier, config).isAllowed())
+                        admitted++;
+                    LockSupport.parkNanos(200_000);
+                }
+                return admitted;
+            }));
+        }
+        start.countDown();
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        return total;
+    }
+
+    private boolean converged(String identifier, long remaining) {
+        for (RateLimiterStrategy strategy : strategies) {
+            if (strategy.getRemainingRequests(identifier, config) != remaining)
+                return false;
+        }
+        return true;
+    }
+
+    private void startCluster(Supplier<RateLimiterStrategy> strategyFactory) {
+        RateLimiterProperties.Cluster settings = new RateLimiterProperties.Cluster();
+        settings.setEnabled(true);
+        settings.setBindAddress("127.0.0.1");
+        settings.setBindPort(0);
+        settings.setGossipIntervalMillis(5);
+
+        for (int i = 0; i < NODES; i++) {
+            RateLimiterStrategy strategy = strategyFactory.get();
+            strategies.add(strategy);
+            nodes.add(new GossipCluster(strategy, id -> config, settings));
+        }
+        // Static full mesh
+        for (GossipCluster node : nodes) {
+            for (GossipCluster peer : nodes) {
+                if (peer != node)
+                    node.addPeer(peer.getLocalAddress());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ratelimiter.service.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for HashRing.
+ * Tests: balance with virtual nodes, minimal movement on join, determinism.
+ */
+class HashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    @DisplayName("1. Virtual nodes spread ownership evenly")
+    void testBalance() {
+        HashRing ring = new HashRing(List.of("10.0.0.1:7700", "10.0.0.2:7700", "10.0.0.3:7700"), 128);
+
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.ownerOf("user-" + i), 1, Integer::sum);
+        }
+
+        assertThat(owned).hasSize(3);
+        assertThat(owned.values()).allSatisfy(count ->
+                assertThat(count).isBetween(KEYS / 3 * 80 / 100, KEYS / 3 * 120 / 100));
+    }
+
+    @Test
+    @DisplayName("2. A joining member takes ~1/n of the keys, all from existing members")
+    void testMinimalMovementOnJoin() {
+        HashRing before = new HashRing(List.of("a:1", "b:1", "c:1"), 128);
+        HashRing after = new HashRing(List.of("a:1", "b:1", "c:1", "d:1"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user-" + i;
+            String oldOwner = before.ownerOf(key);
+            String newOwner = after.ownerOf(key);
+            if (!oldOwner.equals(newOwner)) {
+                moved++;
+                assertThat(newOwner).isEqualTo("d:1"); // Keys only move to the new member
+            }
+        }
+
+        assertThat(moved).isBetween(KEYS / 4 * 75 / 100, KEYS / 4 * 125 / 100);
+    }
+
+    @Test
+    @DisplayName("3. Every node builds the same ring regardless of member order")
+    void testDeterministic() {
+        HashRing one = new HashRing(List.of("a:1", "b:1", "c:1"), 64);
+        HashRing two = new HashRing(List.of("c:1", "a:1", "b:1"), 64);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(one.ownerOf("key-" + i)).isEqualTo(two.ownerOf("key-" + i));
+        }
+        assertThatThrownBy(() -> new HashRing(List.of(), 64).ownerOf("any"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,347 @@
+package com.ratelimiter.service.cluster;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import com.ratelimiter.service.strategy.SlidingWindowStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * In-JVM multi-node harness: several ShardedLimiter nodes on loopback TCP,
+ * each with its own in-memory strategy, no shared store.
+ * Tests: exact limit under concurrent load on every node, forwarding
+ * latency, state handoff on join (token bucket and sliding window),
+ * local fallback when the owner is down, shared-secret handshake,
+ * connection cap, handoff to an unreachable owner, status read on the
+ * owner.
+ */
+class ShardedLimiterTest {
+
+    private final List<ShardedLimiter> nodes = new ArrayList<>();
+
+    private final RateLimitConfig config = RateLimitConfig.builder()
+            .identifier("sharded-user")
+            .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+            .maxRequests(100)
+            .windowSeconds(3600)
+            .refillRate(0)
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ShardedLimiter::close);
+    }
+
+    @Test
+    @DisplayName("1. Concurrent load on every node admits exactly the limit per key")
+    void testExactLimitAcrossNodes() throws Exception {
+        startNodes(3, this::tokenBucket);
+        // One key owned by each node, so every node both serves and forwards
+        String[] keys = nodes.stream().map(node -> keyOwnedBy(node.getSelf(), "exact")).toArray(String[]::new);
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (ShardedLimiter node : nodes) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                long[] admitted = new long[keys.length];
+                for (int i = 0; i < 150; i++) {
+                    for (int k = 0; k < keys.length; k++) {
+                        if (node.tryAcquire(keys[k], config).isAllowed())
+                            admitted[k]++;
+                    }
+                }
+                return admitted;
+            }));
+        }
+        start.countDown();
+        long[] total = new long[keys.length];
+        for (Future<long[]> future : futures) {
+            long[] admitted = future.get(30, TimeUnit.SECONDS);
+            for (int k = 0; k < keys.length; k++) {
+                total[k] += admitted[k];
+            }
+        }
+        executor.shutdown();
+
+        assertThat(total).containsOnly(config.getMaxRequests());
+        assertThat(nodes).allSatisfy(node -> assertThat(node.getForwarded()).isPositive());
+        assertThat(nodes).allSatisfy(node -> assertThat(node.getFallbacks()).isZero());
+    }
+
+    @Test
+    @DisplayName("2. A forwarded check costs one loopback round trip")
+    void testForwardingLatency() {
+        startNodes(3, this::tokenBucket);
+        ShardedLimiter entry = nodes.get(0);
+        String localKey = keyOwnedBy(entry.getSelf(), "lat-local");
+        String remoteKey = keyOwnedBy(nodes.get(1).getSelf(), "lat-remote");
+        RateLimitConfig unlimited = RateLimitConfig.builder()
+                .identifier("lat")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(1_000_000)
+                .windowSeconds(3600)
+                .refillRate(0)
+                .build();
+
+        for (int i = 0; i < 2_000; i++) {
+            entry.tryAcquire(remoteKey, unlimited); // Warm up connection and JIT
+        }
+        long[] local = time(() -> entry.tryAcquire(localKey, unlimited), 5_000);
+        long[] forwarded = time(() -> entry.tryAcquire(remoteKey, unlimited), 5_000);
+
+        assertThat(entry.getFallbacks()).isZero();
+        assertThat(percentile(local, 99)).isLessThan(percentile(forwarded, 99));
+        assertThat(percentile(forwarded, 50)).isLessThan(5_000);
+        assertThat(percentile(forwarded, 99)).isLessThan(50_000);
+    }
+
+    @Test
+    @DisplayName("3. Token bucket: usage survives the key moving to a joining node")
+    void testTokenBucketHandoff() {
+        assertUsageSurvivesJoin(this::tokenBucket);
+    }
+
+    @Test
+    @DisplayName("4. Sliding window: usage survives the key moving to a joining node")
+    void testSlidingWindowHandoff() {
+        assertUsageSurvivesJoin(() -> new SlidingWindowStrategy(new RateLimiterProperties(), new SimpleMeterRegistry()));
+    }
+
+    @Test
+    @DisplayName("5. An unreachable owner degrades to a local decision")
+    void testFallbackWhenOwnerDown() {
+        startNodes(3, this::tokenBucket);
+        ShardedLimiter entry = nodes.get(0);
+        ShardedLimiter down = nodes.get(2);
+        String key = keyOwnedBy(down.getSelf(), "down");
+        down.close();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertThat(entry.tryAcquire(key, config).isAllowed()).isTrue();
+        }
+
+        assertThat(entry.getFallbacks()).isEqualTo(10);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000);
+    }
+
+    @Test
+    @DisplayName("6. With a shared secret, a node holding the wrong one is never served")
+    void testSharedSecretHandshake() {
+        ShardedLimiter owner = node(tokenBucket(), "s3cret");
+        ShardedLimiter member = node(tokenBucket(), "s3cret");
+        ShardedLimiter intruder = node(tokenBucket(), "guess");
+        List<String> members = List.of(owner.getSelf(), member.getSelf(), intruder.getSelf());
+        nodes.forEach(node -> node.updateMembers(members));
+        String key = keyOwnedBy(owner.getSelf(), "auth");
+
+        for (int i = 0; i < 3; i++) {
+            intruder.tryAcquire(key, config, 30); // ❌ Connection closed at the handshake
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThat(member.tryAcquire(key, config).isAllowed()).isTrue(); // ✅ Forwarded
+        }
+
+        assertThat(intruder.getFallbacks()).isEqualTo(3);
+        assertThat(owner.getRejected()).isPositive();
+        assertThat(member.getForwarded()).isEqualTo(5);
+        assertThat(member.getFallbacks()).isZero();
+        assertThat(owner.tryAcquire(key, config).getRemaining()).isEqualTo(94);
+    }
+
+    @Test
+    @DisplayName("7. Connections beyond max-connections are refused; stalled handshakes free their slot")
+    void testConnectionCap() throws Exception {
+        ShardedLimiter owner = node(tokenBucket(), "s3cret", 2);
+        String[] address = owner.getSelf().split(":");
+        List<Socket> stalled = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                Socket socket = new Socket(address[0], Integer.parseInt(address[1]));
+                socket.getInputStream().readNBytes(ForwardingProtocol.NONCE_BYTES); // Served: challenged
+                stalled.add(socket); // ... and never answers
+            }
+            try (Socket extra = new Socket(address[0], Integer.parseInt(address[1]))) {
+                extra.setSoTimeout(2_000);
+                assertThat(extra.getInputStream().read()).isEqualTo(-1); // ❌ Closed at once
+            }
+            assertThat(owner.getRefused()).isEqualTo(1);
+
+            for (Socket socket : stalled) {
+                socket.setSoTimeout(5_000);
+                assertThat(socket.getInputStream().read()).isEqualTo(-1); // Handshake timed out
+            }
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+
+        ShardedLimiter member = node(tokenBucket(), "s3cret", 2);
+        List<String> members = List.of(owner.getSelf(), member.getSelf());
+        nodes.forEach(node -> node.updateMembers(members));
+        String key = keyOwnedBy(owner.getSelf(), "cap");
+        assertThat(member.tryAcquire(key, config).isAllowed()).isTrue(); // ✅ Slot free again
+        assertThat(member.getForwarded()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("8. Handoff to an unreachable owner gives up at once and keeps the usage")
+    void testHandoffToUnreachableOwner() {
+        ShardedLimiter entry = node(tokenBucket());
+        entry.updateMembers(List.of(entry.getSelf()));
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            keys.add("stay-" + i);
+            for (int j = 0; j < 10; j++) {
+                entry.tryAcquire(keys.get(i), config);
+            }
+        }
+        ShardedLimiter down = node(tokenBucket());
+        down.close();
+
+        long start = System.nanoTime();
+        assertThat(entry.updateMembers(List.of(entry.getSelf(), down.getSelf()))).isZero();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_000);
+        assertThat(keys).allSatisfy(key ->
+                assertThat(entry.peek(key, config).getRemaining()).isEqualTo(90)); // Still held here
+    }
+
+    @Test
+    @DisplayName("9. Status read on any node reports the owner's budget and consumes nothing")
+    void testPeekReadsOwner() {
+        startNodes(3, this::tokenBucket);
+        String key = keyOwnedBy(nodes.get(1).getSelf(), "peek");
+        for (int i = 0; i < 7; i++) {
+            nodes.get(0).tryAcquire(key, config);
+        }
+
+        for (ShardedLimiter node : nodes) {
+            assertThat(node.peek(key, config).getRemaining()).isEqualTo(93);
+        }
+        assertThat(nodes.get(2).peek(key, config).getResetAtEpochSeconds())
+                .isEqualTo(nodes.get(1).peek(key, config).getResetAtEpochSeconds());
+        assertThat(nodes.get(1).tryAcquire(key, config).getRemaining()).isEqualTo(92);
+    }
+
+    /**
+     * Spend 60 of 100 on many keys, add a fourth node, and check every key
+     * that moved to it still has exactly 40 left.
+     */
+    private void assertUsageSurvivesJoin(Supplier<RateLimiterStrategy> strategies) {
+        startNodes(3, strategies);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            keys.add("handoff-" + i);
+        }
+        for (String key : keys) {
+            for (int i = 0; i < 60; i++) {
+                assertThat(nodes.get(i % 3).tryAcquire(key, config).isAllowed()).isTrue();
+            }
+        }
+
+        ShardedLimiter joiner = node(strategies.get());
+        List<String> members = new ArrayList<>(nodes.get(0).getMembers());
+        members.add(joiner.getSelf());
+        long start = System.nanoTime();
+        int handedOff = 0;
+        for (ShardedLimiter node : nodes) {
+            handedOff += node.updateMembers(members);
+        }
+        // One pipelined batch per old node, well inside a single forward timeout
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_000);
+
+        List<String> moved = new ArrayList<>();
+        for (String key : keys) {
+            if (joiner.ownerOf(key).equals(joiner.getSelf()))
+                moved.add(key);
+        }
+        assertThat(moved).isNotEmpty().hasSize(handedOff);
+        for (String key : moved) {
+            long admitted = 0;
+            for (int i = 0; i < 50; i++) {
+                if (nodes.get(i % nodes.size()).tryAcquire(key, config).isAllowed())
+                    admitted++;
+            }
+            assertThat(admitted).as(key).isEqualTo(40);
+        }
+    }
+
+    private void startNodes(int count, Supplier<RateLimiterStrategy> strategies) {
+        for (int i = 0; i < count; i++) {
+            node(strategies.get());
+        }
+        List<String> members = new ArrayList<>();
+        nodes.forEach(node -> members.add(node.getSelf()));
+        nodes.forEach(node -> node.updateMembers(members));
+    }
+
+    private ShardedLimiter node(RateLimiterStrategy strategy) {
+        return node(strategy, "");
+    }
+
+    private ShardedLimiter node(RateLimiterStrategy strategy, String sharedSecret) {
+        return node(strategy, sharedSecret, 64);
+    }
+
+    private ShardedLimiter node(RateLimiterStrategy strategy, String sharedSecret, int maxConnections) {
+        RateLimiterProperties.Sharding settings = new RateLimiterProperties.Sharding();
+        settings.setEnabled(true);
+        settings.setBindPort(0);
+        settings.setSharedSecret(sharedSecret);
+        settings.setVirtualNodes(128);
+        settings.setForwardTimeoutMillis(1_000);
+        settings.setMaxConnections(maxConnections);
+        ShardedLimiter node = new ShardedLimiter(strategy, id -> config, settings, new SimpleMeterRegistry());
+        nodes.add(node);
+        return node;
+    }
+
+    private TokenBucketStrategy tokenBucket() {
+        return new TokenBucketStrategy(new RateLimiterProperties(), new SimpleMeterRegistry());
+    }
+
+    private String keyOwnedBy(String member, String prefix) {
+        for (int i = 0; ; i++) {
+            String key = prefix + "-" + i;
+            if (nodes.get(0).ownerOf(key).equals(member))
+                return key;
+        }
+    }
+
+    private static long[] time(Runnable check, int samples) {
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            check.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    /** Percentile of sorted nanos, in microseconds */
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1_000.0;
+    }
+}
@@ -0,0 +1,271 @@
+package com.ratelimiter.service.lease;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.RedisTokenBucketStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lease mode against an in-process Redis stand-in (jedis-mock), with several
+ * "nodes" (strategy + lease manager pairs) in one JVM sharing one bucket.
+ * Tests: local hits, no-refill accuracy, overshoot vs strict mode, lease
+ * shrinking near empty, leftovers returned on expiry.
+ */
+class PermitLeaseManagerTest {
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    @DisplayName("1. Most requests are decided locally")
+    void testServesLocally() {
+        PermitLeaseManager node = node(lease(1000, 1000, 0.1));
+        RateLimitConfig config = config(1000, 0);
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(node.tryAcquire("local-user", config).isAllowed()).isTrue();
+        }
+
+        assertThat(node.getRoundTrips()).isLessThan(50);
+        assertThat(node.getLocalDecisions()).isGreaterThan(450);
+    }
+
+    @Test
+    @DisplayName("2. Without refill, nodes together never exceed capacity")
+    void testNoRefillNeverOvershoots() {
+        RateLimitConfig config = config(200, 0);
+        PermitLeaseManager[] nodes = nodes(4, lease(1000, 1000, 0.1));
+
+        int allowed = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (nodes[i % nodes.length].tryAcquire("no-refill-user", config).isAllowed())
+                allowed++;
+        }
+
+        // Stock stranded in another node's lease can only under-admit
+        assertThat(allowed).isLessThanOrEqualTo(200).isGreaterThan(180);
+    }
+
+    @Test
+    @DisplayName("3. Overshoot is bounded by outstanding leases and buys far fewer round trips")
+    void testOvershootVersusStrict() {
+        // Simulated clock + in-memory shared bucket: deterministic, and fast
+        // enough to saturate (the Redis stand-in costs ~10 ms per script)
+        RateLimitConfig config = config(50, 100);
+        int nodeCount = 4;
+
+        Run strict = simulate(nodeCount, lease(1000, 1, 0.1), config);
+        Run leased = simulate(nodeCount, lease(1000, 20, 0.1), config);
+        Run greedy = simulate(nodeCount, lease(1000, 100, 0.5), config);
+
+        long ideal = config.getMaxRequests() + config.getRefillRate(); // Capacity + one second of refill
+        assertThat(strict.worstSecond).isLessThanOrEqualTo(ideal);
+        assertThat(strict.quietTripsPerRequest()).isEqualTo(1.0);
+        // Overshoot never exceeds what nodes can hold: nodes × the largest lease
+        assertThat(leased.worstSecond).isLessThanOrEqualTo(ideal + nodeCount * 5);
+        assertThat(greedy.worstSecond).isGreaterThanOrEqualTo(leased.worstSecond)
+                .isLessThanOrEqualTo(ideal + nodeCount * 25);
+        assertThat(leased.quietTripsPerRequest()).isLessThan(0.5);
+        assertThat(greedy.quietTripsPerRequest()).isLessThanOrEqualTo(leased.quietTripsPerRequest());
+    }
+
+    @Test
+    @DisplayName("4. Leases shrink as the shared bucket runs low")
+    void testLeaseShrinksNearEmpty() {
+        PermitLeaseManager node = node(lease(1000, 1000, 0.1));
+        RateLimitConfig config = config(1000, 0);
+
+        long largest = 0;
+        int allowed = 0;
+        for (int i = 0; i < 1200; i++) {
+            if (node.tryAcquire("shrink-user", config).isAllowed())
+                allowed++;
+            largest = Math.max(largest, node.lastLeaseSize("shrink-user"));
+        }
+
+        assertThat(allowed).isEqualTo(1000); // One node: no permits stranded
+        assertThat(largest).isGreaterThan(10);
+        assertThat(node.lastLeaseSize("shrink-user")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("5. Leftover permits go back to the pool when an idle lease expires")
+    void testLeftoverReturnedOnExpiry() throws InterruptedException {
+        RedisTokenBucketStrategy pool = new RedisTokenBucketStrategy(redis, new RateLimiterProperties());
+        // Long enough that the lease outlives the 20 slow scripts that fill it
+        PermitLeaseManager node = new PermitLeaseManager(pool, lease(1000, 1000, 0.5));
+        RateLimitConfig config = config(100, 0);
+
+        for (int i = 0; i < 20; i++) {
+            node.tryAcquire("idle-user", config);
+        }
+        assertThat(pool.getRemainingRequests("idle-user", config)).isLessThan(80);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.getRemainingRequests("idle-user", config) != 80 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            node.cleanUp();
+        }
+        assertThat(pool.getRemainingRequests("idle-user", config)).isEqualTo(80);
+    }
+
+    /**
+     * 10 simulated seconds on one key: 5 s of quiet traffic (80 req/s over
+     * all nodes, under the 100/s refill, so nodes sit on leases while the
+     * bucket refills), then 5 s of 4000 req/s. Returns the worst 1 s of
+     * admits and the round trips per request of the quiet phase.
+     */
+    private static Run simulate(int nodeCount, RateLimiterProperties.Lease settings, RateLimitConfig config) {
+        long[] clock = {0};
+        SimulatedPool pool = new SimulatedPool(clock);
+        PermitLeaseManager[] nodes = new PermitLeaseManager[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = new PermitLeaseManager(pool, settings);
+        }
+
+        List<Long> admitted = new ArrayList<>();
+        long quietRequests = 0;
+        long quietTrips = 0;
+        for (long now = 1; now <= 10_000; now++) {
+            clock[0] = now;
+            boolean quiet = now <= 5_000;
+            if (!quiet && quietTrips == 0)
+                quietTrips = pool.calls;
+            if (quiet && now % 50 != 0)
+                continue;
+            for (PermitLeaseManager node : nodes) {
+                if (quiet)
+                    quietRequests++;
+                if (node.tryAcquireAt("sim-user", config, now).isAllowed())
+                    admitted.add(now);
+            }
+        }
+
+        long worst = 0;
+        for (int lo = 0, hi = 0; hi < admitted.size(); hi++) {
+            while (admitted.get(hi) - admitted.get(lo) >= 1000)
+                lo++;
+            worst = Math.max(worst, hi - lo + 1);
+        }
+        return new Run(worst, quietRequests, quietTrips);
+    }
+
+    /** Token bucket shared by all simulated nodes; same semantics as token_bucket_lease.lua. */
+    private static final class SimulatedPool implements PermitPool {
+        private final long[] clock;
+        private long tokens = -1;
+        private long ts;
+        long calls;
+
+        SimulatedPool(long[] clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public synchronized PermitGrant lease(String identifier, RateLimitConfig config, long returned, long requested) {
+            calls++;
+            long now = clock[0];
+            long capacity = config.getMaxRequests();
+            if (tokens < 0) {
+                tokens = capacity;
+                ts = now;
+            }
+            long add = (now - ts) * config.getRefillRate() / 1000;
+            if (add > 0) {
+                tokens = Math.min(capacity, tokens + add);
+                ts = now;
+            }
+            tokens = Math.min(capacity, tokens + returned);
+            long granted = Math.min(requested, tokens);
+            tokens -= granted;
+            long retryMs = granted == 0 ? ts + 1000 / config.getRefillRate() - now : 0;
+            return new PermitGrant(granted, tokens, now, retryMs);
+        }
+    }
+
+    private static PermitLeaseManager[] nodes(int count, RateLimiterProperties.Lease settings) {
+        PermitLeaseManager[] nodes = new PermitLeaseManager[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = node(settings);
+        }
+        return nodes;
+    }
+
+    private static PermitLeaseManager node(RateLimiterProperties.Lease settings) {
+        return new PermitLeaseManager(new RedisTokenBucketStrategy(redis, new RateLimiterProperties()), settings);
+    }
+
+    private static RateLimiterProperties.Lease lease(long durationMillis, long maxSize, double maxShare) {
+        RateLimiterProperties.Lease settings = new RateLimiterProperties.Lease();
+        settings.setEnabled(true);
+        settings.setDurationMillis(durationMillis);
+        settings.setMaxSize(maxSize);
+        settings.setMaxShareOfRemaining(maxShare);
+        return settings;
+    }
+
+    private static RateLimitConfig config(int maxRequests, int refillRate) {
+        return RateLimitConfig.builder()
+                .identifier("lease-test")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(maxRequests)
+                .windowSeconds(60)
+                .refillRate(refillRate)
+                .build();
+    }
+
+    private static final class Run {
+        final long worstSecond;
+        final long quietRequests;
+        final long quietTrips;
+
+        Run(long worstSecond, long quietRequests, long quietTrips) {
+            this.worstSecond = worstSecond;
+            this.quietRequests = quietRequests;
+            this.quietTrips = quietTrips;
+        }
+
+        double quietTripsPerRequest() {
+            return (double) quietTrips / quietRequests;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.ratelimiter.service.persist;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.BucketState;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.RateLimiterStrategy;
+import com.ratelimiter.service.strategy.SlidingWindowStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for StateSnapshotter, SnapshotFile and StateJournal.
+ * Tests: state survives a clean restart, the journal carries changes made
+ * after the last snapshot, time-based aging, damaged files, parallel and
+ * bounded restore.
+ */
+class StateSnapshotterTest {
+
+    private static final RateLimitConfig CONFIG = RateLimitConfig.builder()
+            .identifier("test").identifierType(RateLimitConfig.IdentifierType.USER_ID)
+            .maxRequests(5).windowSeconds(60).refillRate(0).build();
+
+    @TempDir
+    Path directory;
+
+    private RateLimiterProperties properties;
+    private final List<StateSnapshotter> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimiterProperties();
+        properties.getPersistence().setDirectory(directory.toString());
+        // Nothing happens on the schedule during a test; flush() and snapshot() are called directly
+        properties.getPersistence().setJournalFlushMillis(3_600_000);
+        properties.getPersistence().setSnapshotIntervalSeconds(3_600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(StateSnapshotter::close);
+    }
+
+    private StateSnapshotter start(int chunkBytes, RateLimiterStrategy... strategies) {
+        StateSnapshotter snapshotter = new StateSnapshotter(List.of(strategies), properties,
+                new SimpleMeterRegistry(), chunkBytes);
+        opened.add(snapshotter);
+        return snapshotter;
+    }
+
+    private StateSnapshotter start(RateLimiterStrategy... strategies) {
+        return start(SnapshotFile.DEFAULT_CHUNK_BYTES, strategies);
+    }
+
+    @Test
+    @DisplayName("1. A clean restart keeps token bucket and sliding window budgets")
+    void testStateSurvivesRestart() {
+        TokenBucketStrategy bucket = new TokenBucketStrategy();
+        SlidingWindowStrategy window = new SlidingWindowStrategy();
+        start(bucket, window);
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire("abuser", CONFIG);
+            window.tryAcquire("abuser", CONFIG);
+        }
+        bucket.tryAcquire("polite", CONFIG, 2);
+        window.tryAcquire("polite", CONFIG, 2);
+        opened.remove(0).close(); // Final snapshot
+
+        TokenBucketStrategy restartedBucket = new TokenBucketStrategy();
+        SlidingWindowStrategy restartedWindow = new SlidingWindowStrategy();
+        StateSnapshotter restarted = start(restartedBucket, restartedWindow);
+
+        assertThat(restartedBucket.tryAcquire("abuser", CONFIG).isAllowed()).isFalse(); // ❌ Still empty
+        assertThat(restartedWindow.tryAcquire("abuser", CONFIG).isAllowed()).isFalse();
+        assertThat(restartedBucket.getRemainingRequests("polite", CONFIG)).isEqualTo(3);
+        assertThat(restartedWindow.getRemainingRequests("polite", CONFIG)).isEqualTo(3);
+        assertThat(restartedBucket.getRemainingRequests("newcomer", CONFIG)).isEqualTo(5);
+        assertThat(restarted.getRestoreStats().get("TOKEN_BUCKET").getRestored()).isEqualTo(2);
+        assertThat(restarted.getRestoreStats().get("SLIDING_WINDOW").isComplete()).isTrue();
+    }
+
+    @Test
+    @DisplayName("2. After a crash, changes since the last snapshot come back from the journal")
+    void testJournalReplayedOverSnapshot() {
+        TokenBucketStrategy bucket = new TokenBucketStrategy();
+        StateSnapshotter snapshotter = start(bucket);
+        bucket.tryAcquire("alice", CONFIG, 1);
+        bucket.tryAcquire("bob", CONFIG, 5);
+        snapshotter.snapshot();
+
+        bucket.tryAcquire("alice", CONFIG, 3); // Alice is now at 1
+        bucket.tryAcquire("carol", CONFIG, 4);
+        bucket.reset("bob", CONFIG);            // Removal is journaled too
+        snapshotter.flush();
+        bucket.tryAcquire("alice", CONFIG, 1);  // Never flushed — lost in the crash
+
+        // No close(): the process died; a new one starts on the same directory
+        TokenBucketStrategy restarted = new TokenBucketStrategy();
+        StateSnapshotter next = start(restarted);
+
+        assertThat(restarted.getRemainingRequests("alice", CONFIG)).isEqualTo(1);
+        assertThat(restarted.getRemainingRequests("carol", CONFIG)).isEqualTo(1);
+        assertThat(restarted.getRemainingRequests("bob", CONFIG)).isEqualTo(5);
+        assertThat(restarted.getEntry("bob")).isNull();
+        assertThat(next.getRestoreStats().get("TOKEN_BUCKET").getJournalRecords()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("3. Aging: expired records are dropped; a restored bucket refills for the downtime")
+    void testTimeBasedAging() throws IOException {
+        RateLimitConfig refilling = RateLimitConfig.builder()
+                .identifier("test").identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(10).windowSeconds(10).refillRate(1).build();
+        long now = System.currentTimeMillis();
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(directory.resolve("TOKEN_BUCKET.snapshot"), 1,
+                SnapshotFile.DEFAULT_CHUNK_BYTES)) {
+            // Emptied 3 s before the restart: 3 tokens back by now, full in another 7 s
+            writer.add("recent", now + 7_000, new long[]{BucketState.pack(0, now - 3_000)});
+            // Would have been full again a second ago — same as no entry
+            writer.add("long-ago", now - 1_000, new long[]{BucketState.pack(0, now - 11_000)});
+            writer.finish(now - 3_000);
+        }
+
+        TokenBucketStrategy restarted = new TokenBucketStrategy();
+        StateSnapshotter snapshotter = start(restarted);
+
+        assertThat(restarted.getEntry("long-ago")).isNull();
+        assertThat(restarted.getRemainingRequests("recent", refilling)).isBetween(3L, 4L);
+        assertThat(restarted.getStore().size()).isEqualTo(1);
+        assertThat(snapshotter.getRestoreStats().get("TOKEN_BUCKET").getAged()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("4. A damaged chunk or torn journal tail loses only what it held")
+    void testDamagedFiles() throws IOException {
+        TokenBucketStrategy bucket = new TokenBucketStrategy();
+        StateSnapshotter snapshotter = start(4096, bucket);
+        for (int i = 0; i < 1_000; i++) {
+            bucket.tryAcquire("user-" + i, CONFIG, 5);
+        }
+        snapshotter.snapshot();
+        bucket.tryAcquire("late", CONFIG, 5);
+        snapshotter.flush();
+        opened.remove(0);
+
+        Path snapshot = directory.resolve("TOKEN_BUCKET.snapshot");
+        try (FileChannel file = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            // One byte inside the first chunk's records
+            file.write(ByteBuffer.wrap(new byte[]{0x7F}),
+                    SnapshotFile.HEADER_BYTES + SnapshotFile.CHUNK_HEADER_BYTES + 5);
+        }
+        try (FileChannel file = FileChannel.open(directory.resolve("TOKEN_BUCKET.journal"),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            file.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3})); // Half-written frame
+        }
+
+        TokenBucketStrategy restarted = new TokenBucketStrategy();
+        StateSnapshotter next = start(4096, restarted);
+
+        StateSnapshotter.RestoreStats stats = next.getRestoreStats().get("TOKEN_BUCKET");
+        assertThat(stats.isComplete()).isFalse();
+        assertThat(stats.getRestored()).isBetween(800L, 999L); // Every chunk but the first, plus "late"
+        assertThat(restarted.getRemainingRequests("late", CONFIG)).isZero();
+
+        // The torn frame was cut off: appends after it replay on the next start
+        restarted.tryAcquire("after", CONFIG, 5);
+        next.flush();
+        opened.remove(0);
+        TokenBucketStrategy third = new TokenBucketStrategy();
+        start(4096, third);
+        assertThat(third.getRemainingRequests("after", CONFIG)).isZero();
+    }
+
+    @Test
+    @DisplayName("5. Chunks load in parallel; restore stops at its deadline")
+    void testParallelAndBoundedRestore() {
+        SlidingWindowStrategy window = new SlidingWindowStrategy();
+        StateSnapshotter snapshotter = start(4096, window);
+        for (int i = 0; i < 20_000; i++) {
+            window.tryAcquire("user-" + i, CONFIG, 1 + i % 5);
+        }
+        snapshotter.snapshot();
+        opened.remove(0);
+
+        properties.getPersistence().setRestoreThreads(4);
+        SlidingWindowStrategy restarted = new SlidingWindowStrategy();
+        StateSnapshotter parallel = start(4096, restarted);
+        assertThat(parallel.getRestoreStats().get("SLIDING_WINDOW").getRestored()).isEqualTo(20_000);
+        assertThat(restarted.getRemainingRequests("user-12345", CONFIG)).isEqualTo(5 - (1 + 12345 % 5));
+        opened.remove(0); // Not closed: keep the files as they were
+
+        properties.getPersistence().setMaxRestoreMillis(-1); // Already out of time
+        SlidingWindowStrategy late = new SlidingWindowStrategy();
+        StateSnapshotter bounded = start(4096, late);
+        assertThat(bounded.getRestoreStats().get("SLIDING_WINDOW").isComplete()).isFalse();
+        assertThat(late.getStore().size()).isZero();
+    }
+
+    @Test
+    @DisplayName("6. GCRA, the default algorithm, keeps its TAT across a restart")
+    void testGcraSurvivesRestart() {
+        GcraStrategy gcra = new GcraStrategy();
+        StateSnapshotter snapshotter = start(gcra);
+        for (int i = 0; i < 5; i++) {
+            gcra.tryAcquire("abuser", CONFIG);
+        }
+        gcra.tryAcquire("polite", CONFIG, 2);
+        snapshotter.snapshot();
+        gcra.tryAcquire("late", CONFIG, 4);
+        snapshotter.flush();
+
+        // No close(): snapshot plus journal, as after a crash
+        GcraStrategy restarted = new GcraStrategy();
+        StateSnapshotter next = start(restarted);
+
+        assertThat(restarted.tryAcquire("abuser", CONFIG).isAllowed()).isFalse(); // ❌ Still over rate
+        assertThat(restarted.getRemainingRequests("polite", CONFIG)).isEqualTo(3);
+        assertThat(restarted.getRemainingRequests("late", CONFIG)).isEqualTo(1);
+        assertThat(restarted.getEntry("abuser").expiresAtMs).isEqualTo(gcra.getEntry("abuser").expiresAtMs);
+        assertThat(next.getRestoreStats().get("GCRA").getRestored()).isEqualTo(3);
+    }
+}
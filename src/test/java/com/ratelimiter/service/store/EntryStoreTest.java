@@ -0,0 +1,135 @@
+package com.ratelimiter.service.store;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitEntry;
+import com.ratelimiter.service.strategy.SlidingWindowStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for EntryStore.
+ * Tests: idle expiry, reclaiming "fresh-equivalent" entries, max-entries bound,
+ * striped entry locks.
+ */
+class EntryStoreTest {
+
+    // Maintenance runs on the calling thread so tests are deterministic
+    private static EntryStore newStore(long maxEntries, long idleExpiryMs) {
+        return new EntryStore(maxEntries, idleExpiryMs, 10, Runnable::run);
+    }
+
+    @Test
+    @DisplayName("1. Idle entries are reclaimed once their deadline passes")
+    void testIdleEntriesExpire() throws InterruptedException {
+        EntryStore store = newStore(1000, 50);
+        RateLimitEntry entry = store.getOrCreate("idle", id -> new RateLimitEntry(id, 5));
+
+        Thread.sleep(100);
+        store.cleanUp();
+
+        assertThat(store.size()).isZero();
+        assertThat(store.get("idle")).isNull();
+        assertThat(entry.evicted).isTrue();
+        assertThat(store.getExpiredEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("2. Touched entries survive until the new deadline")
+    void testTouchExtendsDeadline() throws InterruptedException {
+        EntryStore store = newStore(1000, 60_000);
+        RateLimitEntry entry = store.getOrCreate("busy", id -> new RateLimitEntry(id, 5));
+        store.touch(entry, System.currentTimeMillis(), System.currentTimeMillis() + 60_000);
+
+        Thread.sleep(50);
+        store.cleanUp();
+
+        assertThat(store.get("busy")).isSameAs(entry);
+    }
+
+    @Test
+    @DisplayName("3. Inserting past maxEntries evicts down to the bound")
+    void testMaxEntriesBound() {
+        EntryStore store = newStore(100, 60_000);
+
+        for (int i = 0; i < 1000; i++) {
+            store.getOrCreate("ip-" + i, id -> new RateLimitEntry(id, 5));
+        }
+
+        assertThat(store.size()).isLessThanOrEqualTo(100);
+        assertThat(store.getSizeEvictions()).isGreaterThanOrEqualTo(900);
+    }
+
+    @Test
+    @DisplayName("4. Token bucket refilled to capacity is reclaimed")
+    void testRefilledBucketReclaimed() throws InterruptedException {
+        EntryStore store = newStore(1000, 60_000);
+        TokenBucketStrategy strategy = new TokenBucketStrategy(store);
+        RateLimitConfig config = config(5, 60, 100); // 1 token per 10 ms
+
+        strategy.tryAcquire("tb-user", config);
+        assertThat(store.size()).isEqualTo(1);
+
+        Thread.sleep(100);
+        store.cleanUp();
+
+        assertThat(store.size()).isZero();
+        // Next request simply starts a fresh full bucket
+        assertThat(strategy.tryAcquire("tb-user", config).getRemaining()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("5. Sliding window with no timestamps in the window is reclaimed")
+    void testEmptyWindowReclaimed() throws InterruptedException {
+        EntryStore store = newStore(1000, 60_000);
+        SlidingWindowStrategy strategy = new SlidingWindowStrategy(store);
+        RateLimitConfig config = config(3, 1, 0);
+
+        strategy.tryAcquire("sw-user", config);
+        Thread.sleep(1100);
+        store.cleanUp();
+
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("6. Entry locks are ReentrantLocks, not monitors; waits are counted")
+    void testEntryLockCountsWaits() throws Exception {
+        EntryStore store = newStore(1000, 60_000);
+        SlidingWindowStrategy strategy = new SlidingWindowStrategy(store);
+        RateLimitConfig config = config(3, 60, 0);
+        strategy.tryAcquire("locked-user", config);
+        RateLimitEntry entry = store.get("locked-user");
+
+        ReentrantLock lock = store.lock(entry);
+        assertThat(store.lock(entry)).isSameAs(lock); // Same stripe, reentrant
+        lock.unlock();
+
+        // Another thread takes the entry while the holder is still in there
+        Thread contender = new Thread(() -> strategy.tryAcquire("locked-user", config));
+        contender.start();
+        while (!lock.hasQueuedThread(contender)) {
+            Thread.onSpinWait();
+        }
+        assertThat(store.getLockWaits()).isEqualTo(1);
+        assertThat(Thread.holdsLock(entry)).isFalse();
+        lock.unlock();
+        contender.join();
+
+        assertThat(strategy.getRemainingRequests("locked-user", config)).isEqualTo(1);
+    }
+
+    private static RateLimitConfig config(int maxRequests, int windowSeconds, int refillRate) {
+        return RateLimitConfig.builder()
+                .identifier("test-user")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(maxRequests)
+                .windowSeconds(windowSeconds)
+                .refillRate(refillRate)
+                .build();
+    }
+}
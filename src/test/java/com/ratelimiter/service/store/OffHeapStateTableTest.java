@@ -0,0 +1,151 @@
+package com.ratelimiter.service.store;
+
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for OffHeapStateTable.
+ * Tests: update/get/remove against a HashMap reference, in-place expiry,
+ * the capacity bound, and both single-long strategies running off-heap.
+ */
+class OffHeapStateTableTest {
+
+    private static final long FAR_FUTURE = Long.MAX_VALUE;
+
+    private static RateLimitConfig config(int maxRequests, int refillRate) {
+        return RateLimitConfig.builder()
+                .identifier("test-user")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(maxRequests)
+                .windowSeconds(60)
+                .refillRate(refillRate)
+                .build();
+    }
+
+    @Test
+    @DisplayName("1. Random updates and removes match a HashMap reference")
+    void testMatchesReferenceMap() {
+        // Small segments so probe runs are long and deletes shift often
+        OffHeapStateTable table = new OffHeapStateTable(2_000, 3_600_000, 4);
+        Map<String, Long> reference = new HashMap<>();
+        Random random = new Random(7);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 50_000; i++) {
+            String key = "ip-" + random.nextInt(1_500);
+            if (random.nextInt(4) == 0) {
+                table.remove(key);
+                reference.remove(key);
+            } else {
+                long before = table.getAndUpdate(key, 0, now, state -> state + 1, state -> FAR_FUTURE);
+                assertThat(before).isEqualTo(reference.getOrDefault(key, 0L));
+                reference.merge(key, 1L, Long::sum);
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(reference.size());
+        for (int i = 0; i < 1_500; i++) {
+            String key = "ip-" + i;
+            assertThat(table.get(key, now)).isEqualTo(reference.getOrDefault(key, OffHeapStateTable.ABSENT));
+        }
+        assertThat(table.getSizeEvictions()).isZero();
+    }
+
+    @Test
+    @DisplayName("2. Slots past their deadline read as absent and restart fresh")
+    void testExpiredSlotsReuseInPlace() {
+        OffHeapStateTable table = new OffHeapStateTable(100, 3_600_000, 1);
+        long now = System.currentTimeMillis();
+
+        table.getAndUpdate("short-lived", 0, now, state -> 41, state -> now + 50);
+        assertThat(table.get("short-lived", now)).isEqualTo(41);
+        assertThat(table.get("short-lived", now + 50)).isEqualTo(OffHeapStateTable.ABSENT);
+
+        long before = table.getAndUpdate("short-lived", 0, now + 50, state -> state + 1, state -> FAR_FUTURE);
+        assertThat(before).isZero();
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.getExpiredEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("3. Inserting past capacity evicts instead of growing")
+    void testCapacityBound() {
+        OffHeapStateTable table = new OffHeapStateTable(1_000, 3_600_000, 4);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 10_000; i++) {
+            table.getAndUpdate("key-" + i, 0, now, state -> 1, state -> now + 60_000);
+        }
+
+        assertThat(table.size()).isLessThanOrEqualTo(table.getCapacity());
+        assertThat(table.getSizeEvictions()).isEqualTo(10_000 - table.size());
+        // The most recent key is always present
+        assertThat(table.get("key-9999", now)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("4. Token bucket off-heap: reject when empty, reset restores capacity")
+    void testTokenBucketOffHeap() {
+        TokenBucketStrategy strategy = new TokenBucketStrategy(new OffHeapStateTable(1_000, 3_600_000, 4));
+        RateLimitConfig config = config(5, 1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(strategy.tryAcquire("offheap-user", config).getRemaining()).isEqualTo(4 - i);
+        }
+        assertThat(strategy.isAllowed("offheap-user", config)).isFalse();
+        assertThat(strategy.getRemainingRequests("offheap-user", config)).isZero();
+
+        strategy.reset("offheap-user", config);
+
+        assertThat(strategy.getRemainingRequests("offheap-user", config)).isEqualTo(5);
+        assertThat(strategy.getEntry("offheap-user")).isNull(); // no heap entry in this mode
+    }
+
+    @Test
+    @DisplayName("5. GCRA off-heap admits exactly the burst under contention")
+    void testGcraOffHeapConcurrent() throws InterruptedException {
+        GcraStrategy strategy = new GcraStrategy(new OffHeapStateTable(1_000, 3_600_000, 4));
+        // One request per 1.8 s — nothing refills while the test runs
+        RateLimitConfig config = RateLimitConfig.builder()
+                .identifier("hot-key")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(2_000)
+                .windowSeconds(3600)
+                .refillRate(0)
+                .build();
+        int threadCount = 8;
+        AtomicInteger allowed = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < 1_000; j++) {
+                        if (strategy.isAllowed("hot-key", config))
+                            allowed.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+
+        assertThat(allowed.get()).isEqualTo(config.getMaxRequests());
+    }
+}
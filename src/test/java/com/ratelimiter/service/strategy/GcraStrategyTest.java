@@ -0,0 +1,198 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for GcraStrategy.
+ * Tests: burst, sustained rate, retry-after, window fallback, reset,
+ * concurrency — on a simulated clock where timing matters.
+ */
+class GcraStrategyTest {
+
+    private GcraStrategy strategy;
+    private RateLimitConfig config;
+    // Slightly in the future so store deadlines never lapse mid-test
+    private long t0;
+
+    @BeforeEach
+    void setUp() {
+        strategy = new GcraStrategy();
+        config = RateLimitConfig.builder()
+                .identifier("test-user")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(5)
+                .windowSeconds(60)
+                .refillRate(10) // one request every 100 ms
+                .build();
+        t0 = System.currentTimeMillis() + 60_000;
+    }
+
+    @Test
+    @DisplayName("1. Should allow a burst of maxRequests, then reject")
+    void testBurstThenReject() {
+        for (int i = 0; i < 5; i++) {
+            RateLimitDecision decision = strategy.tryAcquireAt("gcra-burst", config, t0);
+            assertThat(decision.isAllowed()).isTrue();
+            assertThat(decision.getRemaining()).isEqualTo(4 - i);
+        }
+        RateLimitDecision rejected = strategy.tryAcquireAt("gcra-burst", config, t0);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRemaining()).isZero();
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("2. Should admit one request per emission interval once drained")
+    void testSustainedRate() {
+        for (int i = 0; i < 5; i++) {
+            strategy.tryAcquireAt("gcra-rate", config, t0);
+        }
+        assertThat(strategy.tryAcquireAt("gcra-rate", config, t0 + 99).isAllowed()).isFalse();
+        assertThat(strategy.tryAcquireAt("gcra-rate", config, t0 + 100).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("gcra-rate", config, t0 + 100).isAllowed()).isFalse();
+        // Two intervals later, two more
+        assertThat(strategy.tryAcquireAt("gcra-rate", config, t0 + 300).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("gcra-rate", config, t0 + 300).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("gcra-rate", config, t0 + 300).isAllowed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("3. Matches a token bucket's admitted count under steady overload")
+    void testTokenBucketEquivalentThroughput() {
+        // 10 s at 50 req/s against 10 req/s with burst 5 → 5 + 10 × 10 admitted
+        int allowed = 0;
+        for (long t = t0; t < t0 + 10_000; t += 20) {
+            if (strategy.tryAcquireAt("gcra-overload", config, t).isAllowed())
+                allowed++;
+        }
+        assertThat(allowed).isBetween(104, 105);
+    }
+
+    @Test
+    @DisplayName("4. refillRate 0 spreads maxRequests over the window")
+    void testWindowFallbackWhenNoRefillRate() {
+        RateLimitConfig windowed = RateLimitConfig.builder()
+                .identifier("windowed")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(6)
+                .windowSeconds(60)
+                .refillRate(0)
+                .build();
+        for (int i = 0; i < 6; i++) {
+            assertThat(strategy.tryAcquireAt("gcra-window", windowed, t0).isAllowed()).isTrue();
+        }
+        RateLimitDecision rejected = strategy.tryAcquireAt("gcra-window", windowed, t0);
+        assertThat(rejected.isAllowed()).isFalse();
+        // One request per 10 s
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(10);
+        assertThat(strategy.tryAcquireAt("gcra-window", windowed, t0 + 10_000).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("5. Should reset to a full burst")
+    void testReset() {
+        for (int i = 0; i < 5; i++) {
+            strategy.tryAcquireAt("gcra-reset", config, t0);
+        }
+        assertThat(strategy.tryAcquireAt("gcra-reset", config, t0).isAllowed()).isFalse();
+
+        strategy.reset("gcra-reset", config);
+
+        assertThat(strategy.getRemainingRequests("gcra-reset", config)).isEqualTo(5);
+        assertThat(strategy.tryAcquireAt("gcra-reset", config, t0).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("6. Concurrent requests admit exactly the burst")
+    void testConcurrentRequestsThreadSafe() throws InterruptedException {
+        RateLimitConfig noRefill = RateLimitConfig.builder()
+                .identifier("hot-key")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(10_000)
+                .windowSeconds(3600)
+                .refillRate(0)
+                .build();
+        int threadCount = 8;
+        int perThread = 5_000;
+        AtomicInteger allowed = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < perThread; j++) {
+                        if (strategy.tryAcquireAt("hot-key", noRefill, t0).isAllowed())
+                            allowed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        executor.shutdown();
+
+        assertThat(allowed.get()).isEqualTo(noRefill.getMaxRequests());
+    }
+
+    @Test
+    @DisplayName("7. A weighted request advances the schedule by its cost, or not at all")
+    void testWeightedRequest() {
+        RateLimitDecision heavy = strategy.tryAcquireAt("gcra-weighted", config, 3, t0);
+        assertThat(heavy.isAllowed()).isTrue();
+        assertThat(heavy.getRemaining()).isEqualTo(2);
+
+        // 3 more exceed the burst; the rejected request leaves the schedule alone
+        RateLimitDecision rejected = strategy.tryAcquireAt("gcra-weighted", config, 3, t0);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1); // 100 ms → rounded up
+        assertThat(strategy.tryAcquireAt("gcra-weighted", config, 2, t0).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("gcra-weighted", config, 1, t0).isAllowed()).isFalse();
+
+        // Three emission intervals later, 3 fit again
+        assertThat(strategy.tryAcquireAt("gcra-weighted", config, 3, t0 + 300).isAllowed()).isTrue();
+
+        // More than the burst never fits
+        assertThat(strategy.tryAcquireAt("gcra-too-heavy", config, 6, t0).isAllowed()).isFalse();
+        assertThat(strategy.tryAcquireAt("gcra-too-heavy", config, 5, t0).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("8. tryAcquireAll moves earlier schedules back when a later key rejects")
+    void testTryAcquireAllRollsBack() {
+        RateLimitConfig slow = RateLimitConfig.builder()
+                .identifier("gcra-user-h").identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(5).windowSeconds(60).refillRate(0).build(); // One per 12 s
+        RateLimitConfig global = RateLimitConfig.builder()
+                .identifier("*").identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                .maxRequests(2).windowSeconds(60).refillRate(0).build();
+        List<LimitKey> keys = List.of(new LimitKey("gcra-user-h", slow), new LimitKey("gcra-*", global));
+
+        assertThat(strategy.tryAcquireAll(keys, 2).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAll(keys, 1).isAllowed()).isFalse();
+
+        // The user's schedule did not advance for the rejected request
+        RateLimitDecision user = strategy.tryAcquire("gcra-user-h", slow, 3);
+        assertThat(user.isAllowed()).isTrue();
+        assertThat(user.getRemaining()).isZero();
+    }
+}
@@ -0,0 +1,174 @@
+package com.ratelimiter.service.strategy;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.batch.BatchedCheck;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for RedisSlidingWindowStrategy against an in-process Redis
+ * stand-in (jedis-mock: RESP server with Lua scripting).
+ * Tests: allow/reject, window slide, shared limit across replicas, TTL, reset,
+ * pipelined batches.
+ */
+class RedisSlidingWindowStrategyTest {
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    private RedisSlidingWindowStrategy strategy;
+    private RateLimitConfig config;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        strategy = new RedisSlidingWindowStrategy(redis, new RateLimiterProperties());
+        config = RateLimitConfig.builder()
+                .identifier("test-user")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(5)
+                .windowSeconds(60)
+                .refillRate(0)
+                .build();
+    }
+
+    @Test
+    @DisplayName("1. Should allow up to the limit in the window, then reject")
+    void testAllowsThenRejects() {
+        for (int i = 0; i < 5; i++) {
+            RateLimitDecision decision = strategy.tryAcquire("redis-sw-user", config);
+            assertThat(decision.isAllowed()).isTrue();
+            assertThat(decision.getRemaining()).isEqualTo(4 - i);
+        }
+        RateLimitDecision rejected = strategy.tryAcquire("redis-sw-user", config);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isBetween(59L, 60L);
+        assertThat(strategy.getRemainingRequests("redis-sw-user", config)).isZero();
+    }
+
+    @Test
+    @DisplayName("2. Old requests leave the window and free their slots")
+    void testWindowSlides() throws InterruptedException {
+        RateLimitConfig oneSecond = RateLimitConfig.builder()
+                .identifier("short")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(3)
+                .windowSeconds(1)
+                .refillRate(0)
+                .build();
+        for (int i = 0; i < 3; i++) {
+            strategy.tryAcquire("slide-user", oneSecond);
+        }
+        assertThat(strategy.isAllowed("slide-user", oneSecond)).isFalse();
+
+        Thread.sleep(1_100);
+
+        assertThat(strategy.isAllowed("slide-user", oneSecond)).isTrue();
+    }
+
+    @Test
+    @DisplayName("3. Replicas sharing Redis enforce one limit, not N×")
+    void testReplicasShareOneLimit() {
+        RedisSlidingWindowStrategy replicaB = new RedisSlidingWindowStrategy(redis, new RateLimiterProperties());
+        RedisSlidingWindowStrategy[] replicas = {strategy, replicaB};
+
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (replicas[i % 2].isAllowed("shared-sw-user", config))
+                allowed++;
+        }
+        assertThat(allowed).isEqualTo(config.getMaxRequests());
+    }
+
+    @Test
+    @DisplayName("4. Key TTL matches the window")
+    void testKeyTtlMatchesWindow() {
+        strategy.tryAcquire("ttl-sw-user", config);
+
+        Long ttlMs = redis.getExpire("ratelimit:sw:{ttl-sw-user}", TimeUnit.MILLISECONDS);
+        assertThat(ttlMs).isBetween(59_000L, 60_000L);
+    }
+
+    @Test
+    @DisplayName("5. Reset clears the log")
+    void testReset() {
+        for (int i = 0; i < 5; i++) {
+            strategy.tryAcquire("reset-sw-user", config);
+        }
+        assertThat(strategy.isAllowed("reset-sw-user", config)).isFalse();
+
+        strategy.reset("reset-sw-user", config);
+
+        assertThat(strategy.getRemainingRequests("reset-sw-user", config)).isEqualTo(5);
+        assertThat(strategy.isAllowed("reset-sw-user", config)).isTrue();
+    }
+
+    @Test
+    @DisplayName("6. A pipelined batch records merged checks in one call per key")
+    void testBatch() {
+        strategy.tryAcquire("batch-sw-b", config);
+
+        List<List<RateLimitDecision>> decisions = strategy.tryAcquireBatch(Arrays.asList(
+                new BatchedCheck("batch-sw-a", config, 2),
+                new BatchedCheck("batch-sw-b", config, 6)));
+
+        assertThat(decisions.get(0)).extracting(RateLimitDecision::getRemaining).containsExactly(4L, 3L);
+        assertThat(decisions.get(1).stream().filter(RateLimitDecision::isAllowed).count()).isEqualTo(4);
+        assertThat(decisions.get(1).get(5).isAllowed()).isFalse();
+        assertThat(redis.opsForZSet().zCard("ratelimit:sw:{batch-sw-b}")).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("7. A hierarchical check pipelines every key and removes its entries on rejection")
+    void testTryAcquireAllRollsBack() {
+        RateLimitConfig global = RateLimitConfig.builder()
+                .identifier("*").identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                .maxRequests(3).windowSeconds(60).refillRate(0).build();
+        List<LimitKey> keys = List.of(new LimitKey("redis-sw-user-h", config), new LimitKey("*", global));
+
+        assertThat(strategy.tryAcquireAll(keys, 2).isAllowed()).isTrue();
+
+        // The global log has 1 slot left: the user's 2 entries are removed
+        assertThat(strategy.tryAcquireAll(keys, 2).isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("redis-sw-user-h", config)).isEqualTo(3);
+        assertThat(strategy.getRemainingRequests("*", global)).isEqualTo(1);
+        assertThat(strategy.tryAcquireAll(keys, 1).getRemaining()).isZero();
+    }
+}
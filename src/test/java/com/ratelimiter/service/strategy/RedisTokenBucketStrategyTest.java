@@ -0,0 +1,244 @@
+package com.ratelimiter.service.strategy;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.service.batch.BatchedCheck;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for RedisTokenBucketStrategy against an in-process Redis
+ * stand-in (jedis-mock: RESP server with Lua scripting).
+ * Tests: allow/reject, shared limit across replicas, script preload and
+ * NOSCRIPT recovery, TTL, reset, fail-open, pipelined batches, the
+ * reactive path.
+ */
+class RedisTokenBucketStrategyTest {
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    private RedisTokenBucketStrategy strategy;
+    private RateLimitConfig config;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        strategy = new RedisTokenBucketStrategy(redis, new RateLimiterProperties());
+        config = RateLimitConfig.builder()
+                .identifier("test-user")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(5)
+                .windowSeconds(60)
+                .refillRate(1)
+                .build();
+    }
+
+    @Test
+    @DisplayName("1. Should allow up to capacity, then reject with Retry-After")
+    void testAllowsThenRejects() {
+        for (int i = 0; i < 5; i++) {
+            RateLimitDecision decision = strategy.tryAcquire("redis-user", config);
+            assertThat(decision.isAllowed()).isTrue();
+            assertThat(decision.getRemaining()).isEqualTo(4 - i);
+        }
+        RateLimitDecision rejected = strategy.tryAcquire("redis-user", config);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1);
+        assertThat(strategy.getRemainingRequests("redis-user", config)).isZero();
+    }
+
+    @Test
+    @DisplayName("2. Replicas sharing Redis enforce one limit, not N×")
+    void testReplicasShareOneLimit() {
+        RedisTokenBucketStrategy replicaB = new RedisTokenBucketStrategy(redis, new RateLimiterProperties());
+        RedisTokenBucketStrategy replicaC = new RedisTokenBucketStrategy(redis, new RateLimiterProperties());
+        RedisTokenBucketStrategy[] replicas = {strategy, replicaB, replicaC};
+
+        int allowed = 0;
+        for (int i = 0; i < 30; i++) {
+            if (replicas[i % 3].isAllowed("shared-user", config))
+                allowed++;
+        }
+        assertThat(allowed).isEqualTo(config.getMaxRequests());
+    }
+
+    @Test
+    @DisplayName("3. Script is preloaded by SHA and survives SCRIPT FLUSH")
+    void testScriptPreloadedAndReloaded() {
+        String sha = strategy.getScriptSha1();
+        List<Boolean> exists = redis.execute((RedisCallback<List<Boolean>>) connection ->
+                connection.scriptingCommands().scriptExists(sha));
+        assertThat(exists).containsExactly(true);
+
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        // NOSCRIPT → executor falls back to EVAL, which reloads it
+        assertThat(strategy.isAllowed("flushed-user", config)).isTrue();
+    }
+
+    @Test
+    @DisplayName("4. Key TTL ends when the bucket would be full again")
+    void testKeyTtlMatchesRefill() {
+        strategy.tryAcquire("ttl-user", config);
+        strategy.tryAcquire("ttl-user", config);
+
+        // Two tokens short at 1 token/s → about 2 s
+        Long ttlMs = redis.getExpire("ratelimit:tb:{ttl-user}", TimeUnit.MILLISECONDS);
+        assertThat(ttlMs).isBetween(1_000L, 2_000L);
+    }
+
+    @Test
+    @DisplayName("5. Reset deletes the key — next request sees a full bucket")
+    void testReset() {
+        for (int i = 0; i < 5; i++) {
+            strategy.tryAcquire("reset-user", config);
+        }
+        assertThat(strategy.isAllowed("reset-user", config)).isFalse();
+
+        strategy.reset("reset-user", config);
+
+        assertThat(strategy.getRemainingRequests("reset-user", config)).isEqualTo(5);
+        assertThat(strategy.tryAcquire("reset-user", config).getRemaining()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("6. Fails open when Redis is unreachable")
+    void testFailsOpenWhenRedisDown() throws IOException {
+        RedisServer doomed = RedisServer.newRedisServer().start();
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(doomed.getHost(), doomed.getBindPort()));
+        factory.afterPropertiesSet();
+        RedisTokenBucketStrategy orphan =
+                new RedisTokenBucketStrategy(new StringRedisTemplate(factory), new RateLimiterProperties());
+        doomed.stop();
+        factory.resetConnection();
+
+        try {
+            RateLimitDecision decision = orphan.tryAcquire("any-user", config);
+            assertThat(decision.isAllowed()).isTrue();
+            assertThat(decision.getRemaining()).isEqualTo(config.getMaxRequests());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("7. A pipelined batch takes merged checks' tokens in one call per key")
+    void testBatch() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        // NOSCRIPT in the pipeline → reload and retry
+        List<List<RateLimitDecision>> decisions = strategy.tryAcquireBatch(Arrays.asList(
+                new BatchedCheck("batch-a", config, 3),
+                new BatchedCheck("batch-b", config, 7)));
+
+        assertThat(decisions.get(0)).extracting(RateLimitDecision::getRemaining).containsExactly(4L, 3L, 2L);
+        assertThat(decisions.get(1)).hasSize(7);
+        assertThat(decisions.get(1).stream().filter(RateLimitDecision::isAllowed).count()).isEqualTo(5);
+        assertThat(decisions.get(1).get(6).getRetryAfterSeconds()).isEqualTo(1);
+        assertThat(strategy.getRemainingRequests("batch-a", config)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("8. The reactive path runs the same script on the same bucket")
+    void testReactivePathSharesTheBucket() {
+        RedisTokenBucketStrategy reactive = new RedisTokenBucketStrategy(redis,
+                new ReactiveStringRedisTemplate(connectionFactory), new RateLimiterProperties());
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(strategy.tryAcquire("reactive-user", config).isAllowed()).isTrue();
+        }
+        RateLimitDecision fourth = reactive.tryAcquireReactive("reactive-user", config).block();
+        assertThat(fourth.isAllowed()).isTrue();
+        assertThat(fourth.getRemaining()).isEqualTo(1);
+        assertThat(reactive.tryAcquireReactive("reactive-user", config).block().isAllowed()).isTrue();
+
+        RateLimitDecision rejected = reactive.tryAcquireReactive("reactive-user", config).block();
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isPositive();
+        assertThat(strategy.tryAcquire("reactive-user", config).isAllowed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("9. A weighted request takes all its tokens or none, alone or batched")
+    void testWeightedRequests() {
+        RateLimitDecision heavy = strategy.tryAcquire("weighted-user", config, 4);
+        assertThat(heavy.isAllowed()).isTrue();
+        assertThat(heavy.getRemaining()).isEqualTo(1);
+
+        // 1 token left, 3 wanted → 2 missing at 1 token/sec; the last token is kept
+        RateLimitDecision rejected = strategy.tryAcquire("weighted-user", config, 3);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(2);
+        assertThat(strategy.getRemainingRequests("weighted-user", config)).isEqualTo(1);
+
+        // Three merged checks of cost 2 on a fresh bucket of 5: two fit
+        List<RateLimitDecision> batched = strategy.tryAcquireBatch(List.of(
+                new BatchedCheck("weighted-batch", config, 3, 2))).get(0);
+        assertThat(batched).extracting(RateLimitDecision::isAllowed).containsExactly(true, true, false);
+        assertThat(batched).extracting(RateLimitDecision::getRemaining).startsWith(3L, 1L);
+        assertThat(strategy.getRemainingRequests("weighted-batch", config)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("10. A hierarchical check pipelines every key and rolls back on rejection")
+    void testTryAcquireAllRollsBack() {
+        RateLimitConfig global = RateLimitConfig.builder()
+                .identifier("*").identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                .maxRequests(3).windowSeconds(60).refillRate(1).build();
+        List<LimitKey> keys = List.of(new LimitKey("redis-user-h", config), new LimitKey("*", global));
+
+        RateLimitDecision first = strategy.tryAcquireAll(keys, 2);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(1);
+
+        // The global bucket has 1 token: the user's 2 go back
+        assertThat(strategy.tryAcquireAll(keys, 2).isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("redis-user-h", config)).isEqualTo(3);
+        assertThat(strategy.getRemainingRequests("*", global)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,199 @@
+package com.ratelimiter.service.strategy;
+
+import com.ratelimiter.model.LimitKey;
+import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for SlidingWindowCounterStrategy.
+ * Tests: allow, reject, weighting, reset, and accuracy against the exact
+ * SlidingWindowStrategy on a simulated clock.
+ */
+class SlidingWindowCounterStrategyTest {
+
+    private static final long WINDOW_MS = 60_000;
+
+    private SlidingWindowCounterStrategy strategy;
+    private RateLimitConfig config;
+    // Aligned to a window boundary, slightly in the future so store deadlines never lapse mid-test
+    private long t0;
+
+    @BeforeEach
+    void setUp() {
+        strategy = new SlidingWindowCounterStrategy();
+        config = RateLimitConfig.builder()
+                .identifier("test-user")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(100)
+                .windowSeconds(60)
+                .refillRate(0)
+                .build();
+        long now = System.currentTimeMillis();
+        t0 = now - now % WINDOW_MS + WINDOW_MS;
+    }
+
+    @Test
+    @DisplayName("1. Should allow up to the limit in a window, then reject")
+    void testAllowsThenRejects() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(strategy.tryAcquireAt("swc-user", config, t0 + i).isAllowed()).isTrue();
+        }
+        RateLimitDecision rejected = strategy.tryAcquireAt("swc-user", config, t0 + 100);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isPositive();
+    }
+
+    @Test
+    @DisplayName("2. Previous window is weighted by its remaining overlap")
+    void testPreviousWindowWeighted() {
+        for (int i = 0; i < 100; i++) {
+            strategy.tryAcquireAt("swc-weighted", config, t0 + i);
+        }
+
+        // 25% into the next window → previous weighs 75 → 25 slots free
+        long quarter = t0 + WINDOW_MS + WINDOW_MS / 4;
+        int allowed = 0;
+        for (int i = 0; i < 50; i++) {
+            if (strategy.tryAcquireAt("swc-weighted", config, quarter).isAllowed())
+                allowed++;
+        }
+        assertThat(allowed).isEqualTo(25);
+    }
+
+    @Test
+    @DisplayName("3. Should reset counters")
+    void testReset() {
+        for (int i = 0; i < 100; i++) {
+            strategy.tryAcquireAt("swc-reset", config, t0);
+        }
+        assertThat(strategy.tryAcquireAt("swc-reset", config, t0).isAllowed()).isFalse();
+
+        strategy.reset("swc-reset", config);
+
+        assertThat(strategy.tryAcquireAt("swc-reset", config, t0).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("4. Random overload: admitted total within 5% of the exact sliding log")
+    void testAccuracyAgainstExactUnderRandomLoad() {
+        SlidingWindowStrategy exact = new SlidingWindowStrategy();
+        Random random = new Random(42);
+
+        // Poisson arrivals at 1.5× the limit for 50 windows
+        double meanGapMs = WINDOW_MS / 150.0;
+        long now = t0;
+        long end = t0 + 50 * WINDOW_MS;
+        int exactAllowed = 0;
+        int approxAllowed = 0;
+        List<Long> approxTimes = new ArrayList<>();
+        while (now < end) {
+            now += (long) (-Math.log(1 - random.nextDouble()) * meanGapMs);
+            if (exact.tryAcquireAt("cmp", config, now).isAllowed())
+                exactAllowed++;
+            if (strategy.tryAcquireAt("cmp", config, now).isAllowed()) {
+                approxAllowed++;
+                approxTimes.add(now);
+            }
+        }
+
+        double relativeError = Math.abs(approxAllowed - exactAllowed) / (double) exactAllowed;
+        assertThat(relativeError).isLessThan(0.05);
+        // Random traffic stays well inside the documented 2N worst case
+        assertThat(maxInAnyTrailingWindow(approxTimes)).isLessThan(2 * config.getMaxRequests());
+    }
+
+    @Test
+    @DisplayName("5. Adversarial burst at a window edge stays within the 2N bound")
+    void testWorstCaseBurstBounded() {
+        List<Long> admitted = new ArrayList<>();
+
+        // All of window 1's budget in its last millisecond …
+        long edge = t0 + WINDOW_MS - 1;
+        for (int i = 0; i < 100; i++) {
+            if (strategy.tryAcquireAt("burst", config, edge).isAllowed())
+                admitted.add(edge);
+        }
+        // … then hammer every 10 ms through window 2
+        for (long t = t0 + WINDOW_MS; t < t0 + 2 * WINDOW_MS; t += 10) {
+            if (strategy.tryAcquireAt("burst", config, t).isAllowed())
+                admitted.add(t);
+        }
+
+        int worst = maxInAnyTrailingWindow(admitted);
+        assertThat(worst).isGreaterThan(config.getMaxRequests()); // the approximation's known cost
+        assertThat(worst).isLessThanOrEqualTo(2 * config.getMaxRequests());
+    }
+
+    /** Largest number of admitted requests inside any [t − W, t] interval. */
+    private static int maxInAnyTrailingWindow(List<Long> times) {
+        int worst = 0;
+        int start = 0;
+        for (int end = 0; end < times.size(); end++) {
+            while (times.get(end) - times.get(start) >= WINDOW_MS)
+                start++;
+            worst = Math.max(worst, end - start + 1);
+        }
+        return worst;
+    }
+
+    @Test
+    @DisplayName("6. A weighted request counts whole or not at all")
+    void testWeightedRequestIsAllOrNothing() {
+        RateLimitDecision heavy = strategy.tryAcquireAt("weighted", config, 60, t0);
+        assertThat(heavy.isAllowed()).isTrue();
+        assertThat(heavy.getRemaining()).isEqualTo(40);
+
+        RateLimitDecision rejected = strategy.tryAcquireAt("weighted", config, 50, t0 + 1);
+        assertThat(rejected.isAllowed()).isFalse();
+        // 60 × (W − e) / W + 50 ≤ 100 once e ≥ 10 s into the next window
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(69);
+        assertThat(strategy.tryAcquireAt("weighted", config, 40, t0 + 2).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("weighted", config, 1, t0 + 3).isAllowed()).isFalse();
+
+        assertThat(strategy.tryAcquireAt("too-heavy", config, 101, t0).isAllowed()).isFalse();
+        assertThat(strategy.tryAcquireAt("too-heavy", config, 100, t0).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("7. tryAcquireAll counts on every key or none")
+    void testTryAcquireAllIsAllOrNothing() {
+        RateLimitConfig global = RateLimitConfig.builder()
+                .identifier("*").identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                .maxRequests(10).windowSeconds(60).refillRate(0).build();
+        List<LimitKey> keys = List.of(new LimitKey("swc-user-h", config), new LimitKey("swc-*", global));
+
+        RateLimitDecision first = strategy.tryAcquireAllAt(keys, 8, t0);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(2); // The global level is tighter
+
+        assertThat(strategy.tryAcquireAllAt(keys, 5, t0 + 1).isAllowed()).isFalse();
+
+        // The rejected request left the user's count at 8
+        assertThat(strategy.tryAcquireAt("swc-user-h", config, 92, t0 + 2).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("swc-*", global, 2, t0 + 3).isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("8. release uncounts a request, across a window boundary too")
+    void testReleaseUncounts() {
+        assertThat(strategy.tryAcquireAt("swc-release", config, 30, t0).isAllowed()).isTrue();
+        strategy.release("swc-release", config, 30);
+        assertThat(strategy.tryAcquireAt("swc-release", config, 100, t0 + 1).getRemaining()).isZero();
+
+        // Counted just before a boundary, rolled into the previous window, then released
+        assertThat(strategy.tryAcquireAt("swc-rolled", config, 50, t0 + WINDOW_MS - 1).isAllowed()).isTrue();
+        assertThat(strategy.tryAcquireAt("swc-rolled", config, 10, t0 + WINDOW_MS).getRemaining()).isEqualTo(40);
+        strategy.release("swc-rolled", config, 50);
+        assertThat(strategy.getEntry("swc-rolled").previousWindowCount).isEqualTo(10);
+        assertThat(strategy.getEntry("swc-rolled").currentWindowCount).isZero();
+    }
+}
@@ -1,10 +1,19 @@
 package com.ratelimiter.service.strategy;
 
+import com.ratelimiter.model.LimitKey;
 import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -112,4 +121,158 @@ class SlidingWindowStrategyTest {
         strategy.isAllowed(id, config);
         assertThat(strategy.getRemainingRequests(id, config)).isEqualTo(1);
     }
+
+    @Test
+    @DisplayName("7. tryAcquire should report state after consumption in one call")
+    void testTryAcquireReportsStateAfterConsumption() {
+        String id = "sw-user-decision";
+
+        RateLimitDecision first = strategy.tryAcquire(id, config);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getLimit()).isEqualTo(3);
+        assertThat(first.getRemaining()).isEqualTo(2);
+
+        strategy.tryAcquire(id, config);
+        RateLimitDecision last = strategy.tryAcquire(id, config);
+        assertThat(last.isAllowed()).isTrue();
+        assertThat(last.getRemaining()).isZero();
+
+        RateLimitDecision rejected = strategy.tryAcquire(id, config);
+        assertThat(rejected.isAllowed()).isFalse();
+        // Oldest timestamp leaves the 2-second window within 2 seconds
+        assertThat(rejected.getRetryAfterSeconds()).isBetween(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("8. Ring buffer matches a naive timestamp log on random traffic")
+    void testRingMatchesNaiveLog() {
+        String id = "sw-user-ring";
+        long windowMs = config.getWindowSeconds() * 1000L;
+        java.util.ArrayDeque<Long> reference = new java.util.ArrayDeque<>();
+        java.util.Random random = new java.util.Random(7);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 5_000; i++) {
+            now += random.nextInt(400);
+            while (!reference.isEmpty() && reference.peekFirst() < now - windowMs)
+                reference.pollFirst();
+            boolean expected = reference.size() < config.getMaxRequests();
+            if (expected)
+                reference.addLast(now);
+
+            RateLimitDecision decision = strategy.tryAcquireAt(id, config, now);
+            assertThat(decision.isAllowed()).isEqualTo(expected);
+            if (expected)
+                assertThat(decision.getRemaining()).isEqualTo(config.getMaxRequests() - reference.size());
+        }
+    }
+
+    @Test
+    @DisplayName("9. Lowering maxRequests keeps only the newest timestamps")
+    void testLimitLoweredAtRuntime() {
+        String id = "sw-user-shrink";
+        RateLimitConfig wide = RateLimitConfig.builder()
+                .identifier(id)
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(10)
+                .windowSeconds(2)
+                .refillRate(0)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            strategy.isAllowed(id, wide);
+        }
+
+        // Admin lowers the limit to 3 — window already holds 5, so it is full
+        assertThat(strategy.isAllowed(id, config)).isFalse();
+        assertThat(strategy.getRemainingRequests(id, config)).isZero();
+    }
+
+    @Test
+    @DisplayName("10. A weighted request takes all its slots or none")
+    void testWeightedRequestIsAllOrNothing() {
+        String id = "sw-user-weighted";
+        assertThat(strategy.tryAcquire(id, config, 2).isAllowed()).isTrue();
+
+        // 2 more do not fit in a limit of 3 — and the one free slot is kept
+        RateLimitDecision rejected = strategy.tryAcquire(id, config, 2);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isBetween(1L, 2L);
+        assertThat(strategy.getRemainingRequests(id, config)).isEqualTo(1);
+        assertThat(strategy.tryAcquire(id, config, 1).isAllowed()).isTrue();
+
+        // More than the window holds never fits
+        assertThat(strategy.tryAcquire("sw-user-too-heavy", config, 4).isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("sw-user-too-heavy", config)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("11. tryAcquireAll records on every key or none")
+    void testTryAcquireAllIsAllOrNothing() {
+        RateLimitConfig ip = RateLimitConfig.builder()
+                .identifier("10.0.0.1").identifierType(RateLimitConfig.IdentifierType.IP_ADDRESS)
+                .maxRequests(5).windowSeconds(60).refillRate(0).build();
+        List<LimitKey> keys = List.of(new LimitKey("sw-user-h", config), new LimitKey("sw-10.0.0.1", ip));
+
+        RateLimitDecision first = strategy.tryAcquireAll(keys, 2);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(1); // The user level is tighter
+
+        RateLimitDecision rejected = strategy.tryAcquireAll(keys, 2);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("sw-user-h", config)).isEqualTo(1);
+        assertThat(strategy.getRemainingRequests("sw-10.0.0.1", ip)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("12. Overlapping key sets in any order neither deadlock nor over-admit")
+    void testTryAcquireAllConcurrentOverlap() throws InterruptedException {
+        RateLimitConfig global = RateLimitConfig.builder()
+                .identifier("*").identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                .maxRequests(50).windowSeconds(60).refillRate(0).build();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger allowed = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            String user = "sw-user-" + (t % 2);
+            // Half the threads list the keys in the opposite order
+            List<LimitKey> keys = t % 4 < 2
+                    ? List.of(new LimitKey(user, global), new LimitKey("sw-shared", global))
+                    : List.of(new LimitKey("sw-shared", global), new LimitKey(user, global));
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (strategy.tryAcquireAll(keys, 1).isAllowed())
+                            allowed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        assertThat(allowed.get()).isEqualTo(50);
+        assertThat(strategy.getRemainingRequests("sw-user-0", global)
+                + strategy.getRemainingRequests("sw-user-1", global)).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("13. release gives back a request's timestamps and never more")
+    void testReleaseRestoresSlots() {
+        assertThat(strategy.tryAcquire("sw-release", config, 2).isAllowed()).isTrue();
+        strategy.release("sw-release", config, 2);
+        assertThat(strategy.getRemainingRequests("sw-release", config)).isEqualTo(3);
+
+        strategy.release("sw-release", config, 5); // Nothing left to give back
+        assertThat(strategy.tryAcquire("sw-release", config, 3).isAllowed()).isTrue();
+        assertThat(strategy.isAllowed("sw-release", config)).isFalse();
+    }
 }
@@ -1,10 +1,13 @@
 package com.ratelimiter.service.strategy;
 
+import com.ratelimiter.model.LimitKey;
 import com.ratelimiter.model.RateLimitConfig;
+import com.ratelimiter.model.RateLimitDecision;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -147,4 +150,131 @@ class TokenBucketStrategyTest {
 
         assertThat(strategy.getRemainingRequests(identifier, config)).isEqualTo(3);
     }
+
+    @Test
+    @DisplayName("8. tryAcquire should report state after consumption in one call")
+    void testTryAcquireReportsStateAfterConsumption() {
+        String identifier = "user-decision";
+
+        RateLimitDecision first = strategy.tryAcquire(identifier, config);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getLimit()).isEqualTo(5);
+        assertThat(first.getRemaining()).isEqualTo(4);
+        assertThat(first.getRetryAfterSeconds()).isZero();
+
+        for (int i = 0; i < 4; i++) {
+            strategy.tryAcquire(identifier, config);
+        }
+
+        RateLimitDecision rejected = strategy.tryAcquire(identifier, config);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRemaining()).isZero();
+        // refillRate=1 → next token within a second
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1);
+        assertThat(rejected.getResetAtEpochSeconds())
+                .isGreaterThanOrEqualTo(System.currentTimeMillis() / 1000);
+    }
+
+    @Test
+    @DisplayName("9. Contended CAS loop neither loses nor duplicates tokens")
+    void testContendedCasAdmitsExactlyCapacity() throws InterruptedException {
+        RateLimitConfig noRefill = RateLimitConfig.builder()
+                .identifier("hot-key")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(20_000)
+                .windowSeconds(60)
+                .refillRate(0)
+                .build();
+        int threadCount = 8;
+        int perThread = 5_000;
+        AtomicInteger allowed = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < perThread; j++) {
+                        if (strategy.isAllowed("hot-key", noRefill))
+                            allowed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        executor.shutdown();
+
+        assertThat(allowed.get()).isEqualTo(noRefill.getMaxRequests());
+        assertThat(strategy.getRemainingRequests("hot-key", noRefill)).isZero();
+    }
+
+    @Test
+    @DisplayName("10. A weighted request takes all its tokens or none")
+    void testWeightedRequestIsAllOrNothing() {
+        RateLimitConfig noRefill = RateLimitConfig.builder()
+                .identifier("user-weighted")
+                .identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(5)
+                .windowSeconds(60)
+                .refillRate(0)
+                .build();
+
+        RateLimitDecision first = strategy.tryAcquire("user-weighted", noRefill, 3);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(2);
+
+        // 3 more do not fit — and the 2 left are not taken either
+        assertThat(strategy.tryAcquire("user-weighted", noRefill, 3).isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("user-weighted", noRefill)).isEqualTo(2);
+        assertThat(strategy.tryAcquire("user-weighted", noRefill, 2).isAllowed()).isTrue();
+
+        // More than the bucket holds never fits
+        assertThat(strategy.tryAcquire("user-too-heavy", noRefill, 6).isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("user-too-heavy", noRefill)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("11. Retry-after for a weighted request waits for all missing tokens")
+    void testWeightedRetryAfterCoversShortfall() {
+        for (int i = 0; i < 4; i++) {
+            strategy.tryAcquire("user-weighted-retry", config);
+        }
+
+        // 1 token left, 3 wanted → 2 missing at 1 token/sec
+        RateLimitDecision rejected = strategy.tryAcquire("user-weighted-retry", config, 3);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("12. tryAcquireAll gives earlier keys their tokens back when a later one rejects")
+    void testTryAcquireAllRollsBack() {
+        RateLimitConfig user = RateLimitConfig.builder()
+                .identifier("user-h").identifierType(RateLimitConfig.IdentifierType.USER_ID)
+                .maxRequests(5).windowSeconds(60).refillRate(0).build();
+        RateLimitConfig global = RateLimitConfig.builder()
+                .identifier("*").identifierType(RateLimitConfig.IdentifierType.GLOBAL)
+                .maxRequests(3).windowSeconds(60).refillRate(0).build();
+        List<LimitKey> keys = List.of(new LimitKey("user-h", user), new LimitKey("*", global));
+
+        RateLimitDecision first = strategy.tryAcquireAll(keys, 2);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(1); // The global level is tighter
+
+        // The global level has 1 left: the user's 2 tokens are restored
+        assertThat(strategy.tryAcquireAll(keys, 2).isAllowed()).isFalse();
+        assertThat(strategy.getRemainingRequests("user-h", user)).isEqualTo(3);
+        assertThat(strategy.getRemainingRequests("*", global)).isEqualTo(1);
+
+        // Release never overfills a bucket
+        strategy.release("user-h", user, 10);
+        assertThat(strategy.getRemainingRequests("user-h", user)).isEqualTo(5);
+    }
 }
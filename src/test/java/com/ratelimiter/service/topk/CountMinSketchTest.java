@@ -0,0 +1,84 @@
+package com.ratelimiter.service.topk;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for CountMinSketch.
+ * Tests: never undercounts, error bound on a skewed stream, clear, sizing.
+ */
+class CountMinSketchTest {
+
+    @Test
+    @DisplayName("Estimates are never below the true count")
+    void testNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        Map<String, Integer> truth = new HashMap<>();
+        Random random = new Random(42);
+
+        // Far more keys than counters: collisions are guaranteed
+        for (int i = 0; i < 50_000; i++) {
+            String key = "user-" + random.nextInt(5_000);
+            truth.merge(key, 1, Integer::sum);
+            sketch.add(key);
+        }
+
+        truth.forEach((key, count) -> assertThat(sketch.estimate(key)).isGreaterThanOrEqualTo(count));
+    }
+
+    @Test
+    @DisplayName("Heavy keys in a skewed stream are estimated within e/width of the total")
+    void testSkewedStreamErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(4096, 4);
+        Map<String, Integer> truth = new HashMap<>();
+        Random random = new Random(7);
+        int total = 200_000;
+
+        for (int i = 0; i < total; i++) {
+            String key = zipf(random, 100_000);
+            truth.merge(key, 1, Integer::sum);
+            sketch.add(key);
+        }
+
+        long bound = (long) Math.ceil(Math.E / sketch.getWidth() * total);
+        for (int rank = 1; rank <= 10; rank++) {
+            String key = "key-" + rank;
+            assertThat((long) sketch.estimate(key) - truth.get(key)).isBetween(0L, bound);
+        }
+    }
+
+    @Test
+    @DisplayName("add() returns the new estimate and clear() resets every counter")
+    void testAddReturnsEstimateAndClearResets() {
+        CountMinSketch sketch = new CountMinSketch(64, 3);
+
+        assertThat(sketch.add("a")).isEqualTo(1);
+        assertThat(sketch.add("a")).isEqualTo(2);
+        assertThat(sketch.estimate("a")).isEqualTo(2);
+
+        sketch.clear();
+        assertThat(sketch.estimate("a")).isZero();
+    }
+
+    @Test
+    @DisplayName("Width is rounded up to a power of two, at least 16")
+    void testWidthRounding() {
+        assertThat(new CountMinSketch(1, 1).getWidth()).isEqualTo(16);
+        assertThat(new CountMinSketch(16, 1).getWidth()).isEqualTo(16);
+        assertThat(new CountMinSketch(1000, 1).getWidth()).isEqualTo(1024);
+        assertThat(new CountMinSketch(4096, 0).getDepth()).isEqualTo(1);
+    }
+
+    /** Zipf(s = 1) over n keys by inverse transform on the harmonic CDF (approximate). */
+    static String zipf(Random random, int n) {
+        double harmonic = Math.log(n) + 0.5772156649;
+        int rank = (int) Math.floor(Math.exp(random.nextDouble() * harmonic - 0.5772156649));
+        return "key-" + Math.max(1, Math.min(n, rank));
+    }
+}
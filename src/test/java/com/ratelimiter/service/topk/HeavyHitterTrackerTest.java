@@ -0,0 +1,103 @@
+package com.ratelimiter.service.topk;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for HeavyHitterTracker.
+ * Tests: ranking on a skewed stream, rejections, sliding window, fixed
+ * memory under a huge key space, sampling scale-up.
+ */
+class HeavyHitterTrackerTest {
+
+    private static final long INTERVAL_MS = 10_000;
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static HeavyHitterTracker tracker(int sampleEvery) {
+        return new HeavyHitterTracker(sampleEvery, INTERVAL_MS, 6, 64, 4096, 4);
+    }
+
+    @Test
+    @DisplayName("The heaviest identifiers of a skewed stream come out on top, in order")
+    void testRanksHeavyHittersOfSkewedStream() {
+        HeavyHitterTracker tracker = tracker(1);
+        Random random = new Random(1);
+
+        for (int i = 0; i < 200_000; i++) {
+            tracker.recordSampled(CountMinSketchTest.zipf(random, 100_000), false, T0 + i % INTERVAL_MS);
+        }
+
+        List<HeavyHitter> top = tracker.top(3, 60_000, T0, false);
+        assertThat(top).extracting(HeavyHitter::getIdentifier).containsExactly("key-1", "key-2", "key-3");
+    }
+
+    @Test
+    @DisplayName("Rejections are ranked separately from requests")
+    void testRejectionsTrackedSeparately() {
+        HeavyHitterTracker tracker = tracker(1);
+
+        for (int i = 0; i < 100; i++) tracker.recordSampled("busy", false, T0);
+        for (int i = 0; i < 30; i++) tracker.recordSampled("abuser", i >= 5, T0);
+
+        assertThat(tracker.top(1, 10_000, T0, false).get(0).getIdentifier()).isEqualTo("busy");
+        List<HeavyHitter> rejections = tracker.top(10, 10_000, T0, true);
+        assertThat(rejections).hasSize(1);
+        assertThat(rejections.get(0).getIdentifier()).isEqualTo("abuser");
+        assertThat(rejections.get(0).getEstimatedCount()).isEqualTo(25);
+    }
+
+    @Test
+    @DisplayName("Counts outside the window drop out; counts across intervals add up")
+    void testSlidingWindow() {
+        HeavyHitterTracker tracker = tracker(1);
+
+        for (int i = 0; i < 50; i++) tracker.recordSampled("early", false, T0);
+        for (int i = 0; i < 20; i++) tracker.recordSampled("late", false, T0 + 2 * INTERVAL_MS);
+        for (int i = 0; i < 20; i++) tracker.recordSampled("late", false, T0 + 3 * INTERVAL_MS);
+        long now = T0 + 3 * INTERVAL_MS;
+
+        assertThat(tracker.top(10, 60_000, now, false))
+                .extracting(HeavyHitter::toString).containsExactly("early=50", "late=40");
+        assertThat(tracker.top(10, 20_000, now, false))
+                .extracting(HeavyHitter::toString).containsExactly("late=40");
+
+        // Six intervals later "early"'s slot has been reused
+        long later = T0 + 6 * INTERVAL_MS;
+        tracker.recordSampled("new", false, later);
+        assertThat(tracker.top(10, 60_000, later, false))
+                .extracting(HeavyHitter::getIdentifier).containsExactlyInAnyOrder("late", "new");
+    }
+
+    @Test
+    @DisplayName("Tracked candidates stay bounded however many identifiers are seen")
+    void testFixedMemory() {
+        HeavyHitterTracker tracker = tracker(1);
+
+        for (int i = 0; i < 1_000_000; i++) {
+            tracker.recordSampled("one-off-" + i, false, T0);
+            if (i % 100 == 0) tracker.recordSampled("steady", false, T0);
+        }
+
+        List<HeavyHitter> all = tracker.top(Integer.MAX_VALUE, 10_000, T0, false);
+        assertThat(all).hasSizeLessThanOrEqualTo(tracker.getTrackedKeys());
+        assertThat(all.get(0).getIdentifier()).isEqualTo("steady");
+    }
+
+    @Test
+    @DisplayName("Sampled counts are scaled back up by sample-every")
+    void testSamplingScalesCounts() {
+        HeavyHitterTracker tracker = tracker(8);
+
+        for (int i = 0; i < 80_000; i++) tracker.record("hot", false);
+
+        List<HeavyHitter> top = tracker.topRequests(1, 60);
+        assertThat(top).hasSize(1);
+        assertThat(top.get(0).getEstimatedCount()).isBetween(72_000L, 88_000L);
+        assertThat(tracker.topRejections(1, 60)).isEmpty();
+    }
+}
@@ -0,0 +1,182 @@
+package com.ratelimiter.wire;
+
+import com.ratelimiter.config.RateLimiterProperties;
+import com.ratelimiter.filter.RouteRules;
+import com.ratelimiter.model.RateLimitDecision;
+import com.ratelimiter.repository.RateLimitConfigRepository;
+import com.ratelimiter.service.RateLimitConfigCache;
+import com.ratelimiter.service.RateLimiterService;
+import com.ratelimiter.service.strategy.GcraStrategy;
+import com.ratelimiter.service.strategy.TokenBucketStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for DecisionServer + DecisionClient over loopback, with a real
+ * RateLimiterService (Token Bucket, no refill) and a mocked repository.
+ * Tests: decisions and fields, pipelined checks over shared connections,
+ * shared limits with the service, invalid frames, malformed lengths.
+ */
+class DecisionServerTest {
+
+    private static final int LIMIT = 10;
+
+    private RateLimiterService service;
+    private DecisionServer server;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitConfigRepository repository = mock(RateLimitConfigRepository.class);
+        when(repository.findByIdentifier(anyString())).thenReturn(Optional.empty());
+        when(repository.findByIdentifierIn(anyCollection())).thenReturn(List.of());
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.setAlgorithm("TOKEN_BUCKET");
+        properties.setDefaultLimit(LIMIT);
+        properties.setDefaultRefillRate(0); // No refill within the test
+        properties.getWire().setBindAddress("127.0.0.1");
+        properties.getWire().setBindPort(0);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new RateLimiterService(List.of(new GcraStrategy(), new TokenBucketStrategy()),
+                new RateLimitConfigCache(repository, properties, meterRegistry), new RouteRules(properties),
+                properties, meterRegistry);
+        server = new DecisionServer(service, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private DecisionClient client() throws Exception {
+        return new DecisionClient("127.0.0.1", server.getPort());
+    }
+
+    @Test
+    @DisplayName("1. Checks are allowed up to the limit, then rejected with limit, remaining, reset and retry")
+    void testAllowsThenRejects() throws Exception {
+        try (DecisionClient client = client()) {
+            for (int i = 0; i < LIMIT; i++) {
+                RateLimitDecision decision = client.check("wire-user");
+                assertThat(decision.isAllowed()).isTrue();
+                assertThat(decision.getLimit()).isEqualTo(LIMIT);
+                assertThat(decision.getRemaining()).isEqualTo(LIMIT - 1 - i);
+                assertThat(decision.getResetAtEpochSeconds()).isGreaterThanOrEqualTo(System.currentTimeMillis() / 1000);
+            }
+            RateLimitDecision rejected = client.check("wire-user");
+            assertThat(rejected.isAllowed()).isFalse();
+            assertThat(rejected.getRemaining()).isZero();
+            assertThat(rejected.getRetryAfterSeconds()).isPositive();
+        }
+        assertThat(meterRegistry.get("ratelimiter.wire.requests").counter().count()).isEqualTo(LIMIT + 1);
+    }
+
+    @Test
+    @DisplayName("2. Pipelined checks over shared connections admit exactly the limit per identifier")
+    void testPipelinedChecksAreExact() throws Exception {
+        int identifiers = 50;
+        int perIdentifier = LIMIT * 3;
+        Map<String, AtomicInteger> allowed = new ConcurrentHashMap<>();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        try (DecisionClient first = client(); DecisionClient second = client()) {
+            List<Future<?>> sent = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                DecisionClient client = t % 2 == 0 ? first : second;
+                int thread = t;
+                sent.add(senders.submit(() -> {
+                    List<CompletableFuture<RateLimitDecision>> inFlight = new ArrayList<>();
+                    List<String> ids = new ArrayList<>();
+                    for (int i = thread; i < identifiers * perIdentifier; i += 8) {
+                        String identifier = "pipelined-" + (i % identifiers);
+                        ids.add(identifier);
+                        inFlight.add(client.checkAsync(identifier, 1)); // No waiting between sends
+                    }
+                    for (int i = 0; i < inFlight.size(); i++) {
+                        if (inFlight.get(i).join().isAllowed())
+                            allowed.computeIfAbsent(ids.get(i), id -> new AtomicInteger()).incrementAndGet();
+                        else
+                            rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : sent) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            senders.shutdownNow();
+        }
+
+        assertThat(allowed).hasSize(identifiers);
+        assertThat(allowed.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(LIMIT));
+        assertThat(rejected.get()).isEqualTo(identifiers * (perIdentifier - LIMIT));
+    }
+
+    @Test
+    @DisplayName("3. Wire checks, costs and the service's own checks draw on one limit")
+    void testSharesLimitsWithService() throws Exception {
+        try (DecisionClient client = client()) {
+            assertThat(client.check("shared", 4).getRemaining()).isEqualTo(LIMIT - 4);
+            assertThat(service.tryAcquire("shared").getRemaining()).isEqualTo(LIMIT - 5);
+            List<RateLimitDecision> fanOut = client.checkAll(List.of("shared", "shared", "other"));
+            assertThat(fanOut.get(0).getRemaining()).isEqualTo(LIMIT - 6);
+            assertThat(fanOut.get(1).getRemaining()).isEqualTo(LIMIT - 7);
+            assertThat(fanOut.get(2).getRemaining()).isEqualTo(LIMIT - 1);
+            assertThat(client.check("shared", 4).isAllowed()).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("4. A bad cost or identifier gets INVALID; a bad frame length closes the connection")
+    void testInvalidFrames() throws Exception {
+        try (SocketChannel raw = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()))) {
+            ByteBuffer request = ByteBuffer.allocate(64);
+            request.putShort((short) 9).putInt(7).putShort((short) 0).put("bad".getBytes()); // cost 0
+            request.flip();
+            raw.write(request);
+
+            ByteBuffer response = ByteBuffer.allocate(WireProtocol.RESPONSE_BYTES);
+            while (response.hasRemaining()) {
+                assertThat(raw.read(response)).isNotNegative();
+            }
+            response.flip();
+            assertThat(WireProtocol.peekId(response)).isEqualTo(7);
+            assertThat(WireProtocol.peekStatus(response)).isEqualTo(WireProtocol.INVALID);
+
+            raw.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, 0, 0})); // 65535-byte frame
+            assertThat(raw.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+        }
+
+        try (DecisionClient client = client()) {
+            assertThatThrownBy(() -> client.check("x", WireProtocol.MAX_COST + 1))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> client.check("bob|route:GET:/api/v1/search/**")) // Posing as a route key
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Invalid identifier");
+            assertThat(client.check("still-serving").isAllowed()).isTrue();
+        }
+    }
+}